@@ -10,6 +10,7 @@ plugins {
     application
     id("io.github.gradle-nexus.publish-plugin") version "1.1.0"
     id("org.jetbrains.dokka") version "1.6.21"
+    id("me.champeau.jmh") version "0.6.6"
     signing
 }
 
@@ -38,6 +39,7 @@ dependencies {
     antlr("org.antlr:antlr4:4.10.1")
 
     implementation("org.ow2.asm:asm:9.3")
+    implementation("org.ow2.asm:asm-tree:9.3")
     implementation("com.beust:jcommander:1.75")
 
     testImplementation("org.ow2.asm:asm-util:9.3")
@@ -65,6 +67,11 @@ tasks.getByName<Test>("test") {
     useJUnitPlatform()
 }
 
+jmh {
+    // Report allocations (gc.alloc.rate.norm) alongside timings
+    profilers.add("gc")
+}
+
 tasks.withType<AntlrTask> {
     arguments = arguments + listOf("-visitor")
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm;
+
+import com.roscopeco.jasm.antlr.JasmLexer;
+import com.roscopeco.jasm.antlr.JasmParser;
+import com.roscopeco.jasm.errors.StandardErrorCollector;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time and allocation per instruction when generating a large method. Run with
+ * {@code ./gradlew jmh}, and see {@code gc.alloc.rate.norm} for bytes allocated per instruction.
+ *
+ * {@code generate} measures only the code generation from an existing parse tree (into
+ * visitors that discard everything), which is where names, types and labels are handled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SymbolAllocationBenchmark {
+    private static final int REPEATS = 300;
+
+    private static final String[] INSTRUCTIONS = {
+        "iload 1",
+        "iconst 1",
+        "iadd",
+        "istore 1",
+        "aload 0",
+        "ifnull label%d",
+        "bipush 3",
+        "pop",
+        "label%d:",
+        "aload 0",
+        "getfield com/example/Large.field I",
+        "pop",
+        "aload 0",
+        "invokevirtual java/lang/Object.hashCode()I",
+        "pop",
+        "checkcast [java/lang/String",
+        "pop",
+        "goto `other label %d`",
+        "`other label %d`:",
+        "invokestatic java/lang/Integer.valueOf(I)java/lang/Integer",
+        "pop",
+    };
+
+    /** The number of instructions in the method, for {@link OperationsPerInvocation} (so must be constant). */
+    private static final int INSTRUCTION_COUNT = 21 * REPEATS;
+
+    private String source;
+    private JasmParser.ClassContext tree;
+
+    @Setup
+    public void setup() {
+        if (INSTRUCTIONS.length * REPEATS != INSTRUCTION_COUNT) {
+            throw new IllegalStateException("INSTRUCTION_COUNT is out of date");
+        }
+
+        final var builder = new StringBuilder("public class com/example/Large {\n  field I\n\n  public large(I)V {\n");
+
+        for (int i = 0; i < REPEATS; i++) {
+            for (final var instruction : INSTRUCTIONS) {
+                builder.append("    ").append(String.format(instruction, i)).append('\n');
+            }
+        }
+
+        source = builder.append("    return\n  }\n}\n").toString();
+        tree = new JasmParser(new CommonTokenStream(new JasmLexer(CharStreams.fromString(source)))).class_();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSTRUCTION_COUNT)
+    public void generate() {
+        tree.accept(new JasmAssemblingVisitor(new DiscardingClassVisitor(), new Modifiers(), "Large.jasm",
+            Opcodes.V11, new StandardErrorCollector()));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSTRUCTION_COUNT)
+    public Map<String, byte[]> assemble() {
+        return assemble(ParserMode.ANTLR);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSTRUCTION_COUNT)
+    public Map<String, byte[]> assembleDirect() {
+        return assemble(ParserMode.DIRECT);
+    }
+
+    private Map<String, byte[]> assemble(final ParserMode parserMode) {
+        final var options = new AssemblerOptions()
+            .withFrameMode(FrameMode.DIRECTIVES)
+            .withParserMode(parserMode);
+
+        return new JasmAssembler(JasmSource.of("Large.jasm", source), options).assembleClasses();
+    }
+
+    private static class DiscardingClassVisitor extends ClassVisitor {
+        DiscardingClassVisitor() {
+            super(Opcodes.ASM9);
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+            return new FieldVisitor(Opcodes.ASM9) { };
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            return new MethodVisitor(Opcodes.ASM9) { };
+        }
+    }
+}
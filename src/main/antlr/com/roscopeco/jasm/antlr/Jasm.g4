@@ -4,6 +4,10 @@ grammar Jasm;
    package com.roscopeco.jasm.antlr;
 }
 
+unit
+ : class+ EOF
+ ;
+
 class
  : annotation* type_modifier* CLASS classname extends? implements? (LBRACE classbody RBRACE)?
  ;
@@ -338,386 +342,207 @@ stat_block
  : stat*
  ;
 
+method_body
+ : stat_block EOF
+ ;
+
 stat
  : instruction
  | OTHER {System.err.println("unknown char: " + $OTHER.text);}
  ;
 
 instruction
- : insn_aaload
- | insn_aastore
- | insn_aconst_null
- | insn_aload
+ : insn_simple
+ | insn_var
+ | insn_int
+ | insn_jump
  | insn_anewarray
- | insn_areturn
- | insn_arraylength
- | insn_astore
- | insn_athrow
- | insn_baload
- | insn_bastore
- | insn_bipush
- | insn_caload
- | insn_castore
  | insn_checkcast
- | insn_d2f
- | insn_d2i
- | insn_d2l
- | insn_dadd
- | insn_daload
- | insn_dastore
- | insn_dcmpg
- | insn_dcmpl
  | insn_dconst
- | insn_ddiv
- | insn_dload
- | insn_dmul
- | insn_dneg
- | insn_drem
- | insn_dreturn
- | insn_dstore
- | insn_dsub
- | insn_dup
- | insn_dup_x1
- | insn_dup_x2
- | insn_dup2
- | insn_dup2_x1
- | insn_dup2_x2
- | insn_f2d
- | insn_f2i
- | insn_f2l
- | insn_fadd
- | insn_faload
- | insn_fastore
- | insn_fcmpg
- | insn_fcmpl
  | insn_fconst
- | insn_fdiv
- | insn_fload
- | insn_fmul
- | insn_fneg
- | insn_frem
- | insn_freturn
- | insn_fsub
- | insn_fstore
  | insn_getfield
  | insn_getstatic
  | insn_goto
- | insn_i2b
- | insn_i2c
- | insn_i2d
- | insn_i2f
- | insn_i2l
- | insn_i2s
- | insn_iadd
- | insn_iaload
- | insn_iand
- | insn_iastore
  | insn_iconst
- | insn_idiv
- | insn_if_acmpeq
- | insn_if_acmpne
- | insn_if_icmpeq
- | insn_if_icmpge
- | insn_if_icmpgt
- | insn_if_icmple
- | insn_if_icmplt
- | insn_if_icmpne
- | insn_ifeq
- | insn_ifge
- | insn_ifgt
- | insn_ifle
- | insn_iflt
- | insn_ifne
- | insn_ifnull
- | insn_ifnonnull
  | insn_iinc
- | insn_iload
- | insn_imul
- | insn_ineg
  | insn_instanceof
  | insn_invokedynamic
  | insn_invokeinterface
  | insn_invokespecial
  | insn_invokestatic
  | insn_invokevirtual
- | insn_ior
- | insn_irem
- | insn_ireturn
- | insn_ishl
- | insn_ishr
- | insn_istore
- | insn_isub
- | insn_iushr
- | insn_ixor
- | insn_jsr
- | insn_l2d
- | insn_l2f
- | insn_l2i
- | insn_ladd
- | insn_laload
- | insn_land
- | insn_lastore
- | insn_lcmp
  | insn_lconst
  | insn_ldc
- | insn_ldiv
- | insn_lload
- | insn_lmul
- | insn_lneg
  | insn_lookupswitch
- | insn_lor
- | insn_lrem
- | insn_lreturn
- | insn_lshl
- | insn_lshr
- | insn_lstore
- | insn_lsub
- | insn_lushr
- | insn_lxor
- | insn_monitorenter
- | insn_monitorexit
  | insn_multianewarray
  | insn_new
  | insn_newarray
- | insn_nop
- | insn_pop
- | insn_pop2
  | insn_putfield
  | insn_putstatic
- | insn_return
- | insn_ret
- | insn_saload
- | insn_sastore
- | insn_sipush
- | insn_swap
  | insn_tableswitch
  | label
  | exception_handler
  | try_catch_block
- ;
-
-insn_aaload
- : AALOAD
- ;
-
-insn_aastore
- : AASTORE
- ;
-
-insn_aconst_null
- : ACONST_NULL
- ;
-
-insn_aload
- : ALOAD int_atom
+ | frame
+ ;
+
+insn_simple
+ : op=( AALOAD
+      | AASTORE
+      | ACONST_NULL
+      | ARETURN
+      | ARRAYLENGTH
+      | ATHROW
+      | BALOAD
+      | BASTORE
+      | CALOAD
+      | CASTORE
+      | D2F
+      | D2I
+      | D2L
+      | DADD
+      | DALOAD
+      | DASTORE
+      | DCMPG
+      | DCMPL
+      | DDIV
+      | DMUL
+      | DNEG
+      | DREM
+      | DRETURN
+      | DSUB
+      | DUP
+      | DUP_X1
+      | DUP_X2
+      | DUP2
+      | DUP2_X1
+      | DUP2_X2
+      | F2D
+      | F2I
+      | F2L
+      | FADD
+      | FALOAD
+      | FASTORE
+      | FCMPG
+      | FCMPL
+      | FDIV
+      | FMUL
+      | FNEG
+      | FREM
+      | FRETURN
+      | FSUB
+      | I2B
+      | I2C
+      | I2D
+      | I2F
+      | I2L
+      | I2S
+      | IADD
+      | IALOAD
+      | IAND
+      | IASTORE
+      | IDIV
+      | IMUL
+      | INEG
+      | IOR
+      | IREM
+      | IRETURN
+      | ISHL
+      | ISHR
+      | ISUB
+      | IUSHR
+      | IXOR
+      | L2D
+      | L2F
+      | L2I
+      | LADD
+      | LALOAD
+      | LAND
+      | LASTORE
+      | LCMP
+      | LDIV
+      | LMUL
+      | LNEG
+      | LOR
+      | LREM
+      | LRETURN
+      | LSHL
+      | LSHR
+      | LSUB
+      | LUSHR
+      | LXOR
+      | MONITORENTER
+      | MONITOREXIT
+      | NOP
+      | POP
+      | POP2
+      | RETURN
+      | SALOAD
+      | SASTORE
+      | SWAP
+      )
+ ;
+
+insn_var
+ : op=( ALOAD
+      | ASTORE
+      | DLOAD
+      | DSTORE
+      | FLOAD
+      | FSTORE
+      | ILOAD
+      | ISTORE
+      | LLOAD
+      | LSTORE
+      ) int_atom
+ ;
+
+insn_int
+ : op=( BIPUSH
+      | RET
+      | SIPUSH
+      ) int_atom
+ ;
+
+insn_jump
+ : op=( IFACMPEQ
+      | IFACMPNE
+      | IFICMPEQ
+      | IFICMPGE
+      | IFICMPGT
+      | IFICMPLE
+      | IFICMPLT
+      | IFICMPNE
+      | IFEQ
+      | IFGE
+      | IFGT
+      | IFLE
+      | IFLT
+      | IFNE
+      | IFNULL
+      | IFNONNULL
+      | JSR
+      ) NAME
  ;
 
 insn_anewarray
  : ANEWARRAY QNAME
  ;
 
-insn_areturn
- : ARETURN
- ;
-
-insn_arraylength
- : ARRAYLENGTH
- ;
-
-insn_astore
- : ASTORE int_atom
- ;
-
-insn_athrow
- : ATHROW
- ;
-
-insn_baload
- : BALOAD
- ;
-
-insn_bastore
- : BASTORE
- ;
-
-insn_bipush
- : BIPUSH int_atom
- ;
-
-insn_caload
- : CALOAD
- ;
-
-insn_castore
- : CASTORE
- ;
-
 insn_checkcast
  : CHECKCAST LSQUARE* QNAME
  | CHECKCAST LSQUARE* NAME
  | CHECKCAST LSQUARE* LITERAL_NAME
  ;
 
-insn_d2f
- : D2F
- ;
-
-insn_d2i
- : D2I
- ;
-
-insn_d2l
- : D2L
- ;
-
-insn_dadd
- : DADD
- ;
-
-insn_daload
- : DALOAD
- ;
-
-insn_dastore
- : DASTORE
- ;
-
-insn_dcmpg
- : DCMPG
- ;
-
-insn_dcmpl
- : DCMPL
- ;
-
 insn_dconst
  : DCONST int_atom
  ;
 
-insn_ddiv
- : DDIV
- ;
-
-insn_dload
- : DLOAD int_atom
- ;
-
-insn_dmul
- : DMUL
- ;
-
-insn_dneg
- : DNEG
- ;
-
-insn_drem
- : DREM
- ;
-
-insn_dreturn
- : DRETURN
- ;
-
-insn_dstore
- : DSTORE int_atom
- ;
-
-insn_dsub
- : DSUB
- ;
-
-insn_dup
- : DUP
- ;
-
-insn_dup_x1
- : DUP_X1
- ;
-
-insn_dup_x2
- : DUP_X2
- ;
-
-insn_dup2
- : DUP2
- ;
-
-insn_dup2_x1
- : DUP2_X1
- ;
-
-insn_dup2_x2
- : DUP2_X2
- ;
-
-insn_f2d
- : F2D
- ;
-
-insn_f2i
- : F2I
- ;
-
-insn_f2l
- : F2L
- ;
-
-insn_fadd
- : FADD
- ;
-
-insn_faload
- : FALOAD
- ;
-
-insn_fastore
- : FASTORE
- ;
-
-insn_fcmpg
- : FCMPG
- ;
-
-insn_fcmpl
- : FCMPL
- ;
-
 insn_fconst
  : FCONST int_atom
  ;
 
-insn_fdiv
- : FDIV
- ;
-
-insn_fload
- : FLOAD int_atom
- ;
-
-insn_fmul
- : FMUL
- ;
-
-insn_fneg
- : FNEG
- ;
-
-insn_frem
- : FREM
- ;
-
-insn_freturn
- : FRETURN
- ;
-
-insn_fsub
- : FSUB
- ;
-
-insn_fstore
- : FSTORE int_atom
- ;
-
 insn_getfield
  : GETFIELD owner DOT membername type
  ;
@@ -731,46 +556,6 @@ insn_goto
  | GOTO LITERAL_NAME
  ;
 
-insn_i2b
- : I2B
- ;
-
-insn_i2c
- : I2C
- ;
-
-insn_i2d
- : I2D
- ;
-
-insn_i2f
- : I2F
- ;
-
-insn_i2l
- : I2L
- ;
-
-insn_i2s
- : I2S
- ;
-
-insn_iadd
- : IADD
- ;
-
-insn_iaload
- : IALOAD
- ;
-
-insn_iand
- : IAND
- ;
-
-insn_iastore
- : IASTORE
- ;
-
 insn_iconst
  : ICONST ilconst_atom
  ;
@@ -780,90 +565,10 @@ ilconst_atom
  | bool_atom
  ;
 
-insn_idiv
- : IDIV
- ;
-
-insn_if_acmpeq
- : IFACMPEQ NAME
- ;
-
-insn_if_acmpne
- : IFACMPNE NAME
- ;
-
-insn_if_icmpeq
- : IFICMPEQ NAME
- ;
-
-insn_if_icmpge
- : IFICMPGE NAME
- ;
-
-insn_if_icmpgt
- : IFICMPGT NAME
- ;
-
-insn_if_icmple
- : IFICMPLE NAME
- ;
-
-insn_if_icmplt
- : IFICMPLT NAME
- ;
-
-insn_if_icmpne
- : IFICMPNE NAME
- ;
-
-insn_ifeq
- : IFEQ NAME
- ;
-
-insn_ifge
- : IFGE NAME
- ;
-
-insn_ifgt
- : IFGT NAME
- ;
-
-insn_ifle
- : IFLE NAME
- ;
-
-insn_iflt
- : IFLT NAME
- ;
-
-insn_ifne
- : IFNE NAME
- ;
-
-insn_ifnull
- : IFNULL NAME
- ;
-
-insn_ifnonnull
- : IFNONNULL NAME
- ;
-
 insn_iinc
  : IINC int_atom COMMA? LSQUARE int_atom RSQUARE
  ;
 
-insn_iload
- : ILOAD int_atom
- ;
-
-insn_imul
- : IMUL
- ;
-
-insn_ineg
- : INEG
- ;
-
 insn_instanceof
  : INSTANCEOF LSQUARE* QNAME
  | INSTANCEOF LSQUARE* NAME
@@ -943,78 +648,6 @@ insn_invokevirtual
  : INVOKEVIRTUAL STAR? owner DOT membername method_descriptor
  ;
 
-insn_ior
- : IOR
- ;
-
-insn_irem
- : IREM
- ;
-
-insn_ireturn
- : IRETURN
- ;
-
-insn_ishl
- : ISHL
- ;
-
-insn_ishr
- : ISHR
- ;
-
-insn_istore
- : ISTORE int_atom
- ;
-
-insn_isub
- : ISUB
- ;
-
-insn_iushr
- : IUSHR
- ;
-
-insn_ixor
- : IXOR
- ;
-
-insn_jsr
- : JSR NAME
- ;
-
-insn_l2d
- : L2D
- ;
-
-insn_l2f
- : L2F
- ;
-
-insn_l2i
- : L2I
- ;
-
-insn_ladd
- : LADD
- ;
-
-insn_laload
- : LALOAD
- ;
-
-insn_land
- : LAND
- ;
-
-insn_lastore
- : LASTORE
- ;
-
-insn_lcmp
- : LCMP
- ;
-
 insn_lconst
  : LCONST ilconst_atom
  ;
@@ -1023,22 +656,6 @@ insn_ldc
  : LDC const_arg
  ;
 
-insn_ldiv
- : LDIV
- ;
-
-insn_lload
- : LLOAD int_atom
- ;
-
-insn_lmul
- : LMUL
- ;
-
-insn_lneg
- : LNEG
- ;
-
 insn_lookupswitch
  : LOOKUPSWITCH NAME LBRACE switch_case+ RBRACE
  ;
@@ -1047,50 +664,6 @@ switch_case
  : (int_atom COLON NAME COMMA?)
  ;
 
-insn_lor
- : LOR
- ;
-
-insn_lrem
- : LREM
- ;
-
-insn_lreturn
- : LRETURN
- ;
-
-insn_lshl
- : LSHL
- ;
-
-insn_lshr
- : LSHR
- ;
-
-insn_lstore
- : LSTORE int_atom
- ;
-
-insn_lsub
- : LSUB
- ;
-
-insn_lushr
- : LUSHR
- ;
-
-insn_lxor
- : LXOR
- ;
-
-insn_monitorenter
- : MONITORENTER
- ;
-
-insn_monitorexit
- : MONITOREXIT
- ;
-
 insn_multianewarray
  : MULTIANEWARRAY array_type COMMA? int_atom?
  ;
@@ -1103,18 +676,6 @@ insn_newarray
  : NEWARRAY prim_type
  ;
 
-insn_nop
- : NOP
- ;
-
-insn_pop
- : POP
- ;
-
-insn_pop2
- : POP2
- ;
-
 insn_putfield
  : PUTFIELD owner DOT membername type
  ;
@@ -1123,30 +684,6 @@ insn_putstatic
  : PUTSTATIC owner DOT membername type
  ;
 
-insn_return
- : RETURN
- ;
-
-insn_ret
- : RET int_atom
- ;
-
-insn_saload
- : SALOAD
- ;
-
-insn_sastore
- : SASTORE
- ;
-
-insn_sipush
- : SIPUSH int_atom
- ;
-
-insn_swap
- : SWAP
- ;
-
 insn_tableswitch
  : TABLESWITCH NAME LBRACE switch_case+ RBRACE
  ;
@@ -1168,6 +705,23 @@ catch_block
  : CATCH LPAREN ref_type RPAREN LBRACE stat_block RBRACE
  ;
 
+frame
+ : FRAME NAME int_atom
+ | FRAME NAME frame_types*
+ ;
+
+frame_types
+ : LBRACE (frame_type (COMMA? frame_type)*)? RBRACE
+ ;
+
+frame_type
+ : prim_type
+ | array_type
+ | NAME LPAREN (NAME | LITERAL_NAME) RPAREN
+ | ref_type
+ | LITERAL_NAME
+ ;
+
 owner
  : LSQUARE* QNAME
  | LSQUARE* NAME
@@ -1378,6 +932,7 @@ CONSTDYNAMIC    : 'constdynamic';
 TRY             : 'try';
 CATCH           : 'catch';
 EXCEPTION       : 'exception';
+FRAME           : 'frame';
 
 TYPE_VOID
  : 'V'
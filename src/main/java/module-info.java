@@ -7,6 +7,7 @@ module com.roscopeco.jasm {
     requires kotlin.stdlib;
     requires org.antlr.antlr4.runtime;
     requires transitive org.objectweb.asm;
+    requires transitive org.objectweb.asm.tree;
     requires com.beust.jcommander;
 
     exports com.roscopeco.jasm;
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+import org.objectweb.asm.Opcodes
+import java.time.Duration
+import java.util.concurrent.Executor
+
+/**
+ * Options for the [JasmAssembler]. Instances are immutable - use the `with` methods to
+ * derive modified options.
+ *
+ * @param classFormat One of the ASM `Vxx` constants from the `org.objectweb.asm.Opcodes` class
+ * @param classHierarchy Resolves types when computing stack map frames, or `null` to load them
+ *          through the assembler's class loader
+ * @param frameMode How stack map frames are produced
+ * @param frameCache A cache of computed frames to reuse for unchanged methods, or `null` to
+ *          compute the frames for every method
+ * @param methodExecutor An executor to generate the methods of each class on in parallel, or
+ *          `null` to generate them in order on the assembling thread
+ * @param lexerMode Which lexer is used to tokenize the source
+ * @param parserMode Which parser generates code from the tokens
+ * @param internPool A pool to share names and descriptors through, or `null` to build them
+ *          afresh for every use
+ * @param classTransformers Transformers each class is passed through as it is assembled, the
+ *          first seeing the class as generated and the last passing it on to be written
+ * @param timeout How long each assembly may take before it is abandoned with a
+ *          [JasmCancelledException], or `null` for no limit. Assembly is also abandoned if the
+ *          assembling thread is interrupted.
+ * @param parseProfile A profile to add the parser's decisions to, or `null` not to profile
+ *          parsing. When set, every unit is parsed with the generated parser, whatever the
+ *          [parserMode].
+ */
+class AssemblerOptions private constructor(
+    val classFormat: Int,
+    val classHierarchy: ClassHierarchy?,
+    val frameMode: FrameMode,
+    val frameCache: FrameCache?,
+    val methodExecutor: Executor?,
+    val lexerMode: LexerMode,
+    val parserMode: ParserMode,
+    val internPool: InternPool?,
+    val classTransformers: List<ClassTransformer>,
+    val timeout: Duration?,
+    val parseProfile: ParseProfile?,
+) {
+    /**
+     * Default options, using the class format for Java 11 (55.0).
+     */
+    constructor() : this(Opcodes.V11, null, FrameMode.COMPUTE, null, null, LexerMode.ANTLR, ParserMode.ANTLR, null, emptyList(), null, null)
+
+    fun withClassFormat(classFormat: Int) = copy(classFormat = classFormat)
+
+    fun withClassHierarchy(classHierarchy: ClassHierarchy?) = copy(classHierarchy = classHierarchy)
+
+    fun withFrameMode(frameMode: FrameMode) = copy(frameMode = frameMode)
+
+    fun withFrameCache(frameCache: FrameCache?) = copy(frameCache = frameCache)
+
+    fun withMethodExecutor(methodExecutor: Executor?) = copy(methodExecutor = methodExecutor)
+
+    fun withLexerMode(lexerMode: LexerMode) = copy(lexerMode = lexerMode)
+
+    fun withParserMode(parserMode: ParserMode) = copy(parserMode = parserMode)
+
+    fun withInternPool(internPool: InternPool?) = copy(internPool = internPool)
+
+    fun withClassTransformers(classTransformers: List<ClassTransformer>) = copy(classTransformers = classTransformers.toList())
+
+    fun withClassTransformers(vararg classTransformers: ClassTransformer) = withClassTransformers(classTransformers.asList())
+
+    fun withTimeout(timeout: Duration?) = copy(timeout = timeout)
+
+    fun withParseProfile(parseProfile: ParseProfile?) = copy(parseProfile = parseProfile)
+
+    private fun copy(
+        classFormat: Int = this.classFormat,
+        classHierarchy: ClassHierarchy? = this.classHierarchy,
+        frameMode: FrameMode = this.frameMode,
+        frameCache: FrameCache? = this.frameCache,
+        methodExecutor: Executor? = this.methodExecutor,
+        lexerMode: LexerMode = this.lexerMode,
+        parserMode: ParserMode = this.parserMode,
+        internPool: InternPool? = this.internPool,
+        classTransformers: List<ClassTransformer> = this.classTransformers,
+        timeout: Duration? = this.timeout,
+        parseProfile: ParseProfile? = this.parseProfile,
+    ) = AssemblerOptions(
+        classFormat, classHierarchy, frameMode, frameCache, methodExecutor, lexerMode, parserMode, internPool,
+        classTransformers, timeout, parseProfile
+    )
+}
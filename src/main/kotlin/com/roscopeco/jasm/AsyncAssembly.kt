@@ -0,0 +1,56 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executor
+
+/**
+ * A future for assembly run on an executor. Unlike `CompletableFuture.supplyAsync`, cancelling
+ * it with `mayInterruptIfRunning` interrupts the thread doing the assembly, so it stops with a
+ * [JasmCancelledException] rather than running to completion.
+ */
+internal class AsyncAssembly<T> private constructor(private val task: () -> T) : CompletableFuture<T>(), Runnable {
+    // Guarded by this
+    private var runner: Thread? = null
+
+    companion object {
+        fun <T> start(executor: Executor, task: () -> T) = AsyncAssembly(task).also { executor.execute(it) }
+    }
+
+    override fun run() {
+        synchronized(this) {
+            if (isDone) {
+                return
+            }
+
+            runner = Thread.currentThread()
+        }
+
+        try {
+            complete(task())
+        } catch (e: Throwable) {
+            completeExceptionally(e)
+        } finally {
+            synchronized(this) { runner = null }
+
+            // Don't leave an interrupt meant for the assembly on the executor's thread
+            if (isCancelled) {
+                Thread.interrupted()
+            }
+        }
+    }
+
+    override fun cancel(mayInterruptIfRunning: Boolean): Boolean {
+        val cancelled = super.cancel(mayInterruptIfRunning)
+
+        if (cancelled && mayInterruptIfRunning) {
+            synchronized(this) { runner?.interrupt() }
+        }
+
+        return cancelled
+    }
+}
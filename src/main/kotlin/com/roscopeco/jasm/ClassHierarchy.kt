@@ -0,0 +1,41 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+/**
+ * Supplies the superclass and interface relationships the assembler needs when computing
+ * stack map frames, so that it never has to load the classes involved.
+ *
+ * Implementations must be safe for concurrent use, as a single hierarchy is shared between
+ * all the units assembled in a run.
+ *
+ * @see ClasspathIndex
+ */
+interface ClassHierarchy {
+    /**
+     * Look up a class by internal name.
+     *
+     * @param internalName The internal name of the class (e.g. `java/lang/String`)
+     *
+     * @return the entry for the class, or `null` if it is not known to this hierarchy
+     */
+    fun lookup(internalName: String): HierarchyEntry?
+}
+
+/**
+ * A single class in a [ClassHierarchy].
+ *
+ * @param name The internal name of the class
+ * @param superName The internal name of the superclass, or `null` for `java/lang/Object`
+ * @param interfaces The internal names of the directly-implemented interfaces
+ * @param isInterface `true` if the class is an interface
+ */
+data class HierarchyEntry(
+    val name: String,
+    val superName: String?,
+    val interfaces: List<String>,
+    val isInterface: Boolean
+)
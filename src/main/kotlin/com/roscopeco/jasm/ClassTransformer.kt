@@ -0,0 +1,34 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+import org.objectweb.asm.ClassVisitor
+
+/**
+ * Transforms classes while they are assembled, by wrapping the visitor they would otherwise
+ * be generated into (e.g. with ASM's `ClassRemapper`). Assembly and transformation then
+ * happen in a single pass, and the class is only serialized once.
+ *
+ * Transformers see the generated code before any stack map frames are computed, so they are
+ * free to change it. When methods are generated in parallel (see
+ * [AssemblerOptions.withMethodExecutor]), the method visitors a transformer returns are driven
+ * on the executor's threads. Assembled classes are still keyed by the name they were declared
+ * with, even if a transformer renames them.
+ *
+ * With [ParserMode.DIRECT], a unit that has to be handed back to the generated parser is
+ * generated again, so a transformer may be asked to transform the same class more than once.
+ * Visitors from the abandoned attempt never see `visitEnd`.
+ */
+fun interface ClassTransformer {
+    /**
+     * Wrap a class visitor.
+     *
+     * @param next The visitor the transformed class should be passed on to
+     *
+     * @return the visitor the assembled class should be generated into
+     */
+    fun transform(next: ClassVisitor): ClassVisitor
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+import org.objectweb.asm.Opcodes
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.IOException
+import java.io.InputStream
+import java.net.URI
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.FileSystems
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.util.Arrays
+import java.util.concurrent.ConcurrentHashMap
+import java.util.zip.ZipFile
+
+/**
+ * A [ClassHierarchy] backed by a compact, read-only index of the classes on a classpath.
+ *
+ * Indexes are built once from jars and directories (and, optionally, the running JDK) with
+ * [build], and can be written to disk with [write] and memory-mapped back with [open], so
+ * that large classpaths need only be scanned once.
+ *
+ * The on-disk format is:
+ *
+ * ```
+ * header:      magic, version, class count, string table offset, class table offset (u4 each)
+ * strings:     u2 length + UTF-8 bytes, one per distinct name
+ * string table: u4 offset of each string
+ * class table: per class, sorted by name bytes - name, superclass (-1 if none), flags, interfaces offset (u4 each)
+ * interfaces:  per class, u4 count followed by u4 string indices
+ * ```
+ *
+ * Lookups binary-search the class table in place, so instances are cheap to open and safe
+ * to share between threads.
+ */
+class ClasspathIndex private constructor(private val buffer: ByteBuffer) : ClassHierarchy {
+    private val classCount: Int
+    private val stringTable: Int
+    private val classTable: Int
+    private val entries = ConcurrentHashMap<String, HierarchyEntry>()
+
+    init {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw IllegalArgumentException("Not a JASM classpath index")
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw IllegalArgumentException("Unsupported classpath index version ${buffer.getInt(4)}")
+        }
+
+        classCount = buffer.getInt(8)
+        stringTable = buffer.getInt(12)
+        classTable = buffer.getInt(16)
+    }
+
+    companion object {
+        private const val MAGIC = 0x4A494458        // "JIDX"
+        private const val VERSION = 1
+        private const val HEADER_SIZE = 20
+        private const val CLASS_ENTRY_SIZE = 16
+        private const val FLAG_INTERFACE = 1
+
+        /**
+         * Build an index of the classes in the given jars and directories.
+         *
+         * As with the JVM, JDK classes take precedence, followed by the classpath entries
+         * in order. Entries that do not exist are ignored.
+         *
+         * @param classpath Jar files and class directories to index
+         * @param includeJdk Whether to index the classes of the running JDK
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun build(classpath: List<Path>, includeJdk: Boolean = true): ClasspathIndex {
+            val classes = LinkedHashMap<String, HierarchyEntry>()
+
+            if (includeJdk) {
+                scanDirectory(FileSystems.getFileSystem(URI.create("jrt:/")).getPath("/modules"), classes)
+            }
+
+            classpath.forEach { entry ->
+                when {
+                    Files.isDirectory(entry) -> scanDirectory(entry, classes)
+                    Files.isRegularFile(entry) -> scanJar(entry, classes)
+                }
+            }
+
+            return ClasspathIndex(encode(classes.values))
+        }
+
+        /**
+         * Memory-map an index previously written with [write].
+         */
+        @JvmStatic
+        fun open(path: Path): ClasspathIndex = FileChannel.open(path, StandardOpenOption.READ).use {
+            ClasspathIndex(it.map(FileChannel.MapMode.READ_ONLY, 0, it.size()))
+        }
+
+        /**
+         * Wrap an index held in memory. The buffer's remaining bytes must hold a complete index,
+         * and must not be modified while the index is in use.
+         */
+        @JvmStatic
+        fun of(buffer: ByteBuffer) = ClasspathIndex(buffer.slice())
+
+        private fun scanDirectory(dir: Path, classes: MutableMap<String, HierarchyEntry>) = Files.walk(dir).use { paths ->
+            paths
+                .filter { it.fileName?.toString()?.endsWith(".class") == true && Files.isRegularFile(it) }
+                .forEach { file -> Files.newInputStream(file).use { add(it, classes) } }
+        }
+
+        private fun scanJar(jar: Path, classes: MutableMap<String, HierarchyEntry>) = ZipFile(jar.toFile()).use { zip ->
+            zip.entries().asSequence()
+                .filter { !it.isDirectory && it.name.endsWith(".class") && !it.name.startsWith("META-INF/") }
+                .forEach { entry -> zip.getInputStream(entry).use { add(it, classes) } }
+        }
+
+        private fun add(input: InputStream, classes: MutableMap<String, HierarchyEntry>) {
+            val entry = readHeader(input.readBytes()) ?: return
+            classes.putIfAbsent(entry.name, entry)
+        }
+
+        /*
+         * Just enough of the class file format to get at the names - ASM's ClassReader refuses
+         * class files newer than it knows about, which would make indexing newer JDKs impossible.
+         *
+         * Corrupt or truncated class files are skipped, rather than failing the whole index.
+         */
+        private fun readHeader(data: ByteArray): HierarchyEntry? = try {
+            parseHeader(data)
+        } catch (e: IndexOutOfBoundsException) {
+            null
+        } catch (e: IOException) {
+            null
+        }
+
+        private fun parseHeader(data: ByteArray): HierarchyEntry? {
+            val buf = ByteBuffer.wrap(data)
+            if (data.size < 10 || buf.getInt(0) != 0xCAFEBABE.toInt()) {
+                return null
+            }
+
+            val poolCount = buf.getShort(8).toInt() and 0xFFFF
+            val offsets = IntArray(poolCount)
+            var pos = 10
+            var i = 1
+
+            while (i < poolCount) {
+                offsets[i] = pos
+                pos += when (data[pos].toInt()) {
+                    1 -> 3 + (buf.getShort(pos + 1).toInt() and 0xFFFF)
+                    7, 8, 16, 19, 20 -> 3
+                    15 -> 4
+                    3, 4, 9, 10, 11, 12, 17, 18 -> 5
+                    5, 6 -> { i++; 9 }
+                    else -> return null
+                }
+                i++
+            }
+
+            fun u2(at: Int) = buf.getShort(at).toInt() and 0xFFFF
+            fun className(index: Int) = if (index == 0) null else DataInputStream(
+                ByteArrayInputStream(data, offsets[u2(offsets[index] + 1)] + 1, data.size)
+            ).readUTF()
+
+            val access = u2(pos)
+            if (access and Opcodes.ACC_MODULE != 0) {
+                return null
+            }
+
+            return HierarchyEntry(
+                className(u2(pos + 2)) ?: return null,
+                className(u2(pos + 4)),
+                (0 until u2(pos + 6)).map { className(u2(pos + 8 + it * 2)) ?: return null },
+                access and Opcodes.ACC_INTERFACE != 0
+            )
+        }
+
+        private fun encode(classes: Collection<HierarchyEntry>): ByteBuffer {
+            val strings = LinkedHashMap<String, Int>()
+            fun intern(name: String) = strings.getOrPut(name) { strings.size }
+
+            val sorted = classes
+                .map { Pair(it.name.toByteArray(Charsets.UTF_8), it) }
+                .sortedWith { a, b -> Arrays.compareUnsigned(a.first, b.first) }
+
+            sorted.forEach { (_, entry) -> intern(entry.name) }
+            sorted.forEach { (_, entry) -> entry.superName?.let { intern(it) }; entry.interfaces.forEach { intern(it) } }
+
+            val stringBytes = ByteArrayOutputStream()
+            val stringData = DataOutputStream(stringBytes)
+            val stringOffsets = IntArray(strings.size)
+            strings.keys.forEachIndexed { index, name ->
+                stringOffsets[index] = HEADER_SIZE + stringData.size()
+                val bytes = name.toByteArray(Charsets.UTF_8)
+                stringData.writeShort(bytes.size)
+                stringData.write(bytes)
+            }
+
+            val stringTable = HEADER_SIZE + stringData.size()
+            val classTable = stringTable + strings.size * 4
+            var interfaces = classTable + sorted.size * CLASS_ENTRY_SIZE
+
+            val out = ByteArrayOutputStream(interfaces + sorted.size * 8)
+            val data = DataOutputStream(out)
+            data.writeInt(MAGIC)
+            data.writeInt(VERSION)
+            data.writeInt(sorted.size)
+            data.writeInt(stringTable)
+            data.writeInt(classTable)
+            stringBytes.writeTo(data)
+            stringOffsets.forEach { data.writeInt(it) }
+
+            sorted.forEach { (_, entry) ->
+                data.writeInt(strings[entry.name]!!)
+                data.writeInt(entry.superName?.let { strings[it]!! } ?: -1)
+                data.writeInt(if (entry.isInterface) FLAG_INTERFACE else 0)
+                data.writeInt(interfaces)
+                interfaces += 4 + entry.interfaces.size * 4
+            }
+
+            sorted.forEach { (_, entry) ->
+                data.writeInt(entry.interfaces.size)
+                entry.interfaces.forEach { data.writeInt(strings[it]!!) }
+            }
+
+            return ByteBuffer.wrap(out.toByteArray())
+        }
+    }
+
+    /**
+     * The number of classes in this index.
+     */
+    val size get() = classCount
+
+    /**
+     * Write this index to a file, for later use with [open].
+     */
+    fun write(path: Path) = FileChannel.open(
+        path,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING
+    ).use {
+        val data = buffer.duplicate()
+        data.clear()
+        while (data.hasRemaining()) {
+            it.write(data)
+        }
+    }
+
+    override fun lookup(internalName: String): HierarchyEntry? = entries[internalName] ?: find(internalName)?.also {
+        entries.putIfAbsent(internalName, it)
+    }
+
+    private fun find(internalName: String): HierarchyEntry? {
+        val key = internalName.toByteArray(Charsets.UTF_8)
+        var low = 0
+        var high = classCount - 1
+
+        while (low <= high) {
+            val mid = (low + high) ushr 1
+            val entry = classTable + mid * CLASS_ENTRY_SIZE
+            val cmp = compareString(buffer.getInt(entry), key)
+
+            when {
+                cmp < 0 -> low = mid + 1
+                cmp > 0 -> high = mid - 1
+                else -> {
+                    val superIndex = buffer.getInt(entry + 4)
+                    val interfaces = buffer.getInt(entry + 12)
+
+                    return HierarchyEntry(
+                        internalName,
+                        if (superIndex < 0) null else string(superIndex),
+                        (0 until buffer.getInt(interfaces)).map { string(buffer.getInt(interfaces + 4 + it * 4)) },
+                        buffer.getInt(entry + 8) and FLAG_INTERFACE != 0
+                    )
+                }
+            }
+        }
+
+        return null
+    }
+
+    private fun compareString(index: Int, key: ByteArray): Int {
+        val offset = buffer.getInt(stringTable + index * 4)
+        val length = buffer.getShort(offset).toInt() and 0xFFFF
+
+        for (i in 0 until minOf(length, key.size)) {
+            val cmp = (buffer.get(offset + 2 + i).toInt() and 0xFF) - (key[i].toInt() and 0xFF)
+            if (cmp != 0) {
+                return cmp
+            }
+        }
+
+        return length - key.size
+    }
+
+    private fun string(index: Int): String {
+        val offset = buffer.getInt(stringTable + index * 4)
+        val bytes = ByteArray(buffer.getShort(offset).toInt() and 0xFFFF)
+        buffer.duplicate().position(offset + 2).get(bytes)
+        return String(bytes, Charsets.UTF_8)
+    }
+}
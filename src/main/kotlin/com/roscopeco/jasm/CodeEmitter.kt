@@ -0,0 +1,207 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+import org.objectweb.asm.Label
+import org.objectweb.asm.MethodVisitor
+import org.objectweb.asm.Opcodes
+
+/**
+ * Generates the code of a method into an ASM method visitor, with labels referred to by name.
+ *
+ * This is the code generation shared by [JasmAssemblingVisitor], [DirectAssembler] and
+ * [JasmCodeBuilder] - everything that is more than passing operands straight through to the
+ * method visitor. Operands are expected to have been checked already.
+ *
+ * @param methodVisitor The visitor to generate code into
+ * @param labels The labels of the method
+ */
+internal class CodeEmitter(val methodVisitor: MethodVisitor, val labels: LabelTable = LabelTable()) {
+    internal companion object {
+        /**
+         * The most entries a tableswitch can have - any more, and the instruction alone would exceed
+         * the 65535 bytes of code allowed in a method.
+         */
+        const val MAX_TABLESWITCH_ENTRIES = (65535 - 16) / 4
+
+        /**
+         * The jump table for a tableswitch over `min..max`, with `default` for keys that have no
+         * case. The keys must all be different.
+         */
+        fun tableSwitchTargets(min: Int, max: Int, keys: IntArray, targets: Array<Label>, default: Label): Array<Label> {
+            val table = Array(max - min + 1) { default }
+
+            for (i in keys.indices) {
+                table[keys[i] - min] = targets[i]
+            }
+
+            return table
+        }
+
+        /**
+         * @return `null`, or an error message if any of the keys of a switch appear more than once
+         */
+        private fun duplicateKeyError(insn: String, keys: IntArray): String? {
+            val seen = HashSet<Int>(keys.size * 2)
+            return keys.firstOrNull { !seen.add(it) }?.let { "Duplicate key $it in $insn" }
+        }
+
+        /**
+         * The opcode of the `xCONST_n` instruction that pushes `value`, from `first` (the opcode
+         * that pushes `min`) - or [OpcodeTable.NONE] if there isn't one.
+         */
+        private fun constOpcode(first: Int, min: Int, max: Int, value: Int) =
+            if (value in min..max) first + value - min else OpcodeTable.NONE
+    }
+
+    fun label(name: String) = methodVisitor.visitLabel(labels.declare(name))
+
+    fun jump(opcode: Int, label: String) = methodVisitor.visitJumpInsn(opcode, labels.get(label))
+
+    /**
+     * Generate a `bipush`, `sipush`, `ret` or `newarray`. Push operands are truncated to the
+     * size of the operand, as the JVM would.
+     */
+    fun intInsn(opcode: Int, operand: Int) = methodVisitor.visitIntInsn(opcode, when (opcode) {
+        Opcodes.BIPUSH -> operand and 0xff
+        Opcodes.SIPUSH -> operand and 0xffff
+        else -> operand
+    })
+
+    /**
+     * The `iconst` opcode for `value`, or [OpcodeTable.NONE] if it isn't `-1` to `5`.
+     */
+    fun iconstOpcode(value: Int) = constOpcode(Opcodes.ICONST_M1, -1, 5, value)
+
+    /**
+     * The `lconst` opcode for `value`, or [OpcodeTable.NONE] if it isn't `0` or `1`.
+     */
+    fun lconstOpcode(value: Int) = constOpcode(Opcodes.LCONST_0, 0, 1, value)
+
+    /**
+     * The `fconst` opcode for `value`, or [OpcodeTable.NONE] if it isn't `0` to `2`.
+     */
+    fun fconstOpcode(value: Int) = constOpcode(Opcodes.FCONST_0, 0, 2, value)
+
+    /**
+     * The `dconst` opcode for `value`, or [OpcodeTable.NONE] if it isn't `0` or `1`.
+     */
+    fun dconstOpcode(value: Int) = constOpcode(Opcodes.DCONST_0, 0, 1, value)
+
+    /**
+     * Generate a lookupswitch. The cases can be in any order - they are sorted by key, as the JVM
+     * requires.
+     *
+     * @return `null`, or an error message if a key is repeated, in which case nothing is generated
+     */
+    fun lookupSwitch(default: String, keys: IntArray, targets: List<String>): String? {
+        duplicateKeyError("lookupswitch", keys)?.let { return it }
+
+        val order = keys.indices.sortedBy { keys[it] }
+
+        methodVisitor.visitLookupSwitchInsn(
+            labels.get(default),
+            IntArray(keys.size) { keys[order[it]] },
+            Array(keys.size) { labels.get(targets[order[it]]) }
+        )
+
+        return null
+    }
+
+    /**
+     * Generate a tableswitch over the range of the keys, jumping to the default for keys in that
+     * range without a case.
+     *
+     * @return `null`, or an error message if a key is repeated or the range is too large, in which
+     *          case nothing is generated
+     */
+    fun tableSwitch(default: String, keys: IntArray, targets: List<String>): String? {
+        duplicateKeyError("tableswitch", keys)?.let { return it }
+
+        val targetLabels = Array(targets.size) { labels.get(targets[it]) }
+        val defaultLabel = labels.get(default)
+        val min = keys.minOf { it }
+        val max = keys.maxOf { it }
+        val entries = max.toLong() - min + 1
+
+        if (entries > MAX_TABLESWITCH_ENTRIES) {
+            return "tableswitch from $min to $max needs $entries entries, but at most $MAX_TABLESWITCH_ENTRIES " +
+                    "fit in a method (use lookupswitch for sparse keys)"
+        }
+
+        methodVisitor.visitTableSwitchInsn(min, max, defaultLabel,
+            *tableSwitchTargets(min, max, keys, targetLabels, defaultLabel))
+
+        return null
+    }
+
+    fun exceptionHandler(start: String, end: String, handler: String, type: String?) =
+        methodVisitor.visitTryCatchBlock(labels.get(start), labels.get(end), labels.get(handler), type)
+
+    /**
+     * Start a `try` block. The code of the block follows, then each `catch` block is started
+     * with [TryCatch.catchBlock] and followed by its code, then the whole thing is ended with
+     * [TryCatch.end].
+     */
+    fun tryBlock() = TryCatch()
+
+    /**
+     * Make sure every label that has been used has been declared.
+     *
+     * @return the names of any labels that were used but not declared. They are declared at the
+     *          current position, so that the method is still well-formed for writers that read
+     *          it back (e.g. when generating methods in parallel), but the method is wrong.
+     */
+    fun declareUndeclaredLabels(): List<String> {
+        if (!labels.hasUndeclared()) {
+            return emptyList()
+        }
+
+        val names = labels.undeclaredNames()
+        labels.undeclaredLabels().forEach { methodVisitor.visitLabel(it) }
+        return names
+    }
+
+    /**
+     * A `try` block, and its `catch` blocks. Control falls through to the end of the last
+     * `catch` block from the `try` block and each `catch` block.
+     */
+    inner class TryCatch {
+        private val start = Label()
+        private val end = Label()
+        private val skip = Label()
+        private val handlers = ArrayList<Pair<Label, String>>()
+
+        init {
+            methodVisitor.visitLabel(start)
+        }
+
+        /**
+         * End the `try` block, or the previous `catch` block, and start a `catch` block.
+         *
+         * @param type The internal name of the exception type caught
+         */
+        fun catchBlock(type: String) {
+            if (handlers.isEmpty()) {
+                methodVisitor.visitLabel(end)
+            }
+
+            methodVisitor.visitJumpInsn(Opcodes.GOTO, skip)
+
+            val handler = Label()
+            handlers.add(handler to type)
+            methodVisitor.visitLabel(handler)
+        }
+
+        /**
+         * End the last `catch` block.
+         */
+        fun end() {
+            methodVisitor.visitLabel(skip)
+            handlers.forEach { (handler, type) -> methodVisitor.visitTryCatchBlock(start, end, handler, type) }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+import org.antlr.v4.runtime.CharStream
+import org.antlr.v4.runtime.ParserRuleContext
+import org.antlr.v4.runtime.Token
+import org.antlr.v4.runtime.TokenFactory
+import org.antlr.v4.runtime.TokenSource
+import org.antlr.v4.runtime.tree.ErrorNode
+import org.antlr.v4.runtime.tree.ParseTreeListener
+import org.antlr.v4.runtime.tree.TerminalNode
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+
+/**
+ * When a piece of work must stop - either once the timeout has run out, or as soon as the
+ * thread doing it is interrupted. The timeout starts when this is created.
+ *
+ * @param what What is being done, to describe it when cancelled (e.g. "Assembly of Foo.jasm")
+ * @param timeout How long the work may take, or `null` for no limit
+ */
+internal class Deadline(private val what: String, private val timeout: Duration?) {
+    private val start = System.nanoTime()
+    private val timeoutNanos = timeout?.let { saturatedNanos(it) } ?: Long.MAX_VALUE
+
+    // Only a hint as to when to check, so it doesn't matter if threads race on it
+    private var polls = 0
+
+    /**
+     * Checks the deadline whenever the parser enters a rule.
+     */
+    val parseListener: ParseTreeListener = object : ParseTreeListener {
+        override fun enterEveryRule(ctx: ParserRuleContext) = poll()
+        override fun exitEveryRule(ctx: ParserRuleContext) { }
+        override fun visitTerminal(node: TerminalNode) { }
+        override fun visitErrorNode(node: ErrorNode) { }
+    }
+
+    /**
+     * @throws JasmCancelledException if the work must stop.
+     */
+    fun check() {
+        if (Thread.currentThread().isInterrupted) {
+            throw JasmCancelledException("$what was interrupted", false)
+        }
+
+        if (System.nanoTime() - start >= timeoutNanos) {
+            throw JasmCancelledException("$what timed out after ${timeout!!.toMillis()}ms", true)
+        }
+    }
+
+    /**
+     * Check the deadline every so often - for things that happen too often to check every time.
+     *
+     * @throws JasmCancelledException if the work must stop.
+     */
+    fun poll() {
+        if (++polls and POLL_MASK == 0) {
+            check()
+        }
+    }
+
+    /**
+     * Wait for a future like `CompletableFuture.join`, but stop waiting if the thread is
+     * interrupted, or the timeout runs out.
+     *
+     * @throws JasmCancelledException if the work must stop while waiting.
+     */
+    fun join(future: CompletableFuture<*>) {
+        while (true) {
+            try {
+                if (timeout == null) {
+                    future.get()
+                } else {
+                    future.get(timeoutNanos - (System.nanoTime() - start), TimeUnit.NANOSECONDS)
+                }
+
+                return
+            } catch (e: ExecutionException) {
+                throw CompletionException(e.cause)
+            } catch (e: InterruptedException) {
+                Thread.currentThread().interrupt()
+                check()
+            } catch (e: TimeoutException) {
+                check()
+            }
+        }
+    }
+
+    /**
+     * Wrap a token source, to check the deadline as tokens are fetched.
+     */
+    fun tokens(source: TokenSource): TokenSource = object : TokenSource {
+        override fun nextToken(): Token {
+            poll()
+            return source.nextToken()
+        }
+
+        override fun getLine() = source.line
+        override fun getCharPositionInLine() = source.charPositionInLine
+        override fun getInputStream(): CharStream = source.inputStream
+        override fun getSourceName(): String = source.sourceName
+        override fun setTokenFactory(factory: TokenFactory<*>) { source.tokenFactory = factory }
+        override fun getTokenFactory(): TokenFactory<*> = source.tokenFactory
+    }
+
+    private companion object {
+        const val POLL_MASK = 0x3f
+
+        fun saturatedNanos(duration: Duration) = try {
+            duration.toNanos()
+        } catch (e: ArithmeticException) {
+            Long.MAX_VALUE
+        }
+    }
+}
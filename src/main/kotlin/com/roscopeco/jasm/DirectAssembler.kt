@@ -0,0 +1,1222 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+import com.roscopeco.jasm.antlr.JasmParser
+import com.roscopeco.jasm.errors.CodeError
+import org.antlr.v4.runtime.Token
+import org.antlr.v4.runtime.TokenSource
+import org.antlr.v4.runtime.misc.Interval
+import org.objectweb.asm.AnnotationVisitor
+import org.objectweb.asm.ClassVisitor
+import org.objectweb.asm.ConstantDynamic
+import org.objectweb.asm.Handle
+import org.objectweb.asm.MethodVisitor
+import org.objectweb.asm.Opcodes
+import org.objectweb.asm.Type
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.Executor
+
+/**
+ * A hand-written recursive-descent parser for JASM, which generates code into ASM visitors as
+ * it parses instead of building a parse tree for [JasmAssemblingVisitor].
+ *
+ * For every unit the generated parser accepts without errors, this generates exactly the same
+ * code as [JasmAssemblingVisitor] does. It never reports errors though - it throws [Fallback]
+ * at the first thing it can't generate, and the unit should then be assembled again with the
+ * generated parser, which remains the reference for both syntax and error reporting.
+ *
+ * @param tokenSource The tokens of the unit
+ * @param unitName The name of the compilation unit
+ * @param classFormat One of the ASM `Vxx` constants from the `org.objectweb.asm.Opcodes` class
+ * @param methodExecutor If not `null`, method bodies are generated on this executor in parallel.
+ *          The class visitor must then allow the method visitors it returns to be used concurrently.
+ * @param internPool If not `null`, names and descriptors are shared through this pool.
+ * @param deadline If not `null`, checked before each method is generated.
+ */
+internal class DirectAssembler @JvmOverloads constructor(
+    tokenSource: TokenSource,
+    private val unitName: String,
+    private val classFormat: Int,
+    private val methodExecutor: Executor? = null,
+    private val internPool: InternPool? = null,
+    private val deadline: Deadline? = null,
+) {
+    private val tokens = readTokens(tokenSource)
+    private val modifiers = Modifiers()
+
+    /**
+     * A class declared in the unit.
+     *
+     * @param entry The class, as it is declared to the class hierarchy
+     */
+    class DeclaredClass internal constructor(val entry: HierarchyEntry, internal val start: Int, internal val stop: Int)
+
+    /**
+     * Thrown when a unit cannot be assembled by this parser.
+     */
+    class Fallback : RuntimeException("Unit must be assembled by the generated parser", null, false, false)
+
+    /**
+     * Find the classes declared in the unit, without generating any code for them.
+     */
+    fun declaredClasses(): List<DeclaredClass> = ClassParser(0).declaredClasses()
+
+    /**
+     * Generate a class declared in the unit.
+     */
+    fun generate(declared: DeclaredClass, visitor: ClassVisitor) = ClassParser(declared.start).generateClass(visitor)
+
+    /**
+     * An error in a class declared in the unit, positioned as the generated parser would position it.
+     */
+    fun classError(declared: DeclaredClass, message: String) = CodeError(
+        unitName, tokens[declared.start], tokens[declared.stop], Interval.of(declared.start, declared.stop), message
+    )
+
+    /**
+     * The text of the tokens from `first` to `last`, separated by spaces - the key [TypeVisitor]
+     * pools method descriptors under too.
+     */
+    private fun tokenText(first: Int, last: Int) = (first..last).joinToString(" ") { tokens[it].text }
+
+    private open inner class Cursor(var pos: Int) {
+        fun la(offset: Int = 0) = tokens[minOf(pos + offset, tokens.size - 1)].type
+
+        fun next(): Token = tokens[pos].also { if (it.type != Token.EOF) pos++ }
+
+        fun expect(type: Int) = if (la() == type) next() else fail()
+
+        fun accept(type: Int) = if (la() == type) next() else null
+
+        fun fail(): Nothing = throw Fallback()
+
+        fun string(): String = try {
+            StringLiterals.unescape(next().text)
+        } catch (e: IllegalArgumentException) {
+            fail()
+        }
+
+        fun unescapeName(text: String) = internPool?.name(text) ?: LiteralNames.unescape(text)
+
+        fun skipBraces() {
+            var depth = 0
+
+            do {
+                when (next().type) {
+                    JasmParser.LBRACE -> depth++
+                    JasmParser.RBRACE -> depth--
+                    Token.EOF -> fail()
+                }
+            } while (depth > 0)
+        }
+
+        fun classname() = when (la()) {
+            JasmParser.QNAME, JasmParser.NAME, JasmParser.LITERAL_NAME -> next()
+            else -> fail()
+        }
+
+        fun membername(): String = if (MEMBER_NAMES.has(la())) unescapeName(next().text) else fail()
+
+        fun intAtom() = when (la()) {
+            JasmParser.INT, JasmParser.LONG -> next()
+            else -> fail()
+        }
+
+        fun integer(): Any {
+            val atom = intAtom()
+            return if (atom.type == JasmParser.INT) atom.text.toInt() else atom.text.dropLast(1).toLong()
+        }
+
+        fun floatingPoint(): Any {
+            val atom = next()
+            return if (atom.type == JasmParser.FLOAT) atom.text.toFloat() else atom.text.dropLast(1).toDouble()
+        }
+
+        fun type(): String = when (la()) {
+            JasmParser.TYPE_VOID -> { next(); "V" }
+            JasmParser.LSQUARE -> arrayType()
+            JasmParser.QNAME, JasmParser.NAME -> refType()
+            else -> primType()
+        }
+
+        fun primType() = when (next().type) {
+            JasmParser.TYPE_BOOL    -> "Z"
+            JasmParser.TYPE_BYTE    -> "B"
+            JasmParser.TYPE_CHAR    -> "C"
+            JasmParser.TYPE_DOUBLE  -> "D"
+            JasmParser.TYPE_FLOAT   -> "F"
+            JasmParser.TYPE_INT     -> "I"
+            JasmParser.TYPE_LONG    -> "J"
+            JasmParser.TYPE_SHORT   -> "S"
+            else                    -> fail()
+        }
+
+        fun refType() = when (la()) {
+            JasmParser.QNAME, JasmParser.NAME -> next().text.let { internPool?.refType(it) ?: "L" + LiteralNames.unescape(it) + ";" }
+            else -> fail()
+        }
+
+        fun arrayType(): String {
+            val start = pos
+            while (accept(JasmParser.LSQUARE) != null) { /* counting */ }
+
+            val dims = pos - start
+            if (dims == 0) fail()
+
+            return "[".repeat(dims) + if (la() == JasmParser.QNAME || la() == JasmParser.NAME) refType() else primType()
+        }
+
+        fun owner(): String {
+            val start = pos
+            while (accept(JasmParser.LSQUARE) != null) { /* counting */ }
+
+            val dims = pos - start
+            val name = unescapeName(classname().text)
+
+            if (dims == 0 && !name.startsWith("[")) {
+                return name
+            }
+
+            val bare = "[".repeat(dims) + name
+
+            // As TypeVisitor.fixBareType
+            return if (bare.startsWith("[")) {
+                val lastLSquare = bare.lastIndexOf('[')
+                bare.substring(0, lastLSquare + 1) + "L" + bare.substring(lastLSquare + 1) + ";"
+            } else {
+                bare
+            }
+        }
+
+        /**
+         * Parse a method descriptor. If `parameterAnnotations` is not `null`, the annotations
+         * of each argument are added to it.
+         */
+        fun methodDescriptor(parameterAnnotations: MutableList<List<ParsedAnnotation>>?): String {
+            if (internPool == null) {
+                return parseMethodDescriptor(parameterAnnotations)
+            }
+
+            val start = pos
+
+            // Parameter annotations aren't part of the descriptor, so those must always be parsed
+            if (parameterAnnotations == null) {
+                // Only text that parsed is ever pooled, so a hit means these tokens are a valid descriptor
+                val end = methodDescriptorEnd()
+                if (end <= pos) {
+                    return parseMethodDescriptor(null)
+                }
+
+                val text = tokenText(pos, end)
+
+                internPool.methodDescriptors.get(text)?.let {
+                    pos = end + 1
+                    return it
+                }
+
+                val descriptor = parseMethodDescriptor(null)
+                return if (pos == end + 1) internPool.methodDescriptors.put(text, descriptor) else descriptor
+            }
+
+            val descriptor = parseMethodDescriptor(parameterAnnotations)
+            val text = tokenText(start, pos - 1)
+
+            return internPool.methodDescriptors.intern(text) { descriptor }
+        }
+
+        /**
+         * Find the last token of the method descriptor starting here (assuming it is one), or -1.
+         */
+        private fun methodDescriptorEnd(): Int {
+            var i = pos
+
+            if (tokens[i].type != JasmParser.LPAREN) {
+                return -1
+            }
+
+            while (tokens[i].type != JasmParser.RPAREN) {
+                if (tokens[i].type == Token.EOF) {
+                    return -1
+                }
+                i++
+            }
+
+            do {
+                i++
+            } while (tokens[i].type == JasmParser.LSQUARE)
+
+            return if (tokens[i].type == Token.EOF) -1 else i
+        }
+
+        private fun parseMethodDescriptor(parameterAnnotations: MutableList<List<ParsedAnnotation>>?): String {
+            val descriptor = StringBuilder("(")
+
+            expect(JasmParser.LPAREN)
+
+            if (startsMethodArgument(la())) {
+                methodArgument(descriptor, parameterAnnotations)
+
+                while (la() == JasmParser.COMMA && startsMethodArgument(la(1))) {
+                    next()
+                    methodArgument(descriptor, parameterAnnotations)
+                }
+            }
+
+            accept(JasmParser.COMMA)
+            expect(JasmParser.RPAREN)
+
+            return descriptor.append(')').append(type()).toString()
+        }
+
+        private fun startsMethodArgument(type: Int) = type == JasmParser.LSQUARE
+                || type == JasmParser.QNAME
+                || type == JasmParser.NAME
+                || startsAnnotation(type)
+                || PRIM_TYPES.has(type)
+
+        private fun methodArgument(descriptor: StringBuilder, parameterAnnotations: MutableList<List<ParsedAnnotation>>?) {
+            val annotations = annotations()
+
+            descriptor.append(when (la()) {
+                JasmParser.LSQUARE -> arrayType()
+                JasmParser.QNAME, JasmParser.NAME -> refType()
+                else -> primType()
+            })
+
+            parameterAnnotations?.add(annotations)
+        }
+
+        fun startsAnnotation(type: Int) = type == JasmParser.ANNOTATION_NAME || type == JasmParser.HIDDEN_ANNOT_INDICATOR
+
+        fun annotations(): List<ParsedAnnotation> {
+            if (!startsAnnotation(la())) {
+                return emptyList()
+            }
+
+            val annotations = ArrayList<ParsedAnnotation>()
+            while (startsAnnotation(la())) {
+                annotations.add(annotation())
+            }
+
+            return annotations
+        }
+
+        private fun annotation(): ParsedAnnotation {
+            val visible = accept(JasmParser.HIDDEN_ANNOT_INDICATOR) == null
+            val name = expect(JasmParser.ANNOTATION_NAME).text
+            val params = ArrayList<Pair<String, ParsedArg>>()
+
+            if (accept(JasmParser.LPAREN) != null) {
+                if (la() == JasmParser.NAME || la() == JasmParser.LITERAL_NAME) {
+                    params.add(annotationParam())
+                }
+
+                while (accept(JasmParser.COMMA) != null) {
+                    params.add(annotationParam())
+                }
+
+                expect(JasmParser.RPAREN)
+            }
+
+            return ParsedAnnotation("L" + LiteralNames.unescape(name.substring(1)) + ";", visible, params)
+        }
+
+        private fun annotationParam(): Pair<String, ParsedArg> {
+            val name = when (la()) {
+                JasmParser.NAME -> next().text
+                JasmParser.LITERAL_NAME -> LiteralNames.unescape(next().text)
+                else -> fail()
+            }
+
+            expect(JasmParser.EQUALS)
+            return Pair(name, annotationArg())
+        }
+
+        private fun annotationArg(): ParsedArg = when (la()) {
+            JasmParser.INT, JasmParser.LONG -> ParsedArg.Value(integer())
+            JasmParser.FLOAT, JasmParser.DOUBLE -> ParsedArg.Value(floatingPoint())
+            JasmParser.STRING -> ParsedArg.Value(string())
+            JasmParser.TRUE, JasmParser.FALSE -> ParsedArg.Value(if (next().text.toBoolean()) 1 else 0)
+            JasmParser.NAME -> ParsedArg.Value(Type.getType("L" + next().text + ";"))
+            JasmParser.LITERAL_NAME -> ParsedArg.Value(Type.getType("L" + LiteralNames.unescape(next().text) + ";"))
+            JasmParser.QNAME -> ParsedArg.Value(Type.getType("L" + next().text + ";"))
+            JasmParser.LSQUARE -> enumValue()
+            JasmParser.LBRACE -> arrayValue()
+            JasmParser.ANNOTATION_NAME, JasmParser.HIDDEN_ANNOT_INDICATOR -> ParsedArg.Nested(annotation())
+            else -> fail()
+        }
+
+        private fun enumValue(): ParsedArg {
+            expect(JasmParser.LSQUARE)
+
+            val owner = classname()
+            val ownerDescriptor = Type.getType(
+                "L" + (if (owner.type == JasmParser.LITERAL_NAME) LiteralNames.unescape(owner.text) else owner.text) + ";"
+            )
+
+            expect(JasmParser.DOT)
+
+            val value = when (la()) {
+                JasmParser.NAME -> next().text
+                JasmParser.LITERAL_NAME -> LiteralNames.unescape(next().text)
+                else -> fail()
+            }
+
+            expect(JasmParser.RSQUARE)
+            return ParsedArg.Enum(ownerDescriptor.descriptor, value)
+        }
+
+        private fun arrayValue(): ParsedArg {
+            val elements = ArrayList<ParsedArg>()
+
+            expect(JasmParser.LBRACE)
+
+            if (la() != JasmParser.COMMA && la() != JasmParser.RBRACE) {
+                elements.add(annotationArg())
+            }
+
+            while (accept(JasmParser.COMMA) != null) {
+                elements.add(annotationArg())
+            }
+
+            expect(JasmParser.RBRACE)
+            return ParsedArg.Array(elements)
+        }
+
+        fun constArg(): Any = when (la()) {
+            JasmParser.INT, JasmParser.LONG -> integer()
+            JasmParser.FLOAT, JasmParser.DOUBLE -> floatingPoint()
+            JasmParser.STRING -> string()
+            JasmParser.TRUE, JasmParser.FALSE -> if (next().text.toBoolean()) 1 else 0
+            JasmParser.NAME -> Type.getType("L" + next().text + ";")
+            JasmParser.LITERAL_NAME -> Type.getType("L" + LiteralNames.unescape(next().text) + ";")
+            JasmParser.QNAME -> Type.getType("L" + next().text + ";")
+            JasmParser.LPAREN -> Type.getMethodType(methodDescriptor(null))
+            JasmParser.CONSTDYNAMIC -> constDynamic()
+            else -> handle()
+        }
+
+        private fun constDynamic(): ConstantDynamic {
+            expect(JasmParser.CONSTDYNAMIC)
+
+            val name = membername()
+            val descriptor = type()
+
+            expect(JasmParser.LBRACE)
+
+            val handle = handle()
+            val args = ArrayList<Any>()
+
+            if (accept(JasmParser.LSQUARE) != null) {
+                args.add(constArg())
+
+                while (accept(JasmParser.COMMA) != null) {
+                    args.add(constArg())
+                }
+
+                expect(JasmParser.RSQUARE)
+            }
+
+            expect(JasmParser.RBRACE)
+            return ConstantDynamic(name, descriptor, handle, *args.toTypedArray())
+        }
+
+        fun handle(): Handle {
+            val tag = when (la()) {
+                JasmParser.INVOKEINTERFACE  -> Opcodes.H_INVOKEINTERFACE
+                JasmParser.INVOKESPECIAL    -> Opcodes.H_INVOKESPECIAL
+                JasmParser.INVOKESTATIC     -> Opcodes.H_INVOKESTATIC
+                JasmParser.INVOKEVIRTUAL    -> Opcodes.H_INVOKEVIRTUAL
+                JasmParser.NEWINVOKESPECIAL -> Opcodes.H_NEWINVOKESPECIAL
+                JasmParser.GETFIELD         -> Opcodes.H_GETFIELD
+                JasmParser.GETSTATIC        -> Opcodes.H_GETSTATIC
+                JasmParser.PUTFIELD         -> Opcodes.H_PUTFIELD
+                JasmParser.PUTSTATIC        -> Opcodes.H_PUTSTATIC
+                else                        -> fail()
+            }
+
+            val tagType = next().type
+            if (tagType == JasmParser.INVOKESTATIC || tagType == JasmParser.INVOKEVIRTUAL) {
+                accept(JasmParser.STAR)
+            }
+
+            val owner = owner()
+            expect(JasmParser.DOT)
+            val name = membername()
+
+            return if (tag <= Opcodes.H_PUTSTATIC) {
+                Handle(tag, owner, name, type(), false)
+            } else {
+                Handle(tag, owner, name, methodDescriptor(null), tagType == JasmParser.INVOKEINTERFACE)
+            }
+        }
+
+        fun emitAnnotation(annotation: ParsedAnnotation, visitor: AnnotationVisitor) {
+            emitAnnotationParams(annotation, visitor)
+            visitor.visitEnd()
+        }
+
+        private fun emitAnnotationParams(annotation: ParsedAnnotation, visitor: AnnotationVisitor) {
+            annotation.params.forEach { (name, arg) ->
+                emitAnnotationArg(name, arg, visitor)
+
+                // JasmAssemblingVisitor also visits the parameters of annotations nested in the
+                // argument with the outer visitor, so those are repeated here to generate the same code
+                emitNestedAnnotationParams(arg, visitor)
+            }
+        }
+
+        private fun emitNestedAnnotationParams(arg: ParsedArg, visitor: AnnotationVisitor) {
+            when (arg) {
+                is ParsedArg.Nested -> emitAnnotationParams(arg.annotation, visitor)
+                is ParsedArg.Array -> arg.elements.forEach { emitNestedAnnotationParams(it, visitor) }
+                else -> { /* nothing nested */ }
+            }
+        }
+
+        private fun emitAnnotationArg(name: String, arg: ParsedArg, visitor: AnnotationVisitor) {
+            when (arg) {
+                is ParsedArg.Value -> visitor.visit(name, arg.value)
+                is ParsedArg.Enum -> visitor.visitEnum(name, arg.descriptor, arg.value)
+                is ParsedArg.Array -> {
+                    val arrayVisitor = visitor.visitArray(name)
+                    arg.elements.forEach { emitAnnotationArg("ignored", it, arrayVisitor) }
+                    arrayVisitor.visitEnd()
+                }
+                is ParsedArg.Nested -> emitAnnotation(arg.annotation, visitor.visitAnnotation(name, arg.annotation.descriptor))
+            }
+        }
+    }
+
+    private inner class ClassParser(pos: Int) : Cursor(pos) {
+        private val pendingMethods = ArrayList<CompletableFuture<Void>>()
+
+        @Volatile
+        private var abandoned = false
+
+        fun declaredClasses(): List<DeclaredClass> {
+            val declared = ArrayList<DeclaredClass>()
+
+            do {
+                val start = pos
+
+                annotations()
+                val header = header()
+
+                if (la() == JasmParser.LBRACE) {
+                    skipBraces()
+                }
+
+                declared.add(DeclaredClass(HierarchyEntry(
+                    header.name,
+                    header.superName,
+                    header.interfaces.filter { it.type == JasmParser.QNAME }.map { LiteralNames.unescape(it.text) },
+                    header.access and Opcodes.ACC_INTERFACE != 0
+                ), start, pos - 1))
+            } while (la() != Token.EOF)
+
+            return declared
+        }
+
+        fun generateClass(visitor: ClassVisitor) {
+            val annotations = annotations()
+            val header = header()
+
+            visitor.visit(
+                classFormat,
+                header.access,
+                header.name,
+                null,
+                header.superName,
+                header.interfaces
+                    .map { if (it.type == JasmParser.QNAME) LiteralNames.unescape(it.text) else fail() }
+                    .toTypedArray()
+            )
+
+            visitor.visitSource(unitName, "")
+
+            annotations.forEach { emitAnnotation(it, visitor.visitAnnotation(it.descriptor, it.visible)) }
+
+            try {
+                if (accept(JasmParser.LBRACE) != null) {
+                    while (la() != JasmParser.RBRACE) {
+                        member(visitor)
+                    }
+
+                    next()
+                }
+
+                awaitMethods()
+            } finally {
+                // Only left pending if the class failed, and the unit is about to be assembled again
+                if (pendingMethods.isNotEmpty()) {
+                    abandonMethods()
+                }
+            }
+
+            visitor.visitEnd()
+        }
+
+        private fun header(): ClassHeader {
+            var access = 0
+            while (TYPE_MODIFIERS.has(la())) {
+                access = access or modifiers.mapModifier(next().type)
+            }
+
+            expect(JasmParser.CLASS)
+            val name = LiteralNames.unescape(classname().text)
+
+            // Like JasmAssemblingVisitor, only qualified names are used for the super types
+            val superName = if (accept(JasmParser.EXTENDS) != null) {
+                classname().takeIf { it.type == JasmParser.QNAME }?.let { LiteralNames.unescape(it.text) }
+            } else {
+                null
+            }
+
+            val interfaces = ArrayList<Token>()
+            if (accept(JasmParser.IMPLEMENTS) != null) {
+                interfaces.add(classname())
+
+                while (la() == JasmParser.COMMA || CLASS_NAMES.has(la())) {
+                    accept(JasmParser.COMMA)
+                    interfaces.add(classname())
+                }
+            }
+
+            return ClassHeader(access, name, superName ?: "java/lang/Object", interfaces)
+        }
+
+        private fun member(visitor: ClassVisitor) {
+            val annotations = annotations()
+
+            // Fields and methods share modifiers, so look past those and the name to see which this is
+            var name = pos
+            while (MEMBER_MODIFIERS.has(tokens[name].type)) {
+                name++
+            }
+
+            if (tokens[minOf(name + 1, tokens.size - 1)].type == JasmParser.LPAREN) {
+                method(visitor, annotations)
+            } else {
+                field(visitor, annotations)
+            }
+        }
+
+        private fun field(visitor: ClassVisitor, annotations: List<ParsedAnnotation>) {
+            var access = 0
+            while (FIELD_MODIFIERS.has(la())) {
+                access = access or modifiers.mapModifier(next().type)
+            }
+
+            val name = membername()
+            val type = type()
+
+            val value = if (accept(JasmParser.EQUALS) != null) {
+                when (la()) {
+                    JasmParser.INT, JasmParser.LONG -> integer()
+                    JasmParser.FLOAT, JasmParser.DOUBLE -> floatingPoint()
+                    JasmParser.STRING -> string()
+                    else -> fail()
+                }
+            } else {
+                null
+            }
+
+            if ((value != null && access and Opcodes.ACC_STATIC == 0) || type == "V") {
+                fail()
+            }
+
+            val fieldVisitor = visitor.visitField(access, name, type, null, value)
+            annotations.forEach { emitAnnotation(it, fieldVisitor.visitAnnotation(it.descriptor, it.visible)) }
+            fieldVisitor.visitEnd()
+        }
+
+        private fun method(visitor: ClassVisitor, annotations: List<ParsedAnnotation>) {
+            deadline?.check()
+
+            var access = 0
+            while (METHOD_MODIFIERS.has(la())) {
+                access = access or modifiers.mapModifier(next().type)
+            }
+
+            val name = membername()
+            val parameterAnnotations = ArrayList<List<ParsedAnnotation>>()
+            val descriptor = methodDescriptor(parameterAnnotations)
+            val generator = MethodGenerator(visitor.visitMethod(access, name, descriptor, null, null), pos)
+
+            if (methodExecutor == null) {
+                generator.generate(annotations, parameterAnnotations)
+                pos = generator.pos
+                return
+            }
+
+            // The method is declared to the class visitor above, so methods stay in source order.
+            if (la() == JasmParser.LBRACE) {
+                skipBraces()
+            }
+
+            val end = pos
+            pendingMethods.add(CompletableFuture.runAsync({
+                if (abandoned) {
+                    return@runAsync
+                }
+
+                deadline?.check()
+                generator.generate(annotations, parameterAnnotations)
+
+                if (generator.pos != end) {
+                    fail()
+                }
+            }, methodExecutor))
+        }
+
+        private fun awaitMethods() {
+            var failure: Throwable? = null
+
+            try {
+                pendingMethods.forEach { future ->
+                    try {
+                        if (deadline != null) {
+                            deadline.join(future)
+                        } else {
+                            future.join()
+                        }
+                    } catch (e: CompletionException) {
+                        failure = failure ?: e.cause ?: e
+                    }
+                }
+            } catch (e: JasmCancelledException) {
+                // Don't start generating any methods that haven't been started yet
+                pendingMethods.forEach { it.cancel(false) }
+                throw e
+            } finally {
+                pendingMethods.clear()
+            }
+
+            failure?.let { throw it }
+        }
+
+        /**
+         * Stop any methods that haven't started yet, and wait for those that have, so that none
+         * are still using the executor (or writing into this class) once this one has failed.
+         */
+        private fun abandonMethods() {
+            abandoned = true
+
+            try {
+                pendingMethods.forEach { future ->
+                    try {
+                        future.join()
+                    } catch (e: CompletionException) {
+                        // Already failing
+                    }
+                }
+            } finally {
+                pendingMethods.clear()
+            }
+        }
+    }
+
+    private inner class MethodGenerator(private val methodVisitor: MethodVisitor, pos: Int) : Cursor(pos) {
+        private val code = CodeEmitter(methodVisitor)
+        private val labels = code.labels
+
+        fun generate(annotations: List<ParsedAnnotation>, parameterAnnotations: List<List<ParsedAnnotation>>) {
+            annotations.forEach { emitAnnotation(it, methodVisitor.visitAnnotation(it.descriptor, it.visible)) }
+
+            parameterAnnotations.forEachIndexed { num, list ->
+                list.forEach { emitAnnotation(it, methodVisitor.visitParameterAnnotation(num, it.descriptor, it.visible)) }
+            }
+
+            if (accept(JasmParser.LBRACE) != null) {
+                statBlock()
+                expect(JasmParser.RBRACE)
+            }
+
+            if (labels.hasUndeclared()) {
+                fail()
+            }
+
+            methodVisitor.visitMaxs(0, 0)
+            methodVisitor.visitEnd()
+        }
+
+        private fun statBlock() {
+            while (la() != JasmParser.RBRACE) {
+                stat()
+            }
+        }
+
+        private fun stat() {
+            val type = la()
+            val opcode = OpcodeTable.lookup(type)
+
+            if (opcode != OpcodeTable.NONE) {
+                next()
+
+                when (opcode) {
+                    Opcodes.ILOAD, Opcodes.LLOAD, Opcodes.FLOAD, Opcodes.DLOAD, Opcodes.ALOAD,
+                    Opcodes.ISTORE, Opcodes.LSTORE, Opcodes.FSTORE, Opcodes.DSTORE, Opcodes.ASTORE ->
+                        methodVisitor.visitVarInsn(opcode, intAtom().text.toInt())
+
+                    Opcodes.BIPUSH, Opcodes.SIPUSH, Opcodes.RET -> code.intInsn(opcode, intAtom().text.toInt())
+
+                    in Opcodes.IFEQ..Opcodes.IF_ACMPNE, Opcodes.JSR, Opcodes.IFNULL, Opcodes.IFNONNULL ->
+                        code.jump(opcode, expect(JasmParser.NAME).text)
+
+                    else -> methodVisitor.visitInsn(opcode)
+                }
+
+                return
+            }
+
+            when (type) {
+                JasmParser.ANEWARRAY -> {
+                    next()
+                    methodVisitor.visitTypeInsn(Opcodes.ANEWARRAY, unescapeName(expect(JasmParser.QNAME).text))
+                }
+
+                JasmParser.CHECKCAST -> {
+                    next()
+                    methodVisitor.visitTypeInsn(Opcodes.CHECKCAST, owner())
+                }
+
+                JasmParser.INSTANCEOF -> {
+                    next()
+                    methodVisitor.visitTypeInsn(Opcodes.INSTANCEOF, owner())
+                }
+
+                JasmParser.DCONST -> {
+                    next()
+                    when (intAtom().text.toInt()) {
+                        0 -> methodVisitor.visitInsn(Opcodes.DCONST_0)
+                        1 -> methodVisitor.visitInsn(Opcodes.DCONST_1)
+                        else -> fail()
+                    }
+                }
+
+                JasmParser.FCONST -> {
+                    next()
+                    when (intAtom().text.toInt()) {
+                        0 -> methodVisitor.visitInsn(Opcodes.FCONST_0)
+                        1 -> methodVisitor.visitInsn(Opcodes.FCONST_1)
+                        2 -> methodVisitor.visitInsn(Opcodes.FCONST_2)
+                        else -> fail()
+                    }
+                }
+
+                JasmParser.ICONST -> {
+                    next()
+                    methodVisitor.visitInsn(when (ilconstAtom()) {
+                        "-1"            -> Opcodes.ICONST_M1
+                        "0", "false"    -> Opcodes.ICONST_0
+                        "1", "true"     -> Opcodes.ICONST_1
+                        "2"             -> Opcodes.ICONST_2
+                        "3"             -> Opcodes.ICONST_3
+                        "4"             -> Opcodes.ICONST_4
+                        "5"             -> Opcodes.ICONST_5
+                        else            -> fail()
+                    })
+                }
+
+                JasmParser.LCONST -> {
+                    next()
+                    methodVisitor.visitInsn(when (ilconstAtom()) {
+                        "0", "false"    -> Opcodes.LCONST_0
+                        "1", "true"     -> Opcodes.LCONST_1
+                        else            -> fail()
+                    })
+                }
+
+                JasmParser.GETFIELD -> fieldInsn(Opcodes.GETFIELD)
+                JasmParser.GETSTATIC -> fieldInsn(Opcodes.GETSTATIC)
+                JasmParser.PUTFIELD -> fieldInsn(Opcodes.PUTFIELD)
+                JasmParser.PUTSTATIC -> fieldInsn(Opcodes.PUTSTATIC)
+
+                JasmParser.GOTO -> {
+                    next()
+                    val target = when (la()) {
+                        JasmParser.NAME -> next().text
+                        JasmParser.LITERAL_NAME -> LiteralNames.unescape(next().text)
+                        else -> fail()
+                    }
+
+                    code.jump(Opcodes.GOTO, target)
+                }
+
+                JasmParser.IINC -> {
+                    next()
+                    val index = intAtom().text.toInt()
+                    accept(JasmParser.COMMA)
+                    expect(JasmParser.LSQUARE)
+                    val increment = intAtom().text.toInt()
+                    expect(JasmParser.RSQUARE)
+
+                    methodVisitor.visitIincInsn(index, increment)
+                }
+
+                JasmParser.INVOKEDYNAMIC -> invokeDynamic()
+                JasmParser.INVOKEINTERFACE -> methodInsn(Opcodes.INVOKEINTERFACE)
+                JasmParser.INVOKESPECIAL -> methodInsn(Opcodes.INVOKESPECIAL)
+                JasmParser.INVOKESTATIC -> methodInsn(Opcodes.INVOKESTATIC)
+                JasmParser.INVOKEVIRTUAL -> methodInsn(Opcodes.INVOKEVIRTUAL)
+
+                JasmParser.LDC -> {
+                    next()
+                    methodVisitor.visitLdcInsn(constArg())
+                }
+
+                JasmParser.LOOKUPSWITCH -> {
+                    next()
+                    val default = expect(JasmParser.NAME).text
+                    val (keys, targets) = switchCases()
+
+                    // Reported by the generated parser
+                    code.lookupSwitch(default, keys.toIntArray(), targets)?.let { fail() }
+                }
+
+                JasmParser.TABLESWITCH -> {
+                    next()
+                    val default = expect(JasmParser.NAME).text
+                    val (keys, targets) = switchCases()
+
+                    // Reported by the generated parser
+                    code.tableSwitch(default, keys.toIntArray(), targets)?.let { fail() }
+                }
+
+                JasmParser.MULTIANEWARRAY -> {
+                    next()
+                    val start = pos
+                    val descriptor = arrayType()
+                    val end = pos
+                    accept(JasmParser.COMMA)
+
+                    val dims = if (la() == JasmParser.INT || la() == JasmParser.LONG) {
+                        intAtom().text.toInt()
+                    } else {
+                        (start until end).sumOf { i -> tokens[i].text.count { it == '[' } }
+                    }
+
+                    methodVisitor.visitMultiANewArrayInsn(descriptor, dims)
+                }
+
+                JasmParser.NEW -> {
+                    next()
+                    methodVisitor.visitTypeInsn(Opcodes.NEW, expect(JasmParser.QNAME).text)
+                }
+
+                JasmParser.NEWARRAY -> {
+                    next()
+                    methodVisitor.visitIntInsn(Opcodes.NEWARRAY, when (next().type) {
+                        JasmParser.TYPE_BOOL    -> Opcodes.T_BOOLEAN
+                        JasmParser.TYPE_BYTE    -> Opcodes.T_BYTE
+                        JasmParser.TYPE_CHAR    -> Opcodes.T_CHAR
+                        JasmParser.TYPE_DOUBLE  -> Opcodes.T_DOUBLE
+                        JasmParser.TYPE_FLOAT   -> Opcodes.T_FLOAT
+                        JasmParser.TYPE_INT     -> Opcodes.T_INT
+                        JasmParser.TYPE_LONG    -> Opcodes.T_LONG
+                        JasmParser.TYPE_SHORT   -> Opcodes.T_SHORT
+                        else                    -> fail()
+                    })
+                }
+
+                JasmParser.LABEL -> code.label(next().text)
+
+                JasmParser.LITERAL_NAME -> {
+                    val name = LiteralNames.unescape(next().text)
+                    expect(JasmParser.COLON)
+                    code.label(name)
+                }
+
+                JasmParser.EXCEPTION -> {
+                    next()
+                    val start = expect(JasmParser.NAME).text
+                    accept(JasmParser.COMMA)
+                    val end = expect(JasmParser.NAME).text
+                    accept(JasmParser.COMMA)
+                    val handler = expect(JasmParser.NAME).text
+
+                    val exceptionType = when {
+                        accept(JasmParser.COMMA) != null -> refTypeName()
+                        la() == JasmParser.QNAME || la() == JasmParser.NAME -> refTypeName()
+                        else -> null
+                    }
+
+                    code.exceptionHandler(start, end, handler, exceptionType)
+                }
+
+                JasmParser.TRY -> tryCatchBlock()
+                JasmParser.FRAME -> frame()
+
+                else -> fail()
+            }
+        }
+
+        private fun ilconstAtom() = when (la()) {
+            JasmParser.INT, JasmParser.LONG, JasmParser.TRUE, JasmParser.FALSE -> next().text
+            else -> fail()
+        }
+
+        private fun refTypeName() = when (la()) {
+            JasmParser.QNAME, JasmParser.NAME -> next().text
+            else -> fail()
+        }
+
+        private fun fieldInsn(opcode: Int) {
+            next()
+            val owner = owner()
+            expect(JasmParser.DOT)
+            val name = membername()
+
+            methodVisitor.visitFieldInsn(opcode, owner, name, type())
+        }
+
+        private fun methodInsn(opcode: Int) {
+            next()
+
+            val star = (opcode == Opcodes.INVOKESTATIC || opcode == Opcodes.INVOKEVIRTUAL)
+                    && accept(JasmParser.STAR) != null
+            val owner = owner()
+            expect(JasmParser.DOT)
+            val name = membername()
+
+            methodVisitor.visitMethodInsn(opcode, owner, name, methodDescriptor(null),
+                opcode == Opcodes.INVOKEINTERFACE || star)
+        }
+
+        private fun invokeDynamic() {
+            next()
+            val name = membername()
+            val descriptor = methodDescriptor(null)
+
+            expect(JasmParser.LBRACE)
+            val handle = handle()
+
+            // JasmAssemblingVisitor requires the (grammatically optional) bootstrap arguments
+            expect(JasmParser.LSQUARE)
+
+            val args = ArrayList<Any>()
+            args.add(constArg())
+            while (accept(JasmParser.COMMA) != null) {
+                args.add(constArg())
+            }
+
+            expect(JasmParser.RSQUARE)
+            expect(JasmParser.RBRACE)
+
+            methodVisitor.visitInvokeDynamicInsn(name, descriptor, handle, *args.toTypedArray())
+        }
+
+        private fun switchCases(): Pair<List<Int>, List<String>> {
+            val keys = ArrayList<Int>()
+            val targets = ArrayList<String>()
+
+            expect(JasmParser.LBRACE)
+
+            do {
+                keys.add(intAtom().text.toInt())
+                expect(JasmParser.COLON)
+                targets.add(expect(JasmParser.NAME).text)
+                accept(JasmParser.COMMA)
+            } while (la() == JasmParser.INT || la() == JasmParser.LONG)
+
+            expect(JasmParser.RBRACE)
+            return Pair(keys, targets)
+        }
+
+        private fun tryCatchBlock() {
+            next()
+            expect(JasmParser.LBRACE)
+
+            val tryCatch = code.tryBlock()
+            statBlock()
+            expect(JasmParser.RBRACE)
+
+            do {
+                expect(JasmParser.CATCH)
+                expect(JasmParser.LPAREN)
+                val type = refTypeName()
+                expect(JasmParser.RPAREN)
+                expect(JasmParser.LBRACE)
+
+                tryCatch.catchBlock(type)
+                statBlock()
+                expect(JasmParser.RBRACE)
+            } while (la() == JasmParser.CATCH)
+
+            tryCatch.end()
+        }
+
+        private fun frame() {
+            next()
+            val kind = expect(JasmParser.NAME).text
+            val count = if (la() == JasmParser.INT || la() == JasmParser.LONG) next().text else null
+            val lists = ArrayList<List<Any>>()
+
+            if (count == null) {
+                while (la() == JasmParser.LBRACE) {
+                    lists.add(frameTypes())
+                }
+            }
+
+            if (classFormat < Opcodes.V1_6) {
+                // Stack map frames only exist from class format 50 onwards
+                return
+            }
+
+            val types = lists.map { list ->
+                list.map { if (it is FrameLabel) labels.get(it.name) else it }.toTypedArray()
+            }
+
+            try {
+                when (kind) {
+                    "full" -> if (count != null || types.size > 2) {
+                        fail()
+                    } else {
+                        val locals = types.getOrElse(0) { emptyArray() }
+                        val stack = types.getOrElse(1) { emptyArray() }
+                        methodVisitor.visitFrame(Opcodes.F_FULL, locals.size, locals, stack.size, stack)
+                    }
+                    "same" -> if (count != null || types.isNotEmpty()) {
+                        fail()
+                    } else {
+                        methodVisitor.visitFrame(Opcodes.F_SAME, 0, null, 0, null)
+                    }
+                    "same1" -> if (types.size != 1 || types[0].size != 1) {
+                        fail()
+                    } else {
+                        methodVisitor.visitFrame(Opcodes.F_SAME1, 0, null, 1, types[0])
+                    }
+                    "append" -> if (types.size != 1 || types[0].size !in 1..3) {
+                        fail()
+                    } else {
+                        methodVisitor.visitFrame(Opcodes.F_APPEND, types[0].size, types[0], 0, null)
+                    }
+                    "chop" -> if (count?.toIntOrNull() !in 1..3) {
+                        fail()
+                    } else {
+                        methodVisitor.visitFrame(Opcodes.F_CHOP, count!!.toInt(), null, 0, null)
+                    }
+                    else -> fail()
+                }
+            } catch (e: IllegalStateException) {
+                fail()
+            }
+        }
+
+        private fun frameTypes(): List<Any> {
+            val types = ArrayList<Any>()
+
+            expect(JasmParser.LBRACE)
+
+            if (la() != JasmParser.RBRACE) {
+                types.add(frameType())
+
+                while (la() != JasmParser.RBRACE) {
+                    accept(JasmParser.COMMA)
+                    types.add(frameType())
+                }
+            }
+
+            next()
+            return types
+        }
+
+        /**
+         * Parse a frame type. Labels (of uninitialized types) are returned as [FrameLabel] and only
+         * looked up if the frame is generated, as they are by JasmAssemblingVisitor.
+         */
+        private fun frameType(): Any = when (la()) {
+            JasmParser.TYPE_FLOAT -> { next(); Opcodes.FLOAT }
+            JasmParser.TYPE_LONG -> { next(); Opcodes.LONG }
+            JasmParser.TYPE_DOUBLE -> { next(); Opcodes.DOUBLE }
+            JasmParser.TYPE_BOOL, JasmParser.TYPE_BYTE, JasmParser.TYPE_CHAR, JasmParser.TYPE_INT, JasmParser.TYPE_SHORT -> {
+                next()
+                Opcodes.INTEGER
+            }
+            JasmParser.LSQUARE -> arrayType()
+            JasmParser.LITERAL_NAME -> LiteralNames.unescape(next().text)
+            JasmParser.QNAME -> next().text
+            JasmParser.NAME -> if (la(1) == JasmParser.LPAREN) {
+                val kind = next().text
+                next()
+
+                val name = when (la()) {
+                    JasmParser.NAME, JasmParser.LITERAL_NAME -> next().text
+                    else -> fail()
+                }
+
+                expect(JasmParser.RPAREN)
+
+                if (kind != "uninitialized") {
+                    fail()
+                }
+
+                FrameLabel(name)
+            } else {
+                when (val name = next().text) {
+                    "top"                   -> Opcodes.TOP
+                    "null"                  -> Opcodes.NULL
+                    "uninitialized_this"    -> Opcodes.UNINITIALIZED_THIS
+                    else                    -> name
+                }
+            }
+            else -> fail()
+        }
+    }
+
+    private class ClassHeader(val access: Int, val name: String, val superName: String, val interfaces: List<Token>)
+
+    private class FrameLabel(val name: String)
+
+    private class ParsedAnnotation(val descriptor: String, val visible: Boolean, val params: List<Pair<String, ParsedArg>>)
+
+    private sealed class ParsedArg {
+        class Value(val value: Any) : ParsedArg()
+        class Enum(val descriptor: String, val value: String) : ParsedArg()
+        class Array(val elements: List<ParsedArg>) : ParsedArg()
+        class Nested(val annotation: ParsedAnnotation) : ParsedArg()
+    }
+
+    private companion object {
+        val MEMBER_NAMES = firstTokens(JasmParser.RULE_membername)
+        val TYPE_MODIFIERS = firstTokens(JasmParser.RULE_type_modifier)
+        val FIELD_MODIFIERS = firstTokens(JasmParser.RULE_field_modifier)
+        val METHOD_MODIFIERS = firstTokens(JasmParser.RULE_method_modifier)
+        val MEMBER_MODIFIERS = BooleanArray(FIELD_MODIFIERS.size) { FIELD_MODIFIERS[it] || METHOD_MODIFIERS[it] }
+        val CLASS_NAMES = firstTokens(JasmParser.RULE_classname)
+        val PRIM_TYPES = firstTokens(JasmParser.RULE_prim_type)
+
+        /**
+         * The tokens a rule can start with, taken from the generated parser so that they can't
+         * drift from the grammar.
+         */
+        fun firstTokens(rule: Int): BooleanArray {
+            val atn = JasmParser._ATN
+            val tokens = atn.nextTokens(atn.ruleToStartState[rule])
+
+            return BooleanArray(JasmParser.VOCABULARY.maxTokenType + 1) { tokens.contains(it) }
+        }
+
+        fun BooleanArray.has(type: Int) = type in indices && this[type]
+
+        fun readTokens(source: TokenSource): Array<Token> {
+            val tokens = ArrayList<Token>()
+
+            do {
+                val token = source.nextToken()
+
+                if (token.channel == Token.DEFAULT_CHANNEL || token.type == Token.EOF) {
+                    tokens.add(token)
+                }
+            } while (token.type != Token.EOF)
+
+            return tokens.toTypedArray()
+        }
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+import com.roscopeco.jasm.antlr.JasmParser
+import org.antlr.v4.runtime.CharStream
+import org.antlr.v4.runtime.CommonTokenFactory
+import org.antlr.v4.runtime.Token
+import org.antlr.v4.runtime.TokenFactory
+import org.antlr.v4.runtime.TokenSource
+import org.antlr.v4.runtime.misc.Interval
+import org.antlr.v4.runtime.misc.Pair
+
+/**
+ * A hand-written replacement for the generated `JasmLexer`.
+ *
+ * Produces exactly the same tokens (types, channels, positions and text) as the generated
+ * lexer, but scans the code points of the input directly instead of simulating the lexer ATN,
+ * and looks keywords up in a perfect hash table built from the grammar's vocabulary.
+ *
+ * Like the generated lexer, this never reports errors - anything unrecognised becomes an
+ * `OTHER` token on the hidden channel.
+ *
+ * @param input The input to tokenize
+ */
+class FastJasmLexer(private val input: CharStream) : TokenSource {
+    private val source = Pair<TokenSource, CharStream>(this, input)
+    private val text = codePoints(input.getText(Interval.of(0, input.size() - 1)), input.size())
+    private var factory: TokenFactory<*> = CommonTokenFactory.DEFAULT
+    private var pos = 0
+    private var line = 1
+    private var column = 0
+
+    companion object {
+        private val KEYWORDS = KeywordTable()
+
+        private fun isNameStart(c: Int) = c in 'a'.code..'z'.code || c in 'A'.code..'Z'.code || c == '_'.code || c == '$'.code
+        private fun isNamePart(c: Int) = isNameStart(c) || isDigit(c)
+        private fun isLabelPart(c: Int) = isNamePart(c) && c != '$'.code
+        private fun isDigit(c: Int) = c in '0'.code..'9'.code
+        private fun isNewline(c: Int) = c == '\r'.code || c == '\n'.code
+
+        private fun codePoints(source: String, count: Int): IntArray {
+            val text = IntArray(count)
+
+            if (source.length == count) {
+                for (i in 0 until count) {
+                    text[i] = source[i].code
+                }
+            } else {
+                var i = 0
+                var j = 0
+
+                while (i < source.length) {
+                    val c = source.codePointAt(i)
+                    text[j++] = c
+                    i += Character.charCount(c)
+                }
+            }
+
+            return text
+        }
+    }
+
+    override fun nextToken(): Token {
+        if (pos >= text.size) {
+            return factory.create(source, Token.EOF, null, Token.DEFAULT_CHANNEL, pos, pos - 1, line, column)
+        }
+
+        val start = pos
+        val type = scan()
+        val token = factory.create(
+            source,
+            type,
+            null,
+            if (type == JasmParser.SPACE || type == JasmParser.COMMENT || type == JasmParser.BLOCK_COMMENT || type == JasmParser.OTHER) {
+                Token.HIDDEN_CHANNEL
+            } else {
+                Token.DEFAULT_CHANNEL
+            },
+            start,
+            pos - 1,
+            line,
+            column
+        )
+
+        for (i in start until pos) {
+            if (text[i] == '\n'.code) {
+                line++
+                column = 0
+            } else {
+                column++
+            }
+        }
+
+        return token
+    }
+
+    /*
+     * Advances pos past the longest token at pos (preferring the earliest rule in the grammar
+     * when lengths are equal, as ANTLR does) and returns its type.
+     */
+    private fun scan(): Int {
+        val c = text[pos]
+
+        return when {
+            c == ' '.code || c == '\t'.code || isNewline(c) -> single(JasmParser.SPACE)
+            isNameStart(c) -> scanName()
+            isDigit(c) || c == '-'.code || c == '.'.code -> scanNumber()
+            c == '/'.code -> scanComment()
+            c == '`'.code -> quoted('`'.code, false, JasmParser.LITERAL_NAME, JasmParser.BACKTICK)
+            c == '"'.code -> quoted('"'.code, true, JasmParser.STRING, JasmParser.DQUOTE)
+            c == '@'.code -> scanAnnotationName()
+            c == '<'.code -> when {
+                matches("<init>") -> advance(6, JasmParser.INIT)
+                matches("<clinit>") -> advance(8, JasmParser.CLINIT)
+                else -> single(JasmParser.OTHER)
+            }
+            else -> single(when (c) {
+                '('.code -> JasmParser.LPAREN
+                ')'.code -> JasmParser.RPAREN
+                '{'.code -> JasmParser.LBRACE
+                '}'.code -> JasmParser.RBRACE
+                '['.code -> JasmParser.LSQUARE
+                ']'.code -> JasmParser.RSQUARE
+                ';'.code -> JasmParser.SEMI
+                ':'.code -> JasmParser.COLON
+                ','.code -> JasmParser.COMMA
+                '='.code -> JasmParser.EQUALS
+                '*'.code -> JasmParser.STAR
+                '#'.code -> JasmParser.HIDDEN_ANNOT_INDICATOR
+                else -> JasmParser.OTHER
+            })
+        }
+    }
+
+    private fun single(type: Int) = advance(1, type)
+
+    private fun advance(length: Int, type: Int): Int {
+        pos += length
+        return type
+    }
+
+    private fun at(index: Int) = if (index < text.size) text[index] else -1
+
+    private fun matches(literal: String): Boolean {
+        if (pos + literal.length > text.size) {
+            return false
+        }
+
+        return literal.indices.all { text[pos + it] == literal[it].code }
+    }
+
+    private inline fun nameLength(from: Int, part: (Int) -> Boolean): Int {
+        var end = from
+        while (end < text.size && part(text[end])) end++
+        return end - from
+    }
+
+    /*
+     * LABEL, NAME, QNAME and keywords. A label's identifier can't contain '$' or '/', so if
+     * it's followed by ':' no other candidate can be as long.
+     */
+    private fun scanName(): Int {
+        val labelLength = if (text[pos] != '$'.code) nameLength(pos, ::isLabelPart) else 0
+        if (labelLength > 0 && at(pos + labelLength) == ':'.code) {
+            return advance(labelLength + 1, JasmParser.LABEL)
+        }
+
+        val nameLength = nameLength(pos, ::isNamePart)
+        val qnameLength = nameLength + nameLength(pos + nameLength) { isNamePart(it) || it == '/'.code }
+
+        return if (qnameLength > nameLength) {
+            advance(qnameLength, JasmParser.QNAME)
+        } else {
+            advance(nameLength, KEYWORDS.lookup(text, pos, nameLength).takeIf { it != 0 } ?: JasmParser.NAME)
+        }
+    }
+
+    private fun scanNumber(): Int {
+        var end = if (text[pos] == '-'.code) pos + 1 else pos
+        val digits = nameLength(end, ::isDigit)
+        end += digits
+
+        if (at(end) == '.'.code) {
+            val fraction = nameLength(end + 1, ::isDigit)
+
+            if (digits > 0 || fraction > 0) {
+                end += 1 + fraction
+                val suffix = at(end)
+                return if (suffix == 'd'.code || suffix == 'D'.code) {
+                    advance(end + 1 - pos, JasmParser.DOUBLE)
+                } else {
+                    advance(end - pos, JasmParser.FLOAT)
+                }
+            }
+        }
+
+        return when {
+            digits == 0 -> single(if (text[pos] == '-'.code) JasmParser.MINUS else JasmParser.DOT)
+            at(end) == 'l'.code || at(end) == 'L'.code -> advance(end + 1 - pos, JasmParser.LONG)
+            else -> advance(end - pos, JasmParser.INT)
+        }
+    }
+
+    private fun scanComment() = when (at(pos + 1)) {
+        '/'.code -> {
+            var end = pos + 2
+            while (end < text.size && !isNewline(text[end])) end++
+            advance(end - pos, JasmParser.COMMENT)
+        }
+        '*'.code -> {
+            var end = pos + 2
+            while (end < text.size && !(text[end] == '*'.code && at(end + 1) == '/'.code)) end++
+            advance(minOf(end + 2, text.size) - pos, JasmParser.BLOCK_COMMENT)
+        }
+        else -> single(JasmParser.OTHER)
+    }
+
+    private fun scanAnnotationName(): Int {
+        val from = pos + 1
+        val length = when {
+            at(from) == '`'.code -> quotedLength(from, '`'.code, false)
+            from < text.size && isNameStart(text[from]) ->
+                nameLength(from) { isNamePart(it) || it == '/'.code }
+            else -> 0
+        }
+
+        return if (length > 0) advance(length + 1, JasmParser.ANNOTATION_NAME) else single(JasmParser.OTHER)
+    }
+
+    private fun quoted(quote: Int, backslashEscape: Boolean, type: Int, fallback: Int): Int {
+        val length = quotedLength(pos, quote, backslashEscape)
+        return if (length > 0) advance(length, type) else single(fallback)
+    }
+
+    /*
+     * The length of the longest quoted token starting at 'from', or 0 if there isn't one.
+     *
+     * Inside the quotes, a character is either a plain character, a doubled quote, or (for
+     * strings) a backslash-quote pair. These overlap (`\"` can also be a backslash followed by
+     * the closing quote) so, as with the generated lexer, every way of reading the input is
+     * followed and the longest that closes properly wins. 'here' and 'prev' record whether
+     * the current and previous positions can be reached inside the quotes.
+     */
+    private fun quotedLength(from: Int, quote: Int, backslashEscape: Boolean): Int {
+        var longest = 0
+        var prev = false
+        var here = true
+        var i = from + 1
+
+        while ((here || prev) && i < text.size) {
+            val c = text[i]
+            if (here && c == quote) {
+                longest = i + 1 - from
+            }
+
+            val next = (here && c != quote && !isNewline(c)) ||
+                    (prev && (text[i - 1] == quote || (backslashEscape && text[i - 1] == '\\'.code)) && c == quote)
+
+            prev = here
+            here = next
+            i++
+        }
+
+        return longest
+    }
+
+    override fun getLine() = line
+
+    override fun getCharPositionInLine() = column
+
+    override fun getInputStream() = input
+
+    override fun getSourceName(): String = input.sourceName
+
+    override fun setTokenFactory(factory: TokenFactory<*>) {
+        this.factory = factory
+    }
+
+    override fun getTokenFactory() = factory
+
+    /*
+     * Maps keyword text to token types. Built from the literal names in the generated lexer's
+     * vocabulary (plus the long and short forms of the primitive types), with a hash seed
+     * chosen at startup so that no two keywords share a slot.
+     */
+    private class KeywordTable {
+        private val keywords: Array<IntArray?>
+        private val types: IntArray
+        private val seeds: IntArray
+        private val mask: Int
+
+        init {
+            val entries = HashMap<String, Int>()
+
+            for (type in 1..JasmParser.VOCABULARY.maxTokenType) {
+                val literal = JasmParser.VOCABULARY.getLiteralName(type)?.removeSurrounding("'") ?: continue
+                if (literal.isNotEmpty() && literal.all { isNamePart(it.code) } && isNameStart(literal[0].code)) {
+                    entries.putIfAbsent(literal, type)
+                }
+            }
+
+            listOf(
+                JasmParser.TYPE_VOID to listOf("V", "void"),
+                JasmParser.TYPE_BYTE to listOf("B", "byte"),
+                JasmParser.TYPE_CHAR to listOf("C", "char"),
+                JasmParser.TYPE_DOUBLE to listOf("D", "double"),
+                JasmParser.TYPE_FLOAT to listOf("F", "float"),
+                JasmParser.TYPE_INT to listOf("I", "int"),
+                JasmParser.TYPE_LONG to listOf("J", "long"),
+                JasmParser.TYPE_SHORT to listOf("S", "short"),
+                JasmParser.TYPE_BOOL to listOf("Z", "boolean"),
+            ).forEach { (type, names) -> names.forEach { entries.putIfAbsent(it, type) } }
+
+            // Hash and displace: keywords are first split into buckets, then each bucket (largest
+            // first) gets the seed that places all of its keywords in free slots of the table.
+            val chars = entries.keys.map { keyword -> IntArray(keyword.length) { keyword[it].code } }
+            val entryTypes = entries.values.toIntArray()
+            val size = Integer.highestOneBit(entries.size) shl 2
+            val buckets = chars.indices.groupBy { hash(0, chars[it], 0, chars[it].size) and (size / 4 - 1) }
+
+            keywords = arrayOfNulls(size)
+            types = IntArray(size)
+            seeds = IntArray(size / 4)
+            mask = size - 1
+
+            buckets.entries.sortedByDescending { it.value.size }.forEach { (bucket, members) ->
+                var seed = 0
+
+                do {
+                    seed++
+                    val slots = members.map { hash(seed, chars[it], 0, chars[it].size) and mask }
+                } while (slots.distinct().size != slots.size || slots.any { keywords[it] != null })
+
+                seeds[bucket] = seed
+                members.forEach {
+                    val slot = hash(seed, chars[it], 0, chars[it].size) and mask
+                    keywords[slot] = chars[it]
+                    types[slot] = entryTypes[it]
+                }
+            }
+        }
+
+        /**
+         * @return the keyword's token type, or 0 if the text is not a keyword
+         */
+        fun lookup(text: IntArray, start: Int, length: Int): Int {
+            val seed = seeds[hash(0, text, start, length) and (seeds.size - 1)]
+            val slot = hash(seed, text, start, length) and mask
+            val keyword = keywords[slot] ?: return 0
+
+            if (keyword.size != length) {
+                return 0
+            }
+
+            for (i in 0 until length) {
+                if (keyword[i] != text[start + i]) {
+                    return 0
+                }
+            }
+
+            return types[slot]
+        }
+
+        // FNV-1a with the seed as the offset basis, finished with MurmurHash3's fmix32
+        private fun hash(seed: Int, text: IntArray, start: Int, length: Int): Int {
+            var h = seed xor -0x7ee3623b
+            for (i in start until start + length) {
+                h = (h xor text[i]) * 0x01000193
+            }
+            h = (h xor (h ushr 16)) * -0x7a143595
+            h = (h xor (h ushr 13)) * -0x3d4d51cb
+            return h xor (h ushr 16)
+        }
+    }
+}
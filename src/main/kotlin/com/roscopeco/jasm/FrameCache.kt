@@ -0,0 +1,74 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Caches the stack map frames (and max stack / locals) computed for individual methods, so
+ * that reassembling a method that hasn't changed doesn't repeat ASM's frame analysis.
+ *
+ * Methods are keyed by a hash of their code as generated by the assembler (instructions,
+ * exception handlers, descriptor and so on) together with the class format and owning class.
+ * Each entry also records the [ClassHierarchy] lookups its frames depended on, and is only
+ * reused while the hierarchy in use still gives the same answers for them.
+ *
+ * A single cache can be shared between assemblers and threads, and is intended to live
+ * for as long as the process (e.g. in a daemon that regenerates classes repeatedly).
+ *
+ * @param maxEntries The maximum number of methods to cache, beyond which the least-recently
+ *          used are discarded
+ */
+class FrameCache @JvmOverloads constructor(private val maxEntries: Int = DEFAULT_MAX_ENTRIES) {
+    private val entries = object : LinkedHashMap<String, CachedMethod>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, CachedMethod>?) = size > maxEntries
+    }
+
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+
+    companion object {
+        const val DEFAULT_MAX_ENTRIES = 10_000
+    }
+
+    /**
+     * The number of methods currently cached.
+     */
+    val size get() = synchronized(entries) { entries.size }
+
+    /**
+     * The number of methods whose frames have been reused.
+     */
+    val hitCount get() = hits.get()
+
+    /**
+     * The number of methods whose frames had to be computed.
+     */
+    val missCount get() = misses.get()
+
+    /**
+     * Discard all cached frames.
+     */
+    fun clear() = synchronized(entries) { entries.clear() }
+
+    internal fun get(key: String, hierarchy: ClassHierarchy): ByteArray? {
+        val entry = synchronized(entries) { entries[key] }
+
+        return if (entry != null && entry.dependencies.all { (name, expected) -> hierarchy.lookup(name) == expected }) {
+            hits.incrementAndGet()
+            entry.method
+        } else {
+            misses.incrementAndGet()
+            null
+        }
+    }
+
+    internal fun put(key: String, method: ByteArray, dependencies: Map<String, HierarchyEntry>) {
+        synchronized(entries) { entries[key] = CachedMethod(method, dependencies) }
+    }
+
+    private class CachedMethod(val method: ByteArray, val dependencies: Map<String, HierarchyEntry>)
+}
@@ -0,0 +1,25 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+/**
+ * How the assembler produces stack map frames.
+ */
+enum class FrameMode {
+    /**
+     * Compute frames with ASM's dataflow analysis (`ClassWriter.COMPUTE_FRAMES`). Any
+     * `frame` directives in the source are ignored.
+     */
+    COMPUTE,
+
+    /**
+     * Trust the `frame` directives in the source, and compute only the maximum stack
+     * and locals (`ClassWriter.COMPUTE_MAXS`). This skips the dataflow analysis and type
+     * hierarchy resolution entirely, but the directives must be correct - they are written
+     * to the class file as-is, and the JVM verifier will reject the class if they are not.
+     */
+    DIRECTIVES,
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+import org.objectweb.asm.ClassVisitor
+
+/**
+ * A compilation unit that generates its classes without being parsed - such as a precompiled
+ * unit, or a class built with [JasmClassBuilder].
+ */
+internal interface GeneratedUnit {
+    /**
+     * The only class format the unit can be assembled for, or `null` if it can be assembled for any.
+     */
+    val classFormat: Int?
+
+    /**
+     * The classes in the unit, in declaration order.
+     */
+    val classes: List<HierarchyEntry>
+
+    /**
+     * Generate a class into a class visitor.
+     *
+     * @param index The index of the class in [classes]
+     * @param classFormat The class format to generate
+     */
+    fun generate(index: Int, visitor: ClassVisitor, classFormat: Int)
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+import org.objectweb.asm.ClassWriter
+
+/**
+ * A `ClassWriter` that computes common superclasses for stack map frames from a
+ * [ClassHierarchy], rather than by loading classes.
+ *
+ * @param flags The `ClassWriter` flags
+ * @param hierarchy The hierarchy to resolve types from
+ *
+ * @throws TypeNotPresentException (from `toByteArray`) if a type needed for a frame isn't in the hierarchy
+ */
+internal class HierarchyClassWriter(flags: Int, private val hierarchy: ClassHierarchy) : ClassWriter(flags) {
+    override fun getCommonSuperClass(type1: String, type2: String): String {
+        if (isAssignableFrom(type1, type2)) {
+            return type1
+        }
+        if (isAssignableFrom(type2, type1)) {
+            return type2
+        }
+        if (find(type1).isInterface || find(type2).isInterface) {
+            return OBJECT
+        }
+
+        var current = find(type1).superName
+        while (current != null) {
+            if (isAssignableFrom(current, type2)) {
+                return current
+            }
+            current = find(current).superName
+        }
+
+        return OBJECT
+    }
+
+    private fun isAssignableFrom(target: String, type: String): Boolean {
+        if (target == type || target == OBJECT) {
+            return true
+        }
+        if (type == OBJECT) {
+            return false
+        }
+
+        val entry = find(type)
+        return entry.superName?.let { isAssignableFrom(target, it) } == true
+                || entry.interfaces.any { isAssignableFrom(target, it) }
+    }
+
+    private fun find(internalName: String) =
+        hierarchy.lookup(internalName) ?: throw TypeNotPresentException(internalName.replace('/', '.'), null)
+
+    companion object {
+        private const val OBJECT = "java/lang/Object"
+    }
+}
+
+/**
+ * Resolves types by loading them (without initialization) through a class loader. This is
+ * the behaviour of a plain ASM `ClassWriter`, used when no [ClassHierarchy] is configured.
+ */
+internal class ClassLoaderHierarchy(private val loader: ClassLoader?) : ClassHierarchy {
+    override fun lookup(internalName: String): HierarchyEntry? = try {
+        val cls = Class.forName(internalName.replace('/', '.'), false, loader)
+
+        HierarchyEntry(
+            internalName,
+            cls.superclass?.let { internalName(it) },
+            cls.interfaces.map { internalName(it) },
+            cls.isInterface
+        )
+    } catch (e: ClassNotFoundException) {
+        null
+    } catch (e: LinkageError) {
+        null
+    }
+
+    private fun internalName(cls: Class<*>) = cls.name.replace('.', '/')
+}
+
+/**
+ * Layers the classes declared in a compilation unit over another hierarchy, so that frames
+ * can be computed for code that refers to classes assembled alongside it.
+ */
+internal class UnitClassHierarchy(private val delegate: ClassHierarchy) : ClassHierarchy {
+    private val declared = HashMap<String, HierarchyEntry>()
+
+    fun declare(entry: HierarchyEntry) {
+        declared.putIfAbsent(entry.name, entry)
+    }
+
+    override fun lookup(internalName: String) = declared[internalName] ?: delegate.lookup(internalName)
+}
+
+/**
+ * Records the entries looked up in another hierarchy, so that results derived from them
+ * can later be checked for staleness.
+ */
+internal class RecordingClassHierarchy(private val delegate: ClassHierarchy) : ClassHierarchy {
+    val lookups = HashMap<String, HierarchyEntry>()
+
+    override fun lookup(internalName: String) = delegate.lookup(internalName)?.also { lookups[internalName] = it }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Interns the names and descriptors the assembler derives from source text, so that an owner,
+ * member name or method descriptor (`java/lang/Object`, `(Ljava/lang/String;)V`, ...) that
+ * appears over and over is only built once, and the same [String] instance is handed to ASM
+ * every time.
+ *
+ * Entries are keyed by the tokens in the source (e.g. `( java/lang/String ) V`, however it is
+ * laid out), and only ever added for text that parsed without errors.
+ *
+ * A single pool can be shared between assemblers and threads (e.g. by all the units assembled
+ * with the same [AssemblerOptions]), and is intended to live for as long as the process.
+ *
+ * @param maxEntries The maximum number of entries of each kind (names, types and method
+ *          descriptors). A kind that fills up drops the entries that have been used least
+ *          recently (approximately - see [Table]).
+ */
+class InternPool @JvmOverloads constructor(private val maxEntries: Int = DEFAULT_MAX_ENTRIES) {
+    internal val names = Table()
+    internal val types = Table()
+    internal val methodDescriptors = Table()
+
+    private val hits = LongAdder()
+    private val misses = LongAdder()
+
+    companion object {
+        const val DEFAULT_MAX_ENTRIES = 10_000
+    }
+
+    /**
+     * The number of entries currently in the pool.
+     */
+    val size get() = names.size + types.size + methodDescriptors.size
+
+    /**
+     * The number of lookups that found an existing entry.
+     */
+    val hitCount get() = hits.sum()
+
+    /**
+     * The number of lookups that had to build a new entry.
+     */
+    val missCount get() = misses.sum()
+
+    /**
+     * Discard all entries.
+     */
+    fun clear() {
+        names.clear()
+        types.clear()
+        methodDescriptors.clear()
+    }
+
+    /**
+     * The (unescaped) name for a class or member name in the source.
+     */
+    internal fun name(text: String) = names.intern(text) { LiteralNames.unescape(it) }
+
+    /**
+     * The descriptor for a reference type in the source.
+     */
+    internal fun refType(text: String) = types.intern(text) { "L" + LiteralNames.unescape(it) + ";" }
+
+    /**
+     * The entries of one kind, in two generations of up to half of `maxEntries` each. New entries
+     * go in the current generation, and entries found in the previous one are moved back to the
+     * current one. When the current generation fills up it becomes the previous one, and the old
+     * previous generation is dropped - so only entries that weren't used for a whole generation
+     * are lost, and those used all the time are never evicted.
+     */
+    internal inner class Table {
+        private val generationSize = maxOf(1, maxEntries / 2)
+
+        @Volatile private var current = ConcurrentHashMap<String, String>()
+        @Volatile private var previous = ConcurrentHashMap<String, String>()
+
+        val size get() = current.size + previous.size
+
+        @Synchronized
+        fun clear() {
+            current = ConcurrentHashMap()
+            previous = ConcurrentHashMap()
+        }
+
+        fun get(text: String): String? {
+            val value = current[text] ?: previous.remove(text)?.let { put(text, it) }
+            return value.also { if (it == null) misses.increment() else hits.increment() }
+        }
+
+        /**
+         * Add an entry, returning the value already in the pool if another thread got there first.
+         */
+        fun put(text: String, value: String): String {
+            var generation = current
+
+            if (generation.size >= generationSize) {
+                generation = newGeneration(generation)
+            }
+
+            return generation.putIfAbsent(text, value) ?: value
+        }
+
+        @Synchronized
+        private fun newGeneration(full: ConcurrentHashMap<String, String>): ConcurrentHashMap<String, String> {
+            // Another thread may have started a new generation already
+            if (current === full) {
+                previous = full
+                current = ConcurrentHashMap()
+            }
+
+            return current
+        }
+
+        inline fun intern(text: String, build: (String) -> String) = get(text) ?: put(text, build(text))
+    }
+}
@@ -7,34 +7,64 @@ package com.roscopeco.jasm
 
 import com.roscopeco.jasm.antlr.JasmLexer
 import com.roscopeco.jasm.antlr.JasmParser
+import com.roscopeco.jasm.errors.BaseError
+import com.roscopeco.jasm.errors.CodeError
 import com.roscopeco.jasm.errors.CollectingErrorListener
+import com.roscopeco.jasm.errors.ConcurrentErrorCollector
 import com.roscopeco.jasm.errors.ErrorCollector
 import com.roscopeco.jasm.errors.StandardErrorCollector
 import org.antlr.v4.runtime.CharStream
-import org.antlr.v4.runtime.CharStreams
 import org.antlr.v4.runtime.CommonTokenStream
+import org.antlr.v4.runtime.TokenSource
 import org.antlr.v4.runtime.TokenStream
+import org.objectweb.asm.ClassVisitor
 import org.objectweb.asm.ClassWriter
 import org.objectweb.asm.Opcodes
+import org.objectweb.asm.tree.ClassNode
 import java.io.IOException
 import java.io.InputStream
+import java.io.OutputStream
 import java.io.UncheckedIOException
-import java.util.Objects
+import java.nio.ByteBuffer
+import java.nio.channels.WritableByteChannel
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.Executor
+import java.util.concurrent.ForkJoinPool
 import java.util.function.Supplier
 
 /**
  * The JASM assembler
  *
- * **Note**: The assembler **will** close the stream returned by the supplier when it is done!
- *
- * @param unitName The (display) name of the compilation unit
- * @param source A supplier of `InputStream`
+ * @param source The compilation unit to assemble
+ * @param options The assembler options
  */
 class JasmAssembler(
-    private val unitName: String,
-    private val classFormat: Int,
-    private val source: Supplier<InputStream>,
+    private val source: JasmSource,
+    private val options: AssemblerOptions,
 ) {
+    private val unitName = source.unitName
+    private val classFormat = options.classFormat
+
+    /**
+     * Construct an assembler with default options for the given class format.
+     *
+     * @param source The compilation unit to assemble
+     * @param classFormat One of the ASM `Vxx` constants from the `org.objectweb.asm.Opcodes` class
+     */
+    constructor(source: JasmSource, classFormat: Int) : this(source, AssemblerOptions().withClassFormat(classFormat))
+
+    /**
+     * Construct an assembler for a stream-based compilation unit.
+     *
+     * **Note**: The assembler **will** close the stream returned by the supplier when it is done!
+     *
+     * @param unitName The (display) name of the compilation unit
+     * @param classFormat One of the ASM `Vxx` constants from the `org.objectweb.asm.Opcodes` class
+     * @param source A supplier of `InputStream`
+     */
+    constructor(unitName: String, classFormat: Int, source: Supplier<InputStream>)
+            : this(JasmSource.of(unitName, source), classFormat)
 
     /**
      * Convenience constructor which will use the class format for Java 11 (55.0).
@@ -45,54 +75,445 @@ class JasmAssembler(
     constructor(unitName: String, source: Supplier<InputStream>)
             : this(unitName, Opcodes.V11, source)
 
+    companion object {
+        internal const val IN_MEMORY_UNIT_NAME = "<memory>"
+
+        /**
+         * Assemble in-memory JASM text declaring a single class.
+         *
+         * @return bytecode, suitable for passing to `MethodHandles.Lookup#defineClass`
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun assemble(source: CharSequence, unitName: String = IN_MEMORY_UNIT_NAME, classFormat: Int = Opcodes.V11) =
+            JasmAssembler(JasmSource.of(unitName, source), classFormat).assemble()
+
+        /**
+         * Assemble UTF-8 encoded JASM text declaring a single class. The buffer's position is not modified.
+         *
+         * @return bytecode, suitable for passing to `MethodHandles.Lookup#defineClass`
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun assemble(source: ByteBuffer, unitName: String = IN_MEMORY_UNIT_NAME, classFormat: Int = Opcodes.V11) =
+            JasmAssembler(JasmSource.of(unitName, source), classFormat).assemble()
+
+        /**
+         * Assemble a batch of compilation units in parallel.
+         *
+         * A failing unit does not affect the others - its error is reported in the corresponding
+         * result, alongside the classes from all the units that assembled successfully.
+         *
+         * @param sources The compilation units to assemble
+         * @param classFormat One of the ASM `Vxx` constants from the `org.objectweb.asm.Opcodes` class
+         * @param executor The executor to assemble units on
+         *
+         * @return one result per unit, in the same order as `sources`
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun assembleAll(
+            sources: Collection<JasmSource>,
+            classFormat: Int = Opcodes.V11,
+            executor: Executor = ForkJoinPool.commonPool()
+        ): List<UnitResult> = assembleAll(sources, AssemblerOptions().withClassFormat(classFormat), executor)
+
+        /**
+         * Assemble a batch of compilation units in parallel, with the given options.
+         *
+         * The options (including any [ClassHierarchy]) are shared by all units in the batch.
+         * A unit that throws an `Error` (such as `OutOfMemoryError`) fails the whole batch, rather
+         * than being reported in its result.
+         *
+         * @param sources The compilation units to assemble
+         * @param options The assembler options
+         * @param executor The executor to assemble units on
+         *
+         * @return one result per unit, in the same order as `sources`
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun assembleAll(
+            sources: Collection<JasmSource>,
+            options: AssemblerOptions,
+            executor: Executor = ForkJoinPool.commonPool()
+        ): List<UnitResult> = sources
+            .map { source ->
+                CompletableFuture.supplyAsync({
+                    try {
+                        UnitResult(source.unitName, JasmAssembler(source, options).assembleClasses(), null)
+                    } catch (e: Exception) {
+                        // Checked exceptions (e.g. reading the source) only fail this unit too - but errors aren't caught
+                        UnitResult(source.unitName, emptyMap(), e as? RuntimeException ?: RuntimeException(e))
+                    }
+                }, executor)
+            }
+            .map {
+                try {
+                    it.join()
+                } catch (e: CompletionException) {
+                    // Only errors (e.g. OutOfMemoryError) get here, and they fail the whole batch
+                    throw e.cause ?: e
+                }
+            }
+    }
+
     /**
      * Assemble to Java bytecode.
      *
+     * The compilation unit must declare exactly one class - use [assembleClasses] for
+     * units that declare more than one.
+     *
      * @return bytecode, suitable for passing to `MethodHandles.Lookup#defineClass`
      */
     fun assemble(): ByteArray {
-        try {
-            source.get().use { input ->
-                val errorCollector = StandardErrorCollector()
-
-                val parser = buildParser(
-                    CommonTokenStream(
-                        buildLexer(
-                            Objects.requireNonNull(CharStreams.fromStream(input),
-                                "Failed to open stream for $unitName"),
-                            errorCollector
-                        )
-                    ),
-                    errorCollector
-                )
-                val classWriter =
-                    ClassWriter(if (classFormat >= Opcodes.V1_6) ClassWriter.COMPUTE_FRAMES else ClassWriter.COMPUTE_MAXS)
-                val assembler = JasmAssemblingVisitor(classWriter, unitName, classFormat, errorCollector)
-
-                parser.class_().accept(assembler)
-
-                if (errorCollector.hasErrors()) {
-                    throw AssemblyException(errorCollector.getErrors())
-                } else {
-                    return classWriter.toByteArray()
-                }
-            }
+        val classes = assembleClasses()
+
+        if (classes.size != 1) {
+            throw AssemblyException(listOf(BaseError(unitName,
+                "Compilation unit declares ${classes.size} classes (use assembleClasses to assemble multi-class units)")))
+        }
+
+        return classes.values.first()
+    }
+
+    /**
+     * Assemble to Java bytecode, and write it to the given stream. The stream is not closed.
+     *
+     * As with [assemble], the compilation unit must declare exactly one class.
+     *
+     * @return the number of bytes written
+     */
+    @Throws(IOException::class)
+    fun assembleTo(output: OutputStream): Int {
+        val bytes = assemble()
+        output.write(bytes)
+        return bytes.size
+    }
+
+    /**
+     * Assemble to Java bytecode, and write all of it to the given (blocking) channel. The channel
+     * is not closed.
+     *
+     * As with [assemble], the compilation unit must declare exactly one class.
+     *
+     * @return the number of bytes written
+     */
+    @Throws(IOException::class)
+    fun assembleTo(output: WritableByteChannel): Int {
+        val buffer = ByteBuffer.wrap(assemble())
+
+        while (buffer.hasRemaining()) {
+            output.write(buffer)
+        }
+
+        return buffer.limit()
+    }
+
+    /**
+     * Assemble to Java bytecode, and put it into the given buffer at its current position, which
+     * is advanced past the class. This allows one buffer to be reused for many units.
+     *
+     * As with [assemble], the compilation unit must declare exactly one class.
+     *
+     * @return the number of bytes written
+     * @throws java.nio.BufferOverflowException if the class doesn't fit in the buffer's remaining
+     *          space, in which case the buffer is unchanged
+     */
+    fun assembleTo(output: ByteBuffer): Int {
+        val bytes = assemble()
+        output.put(bytes)
+        return bytes.size
+    }
+
+    /**
+     * Assemble all classes declared in the compilation unit to Java bytecode.
+     *
+     * @return bytecode for each class, keyed by internal name, in declaration order
+     */
+    fun assembleClasses(): Map<String, ByteArray> = assembleInto { hierarchy ->
+        val classWriter = HierarchyClassWriter(writerFlags(), hierarchy)
+        ClassTarget(transformed(classVisitorFor(classWriter, hierarchy))) { classWriter.toByteArray() }
+    }
+
+    /**
+     * Assemble all classes declared in the compilation unit to ASM class nodes, e.g. to be
+     * transformed further before they are written.
+     *
+     * The nodes don't have stack map frames or max stack / locals computed (but do have any
+     * frames declared with frame directives). Write them with a `ClassWriter` that computes
+     * these, as appropriate for the class format.
+     *
+     * @return a class node for each class, keyed by internal name, in declaration order
+     */
+    fun assembleClassNodes(): Map<String, ClassNode> = assembleInto {
+        val node = ClassNode()
+        ClassTarget(transformed(node)) { node }
+    }
+
+    /**
+     * Assemble to Java bytecode on the given executor. See [assemble].
+     *
+     * Cancelling the returned future (with `mayInterruptIfRunning`) interrupts the assembly.
+     *
+     * @return a future completed with the bytecode, or exceptionally with any error
+     */
+    @JvmOverloads
+    fun assembleAsync(executor: Executor = ForkJoinPool.commonPool()): CompletableFuture<ByteArray> =
+        AsyncAssembly.start(executor) { assemble() }
+
+    /**
+     * Assemble all classes declared in the compilation unit to Java bytecode on the given
+     * executor. See [assembleClasses].
+     *
+     * Cancelling the returned future (with `mayInterruptIfRunning`) interrupts the assembly.
+     *
+     * @return a future completed with the bytecode for each class, or exceptionally with any error
+     */
+    @JvmOverloads
+    fun assembleClassesAsync(executor: Executor = ForkJoinPool.commonPool()): CompletableFuture<Map<String, ByteArray>> =
+        AsyncAssembly.start(executor) { assembleClasses() }
+
+    /**
+     * Precompile the compilation unit, to be assembled again later (with [JasmSource.precompiled])
+     * without being parsed.
+     *
+     * The precompiled unit records the code as JASM generates it - class transformers, stack map
+     * frames and max stack / locals are applied or computed when it is assembled. It can only be
+     * assembled for the same class format.
+     *
+     * @return the precompiled (`.jasmc`) unit
+     */
+    fun precompile(): ByteArray {
+        var writer = PrecompiledUnit.Writer(classFormat)
+
+        // Only keep the classes recorded by the attempt that succeeds
+        assembleInto(restart = { writer = PrecompiledUnit.Writer(classFormat) }) { ClassTarget(writer.newClass()) { } }
+
+        return writer.toByteArray()
+    }
+
+    /**
+     * Assemble the unit into new targets for each class.
+     *
+     * @param restart Called if the unit has to be assembled again from the start (when the
+     *          direct parser falls back), after targets have been created for the first attempt
+     */
+    private fun <T> assembleInto(
+        restart: () -> Unit = { },
+        newTarget: (ClassHierarchy) -> ClassTarget<T>
+    ): Map<String, T> {
+        val deadline = Deadline("Assembly of $unitName", options.timeout)
+
+        val generated = try {
+            source.openGenerated()
         } catch (e: IOException) {
             throw UncheckedIOException(e)
         }
+
+        if (generated != null) {
+            return assembleGenerated(generated, deadline, newTarget)
+        }
+
+        val input = try {
+            source.open()
+        } catch (e: IOException) {
+            throw UncheckedIOException(e)
+        }
+
+        if (options.parserMode == ParserMode.DIRECT && options.parseProfile == null) {
+            try {
+                return assembleDirect(input, deadline, newTarget)
+            } catch (e: DirectAssembler.Fallback) {
+                // Assemble again with the generated parser, which reports any errors
+                input.seek(0)
+                restart()
+            }
+        }
+
+        // Methods generated in parallel add their errors as they go
+        val errorCollector = if (options.methodExecutor != null) ConcurrentErrorCollector() else StandardErrorCollector()
+        val parser = buildParser(CommonTokenStream(deadline.tokens(buildLexer(input, errorCollector))), errorCollector)
+        val classes = LinkedHashMap<String, ClassTarget<T>>()
+        val hierarchy = newHierarchy()
+
+        parser.addParseListener(deadline.parseListener)
+
+        if (options.parseProfile != null) {
+            parser.setProfile(true)
+        }
+
+        val unit = parser.unit()
+        options.parseProfile?.record(parser)
+
+        unit.class_().forEach { ctx -> declaredClass(ctx)?.let { hierarchy.declare(it) } }
+
+        unit.class_().forEach { ctx ->
+            // Missing names have already been reported by the parser
+            val name = ctx.classname()?.let { LiteralNames.unescape(it.text) } ?: return@forEach
+            deadline.check()
+            val target = newTarget(hierarchy)
+
+            if (classes.putIfAbsent(name, target) != null) {
+                errorCollector.addError(CodeError(unitName, ctx, "Duplicate class $name in compilation unit"))
+            }
+
+            try {
+                ctx.accept(JasmAssemblingVisitor(
+                    target.visitor, Modifiers(), unitName, classFormat, errorCollector,
+                    options.methodExecutor, options.internPool
+                ).also { it.deadline = deadline })
+            } catch (e: TypeNotPresentException) {
+                errorCollector.addError(CodeError(unitName, ctx, missingTypeMessage(name, e)))
+            }
+        }
+
+        if (errorCollector.hasErrors()) {
+            throw AssemblyException(errorCollector.getErrors())
+        } else {
+            return classes.mapValuesTo(LinkedHashMap()) { (_, target) -> target.result() }
+        }
     }
 
-    private fun buildLexer(input: CharStream, errorCollector: ErrorCollector): JasmLexer {
+    /**
+     * Assemble with [DirectAssembler]. Throws if anything (including lexing) went wrong, in which
+     * case the unit should be assembled with the generated parser to get the errors.
+     */
+    private fun <T> assembleDirect(
+        input: CharStream,
+        deadline: Deadline,
+        newTarget: (ClassHierarchy) -> ClassTarget<T>
+    ): Map<String, T> {
+        val lexerErrors = StandardErrorCollector()
+        val direct = DirectAssembler(
+            deadline.tokens(buildLexer(input, lexerErrors)), unitName, classFormat, options.methodExecutor,
+            options.internPool, deadline
+        )
+
+        if (lexerErrors.hasErrors()) {
+            throw DirectAssembler.Fallback()
+        }
+
+        val hierarchy = newHierarchy()
+        val declared = direct.declaredClasses()
+
+        declared.forEach { hierarchy.declare(it.entry) }
+
+        val classes = LinkedHashMap<String, T>()
+
+        declared.forEach {
+            if (classes.containsKey(it.entry.name)) {
+                throw DirectAssembler.Fallback()
+            }
+
+            deadline.check()
+            val target = newTarget(hierarchy)
+
+            try {
+                direct.generate(it, target.visitor)
+                classes[it.entry.name] = target.result()
+            } catch (e: TypeNotPresentException) {
+                throw AssemblyException(listOf(direct.classError(it, missingTypeMessage(it.entry.name, e))))
+            }
+        }
+
+        return classes
+    }
+
+    /**
+     * Assemble a unit that generates its own classes (e.g. a precompiled unit).
+     */
+    private fun <T> assembleGenerated(
+        unit: GeneratedUnit,
+        deadline: Deadline,
+        newTarget: (ClassHierarchy) -> ClassTarget<T>
+    ): Map<String, T> {
+        if (unit.classFormat != null && unit.classFormat != classFormat) {
+            throw AssemblyException(listOf(BaseError(unitName,
+                "Unit was precompiled for class format ${unit.classFormat}, cannot assemble for $classFormat")))
+        }
+
+        val hierarchy = newHierarchy()
+        val classes = LinkedHashMap<String, T>()
+
+        unit.classes.forEach { hierarchy.declare(it) }
+
+        unit.classes.forEachIndexed { i, entry ->
+            deadline.check()
+            val target = newTarget(hierarchy)
+
+            try {
+                unit.generate(i, target.visitor, classFormat)
+                classes[entry.name] = target.result()
+            } catch (e: TypeNotPresentException) {
+                throw AssemblyException(listOf(BaseError(unitName, missingTypeMessage(entry.name, e))))
+            }
+        }
+
+        return classes
+    }
+
+    private fun missingTypeMessage(className: String, e: TypeNotPresentException) =
+        "Cannot compute stack map frames for $className: type ${e.typeName()} not found (is it on the classpath?)"
+
+    private fun newHierarchy() = UnitClassHierarchy(
+        options.classHierarchy ?: ClassLoaderHierarchy(JasmAssembler::class.java.classLoader)
+    )
+
+    private fun classVisitorFor(classWriter: ClassWriter, hierarchy: ClassHierarchy) = if (perMethod()) {
+        PerMethodClassVisitor(classWriter, hierarchy, computeFrames(), frameCache())
+    } else {
+        classWriter
+    }
+
+    private fun transformed(visitor: ClassVisitor) =
+        options.classTransformers.foldRight(visitor) { transformer, next -> transformer.transform(next) }
+
+    private fun computeFrames() = classFormat >= Opcodes.V1_6 && options.frameMode == FrameMode.COMPUTE
+
+    private fun frameCache() = options.frameCache?.takeIf { computeFrames() }
+
+    private fun perMethod() = frameCache() != null || options.methodExecutor != null
+
+    private fun writerFlags() = when {
+        perMethod() -> 0        // Frames and maxs are computed (or cached) per-method instead
+        computeFrames() -> ClassWriter.COMPUTE_FRAMES
+        else -> ClassWriter.COMPUTE_MAXS
+    }
+
+    private fun declaredClass(ctx: JasmParser.ClassContext): HierarchyEntry? {
+        val name = ctx.classname()?.let { LiteralNames.unescape(it.text) } ?: return null
+
+        // Resolve super types the same way JasmAssemblingVisitor does when generating the class
+        return HierarchyEntry(
+            name,
+            LiteralNames.unescape(ctx.extends_()?.classname()?.QNAME()?.text ?: "java/lang/Object"),
+            ctx.implements_()?.classname()?.mapNotNull { it.QNAME()?.text?.let(LiteralNames::unescape) } ?: emptyList(),
+            ctx.type_modifier().any { it.INTERFACE() != null }
+        )
+    }
+
+    private fun buildLexer(input: CharStream, errorCollector: ErrorCollector): TokenSource {
+        if (options.lexerMode == LexerMode.FAST) {
+            // Never reports errors - like the generated lexer, it makes OTHER tokens instead
+            return FastJasmLexer(input)
+        }
+
         val lexer = JasmLexer(input)
         lexer.removeErrorListeners()
         lexer.addErrorListener(CollectingErrorListener(unitName, errorCollector))
         return lexer
     }
 
+    /**
+     * Where a class is generated to, and how to get the result once it has been.
+     */
+    private class ClassTarget<T>(val visitor: ClassVisitor, val result: () -> T)
+
     private fun buildParser(tokens: TokenStream, errorCollector: ErrorCollector): JasmParser {
         val parser = JasmParser(tokens)
         parser.removeErrorListeners()
         parser.addErrorListener(CollectingErrorListener(unitName, errorCollector))
         return parser
     }
-}
\ No newline at end of file
+}
@@ -9,17 +9,20 @@ import com.roscopeco.jasm.antlr.JasmBaseVisitor
 import com.roscopeco.jasm.antlr.JasmParser
 import com.roscopeco.jasm.antlr.JasmParser.Visible_annotationContext
 import com.roscopeco.jasm.errors.CodeError
+import com.roscopeco.jasm.errors.ConcurrentErrorCollector
 import com.roscopeco.jasm.errors.ErrorCollector
+import com.roscopeco.jasm.errors.StandardErrorCollector
+import org.antlr.v4.runtime.ParserRuleContext
 import org.objectweb.asm.AnnotationVisitor
 import org.objectweb.asm.ClassVisitor
 import org.objectweb.asm.ConstantDynamic
 import org.objectweb.asm.Handle
-import org.objectweb.asm.Label
 import org.objectweb.asm.MethodVisitor
 import org.objectweb.asm.Opcodes
 import org.objectweb.asm.Type
-import java.util.stream.Collectors
-import java.util.stream.IntStream
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.Executor
 
 /**
  * The main visitor which does the code generation to an ASM {@code ClassVisitor}.
@@ -28,15 +31,28 @@ import java.util.stream.IntStream
  * @param modifiers An instance of the {@link Modifiers} class to handle modifier-related stuff
  * @param unitName The name of the compilation unit (shows up in com.roscopeco.jasm.errors and as an attribute in the class)
  * @param classFormat One of the ASM {@code Vxx} constants from the {@code org.objectweb.asm. class
+ * @param methodExecutor If not {@code null}, method bodies are generated on this executor in parallel.
+ *          The class visitor must then allow the method visitors it returns to be used concurrently.
+ *          Errors are added straight to a {@link ConcurrentErrorCollector}, or to any other collector
+ *          once all the methods of the class have been generated.
+ * @param internPool If not {@code null}, names and descriptors are shared through this pool.
  */
-class JasmAssemblingVisitor(
+class JasmAssemblingVisitor @JvmOverloads constructor(
     private val visitor: ClassVisitor,
     private val modifiers: Modifiers,
     private val unitName: String,
     private val classFormat: Int,
-    private val errorCollector: ErrorCollector
+    private val errorCollector: ErrorCollector,
+    private val methodExecutor: Executor? = null,
+    private val internPool: InternPool? = null,
 ) : JasmBaseVisitor<Unit>() {
-    private val typeVisitor = TypeVisitor(unitName, errorCollector)
+    private val typeVisitor = TypeVisitor(unitName, errorCollector, internPool)
+    private val pendingMethods = ArrayList<Pair<CompletableFuture<Void>, ErrorCollector>>()
+
+    /**
+     * If set, checked before each method is generated.
+     */
+    internal var deadline: Deadline? = null
 
     /**
      * Convenience constructor which will use the class format for Java 11 (55.0) and a default
@@ -74,6 +90,7 @@ class JasmAssemblingVisitor(
         visitor.visitSource(unitName, "")
 
         super.visitClass(ctx)
+        awaitMethods()
         visitor.visitEnd()
     }
 
@@ -102,7 +119,7 @@ class JasmAssemblingVisitor(
             )
         }
 
-        val type = TypeVisitor(unitName, errorCollector).visitType(ctx.type())
+        val type = TypeVisitor(unitName, errorCollector, internPool).visitType(ctx.type())
 
         if ("V" == type) {
             errorCollector.addError(CodeError(unitName, ctx, "Field ${
@@ -134,25 +151,20 @@ class JasmAssemblingVisitor(
         // Do **not** call super here, we manually handled the field completely
     }
 
-    private fun unescapeConstantString(constant: String) =
-        constant.substring(1, constant.length - 1)
-            .replace("\"\"", "\"")          /* double quote for compatibility */
-            .replace("\\t", "\t")           /* Java-compatible escapes */
-            .replace("\\b", "\b")
-            .replace("\\n", "\n")
-            .replace("\\r", "\r")
-            .replace("\\f", "\u000c")
-            .replace("\\'", "'")
-            .replace("\\\"", "\"")
-            .replace("\\\\", "\\")
-
     private fun generateFieldInitializer(ctx: JasmParser.Field_initializerContext?) = when {
         ctx?.int_atom() != null     -> generateInteger(ctx.int_atom())
         ctx?.float_atom() != null   -> generateFloatingPoint(ctx.float_atom())
-        ctx?.string_atom() != null  -> unescapeConstantString(ctx.string_atom().text)
+        ctx?.string_atom() != null  -> generateString(ctx.string_atom())
         else                        -> null
     }
 
+    private fun generateString(atom: JasmParser.String_atomContext) = try {
+        StringLiterals.unescape(atom.text)
+    } catch (e: IllegalArgumentException) {
+        errorCollector.addError(CodeError(unitName, atom, e.message!!))
+        ""
+    }
+
     private fun generateInteger(atom: JasmParser.Int_atomContext): Any = when {
         atom.INT() != null          -> atom.INT().text.toInt()
         atom.LONG() != null         -> atom.LONG().text.substring(0, atom.LONG().text.length - 1).toLong()
@@ -174,7 +186,77 @@ class JasmAssemblingVisitor(
     }
 
     override fun visitMethod(ctx: JasmParser.MethodContext) {
-        return JasmMethodVisitor(ctx).visitMethod(ctx)
+        deadline?.check()
+
+        if (methodExecutor == null) {
+            return JasmMethodVisitor(declareMethod(ctx)).visitMethod(ctx)
+        }
+
+        // The method is declared to the class visitor here, so methods stay in source order. Each
+        // gets its own generator (and errors) so that nothing mutable is shared between threads.
+        val methodErrors = (errorCollector as? ConcurrentErrorCollector)?.section() ?: StandardErrorCollector()
+        val generator = JasmAssemblingVisitor(visitor, modifiers, unitName, classFormat, methodErrors, null, internPool)
+            .JasmMethodVisitor(declareMethod(ctx))
+
+        val deadline = deadline
+
+        pendingMethods.add(Pair(CompletableFuture.runAsync({
+            deadline?.check()
+            generator.visitMethod(ctx)
+        }, methodExecutor), methodErrors))
+    }
+
+    /**
+     * Generate the code in a statement block into a method visitor, which must already have been
+     * started (and will not be ended). Errors, including labels that are used but not declared
+     * in the block or bound in `labels` beforehand, are added to the error collector.
+     *
+     * @param ctx The statements to generate
+     * @param methodVisitor The visitor to generate the code into
+     * @param labels The labels of the method
+     */
+    internal fun generateCode(ctx: JasmParser.Stat_blockContext, methodVisitor: MethodVisitor, labels: LabelTable) =
+        JasmMethodVisitor(methodVisitor, labels).generateCode(ctx)
+
+    private fun declareMethod(ctx: JasmParser.MethodContext) = visitor.visitMethod(
+        modifiers.mapModifiers(ctx.method_modifier()),
+        typeVisitor.visitMembername(ctx.membername()),
+        typeVisitor.visitMethod_descriptor(ctx.method_descriptor()),
+        null,
+        null
+    )
+
+    private fun unescapeName(text: String) = internPool?.name(text) ?: LiteralNames.unescape(text)
+
+    private fun awaitMethods() {
+        val deadline = deadline
+        var failure: Throwable? = null
+
+        try {
+            pendingMethods.forEach { (future, methodErrors) ->
+                try {
+                    if (deadline != null) {
+                        deadline.join(future)
+                    } else {
+                        future.join()
+                    }
+                } catch (e: CompletionException) {
+                    failure = failure ?: e.cause ?: e
+                }
+
+                if (errorCollector !is ConcurrentErrorCollector) {
+                    methodErrors.getErrors().forEach { errorCollector.addError(it) }
+                }
+            }
+        } catch (e: JasmCancelledException) {
+            // Don't start generating any methods that haven't been started yet
+            pendingMethods.forEach { (future, _) -> future.cancel(false) }
+            throw e
+        } finally {
+            pendingMethods.clear()
+        }
+
+        failure?.let { throw it }
     }
 
     private inner class JasmAnnotationVisitor(val visitor: AnnotationVisitor) : JasmBaseVisitor<Unit>() {
@@ -195,7 +277,7 @@ class JasmAssemblingVisitor(
             when {
                 ctx.int_atom() != null          -> visitor.visit(name, generateInteger(ctx.int_atom()))
                 ctx.float_atom() != null        -> visitor.visit(name, generateFloatingPoint(ctx.float_atom()))
-                ctx.string_atom() != null       -> visitor.visit(name, unescapeConstantString(ctx.string_atom().text))
+                ctx.string_atom() != null       -> visitor.visit(name, generateString(ctx.string_atom()))
                 ctx.bool_atom() != null         -> if (java.lang.Boolean.parseBoolean(ctx.bool_atom().text)) {
                     visitor.visit(name, 1)
                 } else {
@@ -252,17 +334,11 @@ class JasmAssemblingVisitor(
         }
     }
 
-    private inner class JasmMethodVisitor(ctx: JasmParser.MethodContext) : JasmBaseVisitor<Unit>() {
-        private val labels = HashMap<String, LabelHolder>()
-
-        // Cheating slightly, but prevents us having to have an apparently-mutable visitor...
-        private val methodVisitor: MethodVisitor = visitor.visitMethod(
-            modifiers.mapModifiers(ctx.method_modifier()),
-            typeVisitor.visitMembername(ctx.membername()),
-            typeVisitor.visitMethod_descriptor(ctx.method_descriptor()),
-            null,
-            null
-        )
+    private inner class JasmMethodVisitor(
+        private val methodVisitor: MethodVisitor,
+        private val labels: LabelTable = LabelTable(),
+    ) : JasmBaseVisitor<Unit>() {
+        private val code = CodeEmitter(methodVisitor, labels)
 
         override fun visitAnnotation(ctx: JasmParser.AnnotationContext) {
             // Intentionally do nothing here, we can't differentiate between method and parameter annotations,
@@ -299,150 +375,54 @@ class JasmAssemblingVisitor(
             methodVisitor.visitEnd()
         }
 
+        fun generateCode(ctx: JasmParser.Stat_blockContext) {
+            visitStat_block(ctx)
+            guardAllLabelsDeclared(ctx)
+        }
+
         override fun visitLabel(ctx: JasmParser.LabelContext) {
-            val label = declareLabel(ctx.LABEL()?.text ?: LiteralNames.unescape(ctx.LITERAL_NAME().text))
-            methodVisitor.visitLabel(label.label)
+            code.label(ctx.LABEL()?.text ?: LiteralNames.unescape(ctx.LITERAL_NAME().text))
         }
 
-        override fun visitInsn_aaload(ctx: JasmParser.Insn_aaloadContext) = methodVisitor.visitInsn(Opcodes.AALOAD)
+        override fun visitInsn_simple(ctx: JasmParser.Insn_simpleContext)
+                = methodVisitor.visitInsn(OpcodeTable.opcode(ctx.op))
 
-        override fun visitInsn_aastore(ctx: JasmParser.Insn_aastoreContext) = methodVisitor.visitInsn(Opcodes.AASTORE)
+        override fun visitInsn_var(ctx: JasmParser.Insn_varContext)
+                = methodVisitor.visitVarInsn(OpcodeTable.opcode(ctx.op), TypeVisitor.textOf(ctx.int_atom()).toInt())
 
-        override fun visitInsn_aconst_null(ctx: JasmParser.Insn_aconst_nullContext)
-                = methodVisitor.visitInsn(Opcodes.ACONST_NULL)
+        override fun visitInsn_int(ctx: JasmParser.Insn_intContext)
+                = code.intInsn(OpcodeTable.opcode(ctx.op), TypeVisitor.textOf(ctx.int_atom()).toInt())
 
-        override fun visitInsn_aload(ctx: JasmParser.Insn_aloadContext)
-                = methodVisitor.visitVarInsn(Opcodes.ALOAD, ctx.int_atom().text.toInt())
+        override fun visitInsn_jump(ctx: JasmParser.Insn_jumpContext)
+                = code.jump(OpcodeTable.opcode(ctx.op), ctx.NAME().text)
 
         override fun visitInsn_anewarray(ctx: JasmParser.Insn_anewarrayContext)
-                = methodVisitor.visitTypeInsn(Opcodes.ANEWARRAY, LiteralNames.unescape(ctx.QNAME().text))
-
-        override fun visitInsn_areturn(ctx: JasmParser.Insn_areturnContext) = methodVisitor.visitInsn(Opcodes.ARETURN)
-
-        override fun visitInsn_arraylength(ctx: JasmParser.Insn_arraylengthContext)
-                = methodVisitor.visitInsn(Opcodes.ARRAYLENGTH)
-
-        override fun visitInsn_astore(ctx: JasmParser.Insn_astoreContext)
-                = methodVisitor.visitVarInsn(Opcodes.ASTORE, ctx.int_atom().text.toInt())
-
-        override fun visitInsn_athrow(ctx: JasmParser.Insn_athrowContext) = methodVisitor.visitInsn(Opcodes.ATHROW)
-
-        override fun visitInsn_baload(ctx: JasmParser.Insn_baloadContext) = methodVisitor.visitInsn(Opcodes.BALOAD)
-
-        override fun visitInsn_bastore(ctx: JasmParser.Insn_bastoreContext) = methodVisitor.visitInsn(Opcodes.BASTORE)
-
-        override fun visitInsn_bipush(ctx: JasmParser.Insn_bipushContext)
-                = methodVisitor.visitIntInsn(Opcodes.BIPUSH, ctx.int_atom().text.toInt() and 0xff)
-
-        override fun visitInsn_caload(ctx: JasmParser.Insn_caloadContext) = methodVisitor.visitInsn(Opcodes.CALOAD)
-
-        override fun visitInsn_castore(ctx: JasmParser.Insn_castoreContext) = methodVisitor.visitInsn(Opcodes.CASTORE)
+                = methodVisitor.visitTypeInsn(Opcodes.ANEWARRAY, unescapeName(ctx.QNAME().text))
 
         override fun visitInsn_checkcast(ctx: JasmParser.Insn_checkcastContext)
                 = methodVisitor.visitTypeInsn(Opcodes.CHECKCAST,
                     typeVisitor.visitInsn_checkcast(ctx))
 
-        override fun visitInsn_d2f(ctx: JasmParser.Insn_d2fContext) = methodVisitor.visitInsn(Opcodes.D2F)
-
-        override fun visitInsn_d2i(ctx: JasmParser.Insn_d2iContext) = methodVisitor.visitInsn(Opcodes.D2I)
-
-        override fun visitInsn_d2l(ctx: JasmParser.Insn_d2lContext) = methodVisitor.visitInsn(Opcodes.D2L)
-
-        override fun visitInsn_dadd(ctx: JasmParser.Insn_daddContext) = methodVisitor.visitInsn(Opcodes.DADD)
-
-        override fun visitInsn_daload(ctx: JasmParser.Insn_daloadContext) = methodVisitor.visitInsn(Opcodes.DALOAD)
-
-        override fun visitInsn_dastore(ctx: JasmParser.Insn_dastoreContext) = methodVisitor.visitInsn(Opcodes.DASTORE)
-
-        override fun visitInsn_dcmpg(ctx: JasmParser.Insn_dcmpgContext) = methodVisitor.visitInsn(Opcodes.DCMPG)
-
-        override fun visitInsn_dcmpl(ctx: JasmParser.Insn_dcmplContext) = methodVisitor.visitInsn(Opcodes.DCMPL)
-
         override fun visitInsn_dconst(ctx: JasmParser.Insn_dconstContext) {
-            when (ctx.int_atom().text.toInt()) {
-                0 -> methodVisitor.visitInsn(Opcodes.DCONST_0)
-                1 -> methodVisitor.visitInsn(Opcodes.DCONST_1)
-                else -> errorCollector.addError(
+            when (val opcode = code.dconstOpcode(TypeVisitor.textOf(ctx.int_atom()).toInt())) {
+                OpcodeTable.NONE -> errorCollector.addError(
                     CodeError(unitName, ctx.int_atom(),
                         "Invalid operand to DCONST: ${ctx.int_atom().text} (expecting 0 or 1)")
                 )
+                else -> methodVisitor.visitInsn(opcode)
             }
         }
 
-        override fun visitInsn_ddiv(ctx: JasmParser.Insn_ddivContext) = methodVisitor.visitInsn(Opcodes.DDIV)
-
-        override fun visitInsn_dload(ctx: JasmParser.Insn_dloadContext)
-                = methodVisitor.visitVarInsn(Opcodes.DLOAD, ctx.int_atom().text.toInt())
-
-        override fun visitInsn_dmul(ctx: JasmParser.Insn_dmulContext) = methodVisitor.visitInsn(Opcodes.DMUL)
-
-        override fun visitInsn_dneg(ctx: JasmParser.Insn_dnegContext) = methodVisitor.visitInsn(Opcodes.DNEG)
-
-        override fun visitInsn_drem(ctx: JasmParser.Insn_dremContext) = methodVisitor.visitInsn(Opcodes.DREM)
-
-        override fun visitInsn_dreturn(ctx: JasmParser.Insn_dreturnContext) = methodVisitor.visitInsn(Opcodes.DRETURN)
-
-        override fun visitInsn_dstore(ctx: JasmParser.Insn_dstoreContext)
-                = methodVisitor.visitVarInsn(Opcodes.DSTORE, ctx.int_atom().text.toInt())
-
-        override fun visitInsn_dsub(ctx: JasmParser.Insn_dsubContext) = methodVisitor.visitInsn(Opcodes.DSUB)
-
-        override fun visitInsn_dup(ctx: JasmParser.Insn_dupContext) = methodVisitor.visitInsn(Opcodes.DUP)
-
-        override fun visitInsn_dup_x1(ctx: JasmParser.Insn_dup_x1Context) = methodVisitor.visitInsn(Opcodes.DUP_X1)
-
-        override fun visitInsn_dup_x2(ctx: JasmParser.Insn_dup_x2Context) = methodVisitor.visitInsn(Opcodes.DUP_X2)
-
-        override fun visitInsn_dup2(ctx: JasmParser.Insn_dup2Context) = methodVisitor.visitInsn(Opcodes.DUP2)
-
-        override fun visitInsn_dup2_x2(ctx: JasmParser.Insn_dup2_x2Context) = methodVisitor.visitInsn(Opcodes.DUP2_X2)
-
-        override fun visitInsn_dup2_x1(ctx: JasmParser.Insn_dup2_x1Context) = methodVisitor.visitInsn(Opcodes.DUP2_X1)
-
-        override fun visitInsn_f2d(ctx: JasmParser.Insn_f2dContext) = methodVisitor.visitInsn(Opcodes.F2D)
-
-        override fun visitInsn_f2i(ctx: JasmParser.Insn_f2iContext) = methodVisitor.visitInsn(Opcodes.F2I)
-
-        override fun visitInsn_f2l(ctx: JasmParser.Insn_f2lContext) = methodVisitor.visitInsn(Opcodes.F2L)
-
-        override fun visitInsn_fadd(ctx: JasmParser.Insn_faddContext) = methodVisitor.visitInsn(Opcodes.FADD)
-
-        override fun visitInsn_faload(ctx: JasmParser.Insn_faloadContext) = methodVisitor.visitInsn(Opcodes.FALOAD)
-
-        override fun visitInsn_fastore(ctx: JasmParser.Insn_fastoreContext) = methodVisitor.visitInsn(Opcodes.FASTORE)
-
-        override fun visitInsn_fcmpg(ctx: JasmParser.Insn_fcmpgContext) = methodVisitor.visitInsn(Opcodes.FCMPG)
-
-        override fun visitInsn_fcmpl(ctx: JasmParser.Insn_fcmplContext) = methodVisitor.visitInsn(Opcodes.FCMPL)
-
-        override fun visitInsn_fconst(ctx: JasmParser.Insn_fconstContext) = when (ctx.int_atom().text.toInt()) {
-            0 -> methodVisitor.visitInsn(Opcodes.FCONST_0)
-            1 -> methodVisitor.visitInsn(Opcodes.FCONST_1)
-            2 -> methodVisitor.visitInsn(Opcodes.FCONST_2)
-            else -> errorCollector.addError(
-                CodeError(unitName, ctx.int_atom(),
-                    "Invalid operand to FCONST: ${ctx.int_atom().text} (expecting 0, 1 or 2)")
-            )
+        override fun visitInsn_fconst(ctx: JasmParser.Insn_fconstContext) {
+            when (val opcode = code.fconstOpcode(TypeVisitor.textOf(ctx.int_atom()).toInt())) {
+                OpcodeTable.NONE -> errorCollector.addError(
+                    CodeError(unitName, ctx.int_atom(),
+                        "Invalid operand to FCONST: ${ctx.int_atom().text} (expecting 0, 1 or 2)")
+                )
+                else -> methodVisitor.visitInsn(opcode)
+            }
         }
 
-        override fun visitInsn_fdiv(ctx: JasmParser.Insn_fdivContext) = methodVisitor.visitInsn(Opcodes.FDIV)
-
-        override fun visitInsn_fload(ctx: JasmParser.Insn_floadContext)
-                = methodVisitor.visitVarInsn(Opcodes.FLOAD, ctx.int_atom().text.toInt())
-
-        override fun visitInsn_fmul(ctx: JasmParser.Insn_fmulContext) = methodVisitor.visitInsn(Opcodes.FMUL)
-
-        override fun visitInsn_fneg(ctx: JasmParser.Insn_fnegContext) = methodVisitor.visitInsn(Opcodes.FNEG)
-
-        override fun visitInsn_frem(ctx: JasmParser.Insn_fremContext) = methodVisitor.visitInsn(Opcodes.FREM)
-
-        override fun visitInsn_freturn(ctx: JasmParser.Insn_freturnContext) = methodVisitor.visitInsn(Opcodes.FRETURN)
-
-        override fun visitInsn_fsub(ctx: JasmParser.Insn_fsubContext) = methodVisitor.visitInsn(Opcodes.FSUB)
-
-        override fun visitInsn_fstore(ctx: JasmParser.Insn_fstoreContext)
-                = methodVisitor.visitVarInsn(Opcodes.FSTORE, ctx.int_atom().text.toInt())
-
         override fun visitInsn_getfield(ctx: JasmParser.Insn_getfieldContext) {
             var type = typeVisitor.visitType(ctx.type())
 
@@ -478,91 +458,14 @@ class JasmAssemblingVisitor(
         }
 
         override fun visitInsn_goto(ctx: JasmParser.Insn_gotoContext)
-                = methodVisitor.visitJumpInsn(Opcodes.GOTO, getLabel(ctx.NAME()?.text ?: LiteralNames.unescape(ctx.LITERAL_NAME().text)).label)
-
-        override fun visitInsn_i2b(ctx: JasmParser.Insn_i2bContext) = methodVisitor.visitInsn(Opcodes.I2B)
-
-        override fun visitInsn_i2c(ctx: JasmParser.Insn_i2cContext) = methodVisitor.visitInsn(Opcodes.I2C)
-
-        override fun visitInsn_i2d(ctx: JasmParser.Insn_i2dContext) = methodVisitor.visitInsn(Opcodes.I2D)
-
-        override fun visitInsn_i2f(ctx: JasmParser.Insn_i2fContext) = methodVisitor.visitInsn(Opcodes.I2F)
-
-        override fun visitInsn_i2l(ctx: JasmParser.Insn_i2lContext) = methodVisitor.visitInsn(Opcodes.I2L)
-
-        override fun visitInsn_i2s(ctx: JasmParser.Insn_i2sContext) = methodVisitor.visitInsn(Opcodes.I2S)
-
-        override fun visitInsn_iadd(ctx: JasmParser.Insn_iaddContext) = methodVisitor.visitInsn(Opcodes.IADD)
-
-        override fun visitInsn_iaload(ctx: JasmParser.Insn_ialoadContext) = methodVisitor.visitInsn(Opcodes.IALOAD)
-
-        override fun visitInsn_iand(ctx: JasmParser.Insn_iandContext) = methodVisitor.visitInsn(Opcodes.IAND)
-
-        override fun visitInsn_iastore(ctx: JasmParser.Insn_iastoreContext) = methodVisitor.visitInsn(Opcodes.IASTORE)
+                = code.jump(Opcodes.GOTO, ctx.NAME()?.text ?: LiteralNames.unescape(ctx.LITERAL_NAME().text))
 
         override fun visitInsn_iconst(ctx: JasmParser.Insn_iconstContext)
                 = methodVisitor.visitInsn(generateIconstOpcode(ctx.ilconst_atom()))
 
-        override fun visitInsn_idiv(ctx: JasmParser.Insn_idivContext) = methodVisitor.visitInsn(Opcodes.IDIV)
-
-        override fun visitInsn_ifeq(ctx: JasmParser.Insn_ifeqContext)
-                = methodVisitor.visitJumpInsn(Opcodes.IFEQ, getLabel(ctx.NAME().text).label)
-
-        override fun visitInsn_ifge(ctx: JasmParser.Insn_ifgeContext)
-                = methodVisitor.visitJumpInsn(Opcodes.IFGE, getLabel(ctx.NAME().text).label)
-
-        override fun visitInsn_ifgt(ctx: JasmParser.Insn_ifgtContext)
-                = methodVisitor.visitJumpInsn(Opcodes.IFGT, getLabel(ctx.NAME().text).label)
-
-        override fun visitInsn_ifle(ctx: JasmParser.Insn_ifleContext)
-                = methodVisitor.visitJumpInsn(Opcodes.IFLE, getLabel(ctx.NAME().text).label)
-
-        override fun visitInsn_iflt(ctx: JasmParser.Insn_ifltContext)
-                = methodVisitor.visitJumpInsn(Opcodes.IFLT, getLabel(ctx.NAME().text).label)
-
-        override fun visitInsn_ifne(ctx: JasmParser.Insn_ifneContext)
-                = methodVisitor.visitJumpInsn(Opcodes.IFNE, getLabel(ctx.NAME().text).label)
-
-        override fun visitInsn_if_acmpeq(ctx: JasmParser.Insn_if_acmpeqContext)
-                = methodVisitor.visitJumpInsn(Opcodes.IF_ACMPEQ, getLabel(ctx.NAME().text).label)
-
-        override fun visitInsn_if_acmpne(ctx: JasmParser.Insn_if_acmpneContext)
-                = methodVisitor.visitJumpInsn(Opcodes.IF_ACMPNE, getLabel(ctx.NAME().text).label)
-
-        override fun visitInsn_if_icmpeq(ctx: JasmParser.Insn_if_icmpeqContext)
-                = methodVisitor.visitJumpInsn(Opcodes.IF_ICMPEQ, getLabel(ctx.NAME().text).label)
-
-        override fun visitInsn_if_icmpge(ctx: JasmParser.Insn_if_icmpgeContext)
-                = methodVisitor.visitJumpInsn(Opcodes.IF_ICMPGE, getLabel(ctx.NAME().text).label)
-
-        override fun visitInsn_if_icmpgt(ctx: JasmParser.Insn_if_icmpgtContext)
-                = methodVisitor.visitJumpInsn(Opcodes.IF_ICMPGT, getLabel(ctx.NAME().text).label)
-
-        override fun visitInsn_if_icmple(ctx: JasmParser.Insn_if_icmpleContext)
-                = methodVisitor.visitJumpInsn(Opcodes.IF_ICMPLE, getLabel(ctx.NAME().text).label)
-
-        override fun visitInsn_if_icmplt(ctx: JasmParser.Insn_if_icmpltContext)
-                = methodVisitor.visitJumpInsn(Opcodes.IF_ICMPLT, getLabel(ctx.NAME().text).label)
-
-        override fun visitInsn_if_icmpne(ctx: JasmParser.Insn_if_icmpneContext)
-                = methodVisitor.visitJumpInsn(Opcodes.IF_ICMPNE, getLabel(ctx.NAME().text).label)
-
-        override fun visitInsn_ifnull(ctx: JasmParser.Insn_ifnullContext)
-                = methodVisitor.visitJumpInsn(Opcodes.IFNULL, getLabel(ctx.NAME().text).label)
-
-        override fun visitInsn_ifnonnull(ctx: JasmParser.Insn_ifnonnullContext)
-                = methodVisitor.visitJumpInsn(Opcodes.IFNONNULL, getLabel(ctx.NAME().text).label)
-
         override fun visitInsn_iinc(ctx: JasmParser.Insn_iincContext)
                 = methodVisitor.visitIincInsn(ctx.int_atom(0).text.toInt(), ctx.int_atom(1).text.toInt())
 
-        override fun visitInsn_iload(ctx: JasmParser.Insn_iloadContext)
-                = methodVisitor.visitVarInsn(Opcodes.ILOAD, ctx.int_atom().text.toInt())
-
-        override fun visitInsn_imul(ctx: JasmParser.Insn_imulContext) = methodVisitor.visitInsn(Opcodes.IMUL)
-
-        override fun visitInsn_ineg(ctx: JasmParser.Insn_inegContext) = methodVisitor.visitInsn(Opcodes.INEG)
-
         override fun visitInsn_instanceof(ctx: JasmParser.Insn_instanceofContext)
                 = methodVisitor.visitTypeInsn(Opcodes.INSTANCEOF, typeVisitor.visitInsn_instanceof(ctx))
 
@@ -610,102 +513,29 @@ class JasmAssemblingVisitor(
                     ctx.STAR() != null
                 )
 
-        override fun visitInsn_ior(ctx: JasmParser.Insn_iorContext) = methodVisitor.visitInsn(Opcodes.IOR)
-
-        override fun visitInsn_irem(ctx: JasmParser.Insn_iremContext) = methodVisitor.visitInsn(Opcodes.IREM)
-
-        override fun visitInsn_ireturn(ctx: JasmParser.Insn_ireturnContext) = methodVisitor.visitInsn(Opcodes.IRETURN)
-
-        override fun visitInsn_ishl(ctx: JasmParser.Insn_ishlContext) = methodVisitor.visitInsn(Opcodes.ISHL)
-
-        override fun visitInsn_ishr(ctx: JasmParser.Insn_ishrContext) = methodVisitor.visitInsn(Opcodes.ISHR)
-
-        override fun visitInsn_istore(ctx: JasmParser.Insn_istoreContext)
-                = methodVisitor.visitVarInsn(Opcodes.ISTORE, ctx.int_atom().text.toInt())
-
-        override fun visitInsn_isub(ctx: JasmParser.Insn_isubContext) = methodVisitor.visitInsn(Opcodes.ISUB)
-
-
-        override fun visitInsn_iushr(ctx: JasmParser.Insn_iushrContext) = methodVisitor.visitInsn(Opcodes.IUSHR)
-
-        override fun visitInsn_ixor(ctx: JasmParser.Insn_ixorContext) = methodVisitor.visitInsn(Opcodes.IXOR)
 
-        override fun visitInsn_jsr(ctx: JasmParser.Insn_jsrContext)
-                = methodVisitor.visitJumpInsn(Opcodes.JSR, getLabel(ctx.NAME().text).label)
-
-        override fun visitInsn_l2d(ctx: JasmParser.Insn_l2dContext) = methodVisitor.visitInsn(Opcodes.L2D)
-
-        override fun visitInsn_l2f(ctx: JasmParser.Insn_l2fContext) = methodVisitor.visitInsn(Opcodes.L2F)
-
-        override fun visitInsn_l2i(ctx: JasmParser.Insn_l2iContext) = methodVisitor.visitInsn(Opcodes.L2I)
-
-        override fun visitInsn_ladd(ctx: JasmParser.Insn_laddContext) = methodVisitor.visitInsn(Opcodes.LADD)
-
-        override fun visitInsn_laload(ctx: JasmParser.Insn_laloadContext) = methodVisitor.visitInsn(Opcodes.LALOAD)
-
-        override fun visitInsn_land(ctx: JasmParser.Insn_landContext) = methodVisitor.visitInsn(Opcodes.LAND)
-
-        override fun visitInsn_lastore(ctx: JasmParser.Insn_lastoreContext) = methodVisitor.visitInsn(Opcodes.LASTORE)
-
-        override fun visitInsn_lcmp(ctx: JasmParser.Insn_lcmpContext) = methodVisitor.visitInsn(Opcodes.LCMP)
-
-        override fun visitInsn_lconst(ctx: JasmParser.Insn_lconstContext) = when (ctx.ilconst_atom().text) {
-            "0", "false" -> methodVisitor.visitInsn(Opcodes.LCONST_0)
-            "1", "true" -> methodVisitor.visitInsn(Opcodes.LCONST_1)
-            else -> errorCollector.addError(
-                CodeError(unitName, ctx.ilconst_atom(),
-                    "Invalid operand to LCONST: ${ctx.ilconst_atom().text} (expecting 0, 1, true or false)")
-            )
+        override fun visitInsn_lconst(ctx: JasmParser.Insn_lconstContext) {
+            when (val opcode = code.lconstOpcode(ilconstValue(ctx.ilconst_atom()))) {
+                OpcodeTable.NONE -> errorCollector.addError(
+                    CodeError(unitName, ctx.ilconst_atom(),
+                        "Invalid operand to LCONST: ${ctx.ilconst_atom().text} (expecting 0, 1, true or false)")
+                )
+                else -> methodVisitor.visitInsn(opcode)
+            }
         }
 
         override fun visitInsn_ldc(ctx: JasmParser.Insn_ldcContext)
                 = methodVisitor.visitLdcInsn(generateSingleConstArg(0, ctx.const_arg()))
 
-        override fun visitInsn_ldiv(ctx: JasmParser.Insn_ldivContext) = methodVisitor.visitInsn(Opcodes.LDIV)
-
-        override fun visitInsn_lload(ctx: JasmParser.Insn_lloadContext)
-                = methodVisitor.visitVarInsn(Opcodes.LLOAD, ctx.int_atom().text.toInt())
-
-        override fun visitInsn_lmul(ctx: JasmParser.Insn_lmulContext) = methodVisitor.visitInsn(Opcodes.LMUL)
-
-        override fun visitInsn_lneg(ctx: JasmParser.Insn_lnegContext) = methodVisitor.visitInsn(Opcodes.LNEG)
-
         override fun visitInsn_lookupswitch(ctx: JasmParser.Insn_lookupswitchContext) {
             val keys = ctx.switch_case().map { c -> c.int_atom().text.toInt() }.toIntArray()
-            val labels = ctx.switch_case().map { c -> getLabel(c.NAME().text).label }.toTypedArray()
+            val targets = ctx.switch_case().map { c -> c.NAME().text }
 
-            methodVisitor.visitLookupSwitchInsn(
-                getLabel(ctx.NAME().text).label,
-                keys,
-                labels
-            )
+            code.lookupSwitch(ctx.NAME().text, keys, targets)?.let { error ->
+                errorCollector.addError(CodeError(unitName, ctx, error))
+            }
         }
 
-        override fun visitInsn_lor(ctx: JasmParser.Insn_lorContext) = methodVisitor.visitInsn(Opcodes.LOR)
-
-        override fun visitInsn_lrem(ctx: JasmParser.Insn_lremContext) = methodVisitor.visitInsn(Opcodes.LREM)
-
-        override fun visitInsn_lreturn(ctx: JasmParser.Insn_lreturnContext) = methodVisitor.visitInsn(Opcodes.LRETURN)
-
-        override fun visitInsn_lshl(ctx: JasmParser.Insn_lshlContext) = methodVisitor.visitInsn(Opcodes.LSHL)
-
-        override fun visitInsn_lshr(ctx: JasmParser.Insn_lshrContext) = methodVisitor.visitInsn(Opcodes.LSHR)
-
-        override fun visitInsn_lstore(ctx: JasmParser.Insn_lstoreContext)
-                = methodVisitor.visitVarInsn(Opcodes.LSTORE, ctx.int_atom().text.toInt())
-
-        override fun visitInsn_lsub(ctx: JasmParser.Insn_lsubContext) = methodVisitor.visitInsn(Opcodes.LSUB)
-
-        override fun visitInsn_lushr(ctx: JasmParser.Insn_lushrContext) = methodVisitor.visitInsn(Opcodes.LUSHR)
-
-        override fun visitInsn_lxor(ctx: JasmParser.Insn_lxorContext) = methodVisitor.visitInsn(Opcodes.LXOR)
-
-        override fun visitInsn_monitorenter(ctx: JasmParser.Insn_monitorenterContext)
-                = methodVisitor.visitInsn(Opcodes.MONITORENTER)
-
-        override fun visitInsn_monitorexit(ctx: JasmParser.Insn_monitorexitContext)
-                = methodVisitor.visitInsn(Opcodes.MONITOREXIT)
-
         override fun visitInsn_multianewarray(ctx: JasmParser.Insn_multianewarrayContext)
                 = methodVisitor.visitMultiANewArrayInsn(
                     typeVisitor.visitArray_type(ctx.array_type()),
@@ -718,15 +548,6 @@ class JasmAssemblingVisitor(
         override fun visitInsn_newarray(ctx: JasmParser.Insn_newarrayContext)
                 = methodVisitor.visitIntInsn(Opcodes.NEWARRAY, typeForNewarray(ctx.prim_type()))
 
-        override fun visitInsn_nop(ctx: JasmParser.Insn_nopContext) = methodVisitor.visitInsn(Opcodes.NOP)
-
-        override fun visitInsn_pop(ctx: JasmParser.Insn_popContext) = methodVisitor.visitInsn(Opcodes.POP)
-
-        override fun visitInsn_pop2(ctx: JasmParser.Insn_pop2Context) = methodVisitor.visitInsn(Opcodes.POP2)
-
-        override fun visitInsn_ret(ctx: JasmParser.Insn_retContext)
-            = methodVisitor.visitIntInsn(Opcodes.RET, ctx.int_atom().text.toInt())
-
         override fun visitInsn_putfield(ctx: JasmParser.Insn_putfieldContext) {
             var type = typeVisitor.visitType(ctx.type())
 
@@ -761,77 +582,78 @@ class JasmAssemblingVisitor(
             )
         }
 
-        override fun visitInsn_return(ctx: JasmParser.Insn_returnContext) = methodVisitor.visitInsn(Opcodes.RETURN)
-
-        override fun visitInsn_saload(ctx: JasmParser.Insn_saloadContext)
-                = methodVisitor.visitInsn(Opcodes.SALOAD)
-
-        override fun visitInsn_sastore(ctx: JasmParser.Insn_sastoreContext)
-                = methodVisitor.visitInsn(Opcodes.SASTORE)
-
-        override fun visitInsn_sipush(ctx: JasmParser.Insn_sipushContext)
-                = methodVisitor.visitIntInsn(Opcodes.SIPUSH, ctx.int_atom().text.toInt() and 0xffff)
-
-        override fun visitInsn_swap(ctx: JasmParser.Insn_swapContext)
-                = methodVisitor.visitInsn(Opcodes.SWAP)
-
 
         override fun visitInsn_tableswitch(ctx: JasmParser.Insn_tableswitchContext) {
-            val keys = ctx.switch_case().map { c -> c.int_atom().text.toInt() }
-            val labels = ctx.switch_case().map { c -> getLabel(c.NAME().text).label }
-            val default = getLabel(ctx.NAME().text).label
-            val pairs = (keys zip labels)
-            val min = pairs.minOf { p -> p.first }
-            val max = pairs.maxOf { p -> p.first }
-
-            methodVisitor.visitTableSwitchInsn(
-                min,
-                max,
-                default,
-                *IntStream.rangeClosed(min, max).mapToObj {
-                        i -> pairs.find { p -> p.first == i }?.second ?: default
-                }.collect(Collectors.toList()).toTypedArray()
-            )
-        }
+            val cases = ctx.switch_case()
+            val keys = IntArray(cases.size) { cases[it].int_atom().text.toInt() }
 
-        override fun visitException_handler(ctx: JasmParser.Exception_handlerContext) {
-            methodVisitor.visitTryCatchBlock(
-                getLabel(ctx.NAME(0).text).label,
-                getLabel(ctx.NAME(1).text).label,
-                getLabel(ctx.NAME(2).text).label,
-                ctx.ref_type()?.text
-            )
+            code.tableSwitch(ctx.NAME().text, keys, cases.map { it.NAME().text })?.let { error ->
+                errorCollector.addError(CodeError(unitName, ctx, error))
+            }
         }
 
-        override fun visitTry_catch_block(ctx: JasmParser.Try_catch_blockContext) {
-            val start = Label()
-            val end = Label()
-            val handlers = (0..ctx.catch_block().size).map { Label() }
-            val skip = Label()
+        override fun visitException_handler(ctx: JasmParser.Exception_handlerContext)
+                = code.exceptionHandler(ctx.NAME(0).text, ctx.NAME(1).text, ctx.NAME(2).text, ctx.ref_type()?.text)
 
-            methodVisitor.visitLabel(start)
-            this.visitStat_block(ctx.stat_block())
-            methodVisitor.visitLabel(end)
-            methodVisitor.visitJumpInsn(Opcodes.GOTO, skip)
-            ctx.catch_block().forEachIndexed { i, block ->
-                methodVisitor.visitLabel(handlers[i])
-                this.visitStat_block(block.stat_block())
+        override fun visitFrame(ctx: JasmParser.FrameContext) {
+            if (classFormat < Opcodes.V1_6) {
+                // Stack map frames only exist from class format 50 onwards
+                return
+            }
 
-                if (ctx.catch_block().size > 1 && i < ctx.catch_block().size - 1) {
-                    methodVisitor.visitJumpInsn(Opcodes.GOTO, skip)
+            val kind = ctx.NAME().text
+            val lists = ctx.frame_types().map { types -> types.frame_type().map { frameType(it) }.toTypedArray() }
+
+            fun invalid(expected: String) =
+                errorCollector.addError(CodeError(unitName, ctx, "Invalid $kind frame (expected $expected)"))
+
+            try {
+                when (kind) {
+                    "full" -> if (ctx.int_atom() != null || lists.size > 2) {
+                        invalid("locals and stack types")
+                    } else {
+                        val locals = lists.getOrElse(0) { emptyArray() }
+                        val stack = lists.getOrElse(1) { emptyArray() }
+                        methodVisitor.visitFrame(Opcodes.F_FULL, locals.size, locals, stack.size, stack)
+                    }
+                    "same" -> if (ctx.int_atom() != null || lists.isNotEmpty()) {
+                        invalid("no types")
+                    } else {
+                        methodVisitor.visitFrame(Opcodes.F_SAME, 0, null, 0, null)
+                    }
+                    "same1" -> if (lists.size != 1 || lists[0].size != 1) {
+                        invalid("a single stack type")
+                    } else {
+                        methodVisitor.visitFrame(Opcodes.F_SAME1, 0, null, 1, lists[0])
+                    }
+                    "append" -> if (lists.size != 1 || lists[0].size !in 1..3) {
+                        invalid("one to three local types")
+                    } else {
+                        methodVisitor.visitFrame(Opcodes.F_APPEND, lists[0].size, lists[0], 0, null)
+                    }
+                    "chop" -> if (ctx.int_atom()?.text?.toIntOrNull() !in 1..3) {
+                        invalid("a count of one to three locals")
+                    } else {
+                        methodVisitor.visitFrame(Opcodes.F_CHOP, ctx.int_atom().text.toInt(), null, 0, null)
+                    }
+                    else -> errorCollector.addError(CodeError(unitName, ctx,
+                        "Unknown frame kind $kind (expected full, same, same1, append or chop)"))
                 }
+            } catch (e: IllegalStateException) {
+                errorCollector.addError(CodeError(unitName, ctx, "Frame directives must be separated by at least one instruction"))
             }
+        }
 
-            methodVisitor.visitLabel(skip)
+        override fun visitTry_catch_block(ctx: JasmParser.Try_catch_blockContext) {
+            val tryCatch = code.tryBlock()
+            this.visitStat_block(ctx.stat_block())
 
-            ctx.catch_block().forEachIndexed { i, block ->
-                methodVisitor.visitTryCatchBlock(
-                    start,
-                    end,
-                    handlers[i],
-                    block.ref_type().text
-                )
+            ctx.catch_block().forEach { block ->
+                tryCatch.catchBlock(block.ref_type().text)
+                this.visitStat_block(block.stat_block())
             }
+
+            tryCatch.end()
         }
 
         private fun visitNonDynamicInvoke(
@@ -844,6 +666,29 @@ class JasmAssemblingVisitor(
             methodVisitor.visitMethodInsn(opcode, owner, name, descriptor, isInterface)
         }
 
+        private fun frameType(ctx: JasmParser.Frame_typeContext): Any = when {
+            ctx.prim_type() != null -> when {
+                ctx.prim_type().TYPE_FLOAT() != null    -> Opcodes.FLOAT
+                ctx.prim_type().TYPE_LONG() != null     -> Opcodes.LONG
+                ctx.prim_type().TYPE_DOUBLE() != null   -> Opcodes.DOUBLE
+                else                                    -> Opcodes.INTEGER
+            }
+            ctx.array_type() != null -> typeVisitor.visitArray_type(ctx.array_type())
+            ctx.LPAREN() != null -> if (ctx.NAME(0).text == "uninitialized") {
+                labels.get(ctx.NAME(1)?.text ?: ctx.LITERAL_NAME().text)
+            } else {
+                errorCollector.addError(CodeError(unitName, ctx, "Unknown frame type ${ctx.NAME(0).text} (expected uninitialized)"))
+                Opcodes.TOP
+            }
+            ctx.LITERAL_NAME() != null -> LiteralNames.unescape(ctx.LITERAL_NAME().text)
+            else -> when (ctx.ref_type().text) {
+                "top"                   -> Opcodes.TOP
+                "null"                  -> Opcodes.NULL
+                "uninitialized_this"    -> Opcodes.UNINITIALIZED_THIS
+                else                    -> ctx.ref_type().text
+            }
+        }
+
         private fun getOrComputeArrayDims(ctx: JasmParser.Insn_multianewarrayContext)
                 = ctx.int_atom()?.text?.toInt() ?: ctx.array_type().text.count { c -> '[' == c }
 
@@ -920,7 +765,7 @@ class JasmAssemblingVisitor(
             return when {
                 ctx.int_atom() != null          -> generateInteger(ctx.int_atom())
                 ctx.float_atom() != null        -> generateFloatingPoint(ctx.float_atom())
-                ctx.string_atom() != null       -> unescapeConstantString(ctx.string_atom().text)
+                ctx.string_atom() != null       -> generateString(ctx.string_atom())
                 ctx.bool_atom() != null         -> if (java.lang.Boolean.parseBoolean(ctx.bool_atom().text)) 1 else 0
                 ctx.NAME() != null              -> Type.getType("L" + ctx.NAME().text + ";")
                 ctx.LITERAL_NAME() != null      -> Type.getType("L" + LiteralNames.unescape(ctx.LITERAL_NAME().text) + ";")
@@ -941,57 +786,36 @@ class JasmAssemblingVisitor(
             }
         }
 
-        private fun generateIconstOpcode(ctx: JasmParser.Ilconst_atomContext): Int = when (ctx.text) {
-            "-1"        -> Opcodes.ICONST_M1
-            "0", "false"-> Opcodes.ICONST_0
-            "1", "true" -> Opcodes.ICONST_1
-            "2"         -> Opcodes.ICONST_2
-            "3"         -> Opcodes.ICONST_3
-            "4"         -> Opcodes.ICONST_4
-            "5"         -> Opcodes.ICONST_5
-            else -> {
-                errorCollector.addError(
-                    CodeError(unitName, ctx,
-                        "Invalid operand to ICONST: ${ctx.int_atom().text} (must be in range -1 to 5, or true/false)")
-                )
-
-                Opcodes.ICONST_0
-            }
-        }
+        private fun generateIconstOpcode(ctx: JasmParser.Ilconst_atomContext): Int =
+            when (val opcode = code.iconstOpcode(ilconstValue(ctx))) {
+                OpcodeTable.NONE -> {
+                    errorCollector.addError(
+                        CodeError(unitName, ctx,
+                            "Invalid operand to ICONST: ${ctx.int_atom().text} (must be in range -1 to 5, or true/false)")
+                    )
 
-        private fun normaliseLabelName(labelName: String) =
-            if (labelName.endsWith(":")) {
-                labelName.substring(0, labelName.length - 1)
-            } else {
-                labelName
-            }
-
-        private fun getLabel(name: String) =
-            labels.computeIfAbsent(normaliseLabelName(LiteralNames.unescape(name))) { LabelHolder(Label(), false) }
-
-        private fun declareLabel(name: String): LabelHolder {
-            val normalName = normaliseLabelName(LiteralNames.unescape(name))
-            val label = labels[normalName]
-
-            if (label == null) {
-                labels[normalName] = LabelHolder(Label(), true)
-            } else if (!label.declared) {
-                labels[normalName] = LabelHolder(label.label, true)
+                    Opcodes.ICONST_0
+                }
+                else -> opcode
             }
 
-            return labels[normalName]!!
+        /**
+         * The value of an `iconst` or `lconst` operand, or [OpcodeTable.NONE] (which is not a valid
+         * operand to either) if it isn't a valid int.
+         */
+        private fun ilconstValue(ctx: JasmParser.Ilconst_atomContext) = when (val text = TypeVisitor.textOf(ctx)) {
+            "false" -> 0
+            "true" -> 1
+            else -> text.toIntOrNull() ?: OpcodeTable.NONE
         }
 
-        private fun guardAllLabelsDeclared(ctx: JasmParser.MethodContext) {
-            val undeclaredLabels = labels.entries
-                .filter { (_, value) -> !value.declared }
-                .joinToString { (key, _) -> key }
+        private fun guardAllLabelsDeclared(ctx: ParserRuleContext) {
+            val undeclared = code.declareUndeclaredLabels()
 
-            if (undeclaredLabels.isNotEmpty()) {
-                errorCollector.addError(CodeError(unitName, ctx, "Labels used but not declared: [$undeclaredLabels]"))
+            if (undeclared.isNotEmpty()) {
+                // The class will be discarded, but the labels are declared so the method is still well-formed
+                errorCollector.addError(CodeError(unitName, ctx, "Labels used but not declared: [${undeclared.joinToString()}]"))
             }
         }
-
-        private inner class LabelHolder(val label: Label, val declared: Boolean)
     }
-}
\ No newline at end of file
+}
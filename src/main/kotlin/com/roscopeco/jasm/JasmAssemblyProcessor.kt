@@ -0,0 +1,198 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.Executor
+import java.util.concurrent.Flow
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReference
+
+/**
+ * A reactive-streams processor that assembles the compilation units it is sent, and publishes
+ * a [UnitResult] for each - in the order the units were received.
+ *
+ * As with [JasmAssembler.assembleAll], a unit that fails to assemble doesn't affect the others -
+ * its error is published in its result. An error from upstream is published after the results
+ * of the units received before it.
+ *
+ * At most `maxPending` units are requested from upstream at a time (counting those being
+ * assembled, and those assembled but not yet requested downstream), so a producer that gets
+ * ahead of assembly, or a subscriber that falls behind, slows the flow down rather than queueing
+ * unbounded work.
+ *
+ * Only one subscriber is supported. Cancelling its subscription cancels the upstream
+ * subscription, and interrupts any units being assembled.
+ *
+ * @param options The assembler options, shared by all units
+ * @param executor The executor to assemble units on
+ * @param maxPending The most units to request from upstream at once
+ */
+class JasmAssemblyProcessor @JvmOverloads constructor(
+    private val options: AssemblerOptions = AssemblerOptions(),
+    private val executor: Executor = ForkJoinPool.commonPool(),
+    private val maxPending: Int = Runtime.getRuntime().availableProcessors(),
+) : Flow.Processor<JasmSource, UnitResult> {
+    private val upstream = AtomicReference<Flow.Subscription>()
+    private val downstream = AtomicReference<Flow.Subscriber<in UnitResult>>()
+    private val pending = ConcurrentLinkedQueue<PendingUnit>()
+    private val demand = AtomicLong()
+    private val drainers = AtomicInteger()
+
+    @Volatile private var completed = false
+    @Volatile private var upstreamError: Throwable? = null
+    @Volatile private var cancelled = false
+    @Volatile private var invalidRequest: IllegalArgumentException? = null
+
+    // Only accessed while draining
+    private var terminated = false
+
+    init {
+        require(maxPending > 0) { "maxPending must be positive, not $maxPending" }
+    }
+
+    override fun onSubscribe(subscription: Flow.Subscription) {
+        if (cancelled || !upstream.compareAndSet(null, subscription)) {
+            subscription.cancel()
+            return
+        }
+
+        subscription.request(maxPending.toLong())
+    }
+
+    override fun onNext(item: JasmSource) {
+        if (cancelled) {
+            return
+        }
+
+        val unit = PendingUnit(item.unitName, JasmAssembler(item, options).assembleClassesAsync(executor))
+        pending.add(unit)
+        unit.future.whenComplete { _, _ -> drain() }
+    }
+
+    override fun onError(throwable: Throwable) {
+        upstreamError = throwable
+        completed = true
+        drain()
+    }
+
+    override fun onComplete() {
+        completed = true
+        drain()
+    }
+
+    override fun subscribe(subscriber: Flow.Subscriber<in UnitResult>) {
+        if (!downstream.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(object : Flow.Subscription {
+                override fun request(n: Long) { }
+                override fun cancel() { }
+            })
+            subscriber.onError(IllegalStateException("JasmAssemblyProcessor supports only one subscriber"))
+            return
+        }
+
+        subscriber.onSubscribe(Downstream())
+        drain()
+    }
+
+    /**
+     * Deliver whatever can be delivered to the subscriber. Only one thread drains at a time -
+     * others just note that there is more to do, for the draining thread to pick up.
+     */
+    private fun drain() {
+        if (drainers.getAndIncrement() != 0) {
+            return
+        }
+
+        var missed = 1
+
+        while (true) {
+            val subscriber = downstream.get()
+
+            if (subscriber != null && !terminated) {
+                val error = invalidRequest
+
+                when {
+                    cancelled -> terminate()
+                    error != null -> {
+                        terminate()
+                        subscriber.onError(error)
+                    }
+                    else -> publish(subscriber)
+                }
+            }
+
+            missed = drainers.addAndGet(-missed)
+
+            if (missed == 0) {
+                return
+            }
+        }
+    }
+
+    private fun publish(subscriber: Flow.Subscriber<in UnitResult>) {
+        var published = 0L
+
+        while (demand.get() > 0) {
+            val unit = pending.peek()
+
+            if (unit == null || !unit.future.isDone) {
+                break
+            }
+
+            pending.poll()
+            demand.decrementAndGet()
+            published++
+            subscriber.onNext(unit.result())
+        }
+
+        if (completed && pending.isEmpty()) {
+            terminated = true
+            upstreamError?.let { subscriber.onError(it) } ?: subscriber.onComplete()
+        } else if (published > 0) {
+            upstream.get()?.request(published)
+        }
+    }
+
+    private fun terminate() {
+        terminated = true
+        upstream.get()?.cancel()
+
+        while (true) {
+            (pending.poll() ?: break).future.cancel(true)
+        }
+    }
+
+    private class PendingUnit(val unitName: String, val future: CompletableFuture<Map<String, ByteArray>>) {
+        fun result() = try {
+            UnitResult(unitName, future.join(), null)
+        } catch (e: CompletionException) {
+            val cause = e.cause ?: e
+            UnitResult(unitName, emptyMap(), cause as? RuntimeException ?: RuntimeException(cause))
+        }
+    }
+
+    private inner class Downstream : Flow.Subscription {
+        override fun request(n: Long) {
+            if (n <= 0) {
+                invalidRequest = IllegalArgumentException("Requested $n results (must be positive)")
+            } else {
+                demand.getAndAccumulate(n) { current, more -> if (current + more < 0) Long.MAX_VALUE else current + more }
+            }
+
+            drain()
+        }
+
+        override fun cancel() {
+            cancelled = true
+            drain()
+        }
+    }
+}
@@ -0,0 +1,14 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+/**
+ * Thrown when assembly or disassembly is abandoned part way through, because the thread doing
+ * it was interrupted or its timeout ran out. An interrupted thread's interrupt status is left set.
+ *
+ * @param timedOut `true` if the timeout ran out, `false` if the thread was interrupted
+ */
+class JasmCancelledException(message: String, val timedOut: Boolean) : JasmException(message)
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+import org.objectweb.asm.ClassVisitor
+import org.objectweb.asm.Label
+import org.objectweb.asm.MethodVisitor
+import org.objectweb.asm.Opcodes
+import org.objectweb.asm.tree.ClassNode
+import org.objectweb.asm.tree.MethodNode
+import java.util.function.Consumer
+
+/**
+ * Builds a class in code, without any JASM text, and assembles it as the assembler would assemble
+ * the equivalent JASM - with the same options, so stack map frames are computed, class
+ * transformers are applied and so on.
+ *
+ * From Java, the builder is used fluently:
+ *
+ * ```java
+ * byte[] bytes = new JasmClassBuilder("com/example/Answer")
+ *     .interfaces("java/util/function/IntSupplier")
+ *     .method(ACC_PUBLIC, "<init>", "()V", code -> code
+ *         .aload(0).invokespecial("java/lang/Object", "<init>", "()V").return_())
+ *     .method(ACC_PUBLIC, "getAsInt", "()I", code -> code.bipush(42).ireturn())
+ *     .assemble();
+ * ```
+ *
+ * From Kotlin, see [jasmClass].
+ *
+ * Methods are built when they are added, and the builder is not thread-safe. Once built, the
+ * class can be assembled any number of times, from any number of threads.
+ *
+ * @param name The internal name of the class
+ */
+@JasmDslMarker
+class JasmClassBuilder(val name: String) {
+    private var access = Opcodes.ACC_PUBLIC or Opcodes.ACC_SUPER
+    private var superName = "java/lang/Object"
+    private var interfaces = emptyList<String>()
+    private var sourceName: String? = null
+    private val members = ArrayList<(ClassVisitor) -> Unit>()
+
+    /**
+     * Set the access flags of the class (`ACC_PUBLIC | ACC_SUPER` by default).
+     */
+    fun access(access: Int) = apply { this.access = access }
+
+    /**
+     * Set the superclass (`java/lang/Object` by default).
+     */
+    fun superclass(name: String) = apply { superName = name }
+
+    fun interfaces(vararg names: String) = apply { interfaces = names.toList() }
+
+    /**
+     * Set the source file name recorded in the class (the class name by default).
+     */
+    fun source(name: String) = apply { sourceName = name }
+
+    /**
+     * Add a field.
+     *
+     * @param value The initial value, for static fields - as for `ClassVisitor.visitField`
+     */
+    @JvmOverloads
+    fun field(access: Int, name: String, descriptor: String, value: Any? = null) = apply {
+        members.add { it.visitField(access, name, descriptor, null, value).visitEnd() }
+    }
+
+    /**
+     * Add a method.
+     *
+     * The body is built straight away (so any errors in it are thrown from here), and the built
+     * code is replayed each time the class is assembled.
+     *
+     * @throws IllegalStateException if the body uses labels that it doesn't declare
+     */
+    fun method(access: Int, name: String, descriptor: String, body: Consumer<JasmCodeBuilder>) = apply {
+        val method = BuiltMethod(access, name, descriptor, body)
+        members.add { method.accept(it) }
+    }
+
+    /**
+     * Add a method without code (an abstract or native method).
+     */
+    fun method(access: Int, name: String, descriptor: String) = apply {
+        members.add { it.visitMethod(access, name, descriptor, null, null).visitEnd() }
+    }
+
+    /**
+     * Assemble the class to Java bytecode.
+     *
+     * @return bytecode, suitable for passing to `MethodHandles.Lookup#defineClass`
+     */
+    @JvmOverloads
+    fun assemble(options: AssemblerOptions = AssemblerOptions()): ByteArray = assembler(options).assemble()
+
+    /**
+     * Assemble the class to an ASM class node. See [JasmAssembler.assembleClassNodes].
+     */
+    @JvmOverloads
+    fun assembleClassNode(options: AssemblerOptions = AssemblerOptions()): ClassNode =
+        assembler(options).assembleClassNodes().getValue(name)
+
+    /**
+     * Generate the class straight into an ASM class visitor.
+     *
+     * Stack map frames and max stack / locals are not computed, so the visitor should compute
+     * them (e.g. by writing to a `ClassWriter` created with `COMPUTE_FRAMES`).
+     *
+     * @param classFormat One of the ASM `Vxx` constants from `org.objectweb.asm.Opcodes`
+     */
+    @JvmOverloads
+    fun accept(visitor: ClassVisitor, classFormat: Int = Opcodes.V11) = Snapshot().generate(0, visitor, classFormat)
+
+    private fun assembler(options: AssemblerOptions) =
+        JasmAssembler(JasmSource.generated(sourceName ?: name, Snapshot()), options)
+
+    /**
+     * A method body, built once into a method node and replayed each time the class is generated.
+     *
+     * `MethodNode.accept` visits all the try / catch blocks before the code, which would put
+     * their types in a different place in the constant pool than generating the code directly
+     * does - so each is replayed where it was visited instead.
+     */
+    private class BuiltMethod(access: Int, name: String, descriptor: String, body: Consumer<JasmCodeBuilder>) {
+        private val node = MethodNode(Opcodes.ASM9, access, name, descriptor, null, null)
+        private val tryCatchPositions = ArrayList<Int>()
+
+        init {
+            JasmCodeBuilder.generate(object : MethodVisitor(Opcodes.ASM9, node) {
+                override fun visitTryCatchBlock(start: Label, end: Label, handler: Label, type: String?) {
+                    tryCatchPositions.add(node.instructions.size())
+                    super.visitTryCatchBlock(start, end, handler, type)
+                }
+            }, body)
+        }
+
+        // The node's labels are reset for each replay, so only one class can replay it at a time
+        fun accept(visitor: ClassVisitor) = synchronized(node) {
+            val methodVisitor = visitor.visitMethod(node.access, node.name, node.desc, null, null) ?: return
+            var nextTryCatch = 0
+
+            fun acceptTryCatchBlocksBefore(position: Int) {
+                while (nextTryCatch < tryCatchPositions.size && tryCatchPositions[nextTryCatch] <= position) {
+                    node.tryCatchBlocks[nextTryCatch++].accept(methodVisitor)
+                }
+            }
+
+            node.instructions.resetLabels()
+            methodVisitor.visitCode()
+
+            node.instructions.forEachIndexed { position, insn ->
+                acceptTryCatchBlocksBefore(position)
+                insn.accept(methodVisitor)
+            }
+
+            acceptTryCatchBlocksBefore(Int.MAX_VALUE)
+            methodVisitor.visitMaxs(0, 0)
+            methodVisitor.visitEnd()
+        }
+    }
+
+    /**
+     * The class as it is now, for the assembler - later changes to the builder don't affect it.
+     */
+    private inner class Snapshot : GeneratedUnit {
+        private val members = ArrayList(this@JasmClassBuilder.members)
+        private val access = this@JasmClassBuilder.access
+        private val superName = this@JasmClassBuilder.superName
+        private val interfaces = this@JasmClassBuilder.interfaces
+        private val sourceName = this@JasmClassBuilder.sourceName ?: name
+
+        override val classFormat: Int? = null
+
+        override val classes = listOf(
+            HierarchyEntry(name, superName, interfaces, access and Opcodes.ACC_INTERFACE != 0)
+        )
+
+        override fun generate(index: Int, visitor: ClassVisitor, classFormat: Int) {
+            visitor.visit(classFormat, access, name, null, superName, interfaces.toTypedArray())
+            visitor.visitSource(sourceName, "")
+            members.forEach { it(visitor) }
+            visitor.visitEnd()
+        }
+    }
+}
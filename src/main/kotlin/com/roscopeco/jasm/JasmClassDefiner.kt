@@ -0,0 +1,315 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+import org.antlr.v4.runtime.CharStream
+import java.lang.invoke.MethodHandles
+import java.lang.ref.ReferenceQueue
+import java.lang.ref.WeakReference
+import java.lang.reflect.InvocationTargetException
+import java.nio.ByteBuffer
+import java.security.MessageDigest
+import java.util.Base64
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import java.lang.reflect.Array as ReflectArray
+
+/**
+ * Assembles JASM compilation units and defines their classes in one step, caching the defined
+ * classes so that defining the same source again returns the classes already defined.
+ *
+ * Units are cached by their name and a hash of their text (or precompiled bytes). Built units
+ * (which have neither) are defined, but not cached. The cache belongs to the definer, and every
+ * unit it defines is assembled with the options it was created with - to define the same units
+ * with different options, use another definer.
+ *
+ * The cache only holds the classes weakly, so classes that are no longer used can still be
+ * unloaded (where the way they are defined allows it, see [withClassLoader] and [hidden]) - the
+ * next request for them then defines them again.
+ *
+ * A single definer can be shared between threads. When more than one thread asks for the same
+ * unit at once, it is only assembled and defined once.
+ */
+class JasmClassDefiner private constructor(
+    private val options: AssemblerOptions,
+    private val defineClasses: (Map<String, ByteArray>) -> Map<String, Class<*>>,
+) {
+    private val entries = ConcurrentHashMap<Key, Entry>()
+    private val collected = ReferenceQueue<Class<*>>()
+
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+
+    companion object {
+        private const val DIGEST_CHUNK_SIZE = 4096
+
+        /**
+         * Define classes with `Lookup.defineClass`, in the lookup's class loader and package.
+         *
+         * Classes defined this way can't be unloaded until the lookup's class loader is, and
+         * defining a class with the same name again (e.g. from changed source) fails.
+         *
+         * @param lookup A lookup with `PACKAGE` access, in the package the classes are declared in
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun inLookup(lookup: MethodHandles.Lookup, options: AssemblerOptions = AssemblerOptions()) =
+            JasmClassDefiner(options) { classes ->
+                classes.mapValues { (name, bytes) ->
+                    try {
+                        lookup.defineClass(bytes)
+                    } catch (e: IllegalAccessException) {
+                        throw IllegalArgumentException("Cannot define $name with $lookup", e)
+                    }
+                }
+            }
+
+        /**
+         * Define each compilation unit's classes in a new class loader of their own, so that
+         * they can be unloaded once none of them are used any more. Classes in the same unit can
+         * refer to each other, and to classes visible to the parent loader.
+         *
+         * @param parent The parent of the class loaders
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun withClassLoader(parent: ClassLoader?, options: AssemblerOptions = AssemblerOptions()) =
+            JasmClassDefiner(options) { classes -> UnitClassLoader(parent, classes).defineAll() }
+
+        /**
+         * Define classes as hidden classes of the lookup's class, with `Lookup.defineHiddenClass`
+         * (which needs Java 15 or later). Hidden classes can be unloaded once they aren't used,
+         * but can't be referred to by name, even from the other classes in their unit.
+         *
+         * @param lookup A lookup with full privilege access, in the package the classes are declared in
+         *
+         * @throws UnsupportedOperationException if hidden classes aren't supported
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun hidden(lookup: MethodHandles.Lookup, options: AssemblerOptions = AssemblerOptions()): JasmClassDefiner {
+            val defineHidden = HiddenClasses.defineHidden
+                ?: throw UnsupportedOperationException("Hidden classes need Java 15 or later")
+
+            return JasmClassDefiner(options) { classes ->
+                classes.mapValues { (name, bytes) ->
+                    try {
+                        defineHidden(lookup, bytes)
+                    } catch (e: IllegalAccessException) {
+                        throw IllegalArgumentException("Cannot define $name with $lookup", e)
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The number of compilation units currently cached (including any whose classes have been
+     * unloaded but not yet discarded).
+     */
+    val size get() = entries.size
+
+    /**
+     * The number of times classes already defined have been returned.
+     */
+    val hitCount get() = hits.get()
+
+    /**
+     * The number of times classes had to be assembled and defined.
+     */
+    val missCount get() = misses.get()
+
+    /**
+     * Assemble a compilation unit and define its classes, or return the classes already defined
+     * for the same unit.
+     *
+     * @return the class for each class declared in the unit, keyed by internal name, in declaration order
+     * @throws AssemblyException if the unit has errors
+     */
+    fun define(source: JasmSource): Map<String, Class<*>> {
+        discardCollected()
+
+        // Open the source once - it may come from a supplier that can only be read once
+        val precompiled = if (source.isText) null else source.openPrecompiled()
+
+        if (!source.isText && precompiled == null) {
+            misses.incrementAndGet()
+            return defineClasses(JasmAssembler(source, options).assembleClasses())
+        }
+
+        val text = if (precompiled == null) source.open() else null
+
+        val key = Key(source.unitName, precompiled != null, digest(precompiled, text))
+        val opened = if (precompiled != null) {
+            JasmSource.precompiled(source.unitName, precompiled)
+        } else {
+            JasmSource.opened(source.unitName, text!!)
+        }
+
+        while (true) {
+            val entry = entries[key]
+
+            if (entry == null) {
+                val created = Entry(key)
+
+                if (entries.putIfAbsent(key, created) == null) {
+                    misses.incrementAndGet()
+                    return created.define(opened)
+                }
+            } else {
+                val classes = entry.await()
+
+                if (classes != null) {
+                    hits.incrementAndGet()
+                    return classes
+                }
+
+                // Unloaded, define them again
+                entries.remove(key, entry)
+            }
+        }
+    }
+
+    /**
+     * Assemble a compilation unit and define its classes, or return the classes already defined
+     * for the same unit.
+     *
+     * @return the class for each class declared in the unit, keyed by internal name, in declaration order
+     * @throws AssemblyException if the unit has errors
+     */
+    @JvmOverloads
+    fun define(source: CharSequence, unitName: String = JasmAssembler.IN_MEMORY_UNIT_NAME) =
+        define(JasmSource.of(unitName, source))
+
+    /**
+     * Forget all cached classes. Classes already defined are not affected.
+     */
+    fun clear() = entries.clear()
+
+    private fun discardCollected() {
+        while (true) {
+            val reference = collected.poll() as ClassReference? ?: return
+            entries.remove(reference.key, reference.entry)
+        }
+    }
+
+    private fun digest(precompiled: ByteBuffer?, text: CharStream?): String {
+        val digest = MessageDigest.getInstance("SHA-256")
+
+        if (precompiled != null) {
+            digest.update(precompiled.duplicate())
+        } else if (text != null) {
+            // Hash the code points straight from the stream, rather than copying the text out first
+            val chunk = ByteBuffer.allocate(DIGEST_CHUNK_SIZE)
+            text.seek(0)
+
+            for (i in 1..text.size()) {
+                if (!chunk.hasRemaining()) {
+                    digest.update(chunk.flip())
+                    chunk.clear()
+                }
+
+                chunk.putInt(text.LA(i))
+            }
+
+            digest.update(chunk.flip())
+        }
+
+        return Base64.getEncoder().encodeToString(digest.digest())
+    }
+
+    private data class Key(
+        val unitName: String,
+        val precompiled: Boolean,
+        val digest: String,
+    )
+
+    private class ClassReference(clazz: Class<*>, queue: ReferenceQueue<Class<*>>, val key: Key, val entry: Entry)
+        : WeakReference<Class<*>>(clazz, queue)
+
+    /**
+     * The classes of a unit - defined by the first thread to ask for them, and waited for by any others.
+     */
+    private inner class Entry(private val key: Key) {
+        private val defined = CompletableFuture<Map<String, ClassReference>>()
+
+        fun define(source: JasmSource): Map<String, Class<*>> = try {
+            defineClasses(JasmAssembler(source, options).assembleClasses()).also { classes ->
+                defined.complete(classes.mapValues { (_, clazz) -> ClassReference(clazz, collected, key, this) })
+            }
+        } catch (e: Throwable) {
+            // Not cached, so the next request tries again (and reports the same errors)
+            entries.remove(key, this)
+            defined.completeExceptionally(e)
+            throw e
+        }
+
+        /**
+         * @return the classes, or `null` if they have been unloaded
+         */
+        fun await(): Map<String, Class<*>>? {
+            val references = try {
+                defined.join()
+            } catch (e: CompletionException) {
+                throw e.cause ?: e
+            }
+
+            val classes = LinkedHashMap<String, Class<*>>()
+
+            references.forEach { (name, reference) -> classes[name] = reference.get() ?: return null }
+
+            return classes
+        }
+    }
+
+    /**
+     * Defines the classes of one unit, loading any of them that the others refer to as they are defined.
+     */
+    private class UnitClassLoader(parent: ClassLoader?, private val classes: Map<String, ByteArray>) : ClassLoader(parent) {
+        private val pending = classes.mapKeysTo(HashMap()) { (name, _) -> name.replace('/', '.') }
+
+        fun defineAll(): Map<String, Class<*>> {
+            val defined = classes.keys.associateWithTo(LinkedHashMap()) { loadClass(it.replace('/', '.')) }
+            pending.clear()
+            return defined
+        }
+
+        // Classes of the unit take precedence over any of the same name the parent can see
+        override fun loadClass(name: String, resolve: Boolean): Class<*> = synchronized(getClassLoadingLock(name)) {
+            findLoadedClass(name) ?: if (pending.containsKey(name)) findClass(name) else super.loadClass(name, resolve)
+        }
+
+        override fun findClass(name: String): Class<*> {
+            val bytes = pending[name] ?: throw ClassNotFoundException(name)
+            return defineClass(name, bytes, 0, bytes.size)
+        }
+    }
+
+    /**
+     * `Lookup.defineHiddenClass`, found reflectively as it is newer than the Java version JASM targets.
+     */
+    private object HiddenClasses {
+        val defineHidden: ((MethodHandles.Lookup, ByteArray) -> Class<*>)? = try {
+            val noOptions = ReflectArray.newInstance(Class.forName("java.lang.invoke.MethodHandles\$Lookup\$ClassOption"), 0)
+            val method = MethodHandles.Lookup::class.java.getMethod("defineHiddenClass",
+                ByteArray::class.java, Boolean::class.javaPrimitiveType, noOptions.javaClass)
+
+            val define = { lookup: MethodHandles.Lookup, bytes: ByteArray ->
+                try {
+                    (method.invoke(lookup, bytes, false, noOptions) as MethodHandles.Lookup).lookupClass()
+                } catch (e: InvocationTargetException) {
+                    throw e.cause ?: e
+                }
+            }
+
+            define
+        } catch (e: ReflectiveOperationException) {
+            null
+        }
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+import org.objectweb.asm.Handle
+import org.objectweb.asm.MethodVisitor
+import org.objectweb.asm.Opcodes
+import java.util.function.Consumer
+
+/**
+ * Builds the code of a method, one JASM instruction at a time, without any JASM text - for
+ * generating code at runtime. The code is generated straight into an ASM method visitor, in the
+ * same way as the assembler generates it.
+ *
+ * There is a method for each JASM instruction, taking the same operands, with names in JVM
+ * internal form and descriptors as in class files (e.g. `(I)Ljava/lang/Object;`). Instructions
+ * that are Java or Kotlin keywords have a trailing underscore (`goto_`, `instanceof_`, `new_`
+ * and `return_`). Labels are referred to by name, and can be used before they are declared.
+ *
+ * Each method returns the builder, so calls can be chained from Java. From Kotlin, the
+ * builder is usually the receiver of a lambda (see [JasmClassBuilder.method]).
+ *
+ * Invalid operands (e.g. `iconst(6)`) throw `IllegalArgumentException` as they are given.
+ */
+@JasmDslMarker
+class JasmCodeBuilder internal constructor(private val code: CodeEmitter) {
+    private val mv = code.methodVisitor
+
+    companion object {
+        /**
+         * Build a complete method body into the given visitor, from `visitCode` through to
+         * `visitEnd`.
+         *
+         * Max stack and locals are visited as zero, so the visitor should compute them (and stack
+         * map frames, if the class format needs them), e.g. by writing to a `ClassWriter` created
+         * with `COMPUTE_FRAMES`.
+         *
+         * @param methodVisitor The visitor of the method, before any code has been visited
+         * @param body Builds the code of the method
+         *
+         * @throws IllegalStateException if labels were used but not declared
+         */
+        @JvmStatic
+        fun generate(methodVisitor: MethodVisitor, body: Consumer<JasmCodeBuilder>) {
+            val code = CodeEmitter(methodVisitor)
+
+            methodVisitor.visitCode()
+            body.accept(JasmCodeBuilder(code))
+
+            val undeclared = code.declareUndeclaredLabels()
+            check(undeclared.isEmpty()) { "Labels used but not declared: $undeclared" }
+
+            methodVisitor.visitMaxs(0, 0)
+            methodVisitor.visitEnd()
+        }
+
+        /**
+         * A `catch` block, for [tryCatch].
+         *
+         * @param type The internal name of the exception type caught
+         * @param handler Builds the code of the block
+         */
+        @JvmStatic
+        fun catching(type: String, handler: Consumer<JasmCodeBuilder>) = Catch(type, handler)
+    }
+
+    /**
+     * A `catch` block, for [tryCatch].
+     */
+    class Catch internal constructor(internal val type: String, internal val handler: Consumer<JasmCodeBuilder>)
+
+    // Labels and blocks
+
+    fun label(name: String) = apply { code.label(name) }
+
+    /**
+     * An exception handler - if an exception of the given type (or any type, if it is `null`) is
+     * thrown between the `start` and `end` labels, jump to the `handler` label.
+     */
+    fun exception(start: String, end: String, handler: String, type: String?) =
+        apply { code.exceptionHandler(start, end, handler, type) }
+
+    /**
+     * A `try` block, and its `catch` blocks, laid out as JASM lays out `try` / `catch`.
+     */
+    fun tryCatch(body: Consumer<JasmCodeBuilder>, vararg catches: Catch) = apply {
+        require(catches.isNotEmpty()) { "try block must have at least one catch block" }
+
+        val tryCatch = code.tryBlock()
+        body.accept(this)
+
+        catches.forEach {
+            tryCatch.catchBlock(it.type)
+            it.handler.accept(this)
+        }
+
+        tryCatch.end()
+    }
+
+    /**
+     * A `try` block with a single `catch` block.
+     */
+    fun tryCatch(body: Consumer<JasmCodeBuilder>, type: String, handler: Consumer<JasmCodeBuilder>) =
+        tryCatch(body, Catch(type, handler))
+
+    /**
+     * A stack map frame, as for `MethodVisitor.visitFrame`. Usually not needed, as the assembler
+     * computes frames.
+     */
+    fun frame(type: Int, locals: Array<Any>?, stack: Array<Any>?) =
+        apply { mv.visitFrame(type, locals?.size ?: 0, locals, stack?.size ?: 0, stack) }
+
+    // Instructions with no operands
+
+    fun aaload() = insn(Opcodes.AALOAD)
+    fun aastore() = insn(Opcodes.AASTORE)
+    fun aconst_null() = insn(Opcodes.ACONST_NULL)
+    fun areturn() = insn(Opcodes.ARETURN)
+    fun arraylength() = insn(Opcodes.ARRAYLENGTH)
+    fun athrow() = insn(Opcodes.ATHROW)
+    fun baload() = insn(Opcodes.BALOAD)
+    fun bastore() = insn(Opcodes.BASTORE)
+    fun caload() = insn(Opcodes.CALOAD)
+    fun castore() = insn(Opcodes.CASTORE)
+    fun d2f() = insn(Opcodes.D2F)
+    fun d2i() = insn(Opcodes.D2I)
+    fun d2l() = insn(Opcodes.D2L)
+    fun dadd() = insn(Opcodes.DADD)
+    fun daload() = insn(Opcodes.DALOAD)
+    fun dastore() = insn(Opcodes.DASTORE)
+    fun dcmpg() = insn(Opcodes.DCMPG)
+    fun dcmpl() = insn(Opcodes.DCMPL)
+    fun ddiv() = insn(Opcodes.DDIV)
+    fun dmul() = insn(Opcodes.DMUL)
+    fun dneg() = insn(Opcodes.DNEG)
+    fun drem() = insn(Opcodes.DREM)
+    fun dreturn() = insn(Opcodes.DRETURN)
+    fun dsub() = insn(Opcodes.DSUB)
+    fun dup() = insn(Opcodes.DUP)
+    fun dup_x1() = insn(Opcodes.DUP_X1)
+    fun dup_x2() = insn(Opcodes.DUP_X2)
+    fun dup2() = insn(Opcodes.DUP2)
+    fun dup2_x1() = insn(Opcodes.DUP2_X1)
+    fun dup2_x2() = insn(Opcodes.DUP2_X2)
+    fun f2d() = insn(Opcodes.F2D)
+    fun f2i() = insn(Opcodes.F2I)
+    fun f2l() = insn(Opcodes.F2L)
+    fun fadd() = insn(Opcodes.FADD)
+    fun faload() = insn(Opcodes.FALOAD)
+    fun fastore() = insn(Opcodes.FASTORE)
+    fun fcmpg() = insn(Opcodes.FCMPG)
+    fun fcmpl() = insn(Opcodes.FCMPL)
+    fun fdiv() = insn(Opcodes.FDIV)
+    fun fmul() = insn(Opcodes.FMUL)
+    fun fneg() = insn(Opcodes.FNEG)
+    fun frem() = insn(Opcodes.FREM)
+    fun freturn() = insn(Opcodes.FRETURN)
+    fun fsub() = insn(Opcodes.FSUB)
+    fun i2b() = insn(Opcodes.I2B)
+    fun i2c() = insn(Opcodes.I2C)
+    fun i2d() = insn(Opcodes.I2D)
+    fun i2f() = insn(Opcodes.I2F)
+    fun i2l() = insn(Opcodes.I2L)
+    fun i2s() = insn(Opcodes.I2S)
+    fun iadd() = insn(Opcodes.IADD)
+    fun iaload() = insn(Opcodes.IALOAD)
+    fun iand() = insn(Opcodes.IAND)
+    fun iastore() = insn(Opcodes.IASTORE)
+    fun idiv() = insn(Opcodes.IDIV)
+    fun imul() = insn(Opcodes.IMUL)
+    fun ineg() = insn(Opcodes.INEG)
+    fun ior() = insn(Opcodes.IOR)
+    fun irem() = insn(Opcodes.IREM)
+    fun ireturn() = insn(Opcodes.IRETURN)
+    fun ishl() = insn(Opcodes.ISHL)
+    fun ishr() = insn(Opcodes.ISHR)
+    fun isub() = insn(Opcodes.ISUB)
+    fun iushr() = insn(Opcodes.IUSHR)
+    fun ixor() = insn(Opcodes.IXOR)
+    fun l2d() = insn(Opcodes.L2D)
+    fun l2f() = insn(Opcodes.L2F)
+    fun l2i() = insn(Opcodes.L2I)
+    fun ladd() = insn(Opcodes.LADD)
+    fun laload() = insn(Opcodes.LALOAD)
+    fun land() = insn(Opcodes.LAND)
+    fun lastore() = insn(Opcodes.LASTORE)
+    fun lcmp() = insn(Opcodes.LCMP)
+    fun ldiv() = insn(Opcodes.LDIV)
+    fun lmul() = insn(Opcodes.LMUL)
+    fun lneg() = insn(Opcodes.LNEG)
+    fun lor() = insn(Opcodes.LOR)
+    fun lrem() = insn(Opcodes.LREM)
+    fun lreturn() = insn(Opcodes.LRETURN)
+    fun lshl() = insn(Opcodes.LSHL)
+    fun lshr() = insn(Opcodes.LSHR)
+    fun lsub() = insn(Opcodes.LSUB)
+    fun lushr() = insn(Opcodes.LUSHR)
+    fun lxor() = insn(Opcodes.LXOR)
+    fun monitorenter() = insn(Opcodes.MONITORENTER)
+    fun monitorexit() = insn(Opcodes.MONITOREXIT)
+    fun nop() = insn(Opcodes.NOP)
+    fun pop() = insn(Opcodes.POP)
+    fun pop2() = insn(Opcodes.POP2)
+    fun return_() = insn(Opcodes.RETURN)
+    fun saload() = insn(Opcodes.SALOAD)
+    fun sastore() = insn(Opcodes.SASTORE)
+    fun swap() = insn(Opcodes.SWAP)
+
+    // Local variables
+
+    fun aload(index: Int) = varInsn(Opcodes.ALOAD, index)
+    fun astore(index: Int) = varInsn(Opcodes.ASTORE, index)
+    fun dload(index: Int) = varInsn(Opcodes.DLOAD, index)
+    fun dstore(index: Int) = varInsn(Opcodes.DSTORE, index)
+    fun fload(index: Int) = varInsn(Opcodes.FLOAD, index)
+    fun fstore(index: Int) = varInsn(Opcodes.FSTORE, index)
+    fun iload(index: Int) = varInsn(Opcodes.ILOAD, index)
+    fun istore(index: Int) = varInsn(Opcodes.ISTORE, index)
+    fun lload(index: Int) = varInsn(Opcodes.LLOAD, index)
+    fun lstore(index: Int) = varInsn(Opcodes.LSTORE, index)
+    fun iinc(index: Int, increment: Int) = apply { mv.visitIincInsn(index, increment) }
+    fun ret(index: Int) = apply { code.intInsn(Opcodes.RET, index) }
+
+    // Constants
+
+    fun bipush(value: Int) = apply { code.intInsn(Opcodes.BIPUSH, value) }
+    fun sipush(value: Int) = apply { code.intInsn(Opcodes.SIPUSH, value) }
+    fun iconst(value: Int) = constInsn("iconst", code.iconstOpcode(value), value, "-1 to 5")
+    fun iconst(value: Boolean) = iconst(if (value) 1 else 0)
+    fun lconst(value: Int) = constInsn("lconst", code.lconstOpcode(value), value, "0 or 1")
+    fun fconst(value: Int) = constInsn("fconst", code.fconstOpcode(value), value, "0, 1 or 2")
+    fun dconst(value: Int) = constInsn("dconst", code.dconstOpcode(value), value, "0 or 1")
+
+    /**
+     * Load a constant - an `Integer`, `Float`, `Long`, `Double`, `String`, `Type`, `Handle` or
+     * `ConstantDynamic`. As in JASM, booleans are loaded as `0` or `1`.
+     */
+    fun ldc(value: Any) = apply { mv.visitLdcInsn(constant(value)) }
+
+    // Jumps and switches
+
+    fun goto_(label: String) = jump(Opcodes.GOTO, label)
+    fun if_acmpeq(label: String) = jump(Opcodes.IF_ACMPEQ, label)
+    fun if_acmpne(label: String) = jump(Opcodes.IF_ACMPNE, label)
+    fun if_icmpeq(label: String) = jump(Opcodes.IF_ICMPEQ, label)
+    fun if_icmpge(label: String) = jump(Opcodes.IF_ICMPGE, label)
+    fun if_icmpgt(label: String) = jump(Opcodes.IF_ICMPGT, label)
+    fun if_icmple(label: String) = jump(Opcodes.IF_ICMPLE, label)
+    fun if_icmplt(label: String) = jump(Opcodes.IF_ICMPLT, label)
+    fun if_icmpne(label: String) = jump(Opcodes.IF_ICMPNE, label)
+    fun ifeq(label: String) = jump(Opcodes.IFEQ, label)
+    fun ifge(label: String) = jump(Opcodes.IFGE, label)
+    fun ifgt(label: String) = jump(Opcodes.IFGT, label)
+    fun ifle(label: String) = jump(Opcodes.IFLE, label)
+    fun iflt(label: String) = jump(Opcodes.IFLT, label)
+    fun ifne(label: String) = jump(Opcodes.IFNE, label)
+    fun ifnonnull(label: String) = jump(Opcodes.IFNONNULL, label)
+    fun ifnull(label: String) = jump(Opcodes.IFNULL, label)
+    fun jsr(label: String) = jump(Opcodes.JSR, label)
+
+    /**
+     * A lookupswitch, with the label to jump to for each key (in any order - they are sorted by key).
+     */
+    fun lookupswitch(default: String, cases: Map<Int, String>) = apply {
+        require(cases.isNotEmpty()) { "lookupswitch must have at least one case" }
+        code.lookupSwitch(default, cases.keys.toIntArray(), cases.values.toList())?.let { throw IllegalArgumentException(it) }
+    }
+
+    /**
+     * A tableswitch over the range of the keys - as in JASM, keys in that range without a case
+     * jump to the default.
+     */
+    fun tableswitch(default: String, cases: Map<Int, String>) = apply {
+        require(cases.isNotEmpty()) { "tableswitch must have at least one case" }
+        code.tableSwitch(default, cases.keys.toIntArray(), cases.values.toList())?.let { throw IllegalArgumentException(it) }
+    }
+
+    // Objects, arrays and types
+
+    fun anewarray(type: String) = typeInsn(Opcodes.ANEWARRAY, type)
+    fun checkcast(type: String) = typeInsn(Opcodes.CHECKCAST, type)
+    fun instanceof_(type: String) = typeInsn(Opcodes.INSTANCEOF, type)
+    fun new_(type: String) = typeInsn(Opcodes.NEW, type)
+
+    /**
+     * Create an array of a primitive type.
+     *
+     * @param type One of the `T_xxx` constants from `org.objectweb.asm.Opcodes`
+     */
+    fun newarray(type: Int) = apply {
+        require(type in Opcodes.T_BOOLEAN..Opcodes.T_LONG) { "Invalid newarray type $type" }
+        code.intInsn(Opcodes.NEWARRAY, type)
+    }
+
+    /**
+     * Create a multi-dimensional array.
+     *
+     * @param descriptor The array type
+     * @param dimensions How many dimensions to create - all of them if omitted
+     */
+    @JvmOverloads
+    fun multianewarray(descriptor: String, dimensions: Int = descriptor.count { it == '[' }) =
+        apply { mv.visitMultiANewArrayInsn(descriptor, dimensions) }
+
+    // Fields and methods
+
+    fun getfield(owner: String, name: String, descriptor: String) = fieldInsn(Opcodes.GETFIELD, owner, name, descriptor)
+    fun getstatic(owner: String, name: String, descriptor: String) = fieldInsn(Opcodes.GETSTATIC, owner, name, descriptor)
+    fun putfield(owner: String, name: String, descriptor: String) = fieldInsn(Opcodes.PUTFIELD, owner, name, descriptor)
+    fun putstatic(owner: String, name: String, descriptor: String) = fieldInsn(Opcodes.PUTSTATIC, owner, name, descriptor)
+
+    fun invokeinterface(owner: String, name: String, descriptor: String) =
+        methodInsn(Opcodes.INVOKEINTERFACE, owner, name, descriptor, true)
+
+    fun invokespecial(owner: String, name: String, descriptor: String) =
+        methodInsn(Opcodes.INVOKESPECIAL, owner, name, descriptor, false)
+
+    /**
+     * Invoke a static method.
+     *
+     * @param isInterface `true` if the owner is an interface (`invokestatic*` in JASM)
+     */
+    @JvmOverloads
+    fun invokestatic(owner: String, name: String, descriptor: String, isInterface: Boolean = false) =
+        methodInsn(Opcodes.INVOKESTATIC, owner, name, descriptor, isInterface)
+
+    /**
+     * Invoke a virtual method.
+     *
+     * @param isInterface `true` if the owner is an interface (`invokevirtual*` in JASM)
+     */
+    @JvmOverloads
+    fun invokevirtual(owner: String, name: String, descriptor: String, isInterface: Boolean = false) =
+        methodInsn(Opcodes.INVOKEVIRTUAL, owner, name, descriptor, isInterface)
+
+    /**
+     * Invoke a dynamically-computed call site.
+     *
+     * @param bootstrap The bootstrap method
+     * @param arguments The static arguments to the bootstrap method, as for [ldc]
+     */
+    fun invokedynamic(name: String, descriptor: String, bootstrap: Handle, vararg arguments: Any) = apply {
+        mv.visitInvokeDynamicInsn(name, descriptor, bootstrap, *Array(arguments.size) { constant(arguments[it]) })
+    }
+
+    private fun insn(opcode: Int) = apply { mv.visitInsn(opcode) }
+
+    private fun varInsn(opcode: Int, index: Int) = apply { mv.visitVarInsn(opcode, index) }
+
+    private fun jump(opcode: Int, label: String) = apply { code.jump(opcode, label) }
+
+    private fun typeInsn(opcode: Int, type: String) = apply { mv.visitTypeInsn(opcode, type) }
+
+    private fun fieldInsn(opcode: Int, owner: String, name: String, descriptor: String) =
+        apply { mv.visitFieldInsn(opcode, owner, name, descriptor) }
+
+    private fun methodInsn(opcode: Int, owner: String, name: String, descriptor: String, isInterface: Boolean) =
+        apply { mv.visitMethodInsn(opcode, owner, name, descriptor, isInterface) }
+
+    private fun constInsn(name: String, opcode: Int, value: Int, expected: String) = apply {
+        require(opcode != OpcodeTable.NONE) { "Invalid operand to $name: $value (expecting $expected)" }
+        mv.visitInsn(opcode)
+    }
+
+    private fun constant(value: Any) = if (value is Boolean) (if (value) 1 else 0) else value
+}
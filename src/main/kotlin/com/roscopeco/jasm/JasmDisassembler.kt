@@ -7,9 +7,13 @@ package com.roscopeco.jasm
 
 import com.roscopeco.jasm.errors.StandardErrorCollector
 import org.objectweb.asm.ClassReader
+import org.objectweb.asm.ClassVisitor
+import org.objectweb.asm.MethodVisitor
+import org.objectweb.asm.Opcodes
 import java.io.IOException
 import java.io.InputStream
 import java.io.UncheckedIOException
+import java.time.Duration
 import java.util.function.Supplier
 
 /**
@@ -18,13 +22,25 @@ import java.util.function.Supplier
  * **Note**: The disassembler **will** close the stream returned by the supplier when it is done!
  *
  * @param unitName The (display) name of the compilation unit
+ * @param lineNumbers Whether to emit line number comments
+ * @param frames Whether to emit stack map `frame` directives
  * @param source A supplier of `InputStream`
+ * @param timeout How long disassembly may take before it is abandoned with a
+ *          [JasmCancelledException], or `null` for no limit. Disassembly is also abandoned if the
+ *          disassembling thread is interrupted.
  */
 class JasmDisassembler(
     private val unitName: String,
     private val lineNumbers: Boolean,
+    private val frames: Boolean,
     private val source: Supplier<InputStream>,
+    private val timeout: Duration?,
 ) {
+    constructor(unitName: String, lineNumbers: Boolean, frames: Boolean, source: Supplier<InputStream>)
+            : this(unitName, lineNumbers, frames, source, null)
+
+    constructor(unitName: String, lineNumbers: Boolean, source: Supplier<InputStream>)
+            : this(unitName, lineNumbers, false, source)
 
     /**
      * Disassemble Java bytecode to JASM source
@@ -32,14 +48,16 @@ class JasmDisassembler(
      * @return JASM source, suitable for passing to JasmAssembler
      */
     fun disassemble(): String {
+        val deadline = Deadline("Disassembly of $unitName", timeout)
+
         try {
             source.get().use { input ->
                 val errorCollector = StandardErrorCollector()
 
                 val classReader = ClassReader(input)
 
-                val visitor = JasmDisassemblingVisitor(unitName, lineNumbers, errorCollector)
-                classReader.accept(visitor, ClassReader.SKIP_FRAMES)
+                val visitor = JasmDisassemblingVisitor(Modifiers(), unitName, lineNumbers, frames, errorCollector)
+                classReader.accept(checkingDeadline(visitor, deadline), if (frames) 0 else ClassReader.SKIP_FRAMES)
 
                 if (errorCollector.hasErrors()) {
                     throw AssemblyException(errorCollector.getErrors())
@@ -51,4 +69,17 @@ class JasmDisassembler(
             throw UncheckedIOException(e)
         }
     }
+
+    private fun checkingDeadline(visitor: ClassVisitor, deadline: Deadline) = object : ClassVisitor(Opcodes.ASM9, visitor) {
+        override fun visitMethod(
+            access: Int,
+            name: String?,
+            descriptor: String?,
+            signature: String?,
+            exceptions: Array<out String>?
+        ): MethodVisitor? {
+            deadline.check()
+            return super.visitMethod(access, name, descriptor, signature, exceptions)
+        }
+    }
 }
\ No newline at end of file
@@ -21,11 +21,15 @@ class JasmDisassemblingVisitor(
     private val modifiers: Modifiers,
     private val unitName: String,
     private val lineNumbers: Boolean,
+    private val frames: Boolean,
     private val errorCollector: ErrorCollector
 ) : ClassVisitor(Opcodes.ASM9) {
     companion object {
         private val LINE_SEPARATOR = System.lineSeparator()
 
+        // Class names that would otherwise be read back as special frame types
+        private val FRAME_TYPE_NAMES = setOf("top", "null", "uninitialized_this")
+
         private val OPCODE_NAMES = mapOf(
             Opcodes.AALOAD to "aaload",
             Opcodes.AASTORE to "aastore",
@@ -228,6 +232,7 @@ class JasmDisassemblingVisitor(
 
     constructor(unitName: String, errorCollector: ErrorCollector) : this(unitName, false, errorCollector)
     constructor(unitName: String, lineNumbers: Boolean, errorCollector: ErrorCollector) : this(Modifiers(), unitName, lineNumbers, errorCollector)
+    constructor(modifiers: Modifiers, unitName: String, lineNumbers: Boolean, errorCollector: ErrorCollector) : this(modifiers, unitName, lineNumbers, false, errorCollector)
 
     fun output() = output(SpaceIndenter(4))
 
@@ -370,7 +375,7 @@ class JasmDisassemblingVisitor(
 
     private fun disassembleConstArg(arg: Any?, indenter: Indenter): String = when (arg) {
         null -> "null" // This should probably never happen!
-        is String -> "\"${escapeString(arg)}\""
+        is String -> StringLiterals.escape(arg)
         is Number -> disassembleNumber(arg)
         is Type -> if (arg.sort == Type.METHOD) disassembleMethodDescriptor(arg.descriptor) else handleBareType(arg.internalName)
         is Handle -> disassembleMethodHandle(arg)
@@ -460,8 +465,6 @@ class JasmDisassemblingVisitor(
         }
     }
 
-    private fun escapeString(value: String) = value.replace("\"", "\"\"")
-
     private interface CodeElement {
         fun generate(indenter: Indenter): String
     }
@@ -547,7 +550,7 @@ class JasmDisassemblingVisitor(
 
         protected fun mapSingleElement(element: Any?) = when (element) {
             null            -> "null" // This should probably never happen!
-            is String       -> "\"${element}\""
+            is String       -> StringLiterals.escape(element)
             is Number       -> disassembleNumber(element)
             is Type         -> handleBareType(element.internalName)
             else -> {
@@ -620,7 +623,7 @@ class JasmDisassemblingVisitor(
         }
 
         private fun disassembleFieldInitializerValue(value: Any) = when (value) {
-            is String -> "\"${escapeString(value)}\""
+            is String -> StringLiterals.escape(value)
             is Number -> disassembleNumber(value)
             else -> TODO("Unsupported field initializer ${value.javaClass}")
         }
@@ -812,6 +815,43 @@ class JasmDisassemblingVisitor(
             blocks.add(Line("${OPCODE_NAMES[opcode]} $varIndex"))
         }
 
+        override fun visitFrame(type: Int, numLocal: Int, local: Array<out Any>?, numStack: Int, stack: Array<out Any>?) {
+            if (!frames) {
+                return
+            }
+
+            when (type) {
+                Opcodes.F_NEW, Opcodes.F_FULL ->
+                    blocks.add(Line("frame full ${frameTypes(numLocal, local)} ${frameTypes(numStack, stack)}"))
+                Opcodes.F_SAME -> blocks.add(Line("frame same"))
+                Opcodes.F_SAME1 -> blocks.add(Line("frame same1 ${frameTypes(1, stack)}"))
+                Opcodes.F_APPEND -> blocks.add(Line("frame append ${frameTypes(numLocal, local)}"))
+                Opcodes.F_CHOP -> blocks.add(Line("frame chop $numLocal"))
+                else -> errorCollector.addError(DisassemblyError(unitName, DisassemblyContext.Frame,
+                    "Unknown frame type $type in method $name"))
+            }
+        }
+
+        private fun frameTypes(count: Int, types: Array<out Any>?) =
+            if (count == 0) "{}" else types!!.take(count).joinToString(", ", "{ ", " }") { frameType(it) }
+
+        private fun frameType(type: Any): String = when (type) {
+            Opcodes.TOP -> "top"
+            Opcodes.INTEGER -> "I"
+            Opcodes.FLOAT -> "F"
+            Opcodes.LONG -> "J"
+            Opcodes.DOUBLE -> "D"
+            Opcodes.NULL -> "null"
+            Opcodes.UNINITIALIZED_THIS -> "uninitialized_this"
+            is Label -> "uninitialized(${getLabelName(type)})"
+            is String -> when {
+                type.startsWith("[") -> disassembleTypeDescriptor(type)
+                FRAME_TYPE_NAMES.contains(type) -> "`$type`"
+                else -> LiteralNames.escape(type)
+            }
+            else -> type.toString()
+        }
+
         private fun formattedModifiers(modifierBitmap: Int): String {
             val modsStr = modifiers.disassembleMethodModifiers(modifierBitmap)
 
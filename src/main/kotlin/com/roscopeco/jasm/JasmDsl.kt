@@ -0,0 +1,66 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+@file:JvmName("JasmDsl")
+package com.roscopeco.jasm
+
+import org.objectweb.asm.Opcodes
+
+/**
+ * Marks the JASM builders, so that nested builder lambdas can't accidentally call the
+ * builders they are nested in.
+ */
+@DslMarker
+annotation class JasmDslMarker
+
+/**
+ * Build a class in Kotlin, e.g.:
+ *
+ * ```kotlin
+ * val bytes = jasmClass("com/example/Answer") {
+ *     interfaces("java/util/function/IntSupplier")
+ *
+ *     method("<init>", "()V") {
+ *         aload(0)
+ *         invokespecial("java/lang/Object", "<init>", "()V")
+ *         return_()
+ *     }
+ *
+ *     method("getAsInt", "()I") {
+ *         bipush(42)
+ *         ireturn()
+ *     }
+ * }.assemble()
+ * ```
+ *
+ * @param name The internal name of the class
+ */
+fun jasmClass(name: String, block: JasmClassBuilder.() -> Unit) = JasmClassBuilder(name).apply(block)
+
+/**
+ * Add a method, public by default.
+ */
+fun JasmClassBuilder.method(
+    name: String,
+    descriptor: String,
+    access: Int = Opcodes.ACC_PUBLIC,
+    body: JasmCodeBuilder.() -> Unit
+) = method(access, name, descriptor) { it.body() }
+
+/**
+ * A `try` block, and its `catch` blocks - each a pair of the exception type caught and the
+ * code of the block. E.g.:
+ *
+ * ```kotlin
+ * tryCatch({ invokestatic("com/example/Risky", "run", "()V") },
+ *     "java/lang/RuntimeException" to { pop() })
+ * ```
+ */
+fun JasmCodeBuilder.tryCatch(
+    body: JasmCodeBuilder.() -> Unit,
+    vararg catches: Pair<String, JasmCodeBuilder.() -> Unit>
+) = tryCatch({ it.body() }, *Array(catches.size) { i ->
+    JasmCodeBuilder.catching(catches[i].first) { catches[i].second(it) }
+})
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+import com.roscopeco.jasm.antlr.JasmLexer
+import com.roscopeco.jasm.antlr.JasmParser
+import com.roscopeco.jasm.errors.CollectingErrorListener
+import com.roscopeco.jasm.errors.StandardErrorCollector
+import org.antlr.v4.runtime.CharStreams
+import org.antlr.v4.runtime.CommonTokenStream
+import org.objectweb.asm.ClassVisitor
+import org.objectweb.asm.Label
+import org.objectweb.asm.MethodVisitor
+import org.objectweb.asm.Opcodes
+
+/**
+ * Assembles method bodies, or fragments of them, straight into existing ASM method visitors -
+ * e.g. to inject code into classes as they are transformed.
+ *
+ * The code is written exactly as it would be between the braces of a method in a class, and
+ * always uses the generated parser (the [AssemblerOptions.parserMode] is ignored). The lexer and
+ * parser are kept between calls, so an instance should be reused for many snippets. Instances
+ * are not thread-safe - use one per thread.
+ *
+ * @param options The assembler options (the class format, lexer mode and intern pool are used)
+ * @param unitName The name errors are reported against
+ */
+class JasmMethodAssembler @JvmOverloads constructor(
+    private val options: AssemblerOptions = AssemblerOptions(),
+    private val unitName: String = SNIPPET_UNIT_NAME,
+) {
+    private val modifiers = Modifiers()
+    private val lexer = JasmLexer(CharStreams.fromString(""))
+    private val parser = JasmParser(CommonTokenStream(lexer))
+
+    private companion object {
+        const val SNIPPET_UNIT_NAME = "<snippet>"
+
+        /**
+         * Snippets are generated straight into a method visitor, so nothing is visited on this.
+         */
+        val NO_CLASS = object : ClassVisitor(Opcodes.ASM9) { }
+    }
+
+    /**
+     * Assemble a complete method body into the given visitor, from `visitCode` through to
+     * `visitEnd`.
+     *
+     * Max stack and locals are visited as zero, so the visitor should compute them (and stack
+     * map frames, if the class format needs them), e.g. by writing to a `ClassWriter` created
+     * with `COMPUTE_FRAMES`.
+     *
+     * @param body The code of the method
+     * @param methodVisitor The visitor of the method, before any code has been visited
+     *
+     * @throws AssemblyException if the body has errors. If the body could be parsed, some of it
+     *          may already have been generated.
+     */
+    fun assembleMethod(body: CharSequence, methodVisitor: MethodVisitor) {
+        val stats = parse(body)
+
+        methodVisitor.visitCode()
+        generate(stats, methodVisitor, LabelTable())
+        methodVisitor.visitMaxs(0, 0)
+        methodVisitor.visitEnd()
+    }
+
+    /**
+     * Assemble a fragment of code into the given visitor, at the point the method it is
+     * generating has got to.
+     *
+     * The fragment may jump to labels it doesn't declare itself, as long as they are given in
+     * `labels` - these are usually labels of the method the fragment is injected into.
+     *
+     * @param code The code of the fragment
+     * @param methodVisitor The visitor of the method the fragment is part of
+     * @param labels Labels declared outside the fragment, by name
+     *
+     * @return the labels the fragment declares, by name
+     *
+     * @throws AssemblyException if the fragment has errors. If the fragment could be parsed, some
+     *          of it may already have been generated.
+     */
+    @JvmOverloads
+    fun assembleFragment(
+        code: CharSequence,
+        methodVisitor: MethodVisitor,
+        labels: Map<String, Label> = emptyMap(),
+    ): Map<String, Label> {
+        val stats = parse(code)
+        val labelTable = LabelTable()
+
+        labels.forEach { (name, label) -> labelTable.bind(name, label) }
+        generate(stats, methodVisitor, labelTable)
+
+        return labelTable.declaredLabels().filterKeys { it !in labels }
+    }
+
+    private fun parse(code: CharSequence): JasmParser.Stat_blockContext {
+        val errorCollector = StandardErrorCollector()
+        val input = CharStreams.fromString(code.toString(), unitName)
+
+        val tokens = if (options.lexerMode == LexerMode.FAST) {
+            CommonTokenStream(FastJasmLexer(input))
+        } else {
+            lexer.inputStream = input
+            lexer.removeErrorListeners()
+            lexer.addErrorListener(CollectingErrorListener(unitName, errorCollector))
+            CommonTokenStream(lexer)
+        }
+
+        parser.tokenStream = tokens
+        parser.removeErrorListeners()
+        parser.addErrorListener(CollectingErrorListener(unitName, errorCollector))
+
+        val stats = parser.method_body().stat_block()
+
+        if (errorCollector.hasErrors()) {
+            throw AssemblyException(errorCollector.getErrors())
+        }
+
+        return stats
+    }
+
+    private fun generate(stats: JasmParser.Stat_blockContext, methodVisitor: MethodVisitor, labels: LabelTable) {
+        val errorCollector = StandardErrorCollector()
+
+        JasmAssemblingVisitor(
+            NO_CLASS, modifiers, unitName, options.classFormat, errorCollector, null, options.internPool
+        ).generateCode(stats, methodVisitor, labels)
+
+        if (errorCollector.hasErrors()) {
+            throw AssemblyException(errorCollector.getErrors())
+        }
+    }
+}
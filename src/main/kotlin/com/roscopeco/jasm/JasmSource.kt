@@ -0,0 +1,139 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+import org.antlr.v4.runtime.CharStream
+import org.antlr.v4.runtime.CharStreams
+import org.antlr.v4.runtime.CodePointBuffer
+import org.antlr.v4.runtime.CodePointCharStream
+import java.io.InputStream
+import java.nio.ByteBuffer
+import java.nio.CharBuffer
+import java.nio.charset.Charset
+import java.nio.charset.StandardCharsets
+import java.util.Objects
+import java.util.function.Supplier
+
+/**
+ * A JASM compilation unit, along with the (display) name it should be assembled under.
+ *
+ * In-memory sources are handed to the lexer directly, without going through an `InputStream`.
+ *
+ * @param unitName The name of the compilation unit (shows up in errors and as an attribute in the class)
+ */
+class JasmSource private constructor(
+    val unitName: String,
+    private val generatedOpener: (() -> GeneratedUnit)? = null,
+    private val precompiledOpener: (() -> ByteBuffer)? = null,
+    private val opener: () -> CharStream,
+) {
+    internal fun open(): CharStream = opener()
+
+    /**
+     * The generated unit, if this source isn't JASM text (e.g. it is precompiled).
+     */
+    internal fun openGenerated(): GeneratedUnit? =
+        generatedOpener?.invoke() ?: precompiledOpener?.let { PrecompiledUnit.read(it()) }
+
+    /**
+     * The bytes of the precompiled unit, if this source is precompiled.
+     */
+    internal fun openPrecompiled(): ByteBuffer? = precompiledOpener?.invoke()
+
+    /**
+     * Whether this source is JASM text (rather than precompiled, or generated some other way).
+     */
+    internal val isText get() = generatedOpener == null && precompiledOpener == null
+
+    companion object {
+        /**
+         * Create a source from in-memory JASM text.
+         *
+         * **Note**: The text is read when the source is assembled, mutable `CharSequence`s
+         * should not be modified until then.
+         */
+        @JvmStatic
+        fun of(unitName: String, source: CharSequence) = JasmSource(unitName) {
+            if (source is String) {
+                CharStreams.fromString(source, unitName)
+            } else {
+                // ANTLR can only take chars from array-backed buffers
+                fromCharBuffer(unitName, CharBuffer.allocate(source.length).append(source).flip())
+            }
+        }
+
+        /**
+         * Create a source from encoded JASM text. The buffer's position is not modified.
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun of(unitName: String, source: ByteBuffer, charset: Charset = StandardCharsets.UTF_8) =
+            JasmSource(unitName) { fromCharBuffer(unitName, charset.decode(source.duplicate())) }
+
+        /**
+         * Create a source from a supplier of `InputStream`.
+         *
+         * **Note**: The stream returned by the supplier **will** be closed once it has been read!
+         */
+        @JvmStatic
+        fun of(unitName: String, source: Supplier<InputStream>) = JasmSource(unitName) {
+            source.get().use { input ->
+                Objects.requireNonNull(CharStreams.fromStream(input), "Failed to open stream for $unitName")
+            }
+        }
+
+        /**
+         * Create a source from a unit precompiled with [JasmAssembler.precompile]. The buffer's
+         * position is not modified.
+         *
+         * The unit name should be the one it was precompiled under - it is only used in errors, the
+         * classes keep the source attribute they were precompiled with.
+         */
+        @JvmStatic
+        fun precompiled(unitName: String, source: ByteBuffer) = precompiledSource(unitName) { source.duplicate() }
+
+        /**
+         * Create a source from a unit precompiled with [JasmAssembler.precompile].
+         *
+         * **Note**: The array is read when the source is assembled, it should not be modified until then.
+         */
+        @JvmStatic
+        fun precompiled(unitName: String, source: ByteArray) = precompiledSource(unitName) { ByteBuffer.wrap(source) }
+
+        /**
+         * Create a source from a supplier of `InputStream` of a unit precompiled with [JasmAssembler.precompile].
+         *
+         * **Note**: The stream returned by the supplier **will** be closed once it has been read!
+         */
+        @JvmStatic
+        fun precompiled(unitName: String, source: Supplier<InputStream>) = precompiledSource(unitName) {
+            ByteBuffer.wrap(source.get().use { it.readBytes() })
+        }
+
+        /**
+         * Create a source from a unit that generates its own classes.
+         */
+        internal fun generated(unitName: String, unit: GeneratedUnit) = JasmSource(unitName, { unit }) {
+            throw IllegalStateException("$unitName is not JASM text")
+        }
+
+        /**
+         * Create a source from JASM text that has already been opened.
+         */
+        internal fun opened(unitName: String, stream: CharStream) = JasmSource(unitName) { stream.also { it.seek(0) } }
+
+        private fun precompiledSource(unitName: String, opener: () -> ByteBuffer) =
+            JasmSource(unitName, precompiledOpener = opener) {
+                throw IllegalStateException("$unitName is precompiled")
+            }
+
+        private fun fromCharBuffer(unitName: String, chars: CharBuffer): CharStream {
+            val builder = CodePointBuffer.builder(chars.remaining())
+            builder.append(chars)
+            return CodePointCharStream.fromBuffer(builder.build(), unitName)
+        }
+    }
+}
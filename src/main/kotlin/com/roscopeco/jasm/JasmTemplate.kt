@@ -0,0 +1,181 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+import org.objectweb.asm.ClassVisitor
+import org.objectweb.asm.tree.ClassNode
+import java.nio.ByteBuffer
+import java.util.function.Function
+
+/**
+ * A JASM compilation unit with placeholders, which is parsed (and checked for errors) once, and
+ * can then be instantiated many times with different values for the placeholders, without being
+ * parsed again.
+ *
+ * Placeholders are written `$$name$$`, and can be used anywhere in names (of classes, members
+ * and the types in descriptors) and in string literals - e.g. `class com/example/$$name$$Impl`
+ * or `ldc "Hello, $$who$$"`. A string literal that is just a placeholder (such as
+ * `ldc "$$limit$$"`) can instead be bound to any other constant ASM supports - an `Integer`,
+ * `Long`, `Float`, `Double`, `Type`, `Handle` or `ConstantDynamic` - which is then used as the
+ * constant in place of the string wherever it is loaded (by `ldc`, or as a bootstrap method
+ * argument). Everywhere else (including field values and annotations, which must be strings),
+ * values that aren't strings are converted with `toString`.
+ *
+ * Any `$$` followed by a name and another `$$` is a placeholder. Where a literal `$$` is wanted
+ * instead (e.g. in generated names like `Foo$$Proxy$$1`), write it as `$$$$` - so
+ * `class $$name$$$$$$Proxy$$$$1` is a class named for the `name` placeholder, followed by
+ * `$$Proxy$$1`.
+ *
+ * Since placeholders are substituted after parsing, they can't stand for anything else - e.g.
+ * keywords, modifiers or instruction operands other than constants.
+ *
+ * Templates are thread-safe, and can be instantiated from many threads at once.
+ */
+class JasmTemplate private constructor(
+    private val unitName: String,
+    private val options: AssemblerOptions,
+    private val unit: PrecompiledUnit,
+) {
+    // For each string of the unit with placeholders in it: literal text, alternating with placeholder names
+    private val templated = unit.strings.withIndex()
+        .mapNotNull { (i, string) -> split(string)?.let { i to it } }
+
+    /**
+     * The names of the placeholders in the template.
+     */
+    val placeholders: Set<String> = templated
+        .flatMapTo(LinkedHashSet()) { (_, parts) -> parts.filterIndexed { i, _ -> i % 2 == 1 } }
+
+    companion object {
+        // A placeholder, or an escaped `$$` (with no name)
+        private val PLACEHOLDER = Regex("""\$\$\$\$|\$\$([A-Za-z_][A-Za-z_0-9]*)\$\$""")
+
+        /**
+         * Parse a template.
+         *
+         * @param source The JASM compilation unit with placeholders
+         * @param options The assembler options to instantiate the template with
+         *
+         * @throws AssemblyException if the template has errors
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun compile(source: JasmSource, options: AssemblerOptions = AssemblerOptions()) = JasmTemplate(
+            source.unitName,
+            options,
+            PrecompiledUnit.read(ByteBuffer.wrap(JasmAssembler(source, options).precompile()))
+        )
+
+        private fun split(string: String): List<String>? {
+            if (!string.contains("$$")) {
+                return null
+            }
+
+            val matches = PLACEHOLDER.findAll(string).toList()
+
+            if (matches.isEmpty()) {
+                return null
+            }
+
+            val parts = ArrayList<String>()
+            val text = StringBuilder()
+            var last = 0
+
+            matches.forEach {
+                text.append(string, last, it.range.first)
+                val name = it.groups[1]
+
+                if (name == null) {
+                    text.append("$$")
+                } else {
+                    parts.add(text.toString())
+                    parts.add(name.value)
+                    text.setLength(0)
+                }
+
+                last = it.range.last + 1
+            }
+
+            return parts.also { it.add(text.append(string, last, string.length).toString()) }
+        }
+    }
+
+    /**
+     * Instantiate the template, and assemble it to Java bytecode.
+     *
+     * @param bindings The value for each placeholder, by name
+     *
+     * @return bytecode for each class, keyed by internal name, in declaration order
+     * @throws IllegalArgumentException if a placeholder has no value, or a value is given for
+     *          something that isn't a placeholder
+     */
+    fun instantiate(bindings: Map<String, Any>): Map<String, ByteArray> = assembler(bindings).assembleClasses()
+
+    /**
+     * Instantiate the template, and assemble it to ASM class nodes. See [JasmAssembler.assembleClassNodes].
+     *
+     * @param bindings The value for each placeholder, by name
+     *
+     * @return a class node for each class, keyed by internal name, in declaration order
+     * @throws IllegalArgumentException if a placeholder has no value, or a value is given for
+     *          something that isn't a placeholder
+     */
+    fun instantiateClassNodes(bindings: Map<String, Any>): Map<String, ClassNode> =
+        assembler(bindings).assembleClassNodes()
+
+    /**
+     * Instantiate the template straight into ASM class visitors.
+     *
+     * The classes are visited as JASM generates them - the options' transformers are not applied,
+     * and stack map frames and max stack / locals are not computed, so the visitor should compute
+     * them (e.g. by writing to a `ClassWriter` created with `COMPUTE_FRAMES`).
+     *
+     * @param bindings The value for each placeholder, by name
+     * @param visitors Gives the visitor for each class, by internal name
+     *
+     * @throws IllegalArgumentException if a placeholder has no value, or a value is given for
+     *          something that isn't a placeholder
+     */
+    fun instantiateInto(bindings: Map<String, Any>, visitors: Function<String, ClassVisitor>) {
+        val instance = substituted(bindings)
+
+        instance.classes.forEachIndexed { i, entry -> instance.replay(i, visitors.apply(entry.name)) }
+    }
+
+    private fun assembler(bindings: Map<String, Any>) =
+        JasmAssembler(JasmSource.generated(unitName, substituted(bindings)), options)
+
+    private fun substituted(bindings: Map<String, Any>): PrecompiledUnit {
+        if (bindings.keys != placeholders) {
+            val missing = placeholders - bindings.keys
+            val unknown = bindings.keys - placeholders
+
+            throw IllegalArgumentException(when {
+                missing.isNotEmpty() -> "No value for placeholder(s) $missing of template $unitName"
+                else -> "No placeholder(s) $unknown in template $unitName"
+            })
+        }
+
+        val strings = unit.strings.toMutableList()
+        var constants: Array<Any?>? = null
+
+        templated.forEach { (i, parts) ->
+            if (parts.size == 3 && parts[0].isEmpty() && parts[2].isEmpty()) {
+                val value = bindings[parts[1]]!!
+
+                if (value !is String) {
+                    (constants ?: arrayOfNulls<Any>(strings.size).also { constants = it })[i] = value
+                }
+            }
+
+            strings[i] = buildString {
+                parts.forEachIndexed { part, text -> append(if (part % 2 == 0) text else bindings[text]) }
+            }
+        }
+
+        return unit.substituted(strings, constants?.asList())
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+import org.objectweb.asm.Label
+import java.util.BitSet
+
+/**
+ * The labels of a method, by name.
+ *
+ * Each name is interned to an id the first time it is seen (either used or declared), so later
+ * uses only cost a lookup, and declaring a label just sets its bit.
+ */
+internal class LabelTable {
+    private val ids = HashMap<String, Int>()
+    private val labels = ArrayList<Label>()
+    private val declared = BitSet()
+
+    /**
+     * Get the label with the given (possibly escaped) name, creating it if needed.
+     */
+    fun get(name: String): Label = labels[id(name)]
+
+    /**
+     * Get the label with the given (possibly escaped) name, and mark it declared.
+     */
+    fun declare(name: String): Label {
+        val id = id(name)
+        declared.set(id)
+        return labels[id]
+    }
+
+    /**
+     * Use the given label for the given (possibly escaped) name, and mark it declared (it is
+     * declared outside the code being generated). Must be called before the name is first used.
+     */
+    fun bind(name: String, label: Label) {
+        val id = id(name)
+        labels[id] = label
+        declared.set(id)
+    }
+
+    /**
+     * The labels that have been declared, by name.
+     */
+    fun declaredLabels(): Map<String, Label> =
+        ids.entries.filter { declared[it.value] }.associateTo(LinkedHashMap()) { it.key to labels[it.value] }
+
+    /**
+     * The names of the labels that have been used, but not declared.
+     */
+    fun undeclaredNames(): List<String> = ids.entries.filter { !declared[it.value] }.map { it.key }
+
+    /**
+     * The labels that have been used, but not declared.
+     */
+    fun undeclaredLabels(): List<Label> = ids.values.filter { !declared[it] }.map { labels[it] }
+
+    fun hasUndeclared() = declared.cardinality() != labels.size
+
+    private fun id(name: String): Int {
+        val normalName = normaliseLabelName(LiteralNames.unescape(name))
+
+        return ids[normalName] ?: labels.size.also {
+            ids[normalName] = it
+            labels.add(Label())
+        }
+    }
+
+    private fun normaliseLabelName(labelName: String) =
+        if (labelName.endsWith(":")) {
+            labelName.substring(0, labelName.length - 1)
+        } else {
+            labelName
+        }
+}
@@ -0,0 +1,22 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+/**
+ * Which lexer the assembler uses to tokenize source.
+ */
+enum class LexerMode {
+    /**
+     * The lexer generated by ANTLR from the grammar.
+     */
+    ANTLR,
+
+    /**
+     * The hand-written [FastJasmLexer], which produces the same tokens as the generated
+     * lexer but without simulating the lexer ATN.
+     */
+    FAST,
+}
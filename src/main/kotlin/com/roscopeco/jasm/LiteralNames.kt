@@ -1,10 +1,42 @@
 package com.roscopeco.jasm
 
 internal object LiteralNames {
-    internal fun unescape(name: String): String =
-        name.replace(LITERAL_NAME_REGEX, "$1")
+    /**
+     * Remove the escaping from a literal name: each backtick is dropped and the character after
+     * it kept, so a doubled backtick is a literal one. Names without backticks are returned as-is.
+     */
+    fun unescape(name: String): String {
+        val first = name.indexOf('`')
 
-    internal fun escape(name: String): String {
+        if (first < 0) {
+            return name
+        }
+
+        val result = StringBuilder(name.length).append(name, 0, first)
+        var i = first
+
+        while (i < name.length) {
+            val c = name[i]
+
+            if (c != '`') {
+                result.append(c)
+                i++
+            } else if (i + 1 < name.length && name[i + 1] != '`') {
+                result.append(name[i + 1])
+                i += 2
+            } else if (i + 1 < name.length) {
+                // Doubled backtick - the first is kept, the second escapes whatever follows it
+                result.append('`')
+                i++
+            } else {
+                i++
+            }
+        }
+
+        return result.toString()
+    }
+
+    fun escape(name: String): String {
         return if (name.contains(' ') || name.matches(SPECIAL_CHAR_REGEX) || KEYWORDS.contains(name)) {
             "`${name.replace("`", "``")}`"
         } else {
@@ -12,7 +44,7 @@ internal object LiteralNames {
         }
     }
 
-    internal fun escapeMethodName(name: String): String {
+    fun escapeMethodName(name: String): String {
         if (name == "<init>" || name == "<clinit>") {
             // special case
             return name;
@@ -25,8 +57,6 @@ internal object LiteralNames {
         }
     }
 
-    private val LITERAL_NAME_REGEX = Regex("`(?:([^`])|$)")
-
     private val SPECIAL_CHAR_REGEX = Regex("[(){}\\[\\].-;:,=\"*'`]")
 
     private val KEYWORDS = listOf(
@@ -207,6 +237,7 @@ internal object LiteralNames {
         "try",
         "catch",
         "exception",
+        "frame",
         "V",
         "void",
         "B",
@@ -5,33 +5,11 @@
  */
 package com.roscopeco.jasm
 
+import com.roscopeco.jasm.antlr.JasmParser
 import org.antlr.v4.runtime.ParserRuleContext
 import org.objectweb.asm.Opcodes
 
 class Modifiers {
-    private val forwardMap = mapOf(
-        "abstract"      to Opcodes.ACC_ABSTRACT,
-        "annotation"    to Opcodes.ACC_ANNOTATION,
-        "bridge"        to Opcodes.ACC_BRIDGE,
-        "deprecated"    to Opcodes.ACC_DEPRECATED,
-        "enum"          to Opcodes.ACC_ENUM,
-        "final"         to Opcodes.ACC_FINAL,
-        "interface"     to Opcodes.ACC_INTERFACE,
-        "native"        to Opcodes.ACC_NATIVE,
-        "private"       to Opcodes.ACC_PRIVATE,
-        "protected"     to Opcodes.ACC_PROTECTED,
-        "public"        to Opcodes.ACC_PUBLIC,
-        "record"        to Opcodes.ACC_RECORD,
-        "static"        to Opcodes.ACC_STATIC,
-        "strict"        to Opcodes.ACC_STRICT,
-        "super"         to Opcodes.ACC_SUPER,
-        "synchronized"  to Opcodes.ACC_SYNCHRONIZED,
-        "synthetic"     to Opcodes.ACC_SYNTHETIC,
-        "transient"     to Opcodes.ACC_TRANSIENT,
-        "varargs"       to Opcodes.ACC_VARARGS,
-        "volatile"      to Opcodes.ACC_VOLATILE
-    )
-
     private val reverseClassMap = listOf(  /* Keep in JLS order for nice output */
         Pair(Opcodes.ACC_PUBLIC, "public"),
         Pair(Opcodes.ACC_ABSTRACT, "abstract"),
@@ -65,9 +43,39 @@ class Modifiers {
         Pair(Opcodes.ACC_SYNTHETIC, "synthetic"),
     )
 
-    fun mapModifiers(modifiers: List<ParserRuleContext>): Int = modifiers
-            .map { mod -> forwardMap[mod.text]!! }
-            .fold(0) { value, modifier -> value or modifier }
+    fun mapModifiers(modifiers: List<ParserRuleContext>): Int {
+        var value = 0
+
+        for (mod in modifiers) {
+            value = value or mapModifier(mod.start.type)
+        }
+
+        return value
+    }
+
+    fun mapModifier(tokenType: Int): Int = when (tokenType) {
+        JasmParser.ABSTRACT     -> Opcodes.ACC_ABSTRACT
+        JasmParser.ANNOTATION   -> Opcodes.ACC_ANNOTATION
+        JasmParser.BRIDGE       -> Opcodes.ACC_BRIDGE
+        JasmParser.DEPRECATED   -> Opcodes.ACC_DEPRECATED
+        JasmParser.ENUM         -> Opcodes.ACC_ENUM
+        JasmParser.FINAL        -> Opcodes.ACC_FINAL
+        JasmParser.INTERFACE    -> Opcodes.ACC_INTERFACE
+        JasmParser.NATIVE       -> Opcodes.ACC_NATIVE
+        JasmParser.PRIVATE      -> Opcodes.ACC_PRIVATE
+        JasmParser.PROTECTED    -> Opcodes.ACC_PROTECTED
+        JasmParser.PUBLIC       -> Opcodes.ACC_PUBLIC
+        JasmParser.RECORD       -> Opcodes.ACC_RECORD
+        JasmParser.STATIC       -> Opcodes.ACC_STATIC
+        JasmParser.STRICT       -> Opcodes.ACC_STRICT
+        JasmParser.SUPER        -> Opcodes.ACC_SUPER
+        JasmParser.SYNCHRONIZED -> Opcodes.ACC_SYNCHRONIZED
+        JasmParser.SYNTHETIC    -> Opcodes.ACC_SYNTHETIC
+        JasmParser.TRANSIENT    -> Opcodes.ACC_TRANSIENT
+        JasmParser.VARARGS      -> Opcodes.ACC_VARARGS
+        JasmParser.VOLATILE     -> Opcodes.ACC_VOLATILE
+        else                    -> throw IllegalArgumentException("Not a modifier token: $tokenType")
+    }
 
     fun disassembleClassModifiers(modifiers: Int): String = disassembleModifiers(modifiers, reverseClassMap)
 
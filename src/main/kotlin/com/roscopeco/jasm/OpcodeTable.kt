@@ -0,0 +1,165 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+import com.roscopeco.jasm.antlr.JasmParser
+import org.antlr.v4.runtime.Token
+import org.objectweb.asm.Opcodes
+
+/**
+ * Maps the opcode tokens of the generic instruction rules (`insn_simple`, `insn_var`,
+ * `insn_int` and `insn_jump`) to their ASM opcodes.
+ *
+ * Instructions whose operands need their own validation or parsing keep a dedicated
+ * grammar rule and visitor method, and are not in this table.
+ */
+internal object OpcodeTable {
+    const val NONE = -1
+
+    private val opcodes = IntArray(JasmParser.VOCABULARY.maxTokenType + 1) { NONE }.also { table ->
+        listOf(
+            JasmParser.AALOAD to Opcodes.AALOAD,
+            JasmParser.AASTORE to Opcodes.AASTORE,
+            JasmParser.ACONST_NULL to Opcodes.ACONST_NULL,
+            JasmParser.ALOAD to Opcodes.ALOAD,
+            JasmParser.ARETURN to Opcodes.ARETURN,
+            JasmParser.ARRAYLENGTH to Opcodes.ARRAYLENGTH,
+            JasmParser.ASTORE to Opcodes.ASTORE,
+            JasmParser.ATHROW to Opcodes.ATHROW,
+            JasmParser.BALOAD to Opcodes.BALOAD,
+            JasmParser.BASTORE to Opcodes.BASTORE,
+            JasmParser.BIPUSH to Opcodes.BIPUSH,
+            JasmParser.CALOAD to Opcodes.CALOAD,
+            JasmParser.CASTORE to Opcodes.CASTORE,
+            JasmParser.D2F to Opcodes.D2F,
+            JasmParser.D2I to Opcodes.D2I,
+            JasmParser.D2L to Opcodes.D2L,
+            JasmParser.DADD to Opcodes.DADD,
+            JasmParser.DALOAD to Opcodes.DALOAD,
+            JasmParser.DASTORE to Opcodes.DASTORE,
+            JasmParser.DCMPG to Opcodes.DCMPG,
+            JasmParser.DCMPL to Opcodes.DCMPL,
+            JasmParser.DDIV to Opcodes.DDIV,
+            JasmParser.DLOAD to Opcodes.DLOAD,
+            JasmParser.DMUL to Opcodes.DMUL,
+            JasmParser.DNEG to Opcodes.DNEG,
+            JasmParser.DREM to Opcodes.DREM,
+            JasmParser.DRETURN to Opcodes.DRETURN,
+            JasmParser.DSTORE to Opcodes.DSTORE,
+            JasmParser.DSUB to Opcodes.DSUB,
+            JasmParser.DUP to Opcodes.DUP,
+            JasmParser.DUP2 to Opcodes.DUP2,
+            JasmParser.DUP2_X1 to Opcodes.DUP2_X1,
+            JasmParser.DUP2_X2 to Opcodes.DUP2_X2,
+            JasmParser.DUP_X1 to Opcodes.DUP_X1,
+            JasmParser.DUP_X2 to Opcodes.DUP_X2,
+            JasmParser.F2D to Opcodes.F2D,
+            JasmParser.F2I to Opcodes.F2I,
+            JasmParser.F2L to Opcodes.F2L,
+            JasmParser.FADD to Opcodes.FADD,
+            JasmParser.FALOAD to Opcodes.FALOAD,
+            JasmParser.FASTORE to Opcodes.FASTORE,
+            JasmParser.FCMPG to Opcodes.FCMPG,
+            JasmParser.FCMPL to Opcodes.FCMPL,
+            JasmParser.FDIV to Opcodes.FDIV,
+            JasmParser.FLOAD to Opcodes.FLOAD,
+            JasmParser.FMUL to Opcodes.FMUL,
+            JasmParser.FNEG to Opcodes.FNEG,
+            JasmParser.FREM to Opcodes.FREM,
+            JasmParser.FRETURN to Opcodes.FRETURN,
+            JasmParser.FSTORE to Opcodes.FSTORE,
+            JasmParser.FSUB to Opcodes.FSUB,
+            JasmParser.I2B to Opcodes.I2B,
+            JasmParser.I2C to Opcodes.I2C,
+            JasmParser.I2D to Opcodes.I2D,
+            JasmParser.I2F to Opcodes.I2F,
+            JasmParser.I2L to Opcodes.I2L,
+            JasmParser.I2S to Opcodes.I2S,
+            JasmParser.IADD to Opcodes.IADD,
+            JasmParser.IALOAD to Opcodes.IALOAD,
+            JasmParser.IAND to Opcodes.IAND,
+            JasmParser.IASTORE to Opcodes.IASTORE,
+            JasmParser.IDIV to Opcodes.IDIV,
+            JasmParser.IFACMPEQ to Opcodes.IF_ACMPEQ,
+            JasmParser.IFACMPNE to Opcodes.IF_ACMPNE,
+            JasmParser.IFEQ to Opcodes.IFEQ,
+            JasmParser.IFGE to Opcodes.IFGE,
+            JasmParser.IFGT to Opcodes.IFGT,
+            JasmParser.IFICMPEQ to Opcodes.IF_ICMPEQ,
+            JasmParser.IFICMPGE to Opcodes.IF_ICMPGE,
+            JasmParser.IFICMPGT to Opcodes.IF_ICMPGT,
+            JasmParser.IFICMPLE to Opcodes.IF_ICMPLE,
+            JasmParser.IFICMPLT to Opcodes.IF_ICMPLT,
+            JasmParser.IFICMPNE to Opcodes.IF_ICMPNE,
+            JasmParser.IFLE to Opcodes.IFLE,
+            JasmParser.IFLT to Opcodes.IFLT,
+            JasmParser.IFNE to Opcodes.IFNE,
+            JasmParser.IFNONNULL to Opcodes.IFNONNULL,
+            JasmParser.IFNULL to Opcodes.IFNULL,
+            JasmParser.ILOAD to Opcodes.ILOAD,
+            JasmParser.IMUL to Opcodes.IMUL,
+            JasmParser.INEG to Opcodes.INEG,
+            JasmParser.IOR to Opcodes.IOR,
+            JasmParser.IREM to Opcodes.IREM,
+            JasmParser.IRETURN to Opcodes.IRETURN,
+            JasmParser.ISHL to Opcodes.ISHL,
+            JasmParser.ISHR to Opcodes.ISHR,
+            JasmParser.ISTORE to Opcodes.ISTORE,
+            JasmParser.ISUB to Opcodes.ISUB,
+            JasmParser.IUSHR to Opcodes.IUSHR,
+            JasmParser.IXOR to Opcodes.IXOR,
+            JasmParser.JSR to Opcodes.JSR,
+            JasmParser.L2D to Opcodes.L2D,
+            JasmParser.L2F to Opcodes.L2F,
+            JasmParser.L2I to Opcodes.L2I,
+            JasmParser.LADD to Opcodes.LADD,
+            JasmParser.LALOAD to Opcodes.LALOAD,
+            JasmParser.LAND to Opcodes.LAND,
+            JasmParser.LASTORE to Opcodes.LASTORE,
+            JasmParser.LCMP to Opcodes.LCMP,
+            JasmParser.LDIV to Opcodes.LDIV,
+            JasmParser.LLOAD to Opcodes.LLOAD,
+            JasmParser.LMUL to Opcodes.LMUL,
+            JasmParser.LNEG to Opcodes.LNEG,
+            JasmParser.LOR to Opcodes.LOR,
+            JasmParser.LREM to Opcodes.LREM,
+            JasmParser.LRETURN to Opcodes.LRETURN,
+            JasmParser.LSHL to Opcodes.LSHL,
+            JasmParser.LSHR to Opcodes.LSHR,
+            JasmParser.LSTORE to Opcodes.LSTORE,
+            JasmParser.LSUB to Opcodes.LSUB,
+            JasmParser.LUSHR to Opcodes.LUSHR,
+            JasmParser.LXOR to Opcodes.LXOR,
+            JasmParser.MONITORENTER to Opcodes.MONITORENTER,
+            JasmParser.MONITOREXIT to Opcodes.MONITOREXIT,
+            JasmParser.NOP to Opcodes.NOP,
+            JasmParser.POP to Opcodes.POP,
+            JasmParser.POP2 to Opcodes.POP2,
+            JasmParser.RET to Opcodes.RET,
+            JasmParser.RETURN to Opcodes.RETURN,
+            JasmParser.SALOAD to Opcodes.SALOAD,
+            JasmParser.SASTORE to Opcodes.SASTORE,
+            JasmParser.SIPUSH to Opcodes.SIPUSH,
+            JasmParser.SWAP to Opcodes.SWAP
+        ).forEach { (token, opcode) -> table[token] = opcode }
+    }
+
+    /**
+     * Get the ASM opcode for the given instruction token.
+     *
+     * @throws IllegalArgumentException if the token is not a generic instruction.
+     */
+    fun opcode(token: Token): Int {
+        val opcode = lookup(token.type)
+        require(opcode != NONE) { "Not a generic instruction token: ${token.text}" }
+        return opcode
+    }
+
+    /**
+     * Get the ASM opcode for the given token type, or [NONE] if it is not a generic instruction.
+     */
+    fun lookup(tokenType: Int) = if (tokenType in opcodes.indices) opcodes[tokenType] else NONE
+}
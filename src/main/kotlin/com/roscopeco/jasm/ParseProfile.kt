@@ -0,0 +1,168 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+import org.antlr.v4.runtime.Parser
+import org.antlr.v4.runtime.atn.DecisionInfo
+import java.util.Locale
+import java.util.concurrent.TimeUnit
+
+/**
+ * Profiles the decisions the generated parser makes, to find which grammar rules are costly
+ * to parse on a given set of inputs.
+ *
+ * Pass a profile to [AssemblerOptions.withParseProfile] to have every unit assembled with those
+ * options parsed with ANTLR's profiling simulator, and its decisions added to the profile.
+ * Profiling slows parsing down, so is best done on its own.
+ *
+ * Only decisions that need more than one token of lookahead (or any other kind of adaptive
+ * prediction) are profiled - the generated parser makes the rest with a simple switch.
+ *
+ * The same instance can safely be shared between units assembled in parallel.
+ */
+class ParseProfile {
+    private val decisions = HashMap<Int, Totals>()
+    private var units = 0
+
+    /**
+     * What one decision of the grammar cost, over all the units profiled.
+     *
+     * @param decision The number of the decision in the grammar's ATN
+     * @param rule The grammar rule the decision is made in
+     * @param invocations How many times the decision was made
+     * @param timeNanos Time spent predicting the decision (including building DFA states)
+     * @param llFallbacks How many times SLL prediction conflicted, so full LL prediction was used
+     * @param ambiguities How many ambiguities were found while predicting
+     * @param contextSensitivities How many times full LL prediction gave a different result to SLL
+     * @param errors How many syntax errors were found while predicting
+     * @param totalLookahead How many tokens were looked at, over all invocations
+     * @param maxLookahead The most tokens looked at to make the decision once
+     */
+    data class DecisionProfile(
+        val decision: Int,
+        val rule: String,
+        val invocations: Long,
+        val timeNanos: Long,
+        val llFallbacks: Long,
+        val ambiguities: Long,
+        val contextSensitivities: Long,
+        val errors: Long,
+        val totalLookahead: Long,
+        val maxLookahead: Long,
+    )
+
+    /**
+     * The number of units profiled.
+     */
+    val unitCount: Int
+        get() = synchronized(this) { units }
+
+    /**
+     * The decisions that have been made at least once, the most costly (by time) first.
+     */
+    fun decisions(): List<DecisionProfile> = synchronized(this) {
+        decisions.map { (decision, totals) -> totals.toProfile(decision) }
+    }.sortedWith(compareByDescending<DecisionProfile> { it.timeNanos }.thenBy { it.decision })
+
+    /**
+     * Forget everything profiled so far.
+     */
+    fun clear() = synchronized(this) {
+        decisions.clear()
+        units = 0
+    }
+
+    /**
+     * The profile as a table, for people to read.
+     */
+    fun report(): String {
+        val builder = StringBuilder()
+        val decisions = decisions()
+        val ruleWidth = decisions.maxOfOrNull { it.rule.length }?.coerceAtLeast(4) ?: 4
+
+        builder.append(String.format(Locale.ROOT, "Profile of %d unit(s)%n", unitCount))
+        builder.append(String.format(Locale.ROOT,
+            "%8s  %-${ruleWidth}s  %11s  %10s  %12s  %11s  %13s  %13s%n",
+            "Decision", "Rule", "Invocations", "Time (ms)", "LL fallbacks", "Ambiguities", "Avg lookahead", "Max lookahead"
+        ))
+
+        decisions.forEach {
+            builder.append(String.format(Locale.ROOT,
+                "%8d  %-${ruleWidth}s  %11d  %10.3f  %12d  %11d  %13.2f  %13d%n",
+                it.decision, it.rule, it.invocations, it.timeNanos / NANOS_PER_MILLI, it.llFallbacks,
+                it.ambiguities, it.totalLookahead.toDouble() / it.invocations, it.maxLookahead
+            ))
+        }
+
+        return builder.toString()
+    }
+
+    /**
+     * The profile as CSV (with a header row), for tools to read.
+     */
+    fun csv(): String {
+        val builder = StringBuilder(
+            "decision,rule,invocations,time_ns,ll_fallbacks,ambiguities,context_sensitivities,errors,total_lookahead,max_lookahead\n"
+        )
+
+        decisions().forEach {
+            builder.append(it.decision).append(',').append(it.rule).append(',')
+                .append(it.invocations).append(',').append(it.timeNanos).append(',')
+                .append(it.llFallbacks).append(',').append(it.ambiguities).append(',')
+                .append(it.contextSensitivities).append(',').append(it.errors).append(',')
+                .append(it.totalLookahead).append(',').append(it.maxLookahead).append('\n')
+        }
+
+        return builder.toString()
+    }
+
+    /**
+     * Add the decisions a (profiling) parser has made to the profile.
+     */
+    internal fun record(parser: Parser) {
+        val info = parser.parseInfo ?: return
+
+        synchronized(this) {
+            units++
+
+            info.decisionInfo.filter { it.invocations > 0 }.forEach {
+                val rule = parser.ruleNames[parser.atn.getDecisionState(it.decision).ruleIndex]
+                decisions.getOrPut(it.decision) { Totals(rule) }.add(it)
+            }
+        }
+    }
+
+    private class Totals(val rule: String) {
+        var invocations = 0L
+        var timeNanos = 0L
+        var llFallbacks = 0L
+        var ambiguities = 0L
+        var contextSensitivities = 0L
+        var errors = 0L
+        var totalLookahead = 0L
+        var maxLookahead = 0L
+
+        fun add(info: DecisionInfo) {
+            invocations += info.invocations
+            timeNanos += info.timeInPrediction
+            llFallbacks += info.LL_Fallback
+            ambiguities += info.ambiguities.size
+            contextSensitivities += info.contextSensitivities.size
+            errors += info.errors.size
+            totalLookahead += info.SLL_TotalLook + info.LL_TotalLook
+            maxLookahead = maxOf(maxLookahead, info.SLL_MaxLook, info.LL_MaxLook)
+        }
+
+        fun toProfile(decision: Int) = DecisionProfile(
+            decision, rule, invocations, timeNanos, llFallbacks, ambiguities, contextSensitivities, errors,
+            totalLookahead, maxLookahead
+        )
+    }
+
+    private companion object {
+        val NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1).toDouble()
+    }
+}
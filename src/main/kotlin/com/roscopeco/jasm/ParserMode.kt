@@ -0,0 +1,24 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+/**
+ * Which parser the assembler uses to generate code from the token stream.
+ */
+enum class ParserMode {
+    /**
+     * The parser generated by ANTLR from the grammar, with code generated from the parse tree
+     * by [JasmAssemblingVisitor].
+     */
+    ANTLR,
+
+    /**
+     * The hand-written [DirectAssembler], which generates code as it parses without building a
+     * parse tree. Units it cannot assemble (including any with errors) are assembled again with
+     * the generated parser, so errors are reported exactly as they are in [ANTLR] mode.
+     */
+    DIRECT,
+}
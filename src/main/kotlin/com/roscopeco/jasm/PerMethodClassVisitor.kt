@@ -0,0 +1,130 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+import org.objectweb.asm.ClassReader
+import org.objectweb.asm.ClassVisitor
+import org.objectweb.asm.ClassWriter
+import org.objectweb.asm.MethodVisitor
+import org.objectweb.asm.Opcodes
+import java.security.MessageDigest
+import java.util.Base64
+
+/**
+ * Generates each method independently of the rest of the class, computing its frames (or just
+ * its maxs) on its own, and then copies the methods to the real class writer in the order
+ * they were declared.
+ *
+ * Each method is first written on its own into an otherwise-empty class. When computing frames
+ * this is done without frames or maxs, and if a [FrameCache] is given these bytes are the
+ * cache key. On a miss (or without a cache), frames are computed for that single-method class
+ * with ASM.
+ *
+ * Because every method has its own writer, the method visitors returned by [visitMethod] may
+ * be driven concurrently on different threads, as long as they have all been ended before
+ * [visitEnd] is called. The real class writer should be created without any `COMPUTE_` flags.
+ *
+ * @param writer The class writer to copy methods to
+ * @param hierarchy The hierarchy to use when computing frames
+ * @param computeFrames `true` to compute frames (and maxs), `false` to compute only maxs
+ * @param cache The frame cache, or `null` to always compute frames
+ */
+internal class PerMethodClassVisitor(
+    private val writer: ClassVisitor,
+    private val hierarchy: ClassHierarchy,
+    private val computeFrames: Boolean,
+    private val cache: FrameCache?,
+) : ClassVisitor(Opcodes.ASM9, writer) {
+    private val methods = ArrayList<PendingMethod>()
+    private var version = 0
+    private var access = 0
+    private var name = ""
+    private var superName: String? = null
+
+    override fun visit(
+        version: Int,
+        access: Int,
+        name: String,
+        signature: String?,
+        superName: String?,
+        interfaces: Array<out String>?
+    ) {
+        this.version = version
+        this.access = access
+        this.name = name
+        this.superName = superName
+        super.visit(version, access, name, signature, superName, interfaces)
+    }
+
+    override fun visitMethod(
+        access: Int,
+        name: String,
+        descriptor: String,
+        signature: String?,
+        exceptions: Array<out String>?
+    ): MethodVisitor {
+        val pending = PendingMethod()
+        methods.add(pending)
+
+        val buffer = ClassWriter(if (computeFrames) 0 else ClassWriter.COMPUTE_MAXS)
+        buffer.visit(version, this.access, this.name, null, superName, null)
+
+        return object : MethodVisitor(Opcodes.ASM9, buffer.visitMethod(access, name, descriptor, signature, exceptions)) {
+            override fun visitFrame(type: Int, numLocal: Int, local: Array<out Any>?, numStack: Int, stack: Array<out Any>?) {
+                // Frame directives are ignored when computing frames, as with ClassWriter.COMPUTE_FRAMES
+                if (!computeFrames) {
+                    super.visitFrame(type, numLocal, local, numStack, stack)
+                }
+            }
+
+            override fun visitEnd() {
+                super.visitEnd()
+                buffer.visitEnd()
+
+                val method = buffer.toByteArray()
+                val hasCode = access and (Opcodes.ACC_ABSTRACT or Opcodes.ACC_NATIVE) == 0
+                pending.method = if (computeFrames && hasCode) withFrames(method) else method
+            }
+        }
+    }
+
+    override fun visitEnd() {
+        methods.forEach { copyMethod(it.method ?: throw IllegalStateException("Method was not ended before class")) }
+        super.visitEnd()
+    }
+
+    private fun withFrames(method: ByteArray): ByteArray {
+        val cache = this.cache ?: return computeFrames(method, hierarchy)
+
+        val key = Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(method))
+
+        return cache.get(key, hierarchy) ?: run {
+            val recorder = RecordingClassHierarchy(hierarchy)
+            computeFrames(method, recorder).also { cache.put(key, it, recorder.lookups) }
+        }
+    }
+
+    private fun computeFrames(method: ByteArray, hierarchy: ClassHierarchy): ByteArray {
+        val computer = HierarchyClassWriter(ClassWriter.COMPUTE_FRAMES, hierarchy)
+        ClassReader(method).accept(computer, 0)
+        return computer.toByteArray()
+    }
+
+    private fun copyMethod(method: ByteArray) = ClassReader(method).accept(object : ClassVisitor(Opcodes.ASM9) {
+        override fun visitMethod(
+            access: Int,
+            name: String,
+            descriptor: String,
+            signature: String?,
+            exceptions: Array<out String>?
+        ): MethodVisitor = writer.visitMethod(access, name, descriptor, signature, exceptions)
+    }, 0)
+
+    private class PendingMethod {
+        @Volatile
+        var method: ByteArray? = null
+    }
+}
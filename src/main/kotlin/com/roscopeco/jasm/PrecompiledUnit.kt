@@ -0,0 +1,861 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+import org.objectweb.asm.AnnotationVisitor
+import org.objectweb.asm.ClassVisitor
+import org.objectweb.asm.ConstantDynamic
+import org.objectweb.asm.FieldVisitor
+import org.objectweb.asm.Handle
+import org.objectweb.asm.Label
+import org.objectweb.asm.MethodVisitor
+import org.objectweb.asm.Opcodes
+import org.objectweb.asm.Type
+import java.io.ByteArrayOutputStream
+import java.nio.BufferUnderflowException
+import java.nio.ByteBuffer
+import java.util.IdentityHashMap
+
+/**
+ * A precompiled (`.jasmc`) compilation unit - the ASM visitor events JASM generated for each of
+ * its classes, so that it can be assembled again by replaying them, without lexing or parsing.
+ *
+ * The format is:
+ *
+ * ```
+ * header:  magic, version, class format (u4 each)
+ * strings: count, then per string its length and chars
+ * classes: count, then per class - name, superclass, interface count and interfaces,
+ *          interface flag, and the length of its events
+ * events:  per class, in the same order - each is a tag, followed by its operands
+ * ```
+ *
+ * Apart from the header, all numbers are variable-length (7 bits per byte, signed numbers
+ * zig-zag encoded), and strings are referred to by their index in the strings, plus one (zero
+ * is `null`). Labels are referred to by the order they are first seen in their method.
+ *
+ * Only the events JASM generates can be recorded. Frames, max stack and locals are not
+ * computed until the unit is replayed.
+ */
+internal class PrecompiledUnit private constructor(
+    private val buffer: ByteBuffer,
+    private val eventOffsets: IntArray,
+
+    /**
+     * The class format the unit was precompiled for.
+     */
+    override val classFormat: Int,
+
+    /**
+     * The strings the unit refers to, in the order they are numbered.
+     */
+    val strings: List<String>,
+
+    override val classes: List<HierarchyEntry>,
+
+    private val stringConstants: List<Any?>?,
+) : GeneratedUnit {
+    companion object {
+        /**
+         * Read the header of a precompiled unit. The buffer's position is not modified, and the
+         * events are not read until they are replayed.
+         */
+        fun read(source: ByteBuffer): PrecompiledUnit {
+            val buffer = source.slice()
+            val input = Input(buffer.duplicate())
+
+            try {
+                if (input.buffer.remaining() < HEADER_SIZE || input.buffer.getInt() != MAGIC) {
+                    throw IllegalArgumentException("Not a precompiled JASM unit")
+                }
+
+                val version = input.buffer.getInt()
+                if (version != VERSION) {
+                    throw IllegalArgumentException("Unsupported precompiled JASM version $version")
+                }
+
+                val classFormat = input.buffer.getInt()
+                val strings = List(input.count()) { input.chars() }
+                val classCount = input.count()
+                val lengths = IntArray(classCount)
+
+                val classes = (0 until classCount).map { i ->
+                    HierarchyEntry(
+                        stringAt(strings, input.uint()),
+                        input.uint().let { if (it == 0) null else stringAt(strings, it) },
+                        List(input.count()) { stringAt(strings, input.uint()) },
+                        input.bool()
+                    ).also { lengths[i] = input.uint() }
+                }
+
+                val eventOffsets = IntArray(classCount)
+                var offset = input.buffer.position()
+
+                lengths.forEachIndexed { i, length ->
+                    if (length < 0) {
+                        throw IllegalArgumentException("Invalid count $length in precompiled JASM unit")
+                    }
+
+                    if (offset > input.buffer.limit() - length) {
+                        throw IllegalArgumentException("Precompiled JASM unit is truncated")
+                    }
+
+                    eventOffsets[i] = offset
+                    offset += length
+                }
+
+                return PrecompiledUnit(buffer, eventOffsets, classFormat, strings, classes, null)
+            } catch (e: BufferUnderflowException) {
+                throw IllegalArgumentException("Precompiled JASM unit is truncated")
+            }
+        }
+
+        private fun stringAt(strings: List<String>, index: Int) = strings.getOrNull(index - 1)
+            ?: throw IllegalArgumentException("Invalid string $index in precompiled JASM unit")
+
+        // Visit nothing, for members the visitor being replayed into skips
+        private val SKIP_ANNOTATION = object : AnnotationVisitor(Opcodes.ASM9) { }
+        private val SKIP_FIELD = object : FieldVisitor(Opcodes.ASM9) { }
+        private val SKIP_METHOD = object : MethodVisitor(Opcodes.ASM9) { }
+    }
+
+    /**
+     * This unit, with its strings replaced - in the events and the classes. The events are shared,
+     * not copied.
+     *
+     * @param strings A replacement for each of the unit's [strings]
+     * @param constants For each of the unit's strings, a value to replace it with where it is loaded
+     *          as a constant (by `ldc`, or as a bootstrap method argument), or `null` to use the
+     *          replacement string
+     */
+    fun substituted(strings: List<String>, constants: List<Any?>?): PrecompiledUnit {
+        require(strings.size == this.strings.size) { "Expected ${this.strings.size} strings, got ${strings.size}" }
+
+        val index = this.strings.withIndex().associate { (i, string) -> string to i }
+        fun substitute(string: String) = strings[index[string]!!]
+
+        val classes = classes.map { entry ->
+            HierarchyEntry(
+                substitute(entry.name),
+                entry.superName?.let { substitute(it) },
+                entry.interfaces.map { substitute(it) },
+                entry.isInterface
+            )
+        }
+
+        return PrecompiledUnit(buffer, eventOffsets, classFormat, strings, classes, constants)
+    }
+
+    /**
+     * Replay the events of a class into a class visitor. Many classes may be replayed at once.
+     *
+     * @param index The index of the class in [classes]
+     */
+    fun replay(index: Int, visitor: ClassVisitor) {
+        try {
+            Replay(eventOffsets[index]).replay(visitor)
+        } catch (e: BufferUnderflowException) {
+            throw IllegalArgumentException("Precompiled JASM unit is truncated")
+        }
+    }
+
+    override fun generate(index: Int, visitor: ClassVisitor, classFormat: Int) = replay(index, visitor)
+
+    private inner class Replay(offset: Int) {
+        private val input = Input(buffer.duplicate().position(offset))
+
+        fun replay(visitor: ClassVisitor) = ClassReplay(visitor).replay()
+
+        private fun string(): String? = input.uint().let { if (it == 0) null else stringAt(strings, it) }
+
+        private fun strings(): Array<String>? = input.count().let { if (it == 0) null else Array(it - 1) { string()!! } }
+
+        private fun tag(): Int = input.buffer.get().toInt()
+
+        private fun badTag(tag: Int): Nothing = throw IllegalArgumentException("Invalid event $tag in precompiled JASM unit")
+
+        /*
+         * Only constants that are loaded (by `ldc` or as bootstrap method arguments) are replaced
+         * with the unit's string constants - field values and annotations have to be strings.
+         */
+        private fun constant(loaded: Boolean = false): Any? = when (val tag = tag()) {
+            C_NULL -> null
+            C_INT -> input.int()
+            C_FLOAT -> Float.fromBits(input.int())
+            C_LONG -> input.long()
+            C_DOUBLE -> Double.fromBits(input.long())
+            C_STRING -> input.uint().let { index ->
+                val string = stringAt(strings, index)
+                if (loaded) stringConstants?.get(index - 1) ?: string else string
+            }
+            C_TYPE -> Type.getType(string()!!)
+            C_HANDLE -> handle()
+            C_CONDY -> ConstantDynamic(string()!!, string()!!, handle(), *constants())
+            C_BOOLEAN -> input.bool()
+            C_BYTE -> input.int().toByte()
+            C_CHAR -> input.uint().toChar()
+            C_SHORT -> input.int().toShort()
+            else -> badTag(tag)
+        }
+
+        private fun constants(): Array<Any?> = Array(input.count()) { constant(loaded = true) }
+
+        private fun handle() = Handle(input.uint(), string()!!, string()!!, string()!!, input.bool())
+
+        /**
+         * Replay an annotation. Events are still read when the visitor is `null`, to skip them.
+         */
+        private fun replayAnnotation(annotationVisitor: AnnotationVisitor?) {
+            val visitor = annotationVisitor ?: SKIP_ANNOTATION
+
+            while (true) {
+                when (val tag = tag()) {
+                    A_VALUE -> visitor.visit(string(), constant())
+                    A_ENUM -> visitor.visitEnum(string(), string(), string())
+                    A_ANNOTATION -> replayAnnotation(visitor.visitAnnotation(string(), string()))
+                    A_ARRAY -> replayAnnotation(visitor.visitArray(string()))
+                    END -> return visitor.visitEnd()
+                    else -> badTag(tag)
+                }
+            }
+        }
+
+        private inner class ClassReplay(private val visitor: ClassVisitor) {
+            fun replay() {
+                while (true) {
+                    when (val tag = tag()) {
+                        VISIT -> visitor.visit(input.uint(), input.uint(), string(), string(), string(), strings())
+                        SOURCE -> visitor.visitSource(string(), string())
+                        ANNOTATION -> replayAnnotation(visitor.visitAnnotation(string(), input.bool()))
+                        FIELD -> replayField(visitor.visitField(input.uint(), string(), string(), string(), constant()))
+                        METHOD -> MethodReplay(visitor.visitMethod(input.uint(), string(), string(), string(), strings())).replay()
+                        END -> return visitor.visitEnd()
+                        else -> badTag(tag)
+                    }
+                }
+            }
+
+            private fun replayField(fieldVisitor: FieldVisitor?) {
+                val visitor = fieldVisitor ?: SKIP_FIELD
+
+                while (true) {
+                    when (val tag = tag()) {
+                        ANNOTATION -> replayAnnotation(visitor.visitAnnotation(string(), input.bool()))
+                        END -> return visitor.visitEnd()
+                        else -> badTag(tag)
+                    }
+                }
+            }
+        }
+
+        private inner class MethodReplay(methodVisitor: MethodVisitor?) {
+            private val visitor = methodVisitor ?: SKIP_METHOD
+            private val labels = ArrayList<Label>()
+
+            fun replay() {
+                while (true) {
+                    when (val tag = tag()) {
+                        ANNOTATION -> replayAnnotation(visitor.visitAnnotation(string(), input.bool()))
+                        PARAMETER_ANNOTATION -> replayAnnotation(
+                            visitor.visitParameterAnnotation(input.uint(), string(), input.bool())
+                        )
+                        CODE -> visitor.visitCode()
+                        INSN -> visitor.visitInsn(input.uint())
+                        INT_INSN -> visitor.visitIntInsn(input.uint(), input.int())
+                        VAR_INSN -> visitor.visitVarInsn(input.uint(), input.uint())
+                        TYPE_INSN -> visitor.visitTypeInsn(input.uint(), string())
+                        FIELD_INSN -> visitor.visitFieldInsn(input.uint(), string(), string(), string())
+                        METHOD_INSN -> visitor.visitMethodInsn(input.uint(), string(), string(), string(), input.bool())
+                        INVOKEDYNAMIC_INSN -> visitor.visitInvokeDynamicInsn(string(), string(), handle(), *constants())
+                        JUMP_INSN -> visitor.visitJumpInsn(input.uint(), label())
+                        LABEL -> visitor.visitLabel(label())
+                        LDC_INSN -> visitor.visitLdcInsn(constant(loaded = true))
+                        IINC_INSN -> visitor.visitIincInsn(input.uint(), input.int())
+                        TABLESWITCH_INSN -> {
+                            val min = input.int()
+                            val max = input.int()
+                            val default = label()
+                            visitor.visitTableSwitchInsn(min, max, default, *Array(input.count()) { label() })
+                        }
+                        LOOKUPSWITCH_INSN -> {
+                            val default = label()
+                            val keys = IntArray(input.count()) { input.int() }
+                            visitor.visitLookupSwitchInsn(default, keys, Array(keys.size) { label() })
+                        }
+                        MULTIANEWARRAY_INSN -> visitor.visitMultiANewArrayInsn(string(), input.uint())
+                        TRY_CATCH_BLOCK -> visitor.visitTryCatchBlock(label(), label(), label(), string())
+                        FRAME -> {
+                            val type = input.int()
+                            val numLocal = input.uint()
+                            val numStack = input.uint()
+                            visitor.visitFrame(type, numLocal, frameTypes(), numStack, frameTypes())
+                        }
+                        MAXS -> visitor.visitMaxs(input.uint(), input.uint())
+                        END -> return visitor.visitEnd()
+                        else -> badTag(tag)
+                    }
+                }
+            }
+
+            // Labels are numbered in the order they are first used
+            private fun label(): Label {
+                val id = input.uint()
+
+                if (id == labels.size) {
+                    labels.add(Label())
+                } else if (id !in labels.indices) {
+                    throw IllegalArgumentException("Invalid label $id in precompiled JASM unit")
+                }
+
+                return labels[id]
+            }
+
+            private fun frameTypes(): Array<Any>? = input.count().let { size ->
+                if (size == 0) null else Array(size - 1) {
+                    when (val tag = tag()) {
+                        F_PRIMITIVE -> input.uint()
+                        F_TYPE -> string()!!
+                        F_LABEL -> label()
+                        else -> badTag(tag)
+                    }
+                }
+            }
+        }
+    }
+
+    private class Input(val buffer: ByteBuffer) {
+        fun uint(): Int {
+            var result = 0
+            var shift = 0
+
+            while (true) {
+                val b = buffer.get().toInt()
+                result = result or ((b and 0x7f) shl shift)
+
+                if (b and 0x80 == 0) {
+                    return result
+                }
+
+                shift += 7
+
+                if (shift > MAX_UINT_SHIFT) {
+                    throw IllegalArgumentException("Invalid number in precompiled JASM unit")
+                }
+            }
+        }
+
+        /**
+         * A count or length, checked against what is left to read - every element is at least a
+         * byte, so a corrupt unit can't make the reader allocate more than the unit's size.
+         */
+        fun count(): Int = uint().also {
+            if (it < 0 || it > buffer.remaining()) {
+                throw IllegalArgumentException("Invalid count $it in precompiled JASM unit")
+            }
+        }
+
+        fun int(): Int = uint().let { (it ushr 1) xor -(it and 1) }
+
+        fun long(): Long {
+            var result = 0L
+            var shift = 0
+
+            while (true) {
+                val b = buffer.get().toLong()
+                result = result or ((b and 0x7f) shl shift)
+
+                if (b and 0x80 == 0L) {
+                    return (result ushr 1) xor -(result and 1)
+                }
+
+                shift += 7
+            }
+        }
+
+        fun bool() = buffer.get().toInt() != 0
+
+        fun chars(): String {
+            val chars = CharArray(count())
+
+            for (i in chars.indices) {
+                chars[i] = uint().toChar()
+            }
+
+            return String(chars)
+        }
+    }
+
+    /**
+     * Records the classes of a unit as they are generated, to be written as a precompiled unit.
+     *
+     * @param classFormat The class format the unit is being assembled for
+     */
+    class Writer(private val classFormat: Int) {
+        private val strings = LinkedHashMap<String, Int>()
+        private val recordings = ArrayList<ClassRecorder>()
+
+        /**
+         * A visitor to record the next class of the unit into.
+         */
+        fun newClass(): ClassVisitor = ClassRecorder().also { recordings.add(it) }
+
+        /**
+         * The precompiled unit, with the classes recorded so far.
+         */
+        fun toByteArray(): ByteArray {
+            val output = Output()
+
+            output.write(MAGIC ushr 24)
+            output.write(MAGIC ushr 16)
+            output.write(MAGIC ushr 8)
+            output.write(MAGIC)
+            output.write(ByteBuffer.allocate(8).putInt(VERSION).putInt(classFormat).array())
+
+            // Strings must be known before the class table is written, as it uses them too
+            recordings.forEach { recording ->
+                val entry = recording.entry
+                index(entry.name)
+                entry.superName?.let { index(it) }
+                entry.interfaces.forEach { index(it) }
+            }
+
+            output.uint(strings.size)
+            strings.keys.forEach { output.chars(it) }
+
+            output.uint(recordings.size)
+            recordings.forEach { recording ->
+                val entry = recording.entry
+                output.uint(strings[entry.name]!! + 1)
+                output.uint(entry.superName?.let { strings[it]!! + 1 } ?: 0)
+                output.uint(entry.interfaces.size)
+                entry.interfaces.forEach { output.uint(strings[it]!! + 1) }
+                output.bool(entry.isInterface)
+                output.uint(recording.events.size())
+            }
+
+            recordings.forEach { it.events.writeTo(output) }
+
+            return output.toByteArray()
+        }
+
+        private fun index(string: String) = strings.getOrPut(string) { strings.size }
+
+        private inner class Output : ByteArrayOutputStream() {
+            fun uint(value: Int) {
+                var v = value
+
+                while (v and 0x7f.inv() != 0) {
+                    write((v and 0x7f) or 0x80)
+                    v = v ushr 7
+                }
+
+                write(v)
+            }
+
+            fun int(value: Int) = uint((value shl 1) xor (value shr 31))
+
+            fun long(value: Long) {
+                var v = (value shl 1) xor (value shr 63)
+
+                while (v and 0x7fL.inv() != 0L) {
+                    write(((v and 0x7f) or 0x80).toInt())
+                    v = v ushr 7
+                }
+
+                write(v.toInt())
+            }
+
+            fun bool(value: Boolean) = write(if (value) 1 else 0)
+
+            fun chars(value: String) {
+                uint(value.length)
+                value.forEach { uint(it.code) }
+            }
+
+            fun string(value: String?) = uint(if (value == null) 0 else index(value) + 1)
+
+            fun strings(values: Array<out String>?) {
+                if (values == null) {
+                    uint(0)
+                } else {
+                    uint(values.size + 1)
+                    values.forEach { string(it) }
+                }
+            }
+
+            fun constant(value: Any?) {
+                when (value) {
+                    null -> write(C_NULL)
+                    is Int -> { write(C_INT); int(value) }
+                    is Float -> { write(C_FLOAT); int(value.toRawBits()) }
+                    is Long -> { write(C_LONG); long(value) }
+                    is Double -> { write(C_DOUBLE); long(value.toRawBits()) }
+                    is String -> { write(C_STRING); string(value) }
+                    is Type -> { write(C_TYPE); string(value.descriptor) }
+                    is Handle -> { write(C_HANDLE); handle(value) }
+                    is ConstantDynamic -> {
+                        write(C_CONDY)
+                        string(value.name)
+                        string(value.descriptor)
+                        handle(value.bootstrapMethod)
+                        constants(Array(value.bootstrapMethodArgumentCount) { value.getBootstrapMethodArgument(it) })
+                    }
+                    is Boolean -> { write(C_BOOLEAN); bool(value) }
+                    is Byte -> { write(C_BYTE); int(value.toInt()) }
+                    is Char -> { write(C_CHAR); uint(value.code) }
+                    is Short -> { write(C_SHORT); int(value.toInt()) }
+                    else -> throw IllegalArgumentException("Cannot precompile constant $value (${value.javaClass.name})")
+                }
+            }
+
+            fun constants(values: Array<out Any?>) {
+                uint(values.size)
+                values.forEach { constant(it) }
+            }
+
+            fun handle(handle: Handle) {
+                uint(handle.tag)
+                string(handle.owner)
+                string(handle.name)
+                string(handle.desc)
+                bool(handle.isInterface)
+            }
+        }
+
+        private inner class AnnotationRecorder(private val events: Output) : AnnotationVisitor(Opcodes.ASM9) {
+            override fun visit(name: String?, value: Any?) {
+                events.write(A_VALUE)
+                events.string(name)
+                events.constant(value)
+            }
+
+            override fun visitEnum(name: String?, descriptor: String?, value: String?) {
+                events.write(A_ENUM)
+                events.string(name)
+                events.string(descriptor)
+                events.string(value)
+            }
+
+            override fun visitAnnotation(name: String?, descriptor: String?): AnnotationVisitor {
+                events.write(A_ANNOTATION)
+                events.string(name)
+                events.string(descriptor)
+                return AnnotationRecorder(events)
+            }
+
+            override fun visitArray(name: String?): AnnotationVisitor {
+                events.write(A_ARRAY)
+                events.string(name)
+                return AnnotationRecorder(events)
+            }
+
+            override fun visitEnd() = events.write(END)
+        }
+
+        private inner class ClassRecorder : ClassVisitor(Opcodes.ASM9) {
+            val events = Output()
+            lateinit var entry: HierarchyEntry
+
+            override fun visit(
+                version: Int,
+                access: Int,
+                name: String,
+                signature: String?,
+                superName: String?,
+                interfaces: Array<out String>?
+            ) {
+                entry = HierarchyEntry(name, superName, interfaces?.toList() ?: emptyList(), access and Opcodes.ACC_INTERFACE != 0)
+
+                events.write(VISIT)
+                events.uint(version)
+                events.uint(access)
+                events.string(name)
+                events.string(signature)
+                events.string(superName)
+                events.strings(interfaces)
+            }
+
+            override fun visitSource(source: String?, debug: String?) {
+                events.write(SOURCE)
+                events.string(source)
+                events.string(debug)
+            }
+
+            override fun visitAnnotation(descriptor: String?, visible: Boolean): AnnotationVisitor {
+                events.write(ANNOTATION)
+                events.string(descriptor)
+                events.bool(visible)
+                return AnnotationRecorder(events)
+            }
+
+            override fun visitField(
+                access: Int,
+                name: String?,
+                descriptor: String?,
+                signature: String?,
+                value: Any?
+            ): FieldVisitor {
+                events.write(FIELD)
+                events.uint(access)
+                events.string(name)
+                events.string(descriptor)
+                events.string(signature)
+                events.constant(value)
+
+                return object : FieldVisitor(Opcodes.ASM9) {
+                    override fun visitAnnotation(descriptor: String?, visible: Boolean): AnnotationVisitor {
+                        events.write(ANNOTATION)
+                        events.string(descriptor)
+                        events.bool(visible)
+                        return AnnotationRecorder(events)
+                    }
+
+                    override fun visitEnd() = events.write(END)
+                }
+            }
+
+            override fun visitMethod(
+                access: Int,
+                name: String?,
+                descriptor: String?,
+                signature: String?,
+                exceptions: Array<out String>?
+            ): MethodVisitor {
+                events.write(METHOD)
+                events.uint(access)
+                events.string(name)
+                events.string(descriptor)
+                events.string(signature)
+                events.strings(exceptions)
+
+                return MethodRecorder(events)
+            }
+
+            override fun visitEnd() = events.write(END)
+        }
+
+        private inner class MethodRecorder(private val events: Output) : MethodVisitor(Opcodes.ASM9) {
+            private val labels = IdentityHashMap<Label, Int>()
+
+            override fun visitAnnotation(descriptor: String?, visible: Boolean): AnnotationVisitor {
+                events.write(ANNOTATION)
+                events.string(descriptor)
+                events.bool(visible)
+                return AnnotationRecorder(events)
+            }
+
+            override fun visitParameterAnnotation(parameter: Int, descriptor: String?, visible: Boolean): AnnotationVisitor {
+                events.write(PARAMETER_ANNOTATION)
+                events.uint(parameter)
+                events.string(descriptor)
+                events.bool(visible)
+                return AnnotationRecorder(events)
+            }
+
+            override fun visitCode() = events.write(CODE)
+
+            override fun visitInsn(opcode: Int) {
+                events.write(INSN)
+                events.uint(opcode)
+            }
+
+            override fun visitIntInsn(opcode: Int, operand: Int) {
+                events.write(INT_INSN)
+                events.uint(opcode)
+                events.int(operand)
+            }
+
+            override fun visitVarInsn(opcode: Int, varIndex: Int) {
+                events.write(VAR_INSN)
+                events.uint(opcode)
+                events.uint(varIndex)
+            }
+
+            override fun visitTypeInsn(opcode: Int, type: String?) {
+                events.write(TYPE_INSN)
+                events.uint(opcode)
+                events.string(type)
+            }
+
+            override fun visitFieldInsn(opcode: Int, owner: String?, name: String?, descriptor: String?) {
+                events.write(FIELD_INSN)
+                events.uint(opcode)
+                events.string(owner)
+                events.string(name)
+                events.string(descriptor)
+            }
+
+            override fun visitMethodInsn(opcode: Int, owner: String?, name: String?, descriptor: String?, isInterface: Boolean) {
+                events.write(METHOD_INSN)
+                events.uint(opcode)
+                events.string(owner)
+                events.string(name)
+                events.string(descriptor)
+                events.bool(isInterface)
+            }
+
+            override fun visitInvokeDynamicInsn(
+                name: String?,
+                descriptor: String?,
+                bootstrapMethodHandle: Handle,
+                vararg bootstrapMethodArguments: Any?
+            ) {
+                events.write(INVOKEDYNAMIC_INSN)
+                events.string(name)
+                events.string(descriptor)
+                events.handle(bootstrapMethodHandle)
+                events.constants(bootstrapMethodArguments)
+            }
+
+            override fun visitJumpInsn(opcode: Int, label: Label) {
+                events.write(JUMP_INSN)
+                events.uint(opcode)
+                label(label)
+            }
+
+            override fun visitLabel(label: Label) {
+                events.write(LABEL)
+                label(label)
+            }
+
+            override fun visitLdcInsn(value: Any?) {
+                events.write(LDC_INSN)
+                events.constant(value)
+            }
+
+            override fun visitIincInsn(varIndex: Int, increment: Int) {
+                events.write(IINC_INSN)
+                events.uint(varIndex)
+                events.int(increment)
+            }
+
+            override fun visitTableSwitchInsn(min: Int, max: Int, dflt: Label, vararg labels: Label) {
+                events.write(TABLESWITCH_INSN)
+                events.int(min)
+                events.int(max)
+                label(dflt)
+                events.uint(labels.size)
+                labels.forEach { label(it) }
+            }
+
+            override fun visitLookupSwitchInsn(dflt: Label, keys: IntArray, labels: Array<out Label>) {
+                events.write(LOOKUPSWITCH_INSN)
+                label(dflt)
+                events.uint(keys.size)
+                keys.forEach { events.int(it) }
+                labels.forEach { label(it) }
+            }
+
+            override fun visitMultiANewArrayInsn(descriptor: String?, numDimensions: Int) {
+                events.write(MULTIANEWARRAY_INSN)
+                events.string(descriptor)
+                events.uint(numDimensions)
+            }
+
+            override fun visitTryCatchBlock(start: Label, end: Label, handler: Label, type: String?) {
+                events.write(TRY_CATCH_BLOCK)
+                label(start)
+                label(end)
+                label(handler)
+                events.string(type)
+            }
+
+            override fun visitFrame(type: Int, numLocal: Int, local: Array<out Any>?, numStack: Int, stack: Array<out Any>?) {
+                events.write(FRAME)
+                events.int(type)
+                events.uint(numLocal)
+                events.uint(numStack)
+                frameTypes(local)
+                frameTypes(stack)
+            }
+
+            override fun visitMaxs(maxStack: Int, maxLocals: Int) {
+                events.write(MAXS)
+                events.uint(maxStack)
+                events.uint(maxLocals)
+            }
+
+            override fun visitEnd() = events.write(END)
+
+            private fun label(label: Label) = events.uint(labels.getOrPut(label) { labels.size })
+
+            private fun frameTypes(types: Array<out Any>?) {
+                if (types == null) {
+                    events.uint(0)
+                    return
+                }
+
+                events.uint(types.size + 1)
+                types.forEach {
+                    when (it) {
+                        is Int -> { events.write(F_PRIMITIVE); events.uint(it) }
+                        is String -> { events.write(F_TYPE); events.string(it) }
+                        is Label -> { events.write(F_LABEL); label(it) }
+                        else -> throw IllegalArgumentException("Cannot precompile frame type $it")
+                    }
+                }
+            }
+        }
+    }
+}
+
+private const val MAGIC = 0x4A415343        // "JASC"
+private const val VERSION = 1
+private const val HEADER_SIZE = 12
+
+// The most a varint is shifted by (in its fifth and last byte)
+private const val MAX_UINT_SHIFT = 28
+
+// Events (of classes, fields, methods and annotations)
+private const val END = 0
+private const val VISIT = 1
+private const val SOURCE = 2
+private const val ANNOTATION = 3
+private const val FIELD = 4
+private const val METHOD = 5
+private const val PARAMETER_ANNOTATION = 6
+private const val CODE = 7
+private const val INSN = 8
+private const val INT_INSN = 9
+private const val VAR_INSN = 10
+private const val TYPE_INSN = 11
+private const val FIELD_INSN = 12
+private const val METHOD_INSN = 13
+private const val INVOKEDYNAMIC_INSN = 14
+private const val JUMP_INSN = 15
+private const val LABEL = 16
+private const val LDC_INSN = 17
+private const val IINC_INSN = 18
+private const val TABLESWITCH_INSN = 19
+private const val LOOKUPSWITCH_INSN = 20
+private const val MULTIANEWARRAY_INSN = 21
+private const val TRY_CATCH_BLOCK = 22
+private const val FRAME = 23
+private const val MAXS = 24
+private const val A_VALUE = 25
+private const val A_ENUM = 26
+private const val A_ANNOTATION = 27
+private const val A_ARRAY = 28
+
+// Constants
+private const val C_NULL = 0
+private const val C_INT = 1
+private const val C_FLOAT = 2
+private const val C_LONG = 3
+private const val C_DOUBLE = 4
+private const val C_STRING = 5
+private const val C_TYPE = 6
+private const val C_HANDLE = 7
+private const val C_CONDY = 8
+private const val C_BOOLEAN = 9
+private const val C_BYTE = 10
+private const val C_CHAR = 11
+private const val C_SHORT = 12
+
+// Frame types
+private const val F_PRIMITIVE = 0
+private const val F_TYPE = 1
+private const val F_LABEL = 2
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+/**
+ * Converts between string constants and the quoted string literals in JASM source.
+ */
+internal object StringLiterals {
+    /**
+     * The most bytes a string constant can take in the class file, in modified UTF-8.
+     */
+    const val MAX_UTF8_LENGTH = 65535
+
+    /**
+     * Decode a quoted string literal (as lexed, including the quotes), in a single pass.
+     *
+     * A doubled quote (`""`) stands for a quote. After a backslash, the Java escapes are
+     * supported: `\b \t \n \f \r \s \" \' \\`, octal escapes (`\0` to `\377`) and unicode
+     * escapes (`\uXXXX`). Anything else after a backslash is kept as it is.
+     *
+     * @throws IllegalArgumentException if the string is too long to be a constant.
+     */
+    fun unescape(literal: String): String {
+        val end = literal.length - 1
+
+        // Every char takes at most three bytes, so only long literals need to be measured
+        val measure = (end - 1) * 3L > MAX_UTF8_LENGTH
+        val result = StringBuilder(end - 1)
+        var utf8Length = 0
+        var i = 1
+
+        while (i < end) {
+            val c = literal[i]
+            var decoded = c
+            var next = i + 1
+
+            if (c == '"' && next < end && literal[next] == '"') {
+                next++
+            } else if (c == '\\' && next < end) {
+                val escape = literal[next]
+                next++
+
+                when (escape) {
+                    'b' -> decoded = '\b'
+                    't' -> decoded = '\t'
+                    'n' -> decoded = '\n'
+                    'f' -> decoded = '\u000c'
+                    'r' -> decoded = '\r'
+                    's' -> decoded = ' '
+                    '"', '\'', '\\' -> decoded = escape
+                    in '0'..'7' -> {
+                        // Up to three digits, as long as the value fits in a byte
+                        var value = escape - '0'
+                        val maxDigits = if (escape <= '3') 3 else 2
+                        var digits = 1
+
+                        while (digits < maxDigits && next < end && literal[next] in '0'..'7') {
+                            value = value * 8 + (literal[next] - '0')
+                            next++
+                            digits++
+                        }
+
+                        decoded = value.toChar()
+                    }
+                    'u' -> {
+                        // As in Java, the u may be repeated
+                        var hex = next
+                        while (hex < end && literal[hex] == 'u') hex++
+
+                        val value = if (hex + 4 <= end) parseHex(literal, hex) else -1
+
+                        if (value >= 0) {
+                            decoded = value.toChar()
+                            next = hex + 4
+                        } else {
+                            next = i + 1
+                        }
+                    }
+                    else -> next = i + 1
+                }
+            }
+
+            result.append(decoded)
+
+            if (measure) {
+                utf8Length += utf8Length(decoded)
+
+                if (utf8Length > MAX_UTF8_LENGTH) {
+                    throw IllegalArgumentException(
+                        "String constant is too long (more than $MAX_UTF8_LENGTH bytes in modified UTF-8)")
+                }
+            }
+
+            i = next
+        }
+
+        return result.toString()
+    }
+
+    /**
+     * Quote a string constant as a literal that [unescape] will decode to the same string.
+     */
+    fun escape(value: String): String {
+        val result = StringBuilder(value.length + 2).append('"')
+
+        for (c in value) {
+            when (c) {
+                '"'         -> result.append("\"\"")
+                '\\'        -> result.append("\\\\")
+                '\b'        -> result.append("\\b")
+                '\t'        -> result.append("\\t")
+                '\n'        -> result.append("\\n")
+                '\u000c'    -> result.append("\\f")
+                '\r'        -> result.append("\\r")
+                else        -> if (c < ' ') {
+                    result.append("\\u").append(String.format("%04x", c.code))
+                } else {
+                    result.append(c)
+                }
+            }
+        }
+
+        return result.append('"').toString()
+    }
+
+    private fun parseHex(text: String, start: Int): Int {
+        var value = 0
+
+        for (i in start until start + 4) {
+            val digit = when (val c = text[i]) {
+                in '0'..'9' -> c - '0'
+                in 'a'..'f' -> c - 'a' + 10
+                in 'A'..'F' -> c - 'A' + 10
+                else        -> return -1
+            }
+
+            value = value * 16 + digit
+        }
+
+        return value
+    }
+
+    private fun utf8Length(c: Char) = when {
+        c.code in 1..0x7f   -> 1
+        c.code <= 0x7ff     -> 2
+        else                -> 3
+    }
+}
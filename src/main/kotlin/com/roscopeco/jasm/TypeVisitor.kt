@@ -4,16 +4,67 @@ import com.roscopeco.jasm.antlr.JasmBaseVisitor
 import com.roscopeco.jasm.antlr.JasmParser
 import com.roscopeco.jasm.errors.CodeError
 import com.roscopeco.jasm.errors.ErrorCollector
-
-class TypeVisitor(private val unitName: String, private val errorCollector: ErrorCollector) : JasmBaseVisitor<String>() {
+import org.antlr.v4.runtime.ParserRuleContext
+import org.antlr.v4.runtime.Token
+import org.antlr.v4.runtime.tree.ErrorNode
+import org.antlr.v4.runtime.tree.ParseTree
+import org.antlr.v4.runtime.tree.TerminalNode
+
+class TypeVisitor @JvmOverloads constructor(
+    private val unitName: String,
+    private val errorCollector: ErrorCollector,
+    private val internPool: InternPool? = null,
+) : JasmBaseVisitor<String>() {
     override fun aggregateResult(aggregate: String?, nextResult: String?): String {
         return (aggregate ?: "") + (nextResult ?: "")
     }
 
     override fun defaultResult() = ""
 
-    override fun visitMethod_arguments(ctx: JasmParser.Method_argumentsContext?) =
-        "(" + super.visitMethod_arguments(ctx) + ")"
+    override fun visitMethod_descriptor(ctx: JasmParser.Method_descriptorContext): String {
+        // Descriptors that had errors are never pooled, so the errors are reported every time
+        val text = if (internPool != null && isWellFormed(ctx)) tokenText(ctx) else null
+
+        return if (text != null) {
+            internPool!!.methodDescriptors.intern(text) { buildMethodDescriptor(ctx) }
+        } else {
+            buildMethodDescriptor(ctx)
+        }
+    }
+
+    private fun buildMethodDescriptor(ctx: JasmParser.Method_descriptorContext): String {
+        val descriptor = StringBuilder()
+
+        ctx.method_arguments()?.let { appendMethodArguments(descriptor, it) }
+        ctx.type()?.let { appendType(descriptor, it) }
+
+        return descriptor.toString()
+    }
+
+    override fun visitMethod_arguments(ctx: JasmParser.Method_argumentsContext) =
+        appendMethodArguments(StringBuilder(), ctx).toString()
+
+    private fun appendMethodArguments(descriptor: StringBuilder, ctx: JasmParser.Method_argumentsContext): StringBuilder {
+        descriptor.append('(')
+        ctx.method_argument().forEach { descriptor.append(visitMethod_argument(it)) }
+        return descriptor.append(')')
+    }
+
+    override fun visitType(ctx: JasmParser.TypeContext) = when (val child = if (ctx.childCount == 1) ctx.getChild(0) else null) {
+        is JasmParser.Void_typeContext  -> visitVoid_type(child)
+        is JasmParser.Prim_typeContext  -> visitPrim_type(child)
+        is JasmParser.Ref_typeContext   -> visitRef_type(child)
+        is JasmParser.Array_typeContext -> visitArray_type(child)
+        else                            -> appendType(StringBuilder(), ctx).toString()
+    }
+
+    private fun appendType(descriptor: StringBuilder, ctx: JasmParser.TypeContext): StringBuilder {
+        ctx.void_type()?.let { descriptor.append(visitVoid_type(it)) }
+        ctx.prim_type()?.let { descriptor.append(visitPrim_type(it)) }
+        ctx.ref_type()?.let { appendRefType(descriptor, it) }
+        ctx.array_type()?.let { appendArrayType(descriptor, it) }
+        return descriptor
+    }
 
     override fun visitMethod_argument(ctx: JasmParser.Method_argumentContext) = when {
         ctx.prim_type() != null     -> visitPrim_type(ctx.prim_type())
@@ -25,21 +76,32 @@ class TypeVisitor(private val unitName: String, private val errorCollector: Erro
         }
     }
 
-    override fun visitPrim_type(ctx: JasmParser.Prim_typeContext) = when {
-        ctx.TYPE_BOOL()   != null       -> "Z"
-        ctx.TYPE_BYTE()   != null       -> "B"
-        ctx.TYPE_CHAR()   != null       -> "C"
-        ctx.TYPE_DOUBLE() != null       -> "D"
-        ctx.TYPE_FLOAT()  != null       -> "F"
-        ctx.TYPE_INT()    != null       -> "I"
-        ctx.TYPE_LONG()   != null       -> "J"
-        ctx.TYPE_SHORT()  != null       -> "S"
+    override fun visitPrim_type(ctx: JasmParser.Prim_typeContext) = when (primTypeToken(ctx)) {
+        JasmParser.TYPE_BOOL            -> "Z"
+        JasmParser.TYPE_BYTE            -> "B"
+        JasmParser.TYPE_CHAR            -> "C"
+        JasmParser.TYPE_DOUBLE          -> "D"
+        JasmParser.TYPE_FLOAT           -> "F"
+        JasmParser.TYPE_INT             -> "I"
+        JasmParser.TYPE_LONG            -> "J"
+        JasmParser.TYPE_SHORT           -> "S"
         else -> {
             errorCollector.addError(CodeError(unitName, ctx, "Invalid type ${ctx.text} encountered in method descriptor"))
             "I"
         }
     }
 
+    private fun primTypeToken(ctx: JasmParser.Prim_typeContext): Int {
+        val only = if (ctx.childCount == 1) ctx.getChild(0) else null
+
+        if (only is TerminalNode) {
+            return only.symbol.type
+        }
+
+        // Error recovery can leave more than one token here
+        return PRIM_TYPE_TOKENS.firstOrNull { ctx.getToken(it, 0) != null } ?: Token.INVALID_TYPE
+    }
+
     override fun visitVoid_type(ctx: JasmParser.Void_typeContext) = when {
         ctx.TYPE_VOID()   != null       -> "V"
         else -> {
@@ -48,12 +110,22 @@ class TypeVisitor(private val unitName: String, private val errorCollector: Erro
         }
     }
 
-    override fun visitRef_type(ctx: JasmParser.Ref_typeContext) = "L" + LiteralNames.unescape(ctx.text) + ";"
+    override fun visitRef_type(ctx: JasmParser.Ref_typeContext) =
+        internPool?.refType(textOf(ctx)) ?: appendRefType(StringBuilder(), ctx).toString()
+
+    private fun appendRefType(descriptor: StringBuilder, ctx: JasmParser.Ref_typeContext) =
+        descriptor.append('L').append(LiteralNames.unescape(textOf(ctx))).append(';')
 
     override fun visitClassname(ctx: JasmParser.ClassnameContext) = "L" + LiteralNames.unescape(ctx.text) + ";"
 
-    override fun visitArray_type(ctx: JasmParser.Array_typeContext) =
-        ctx.LSQUARE().joinToString(separator = "") { LiteralNames.unescape(it.text) } + super.visitArray_type(ctx)
+    override fun visitArray_type(ctx: JasmParser.Array_typeContext) = appendArrayType(StringBuilder(), ctx).toString()
+
+    private fun appendArrayType(descriptor: StringBuilder, ctx: JasmParser.Array_typeContext): StringBuilder {
+        repeat(countLSquares(ctx)) { descriptor.append('[') }
+        ctx.prim_type()?.let { descriptor.append(visitPrim_type(it)) }
+        ctx.ref_type()?.let { appendRefType(descriptor, it) }
+        return descriptor
+    }
 
     override fun visitOwner(ctx: JasmParser.OwnerContext): String {
         return fixBareType(extractBareType(ctx))
@@ -68,20 +140,85 @@ class TypeVisitor(private val unitName: String, private val errorCollector: Erro
     }
 
     override fun visitMembername(ctx: JasmParser.MembernameContext): String {
-        return LiteralNames.unescape(ctx.text)
+        val text = textOf(ctx)
+        return internPool?.name(text) ?: LiteralNames.unescape(text)
     }
 
     private fun extractBareType(ctx: JasmParser.Insn_checkcastContext)
-            = (ctx.LSQUARE()?.joinToString("") { it.text } ?: "") + LiteralNames.unescape(
-                ctx.QNAME()?.text ?: ctx.NAME()?.text ?: ctx.LITERAL_NAME()?.text ?: "<Error: No name>")
+            = bareType(countLSquares(ctx), ctx.QNAME() ?: ctx.NAME() ?: ctx.LITERAL_NAME())
 
     private fun extractBareType(ctx: JasmParser.Insn_instanceofContext)
-            = (ctx.LSQUARE()?.joinToString("") { it.text } ?: "") + LiteralNames.unescape(
-                ctx.QNAME()?.text ?: ctx.NAME()?.text ?: ctx.LITERAL_NAME()?.text ?: "<Error: No name>")
+            = bareType(countLSquares(ctx), ctx.QNAME() ?: ctx.NAME() ?: ctx.LITERAL_NAME())
 
     private fun extractBareType(ctx: JasmParser.OwnerContext)
-            = (ctx.LSQUARE()?.joinToString("") { it.text } ?: "") + LiteralNames.unescape(
-                ctx.QNAME()?.text ?: ctx.NAME()?.text ?: ctx.LITERAL_NAME()?.text ?: "<Error: No name>")
+            = bareType(countLSquares(ctx), ctx.QNAME() ?: ctx.NAME() ?: ctx.LITERAL_NAME())
+
+    private fun bareType(lSquares: Int, name: TerminalNode?): String {
+        val text = name?.text ?: "<Error: No name>"
+        val unescaped = internPool?.name(text) ?: LiteralNames.unescape(text)
+
+        return if (lSquares == 0) {
+            unescaped
+        } else {
+            StringBuilder(lSquares + unescaped.length).apply { repeat(lSquares) { append('[') } }.append(unescaped).toString()
+        }
+    }
+
+    /**
+     * Count the `[` tokens directly in the given context, without building a list of them.
+     */
+    private fun countLSquares(ctx: ParserRuleContext): Int {
+        var count = 0
+
+        for (i in 0 until ctx.childCount) {
+            val child = ctx.getChild(i)
+
+            if (child is TerminalNode && child.symbol.type == JasmParser.LSQUARE) {
+                count++
+            }
+        }
+
+        return count
+    }
+
+    private fun isWellFormed(tree: ParseTree): Boolean {
+        if (tree is ErrorNode || (tree is ParserRuleContext && tree.exception != null)) {
+            return false
+        }
+
+        for (i in 0 until tree.childCount) {
+            if (!isWellFormed(tree.getChild(i))) {
+                return false
+            }
+        }
+
+        return true
+    }
+
+    /**
+     * The text of a rule context's tokens, separated by spaces - so that the same descriptor has
+     * the same key however it is laid out, and whatever comments are in it.
+     */
+    private fun tokenText(ctx: ParserRuleContext): String {
+        val text = StringBuilder()
+
+        fun append(tree: ParseTree) {
+            if (tree is TerminalNode) {
+                if (text.isNotEmpty()) {
+                    text.append(' ')
+                }
+
+                text.append(tree.text)
+            } else {
+                for (i in 0 until tree.childCount) {
+                    append(tree.getChild(i))
+                }
+            }
+        }
+
+        append(ctx)
+        return text.toString()
+    }
 
     private fun fixBareType(bare: String): String {
         return if (bare.startsWith("[")) {
@@ -92,4 +229,26 @@ class TypeVisitor(private val unitName: String, private val errorCollector: Erro
         }
     }
 
-}
\ No newline at end of file
+    internal companion object {
+        /**
+         * The text of a rule context. Rules that matched a single token (most of them) return
+         * the token's text directly, rather than building it up as `ParserRuleContext.getText` does.
+         */
+        fun textOf(ctx: ParserRuleContext): String = when (val only = if (ctx.childCount == 1) ctx.getChild(0) else null) {
+            is TerminalNode         -> only.text
+            is ParserRuleContext    -> textOf(only)
+            else                    -> ctx.text
+        }
+
+        private val PRIM_TYPE_TOKENS = intArrayOf(
+            JasmParser.TYPE_BOOL,
+            JasmParser.TYPE_BYTE,
+            JasmParser.TYPE_CHAR,
+            JasmParser.TYPE_DOUBLE,
+            JasmParser.TYPE_FLOAT,
+            JasmParser.TYPE_INT,
+            JasmParser.TYPE_LONG,
+            JasmParser.TYPE_SHORT,
+        )
+    }
+}
@@ -0,0 +1,18 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm
+
+/**
+ * The outcome of assembling a single compilation unit as part of a batch.
+ *
+ * @param unitName The name of the compilation unit
+ * @param classes Bytecode for each class in the unit, keyed by internal name (empty if the unit failed)
+ * @param error The reason the unit failed, usually an [AssemblyException], or `null` on success
+ */
+class UnitResult(val unitName: String, val classes: Map<String, ByteArray>, val error: RuntimeException?) {
+    val success: Boolean
+        get() = error == null
+}
@@ -4,11 +4,62 @@ import org.antlr.v4.runtime.ParserRuleContext
 import org.antlr.v4.runtime.Token
 import org.antlr.v4.runtime.misc.Interval
 
-class CodeError(unitName: String, val start: Token, val stop: Token, val interval: Interval, message: String) : BaseError(unitName, message) {
+/**
+ * An error at a position in the source.
+ *
+ * Only the position (and a short snippet of the source there) is kept, not the tokens, so an
+ * error doesn't keep the source (or its tokens) alive.
+ *
+ * @param line The line the error starts on (from 1)
+ * @param column The column the error starts at (from 0)
+ * @param startIndex The offset of the first character in error, or -1 if not known
+ * @param stopIndex The offset of the last character in error, or -1 if not known
+ * @param snippet The source in error (at most [MAX_SNIPPET_LENGTH] characters of its first line)
+ * @param interval The range of tokens (or characters, for syntax errors) in error
+ */
+class CodeError(
+    unitName: String,
+    val line: Int,
+    val column: Int,
+    val startIndex: Int,
+    val stopIndex: Int,
+    val snippet: String,
+    val interval: Interval,
+    message: String
+) : BaseError(unitName, message) {
+    constructor(unitName: String, start: Token, stop: Token?, interval: Interval, message: String) : this(
+        unitName,
+        start.line,
+        start.charPositionInLine,
+        start.startIndex,
+        stopIndex(start, stop),
+        snippet(start, stop),
+        interval,
+        message
+    )
+
     constructor(unitName: String, ctx: ParserRuleContext, message: String) : this(unitName, ctx.start, ctx.stop, ctx.sourceInterval, message)
 
+    companion object {
+        const val MAX_SNIPPET_LENGTH = 80
+
+        private fun stopIndex(start: Token, stop: Token?) =
+            if (stop == null || stop.stopIndex < start.startIndex) start.stopIndex else stop.stopIndex
+
+        private fun snippet(start: Token, stop: Token?): String {
+            val stopIndex = stopIndex(start, stop)
+            val text = if (start.startIndex >= 0 && stopIndex >= start.startIndex && start.inputStream != null) {
+                start.inputStream.getText(Interval.of(start.startIndex, minOf(stopIndex, start.startIndex + MAX_SNIPPET_LENGTH)))
+            } else {
+                start.text ?: ""
+            }
+
+            return text.lineSequence().first().take(MAX_SNIPPET_LENGTH)
+        }
+    }
+
     override val displayMessage: String
-        get() = "$unitName:[${start.line}:${start.charPositionInLine}]: ${message.substringBefore("expecting")}"
+        get() = "$unitName:[$line:$column]: ${message.substringBefore("expecting")}"
 
-    override fun toString(): String = "$unitName:[${start.line}:${start.charPositionInLine}]: $message"
-}
\ No newline at end of file
+    override fun toString(): String = "$unitName:[$line:$column]: $message"
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm.errors
+
+import java.util.concurrent.ConcurrentLinkedQueue
+
+/**
+ * An [ErrorCollector] that can be shared between threads, without locking.
+ *
+ * Errors are reported in the order they were added. Work that runs in parallel (such as
+ * generating the methods of a class) can reserve a [section] for its errors before it is
+ * started, so that they are reported where the work appears in the source, rather than in the
+ * order the work happened to finish in.
+ */
+class ConcurrentErrorCollector : ErrorCollector {
+    // Each entry is either a BaseError, or a Section holding the errors added to it
+    private val entries = ConcurrentLinkedQueue<Any>()
+
+    @Volatile
+    private var anyErrors = false
+
+    override fun addError(error: BaseError) {
+        entries.add(error)
+        anyErrors = true
+    }
+
+    override fun hasErrors() = anyErrors
+
+    override fun getErrors(): List<BaseError> {
+        val errors = ArrayList<BaseError>()
+
+        entries.forEach {
+            when (it) {
+                is Section -> errors.addAll(it.errors)
+                else -> errors.add(it as BaseError)
+            }
+        }
+
+        return errors
+    }
+
+    /**
+     * Reserve a place for errors, after those added so far. Errors added to the returned
+     * collector are reported at that place, before any added to this collector afterwards.
+     */
+    fun section(): ErrorCollector = Section().also { entries.add(it) }
+
+    private inner class Section : ErrorCollector {
+        val errors = ConcurrentLinkedQueue<BaseError>()
+
+        override fun addError(error: BaseError) {
+            errors.add(error)
+            anyErrors = true
+        }
+
+        override fun hasErrors() = !errors.isEmpty()
+
+        override fun getErrors(): List<BaseError> = errors.toList()
+    }
+}
@@ -2,7 +2,8 @@ package com.roscopeco.jasm.errors
 
 enum class DisassemblyContext {
     ConstArg,
-    Descriptor
+    Descriptor,
+    Frame
 }
 class DisassemblyError(unitName: String, val context: DisassemblyContext, message: String) : BaseError(unitName, message) {
     override val displayMessage: String
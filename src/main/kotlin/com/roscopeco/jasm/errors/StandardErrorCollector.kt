@@ -1,5 +1,8 @@
 package com.roscopeco.jasm.errors
 
+/**
+ * Collects errors in a list. Not thread-safe - see [ConcurrentErrorCollector].
+ */
 class StandardErrorCollector: ErrorCollector {
     private val errors: MutableList<BaseError> = mutableListOf()
 
@@ -1,23 +1,63 @@
 package com.roscopeco.jasm.tool
 
+import com.roscopeco.jasm.AssemblerOptions
+import com.roscopeco.jasm.ClassHierarchy
+import com.roscopeco.jasm.FrameMode
 import com.roscopeco.jasm.JasmAssembler
+import com.roscopeco.jasm.JasmSource
+import com.roscopeco.jasm.ParseProfile
 import java.io.File
 import java.io.FileInputStream
 import java.io.FileOutputStream
 
-class AssembleTask(src: File, dest: File, val targetVersion: Int) : FileTransformTask<AssemblyResult>(src, dest) {
-    private val assembler = JasmAssembler(unitName(), targetVersion) { FileInputStream(src) }
+/**
+ * Assembles a single source file.
+ *
+ * Units declaring a single class are written to `dest`; when a unit declares more than one
+ * class, each is written to `<outputDirectory>/<internal name>.class` instead.
+ *
+ * When a [ClassHierarchy] is given, it is used to resolve types when computing stack map frames
+ * (it is usually shared between all the tasks in a run). Likewise, when a [ParseProfile] is
+ * given, the unit's parse is profiled into it.
+ */
+class AssembleTask @JvmOverloads constructor(
+    src: File,
+    dest: File,
+    val targetVersion: Int,
+    val outputDirectory: File = dest.parentFile ?: File("."),
+    val classHierarchy: ClassHierarchy? = null,
+    val frameMode: FrameMode = FrameMode.COMPUTE,
+    val parseProfile: ParseProfile? = null
+) : FileTransformTask<AssemblyResult>(src, dest) {
+    private val assembler = JasmAssembler(
+        JasmSource.of(unitName()) { FileInputStream(src) },
+        AssemblerOptions()
+            .withClassFormat(targetVersion)
+            .withClassHierarchy(classHierarchy)
+            .withFrameMode(frameMode)
+            .withParseProfile(parseProfile)
+    )
 
     private fun unitName(): String = src.name
     
     override fun perform(): AssemblyResult {
         try {
-            File(dest.parent ?: ".").mkdirs()
-            FileOutputStream(dest).use { it.write(assembler.assemble()) }
+            val classes = assembler.assembleClasses()
+
+            if (classes.size == 1) {
+                write(dest, classes.values.first())
+            } else {
+                classes.forEach { (name, bytes) -> write(File(outputDirectory, "$name.class"), bytes) }
+            }
         } catch (e: Exception) {
             return AssemblyResult(unitName(), false, e.message ?: "[BUG]: <Unknown> [${e}")
         }
 
         return AssemblyResult(unitName(), true)
     }
-}
\ No newline at end of file
+
+    private fun write(file: File, bytes: ByteArray) {
+        File(file.parent ?: ".").mkdirs()
+        FileOutputStream(file).use { it.write(bytes) }
+    }
+}
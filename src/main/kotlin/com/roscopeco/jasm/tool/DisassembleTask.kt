@@ -5,8 +5,13 @@ import java.io.File
 import java.io.FileInputStream
 import java.io.FileOutputStream
 
-class DisassembleTask(src: File, dest: File, private val emitLineNumbers: Boolean) : FileTransformTask<AssemblyResult>(src, dest) {
-    private val assembler = JasmDisassembler(unitName(), emitLineNumbers) { FileInputStream(src) }
+class DisassembleTask @JvmOverloads constructor(
+    src: File,
+    dest: File,
+    private val emitLineNumbers: Boolean,
+    val emitFrames: Boolean = false
+) : FileTransformTask<AssemblyResult>(src, dest) {
+    private val assembler = JasmDisassembler(unitName(), emitLineNumbers, emitFrames) { FileInputStream(src) }
 
     private fun unitName(): String = src.name
     
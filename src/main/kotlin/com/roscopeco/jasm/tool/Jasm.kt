@@ -2,6 +2,8 @@ package com.roscopeco.jasm.tool
 
 import com.beust.jcommander.JCommander
 import com.beust.jcommander.ParameterException
+import com.roscopeco.jasm.ParseProfile
+import java.io.File
 import kotlin.system.exitProcess
 
 class Jasm(private val args: ToolArgs) : Runnable {
@@ -30,7 +32,8 @@ class Jasm(private val args: ToolArgs) : Runnable {
     }
 
     override fun run() {
-        val tasks = Tasks.createTasks(args)
+        val parseProfile = if (args.parseProfile.isNotEmpty()) ParseProfile() else null
+        val tasks = Tasks.createTasks(args, File::exists, parseProfile)
 
         if (tasks.isEmpty()) {
             println("No input files (specify --help for usage)")
@@ -39,6 +42,8 @@ class Jasm(private val args: ToolArgs) : Runnable {
                 .map { it.perform() }
                 .filter { !it.success }
 
+            parseProfile?.let { File(args.parseProfile).writeText(it.csv()) }
+
             if (failed.isNotEmpty()) {
                 System.err.print(
                     "\u001b[1;31mERROR:\u001b[0m There were failed tasks: $EOL$EOL${
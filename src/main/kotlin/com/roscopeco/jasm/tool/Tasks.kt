@@ -1,6 +1,11 @@
 package com.roscopeco.jasm.tool
 
+import com.roscopeco.jasm.ClassHierarchy
+import com.roscopeco.jasm.ClasspathIndex
+import com.roscopeco.jasm.FrameMode
+import com.roscopeco.jasm.ParseProfile
 import java.io.File
+import java.nio.file.Files
 import java.nio.file.Paths
 
 object Tasks {
@@ -8,8 +13,17 @@ object Tasks {
     fun createTasks(args: ToolArgs) = createTasks(args, File::exists)
 
     @JvmStatic
-    fun createTasks(args: ToolArgs, exists: (File) -> Boolean) = args.inputFiles
-        .asSequence()
+    @JvmOverloads
+    fun createTasks(
+        args: ToolArgs,
+        exists: (File) -> Boolean,
+        parseProfile: ParseProfile? = null
+    ): List<FileTransformTask<AssemblyResult>> {
+        // Built (or mapped) at most once, and shared by every unit in the run
+        val classHierarchy by lazy { classHierarchy(args) }
+
+        return args.inputFiles
+            .asSequence()
             .map { Pair(it, Paths.get(args.inputDirectory, it)) }
             .map { Pair(it.first, it.second.toFile()) }
             .onEach { if (!exists(it.second)) println("\u001B[1;33mWARN:\u001B[0m Input file ${it.second.name} not found!")}
@@ -19,17 +33,35 @@ object Tasks {
                     DisassembleTask(
                         it.second,
                         Paths.get(args.outputDirectory, fixJasmExtension(it.first)).toFile(),
-                        args.emitLineNumbers
+                        args.emitLineNumbers,
+                        args.emitFrames
                     )
                 } else {
                     AssembleTask(
                         it.second,
                         Paths.get(args.outputDirectory, fixClassExtension(it.first)).toFile(),
-                        args.target
+                        args.target,
+                        File(args.outputDirectory),
+                        classHierarchy,
+                        if (args.trustFrames) FrameMode.DIRECTIVES else FrameMode.COMPUTE,
+                        parseProfile
                     )
                 }
             }
             .toList()
+    }
+
+    private fun classHierarchy(args: ToolArgs): ClassHierarchy? {
+        val index = args.classpathIndex.takeIf { it.isNotEmpty() }?.let { Paths.get(it) }
+
+        return when {
+            index != null && Files.exists(index) -> ClasspathIndex.open(index)
+            index == null && args.classpath.isEmpty() -> null
+            else -> ClasspathIndex.build(
+                args.classpath.split(File.pathSeparator).filter { it.isNotEmpty() }.map { Paths.get(it) }
+            ).also { if (index != null) it.write(index) }
+        }
+    }
 
     private fun fixClassExtension(input: String) = with (File(input)) {
         Paths.get(parent ?: "", "$nameWithoutExtension.class").toString()
@@ -19,9 +19,24 @@ class ToolArgs {
     @Parameter(names = ["-l", "--line-numbers"], description = "Emit line number comments in disassembly")
     var emitLineNumbers: Boolean = false
 
+    @Parameter(names = ["-f", "--frames"], description = "Emit stack map frame directives in disassembly")
+    var emitFrames: Boolean = false
+
+    @Parameter(names = ["--trust-frames"], description = "Use the frame directives in the source rather than computing stack map frames")
+    var trustFrames: Boolean = false
+
     @Parameter(names = ["-target", "--target"], description = "Generate class files suitable for the specified class format versionx")
     var target: Int = Opcodes.V11;
 
+    @Parameter(names = ["-cp", "--classpath"], description = "Classpath (jars and directories) used to resolve types when computing stack map frames")
+    var classpath: String = ""
+
+    @Parameter(names = ["--classpath-index"], description = "Classpath index file to use; if it doesn't exist, it is built from the classpath and saved")
+    var classpathIndex: String = ""
+
+    @Parameter(names = ["--parse-profile"], description = "Profile the parser's decisions, and write them (as CSV) to the given file")
+    var parseProfile: String = ""
+
     @Parameter(description = "List of files to assemble (names relative to input directory)")
     var inputFiles: List<String> = mutableListOf()
 }
\ No newline at end of file
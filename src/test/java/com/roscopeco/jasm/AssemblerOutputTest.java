@@ -0,0 +1,109 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import static com.roscopeco.jasm.TestUtil.testCaseSource;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AssemblerOutputTest {
+    private static final String TEST_CASE = "com/roscopeco/jasm/SwitchTests.jasm";
+
+    @Test
+    void shouldWriteToOutputStream() throws IOException {
+        final var expected = assembler(TEST_CASE).assemble();
+        final var output = new ByteArrayOutputStream();
+
+        assertThat(assembler(TEST_CASE).assembleTo(output)).isEqualTo(expected.length);
+        assertThat(output.toByteArray()).isEqualTo(expected);
+    }
+
+    @Test
+    void shouldWriteAllOfClassToChannel() throws IOException {
+        final var expected = assembler(TEST_CASE).assemble();
+        final var output = new ByteArrayOutputStream();
+        final var delegate = Channels.newChannel(output);
+
+        // Writes at most 7 bytes at a time
+        final var channel = new WritableByteChannel() {
+            @Override
+            public int write(final ByteBuffer src) throws IOException {
+                final var chunk = src.duplicate();
+                chunk.limit(Math.min(src.limit(), src.position() + 7));
+                final var written = delegate.write(chunk);
+                src.position(src.position() + written);
+                return written;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        assertThat(assembler(TEST_CASE).assembleTo(channel)).isEqualTo(expected.length);
+        assertThat(output.toByteArray()).isEqualTo(expected);
+    }
+
+    @Test
+    void shouldPutClassesIntoReusedBuffer() {
+        final var first = assembler(TEST_CASE).assemble();
+        final var second = assembler("com/roscopeco/jasm/FrameDirectivesTest.jasm").assemble();
+        final var buffer = ByteBuffer.allocateDirect(64 * 1024);
+
+        buffer.position(3);
+
+        assertThat(assembler(TEST_CASE).assembleTo(buffer)).isEqualTo(first.length);
+        assertThat(assembler("com/roscopeco/jasm/FrameDirectivesTest.jasm").assembleTo(buffer)).isEqualTo(second.length);
+        assertThat(buffer.position()).isEqualTo(3 + first.length + second.length);
+
+        final var written = new byte[first.length + second.length];
+        buffer.flip().position(3);
+        buffer.get(written);
+
+        assertThat(Arrays.copyOfRange(written, 0, first.length)).isEqualTo(first);
+        assertThat(Arrays.copyOfRange(written, first.length, written.length)).isEqualTo(second);
+    }
+
+    @Test
+    void shouldLeaveBufferUnchangedWhenClassDoesNotFit() {
+        final var buffer = ByteBuffer.allocate(32);
+        buffer.position(5);
+
+        assertThatThrownBy(() -> assembler(TEST_CASE).assembleTo(buffer))
+            .isInstanceOf(BufferOverflowException.class);
+
+        assertThat(buffer.position()).isEqualTo(5);
+    }
+
+    @Test
+    void shouldRequireSingleClass() {
+        final var output = new ByteArrayOutputStream();
+
+        assertThatThrownBy(() -> assembler("com/roscopeco/jasm/MultiClassUnit.jasm").assembleTo(output))
+            .isInstanceOf(AssemblyException.class);
+
+        assertThat(output.size()).isZero();
+    }
+
+    private static JasmAssembler assembler(final String testCase) {
+        return new JasmAssembler(JasmSource.of(testCase, testCaseSource(testCase)), new AssemblerOptions());
+    }
+}
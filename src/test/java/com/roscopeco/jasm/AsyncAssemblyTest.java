@@ -0,0 +1,210 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static com.roscopeco.jasm.TestUtil.defineClass;
+import static com.roscopeco.jasm.TestUtil.instantiate;
+import static com.roscopeco.jasm.TestUtil.stringSupplierSource;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AsyncAssemblyTest {
+    private static final Executor DIRECT = Runnable::run;
+
+    private static JasmSource source(final int i) {
+        return JasmSource.of("Async" + i + ".jasm", stringSupplierSource("Async" + i, "async " + i));
+    }
+
+    private static JasmSource broken() {
+        return JasmSource.of("Broken.jasm", "class Broken {\n  m()V {\n    notaninsn\n  }\n}\n");
+    }
+
+    @Test
+    void shouldAssembleAsync() throws ExecutionException, InterruptedException {
+        final var bytes = new JasmAssembler(source(1), new AssemblerOptions()).assembleAsync().get();
+
+        assertThat(instantiate(defineClass(bytes), Supplier.class).get()).isEqualTo("async 1");
+    }
+
+    @Test
+    void shouldCompleteExceptionallyWithAssemblyErrors() {
+        final var future = new JasmAssembler(broken(), new AssemblerOptions()).assembleClassesAsync(DIRECT);
+
+        assertThatThrownBy(future::get).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(AssemblyException.class);
+    }
+
+    @Test
+    void shouldNotAssembleWhenCancelledBeforeStarting() {
+        final var queued = new ArrayList<Runnable>();
+        final var future = new JasmAssembler(source(2), new AssemblerOptions()).assembleAsync(queued::add);
+
+        assertThat(future.cancel(true)).isTrue();
+        queued.forEach(Runnable::run);
+
+        assertThatThrownBy(future::join).isInstanceOf(CancellationException.class);
+        assertThat(Thread.currentThread().isInterrupted()).isFalse();
+    }
+
+    @Test
+    void shouldPublishResultsInOrderIncludingFailures() throws InterruptedException {
+        final var processor = new JasmAssemblyProcessor(new AssemblerOptions(), DIRECT, 2);
+        final var subscriber = new RecordingSubscriber(1);
+
+        try (final var publisher = new SubmissionPublisher<JasmSource>()) {
+            publisher.subscribe(processor);
+            processor.subscribe(subscriber);
+
+            for (int i = 0; i < 5; i++) {
+                publisher.submit(i == 3 ? broken() : source(10 + i));
+            }
+        }
+
+        assertThat(subscriber.done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(subscriber.error).isNull();
+        assertThat(subscriber.results).extracting(UnitResult::getUnitName)
+            .containsExactly("Async10.jasm", "Async11.jasm", "Async12.jasm", "Broken.jasm", "Async14.jasm");
+        assertThat(subscriber.results.get(3).getError()).isInstanceOf(AssemblyException.class);
+        assertThat(subscriber.results.get(4).getClasses()).containsOnlyKeys("com/roscopeco/jasm/Async14");
+    }
+
+    @Test
+    void shouldOnlyRequestMoreSourcesAsResultsAreRequested() {
+        final var processor = new JasmAssemblyProcessor(new AssemblerOptions(), DIRECT, 2);
+        final var upstream = new RecordingSubscription();
+        final var subscriber = new RecordingSubscriber(0);
+
+        processor.onSubscribe(upstream);
+        processor.subscribe(subscriber);
+
+        assertThat(upstream.requested.get()).isEqualTo(2);
+
+        processor.onNext(source(20));
+        processor.onNext(source(21));
+
+        // Both assembled, but not yet requested downstream
+        assertThat(subscriber.results).isEmpty();
+        assertThat(upstream.requested.get()).isEqualTo(2);
+
+        subscriber.subscription.request(1);
+
+        assertThat(subscriber.results).extracting(UnitResult::getUnitName).containsExactly("Async20.jasm");
+        assertThat(upstream.requested.get()).isEqualTo(3);
+
+        processor.onError(new IllegalStateException("upstream failed"));
+        assertThat(subscriber.error).isNull();
+
+        subscriber.subscription.request(5);
+
+        assertThat(subscriber.results).extracting(UnitResult::getUnitName).containsExactly("Async20.jasm", "Async21.jasm");
+        assertThat(subscriber.error).hasMessage("upstream failed");
+    }
+
+    @Test
+    void shouldCancelUpstreamWhenCancelled() {
+        final var processor = new JasmAssemblyProcessor(new AssemblerOptions(), DIRECT, 2);
+        final var upstream = new RecordingSubscription();
+        final var subscriber = new RecordingSubscriber(0);
+
+        processor.onSubscribe(upstream);
+        processor.subscribe(subscriber);
+        processor.onNext(source(30));
+
+        subscriber.subscription.cancel();
+
+        assertThat(upstream.cancelled).isTrue();
+        assertThat(subscriber.results).isEmpty();
+    }
+
+    @Test
+    void shouldRejectInvalidRequestsAndSecondSubscribers() {
+        final var processor = new JasmAssemblyProcessor(new AssemblerOptions(), DIRECT, 2);
+        final var upstream = new RecordingSubscription();
+        final var subscriber = new RecordingSubscriber(0);
+        final var second = new RecordingSubscriber(0);
+
+        processor.onSubscribe(upstream);
+        processor.subscribe(subscriber);
+        processor.subscribe(second);
+
+        assertThat(second.error).isInstanceOf(IllegalStateException.class);
+
+        subscriber.subscription.request(0);
+
+        assertThat(subscriber.error).isInstanceOf(IllegalArgumentException.class);
+        assertThat(upstream.cancelled).isTrue();
+    }
+
+    private static class RecordingSubscription implements Flow.Subscription {
+        final AtomicLong requested = new AtomicLong();
+        volatile boolean cancelled;
+
+        @Override
+        public void request(final long n) {
+            requested.addAndGet(n);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private static class RecordingSubscriber implements Flow.Subscriber<UnitResult> {
+        final List<UnitResult> results = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch done = new CountDownLatch(1);
+        final long batch;
+        volatile Flow.Subscription subscription;
+        volatile Throwable error;
+
+        RecordingSubscriber(final long batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            this.subscription = subscription;
+
+            if (batch > 0) {
+                subscription.request(batch);
+            }
+        }
+
+        @Override
+        public void onNext(final UnitResult item) {
+            results.add(item);
+
+            if (batch > 0) {
+                subscription.request(batch);
+            }
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.roscopeco.jasm.TestUtil.testCaseSource;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CancellationTest {
+    private static final String TEST_CASE = "com/roscopeco/jasm/SwitchTests.jasm";
+
+    @AfterEach
+    void clearInterrupt() {
+        Thread.interrupted();
+    }
+
+    @ParameterizedTest
+    @EnumSource(ParserMode.class)
+    void shouldTimeOutAssembly(final ParserMode parserMode) {
+        final var options = new AssemblerOptions().withParserMode(parserMode).withTimeout(Duration.ZERO);
+
+        assertThatThrownBy(() -> assembler(options).assemble())
+            .isInstanceOf(JasmCancelledException.class)
+            .hasMessage("Assembly of " + TEST_CASE + " timed out after 0ms")
+            .matches(e -> ((JasmCancelledException) e).getTimedOut());
+    }
+
+    @ParameterizedTest
+    @EnumSource(ParserMode.class)
+    void shouldAbandonAssemblyWhenInterrupted(final ParserMode parserMode) {
+        final var options = new AssemblerOptions().withParserMode(parserMode);
+
+        Thread.currentThread().interrupt();
+
+        assertThatThrownBy(() -> assembler(options).assemble())
+            .isInstanceOf(JasmCancelledException.class)
+            .hasMessage("Assembly of " + TEST_CASE + " was interrupted")
+            .matches(e -> !((JasmCancelledException) e).getTimedOut());
+
+        assertThat(Thread.currentThread().isInterrupted()).isTrue();
+    }
+
+    @ParameterizedTest
+    @EnumSource(ParserMode.class)
+    void shouldStopWaitingForParallelMethodsWhenInterrupted(final ParserMode parserMode) throws Exception {
+        final var executor = Executors.newSingleThreadExecutor();
+        final var release = new CountDownLatch(1);
+        final var caller = Thread.currentThread();
+
+        try {
+            // Keep the executor busy, so the methods are never generated
+            executor.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            final var interrupter = new Thread(() -> {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                caller.interrupt();
+            });
+
+            interrupter.start();
+
+            final var options = new AssemblerOptions().withParserMode(parserMode).withMethodExecutor(executor);
+
+            assertThatThrownBy(() -> assembler(options).assemble())
+                .isInstanceOf(JasmCancelledException.class)
+                .hasMessageEndingWith("was interrupted");
+
+            assertThat(Thread.interrupted()).isTrue();
+            interrupter.join();
+        } finally {
+            release.countDown();
+            executor.shutdown();
+            assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(ParserMode.class)
+    void shouldStopWaitingForParallelMethodsWhenTimedOut(final ParserMode parserMode) throws Exception {
+        final var executor = Executors.newSingleThreadExecutor();
+        final var release = new CountDownLatch(1);
+
+        try {
+            // Keep the executor busy, so the methods aren't generated before the timeout
+            executor.execute(() -> {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            final var options = new AssemblerOptions()
+                .withParserMode(parserMode)
+                .withMethodExecutor(executor)
+                .withTimeout(Duration.ofMillis(500));
+
+            final var start = System.nanoTime();
+
+            assertThatThrownBy(() -> assembler(options).assemble())
+                .isInstanceOf(JasmCancelledException.class)
+                .matches(e -> ((JasmCancelledException) e).getTimedOut());
+
+            // Stopped waiting at the timeout, not once the executor was free again
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+            assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(ParserMode.class)
+    void shouldAssembleWithinTimeout(final ParserMode parserMode) {
+        final var expected = assembler(new AssemblerOptions()).assemble();
+
+        assertThat(assembler(new AssemblerOptions().withParserMode(parserMode).withTimeout(Duration.ofMinutes(1))).assemble())
+            .isEqualTo(expected);
+
+        assertThat(assembler(new AssemblerOptions().withParserMode(parserMode).withTimeout(Duration.ofSeconds(Long.MAX_VALUE))).assemble())
+            .isEqualTo(expected);
+    }
+
+    @Test
+    void shouldTimeOutDisassembly() {
+        final var bytes = assembler(new AssemblerOptions()).assemble();
+        final var disassembler = new JasmDisassembler("Switch.class", false, false,
+            () -> new ByteArrayInputStream(bytes), Duration.ZERO);
+
+        assertThatThrownBy(disassembler::disassemble)
+            .isInstanceOf(JasmCancelledException.class)
+            .hasMessage("Disassembly of Switch.class timed out after 0ms");
+    }
+
+    @Test
+    void shouldAbandonDisassemblyWhenInterrupted() {
+        final var bytes = assembler(new AssemblerOptions()).assemble();
+        final var disassembler = new JasmDisassembler("Switch.class", false, () -> new ByteArrayInputStream(bytes));
+
+        Thread.currentThread().interrupt();
+
+        assertThatThrownBy(disassembler::disassemble)
+            .isInstanceOf(JasmCancelledException.class)
+            .hasMessage("Disassembly of Switch.class was interrupted");
+    }
+
+    private static JasmAssembler assembler(final AssemblerOptions options) {
+        return new JasmAssembler(JasmSource.of(TEST_CASE, testCaseSource(TEST_CASE)), options);
+    }
+}
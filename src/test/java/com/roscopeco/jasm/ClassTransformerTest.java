@@ -0,0 +1,150 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.function.IntFunction;
+
+import static com.roscopeco.jasm.TestUtil.defineClass;
+import static com.roscopeco.jasm.TestUtil.instantiate;
+import static com.roscopeco.jasm.TestUtil.testCaseSource;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClassTransformerTest {
+    private static final String TEST_CASE = "com/roscopeco/jasm/FrameDirectivesTest.jasm";
+
+    @Test
+    void shouldPassClassThroughTransformersInOrder() {
+        final var seen = new ArrayList<String>();
+
+        assemble(TEST_CASE, new AssemblerOptions().withClassTransformers(
+            next -> recording("first", seen, next),
+            next -> recording("second", seen, next)
+        ));
+
+        assertThat(seen).containsExactly("first", "second");
+    }
+
+    @ParameterizedTest
+    @EnumSource(ParserMode.class)
+    void shouldComputeFramesAfterTransforming(final ParserMode parserMode) {
+        final var source = renamedSource("com/roscopeco/jasm/TransformedFrames" + parserMode);
+        final var options = new AssemblerOptions()
+            .withParserMode(parserMode)
+            .withClassTransformers(ClassTransformerTest::replacingZero);
+
+        final var obj = instantiate(defineClass(assemble(source, options)), IntFunction.class);
+
+        assertThat(obj.apply(0)).isEqualTo("nothing");
+        assertThat(obj.apply(5)).isEqualTo("positive big");
+        assertThat(obj.apply(-3)).isEqualTo("negative small");
+    }
+
+    @Test
+    void shouldTransformMethodsGeneratedInParallel() {
+        final var executor = Executors.newFixedThreadPool(4);
+
+        try {
+            final var source = renamedSource("com/roscopeco/jasm/TransformedParallel");
+            final var options = new AssemblerOptions()
+                .withMethodExecutor(executor)
+                .withClassTransformers(ClassTransformerTest::replacingZero);
+
+            final var obj = instantiate(defineClass(assemble(source, options)), IntFunction.class);
+
+            assertThat(obj.apply(0)).isEqualTo("nothing");
+            assertThat(obj.apply(5)).isEqualTo("positive big");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(ParserMode.class)
+    void shouldAssembleClassNodes(final ParserMode parserMode) {
+        final var options = new AssemblerOptions().withParserMode(parserMode);
+        final var nodes = new JasmAssembler(JasmSource.of("Test.jasm", testCaseSource(TEST_CASE)), options)
+            .assembleClassNodes();
+
+        assertThat(nodes).containsOnlyKeys("com/roscopeco/jasm/FrameDirectivesTest");
+
+        final var node = nodes.get("com/roscopeco/jasm/FrameDirectivesTest");
+
+        assertThat(node.name).isEqualTo("com/roscopeco/jasm/FrameDirectivesTest");
+        assertThat(node.methods).extracting(m -> m.name).contains("<init>", "apply");
+
+        final var writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        node.accept(writer);
+
+        assertThat(writer.toByteArray()).isEqualTo(assemble(TEST_CASE, options));
+    }
+
+    @Test
+    void shouldTransformClassNodes() {
+        final var seen = new ArrayList<String>();
+        final var options = new AssemblerOptions().withClassTransformers(next -> recording("only", seen, next));
+
+        final var nodes = new JasmAssembler(JasmSource.of(TEST_CASE, testCaseSource(TEST_CASE)), options)
+            .assembleClassNodes();
+
+        assertThat(seen).containsExactly("only");
+        assertThat(nodes).hasSize(1);
+    }
+
+    private static ClassVisitor recording(final String id, final List<String> seen, final ClassVisitor next) {
+        return new ClassVisitor(Opcodes.ASM9, next) {
+            @Override
+            public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                seen.add(id);
+                super.visit(version, access, name, signature, superName, interfaces);
+            }
+        };
+    }
+
+    /**
+     * Replaces the string constant "zero" with code that builds "nothing", which needs a deeper
+     * stack than the code it replaces.
+     */
+    private static ClassVisitor replacingZero(final ClassVisitor next) {
+        return new ClassVisitor(Opcodes.ASM9, next) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                return new MethodVisitor(Opcodes.ASM9, super.visitMethod(access, name, descriptor, signature, exceptions)) {
+                    @Override
+                    public void visitLdcInsn(Object value) {
+                        if ("zero".equals(value)) {
+                            super.visitLdcInsn("no");
+                            super.visitLdcInsn("thing");
+                            super.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/String", "concat",
+                                "(Ljava/lang/String;)Ljava/lang/String;", false);
+                        } else {
+                            super.visitLdcInsn(value);
+                        }
+                    }
+                };
+            }
+        };
+    }
+
+    private static String renamedSource(final String name) {
+        return testCaseSource(TEST_CASE).replace("com/roscopeco/jasm/FrameDirectivesTest", name);
+    }
+
+    private static byte[] assemble(final String testCaseOrSource, final AssemblerOptions options) {
+        final var source = testCaseOrSource.endsWith(".jasm") ? testCaseSource(testCaseOrSource) : testCaseOrSource;
+        return new JasmAssembler(JasmSource.of("Test.jasm", source), options).assemble();
+    }
+}
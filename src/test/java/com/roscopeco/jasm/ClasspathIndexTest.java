@@ -0,0 +1,165 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm;
+
+import com.roscopeco.jasm.model.Interface1;
+import com.roscopeco.jasm.model.Superclass;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static com.roscopeco.jasm.TestUtil.assembleClasses;
+import static com.roscopeco.jasm.TestUtil.frameStackTypes;
+import static com.roscopeco.jasm.TestUtil.inputStreamForTestCase;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ClasspathIndexTest {
+    private static ClasspathIndex jdkIndex;
+
+    @BeforeAll
+    static void buildJdkIndex() {
+        jdkIndex = ClasspathIndex.build(List.of());
+    }
+
+    @Test
+    void shouldIndexClassDirectories() throws Exception {
+        final var index = ClasspathIndex.build(List.of(testClassesDirectory()), false);
+
+        final var superclass = index.lookup("com/roscopeco/jasm/model/Superclass");
+        assertThat(superclass).isNotNull();
+        assertThat(superclass.getSuperName()).isEqualTo("java/lang/Object");
+        assertThat(superclass.isInterface()).isFalse();
+
+        final var iface = index.lookup("com/roscopeco/jasm/model/Interface1");
+        assertThat(iface).isNotNull();
+        assertThat(iface.isInterface()).isTrue();
+
+        assertThat(index.lookup("java/lang/String")).isNull();
+    }
+
+    @Test
+    void shouldIndexJdkClasses() {
+        final var list = jdkIndex.lookup("java/util/ArrayList");
+
+        assertThat(list).isNotNull();
+        assertThat(list.getSuperName()).isEqualTo("java/util/AbstractList");
+        assertThat(list.getInterfaces()).contains("java/util/List", "java/util/RandomAccess");
+
+        assertThat(jdkIndex.lookup("java/lang/Object").getSuperName()).isNull();
+        assertThat(jdkIndex.lookup("java/util/ArrayLis")).isNull();
+        assertThat(jdkIndex.lookup("java/util/ArrayListX")).isNull();
+    }
+
+    @Test
+    void shouldIndexJars(@TempDir final Path dir) throws IOException {
+        final var jar = dir.resolve("test.jar");
+
+        try (final var out = new JarOutputStream(Files.newOutputStream(jar))) {
+            for (final var entry : assembleClasses("com/roscopeco/jasm/HierarchyUnit.jasm", Opcodes.V11).entrySet()) {
+                out.putNextEntry(new JarEntry(entry.getKey() + ".class"));
+                out.write(entry.getValue());
+                out.closeEntry();
+            }
+        }
+
+        final var index = ClasspathIndex.build(List.of(jar, dir.resolve("missing.jar")), false);
+
+        assertThat(index.getSize()).isEqualTo(4);
+        assertThat(index.lookup("com/roscopeco/jasm/HierarchyLeft").getSuperName())
+            .isEqualTo("com/roscopeco/jasm/HierarchyBase");
+        assertThat(index.lookup("com/roscopeco/jasm/HierarchyBase").getInterfaces())
+            .containsExactly("java/util/function/Supplier");
+    }
+
+    @Test
+    void shouldSkipCorruptClassFiles(@TempDir final Path dir) throws IOException {
+        final var classes = assembleClasses("com/roscopeco/jasm/HierarchyUnit.jasm", Opcodes.V11);
+        final var truncated = classes.get("com/roscopeco/jasm/HierarchyLeft");
+
+        for (final var entry : classes.entrySet()) {
+            final var bytes = entry.getValue() == truncated ? Arrays.copyOf(truncated, 24) : entry.getValue();
+            final var file = dir.resolve(entry.getKey() + ".class");
+
+            Files.createDirectories(file.getParent());
+            Files.write(file, bytes);
+        }
+
+        final var badPool = Arrays.copyOf(truncated, truncated.length);
+        badPool[8] = (byte) 0xFF;
+        Files.write(dir.resolve("BadPool.class"), badPool);
+
+        final var index = ClasspathIndex.build(List.of(dir), false);
+
+        assertThat(index.getSize()).isEqualTo(3);
+        assertThat(index.lookup("com/roscopeco/jasm/HierarchyLeft")).isNull();
+        assertThat(index.lookup("com/roscopeco/jasm/HierarchyBase")).isNotNull();
+    }
+
+    @Test
+    void shouldRoundTripThroughFile(@TempDir final Path dir) throws Exception {
+        final var file = dir.resolve("classpath.idx");
+        ClasspathIndex.build(List.of(testClassesDirectory()), false).write(file);
+
+        final var index = ClasspathIndex.open(file);
+
+        assertThat(index.lookup(Superclass.class.getName().replace('.', '/'))).isNotNull();
+        assertThat(index.lookup(Interface1.class.getName().replace('.', '/')).isInterface()).isTrue();
+        assertThat(ClasspathIndex.of(ByteBuffer.wrap(Files.readAllBytes(file))).getSize()).isEqualTo(index.getSize());
+    }
+
+    @Test
+    void shouldRejectInvalidIndex() {
+        assertThatThrownBy(() -> ClasspathIndex.of(ByteBuffer.wrap(new byte[32])))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Not a JASM classpath index");
+    }
+
+    @Test
+    void shouldComputeFramesFromIndex(@TempDir final Path dir) throws IOException {
+        for (final var entry : assembleClasses("com/roscopeco/jasm/HierarchyUnit.jasm", Opcodes.V11).entrySet()) {
+            final var file = dir.resolve(entry.getKey() + ".class");
+            Files.createDirectories(file.getParent());
+            Files.write(file, entry.getValue());
+        }
+
+        final var index = ClasspathIndex.build(List.of(dir));
+        final var assembler = new JasmAssembler(
+            JasmSource.of("HierarchyClient.jasm", () -> inputStreamForTestCase("com/roscopeco/jasm/HierarchyClient.jasm")),
+            new AssemblerOptions().withClassHierarchy(index)
+        );
+
+        assertThat(frameStackTypes(assembler.assemble())).contains("com/roscopeco/jasm/HierarchyBase");
+    }
+
+    @Test
+    void shouldFailWhenTypeIsMissingFromIndex() {
+        final var assembler = new JasmAssembler(
+            JasmSource.of("HierarchyClient.jasm", () -> inputStreamForTestCase("com/roscopeco/jasm/HierarchyClient.jasm")),
+            new AssemblerOptions().withClassHierarchy(jdkIndex)
+        );
+
+        assertThatThrownBy(assembler::assemble)
+            .isInstanceOf(AssemblyException.class)
+            .hasMessageContaining("HierarchyClient.jasm:[5:0]")
+            .hasMessageContaining("Cannot compute stack map frames for com/roscopeco/jasm/HierarchyClient")
+            .hasMessageContaining("not found (is it on the classpath?)");
+    }
+
+    private static Path testClassesDirectory() throws Exception {
+        return Path.of(Superclass.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    }
+}
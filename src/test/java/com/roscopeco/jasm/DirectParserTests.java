@@ -0,0 +1,188 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm;
+
+import com.roscopeco.jasm.antlr.JasmLexer;
+import com.roscopeco.jasm.antlr.JasmParser;
+import com.roscopeco.jasm.errors.CollectingErrorListener;
+import com.roscopeco.jasm.errors.StandardErrorCollector;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the hand-written parser generates exactly the same code as the generated parser
+ * and JasmAssemblingVisitor, and reports exactly the same errors (by falling back to them).
+ */
+class DirectParserTests {
+    static Stream<String> corpus() throws IOException, URISyntaxException {
+        return FastLexerTests.corpus();
+    }
+
+    @ParameterizedTest
+    @MethodSource("corpus")
+    void shouldAssembleCorpusLikeGeneratedParser(final String testCase) {
+        final var source = corpusSource(testCase);
+
+        for (final var lexerMode : LexerMode.values()) {
+            final var options = new AssemblerOptions().withLexerMode(lexerMode);
+            assertSameResult(source, testCase, options);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("corpus")
+    void shouldGenerateCorpusWithoutFallingBack(final String testCase) {
+        final var source = corpusSource(testCase);
+        final var errors = new StandardErrorCollector();
+        final var parser = new JasmParser(new CommonTokenStream(new JasmLexer(CharStreams.fromString(source))));
+        parser.removeErrorListeners();
+        parser.addErrorListener(new CollectingErrorListener(testCase, errors));
+
+        final var expected = new ArrayList<byte[]>();
+
+        for (final var ctx : parser.unit().class_()) {
+            final var writer = new ClassWriter(0);
+            ctx.accept(new JasmAssemblingVisitor(writer, new Modifiers(), testCase, Opcodes.V11, errors));
+            expected.add(writer.toByteArray());
+        }
+
+        // Only units the generated parser accepts are guaranteed not to fall back
+        if (errors.hasErrors()) {
+            return;
+        }
+
+        final var direct = new DirectAssembler(new JasmLexer(CharStreams.fromString(source)), testCase, Opcodes.V11);
+        final var actual = new ArrayList<byte[]>();
+
+        for (final var declared : direct.declaredClasses()) {
+            final var writer = new ClassWriter(0);
+            direct.generate(declared, writer);
+            actual.add(writer.toByteArray());
+        }
+
+        assertThat(actual).containsExactlyElementsOf(expected);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "class",
+        "class Foo {",
+        "class Foo { bar()V { return }",
+        "class Foo {} class Foo {}",
+        "class Foo extends Bar {}",
+        "class Foo implements Bar {}",
+        "class Foo { bar I = 1 }",
+        "class Foo { bar V }",
+        "class Foo { bar()V { goto nowhere\n return } }",
+        "class Foo { bar()V { dconst 2\n fconst 3\n iconst 6\n lconst 2\n return } }",
+        "class Foo { bar()V { invokedynamic baz()V { invokestatic Foo.boot()V }\n return } }",
+        "class Foo { bar()V { frame bogus\n return } }",
+        "class Foo { bar()V { frame same\n frame same\n return } }",
+        "class Foo { bar()V { frame same1 { uninit(x) }\n return } }",
+        "class Foo { bar()V { bogus\n return } }",
+        "class Foo { bar()V { tableswitch d { 1L: d }\n d:\n return } }",
+        "@Baz(a = @Qux(b = {1, @Quux(c = 2)})) class Foo { bar(@Baz int, @Qux [Ljava/lang/Object;)V }",
+        "#@Baz(a = [Foo.BAR], `b c` = `d e`) class `Foo Bar` { @`x`(y = 1.5d) static final `a b` J = 1L }",
+        "class Foo { bar()V { try { return } catch(java/lang/Exception) { athrow } catch(java/lang/Error) { athrow } } }",
+    })
+    void shouldAssembleLikeGeneratedParser(final String source) {
+        assertSameResult(source, "Test.jasm", new AssemblerOptions());
+    }
+
+    @Test
+    void shouldGenerateMethodsInParallelLikeGeneratedParser() {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            for (final var testCase : new String[] {
+                "com/roscopeco/jasm/FrameDirectivesTest.jasm",
+                "com/roscopeco/jasm/SwitchTests.jasm",
+                "com/roscopeco/jasm/ClassWithMultipleErrors.jasm",
+            }) {
+                assertSameResult(corpusSource(testCase), testCase, new AssemblerOptions().withMethodExecutor(executor));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void shouldFallBackLikeGeneratedParserWhenClassFailsAfterMethodsQueued() {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            // The bad field is found after both methods have been queued
+            final var source = "class Foo { a()V { return }\n b()V { return }\n bar V }";
+
+            assertSameResult(source, "Test.jasm", new AssemblerOptions().withMethodExecutor(executor));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void assertSameResult(final String source, final String unitName, final AssemblerOptions options) {
+        final var expected = assembleOrThrow(source, unitName, options.withParserMode(ParserMode.ANTLR));
+        final var actual = assembleOrThrow(source, unitName, options.withParserMode(ParserMode.DIRECT));
+
+        if (expected instanceof Throwable) {
+            assertThat(actual).isInstanceOf(Throwable.class);
+            assertThat(actual.getClass()).isEqualTo(expected.getClass());
+            assertThat(((Throwable) actual).getMessage()).isEqualTo(((Throwable) expected).getMessage());
+        } else {
+            assertThat(actual).isNotInstanceOf(Throwable.class);
+            assertThat(classBytes(actual)).containsExactlyElementsOf(classBytes(expected));
+        }
+    }
+
+    private static Object assembleOrThrow(final String source, final String unitName, final AssemblerOptions options) {
+        try {
+            return assemble(source, unitName, options);
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    private static Map<String, byte[]> assemble(final String source, final String unitName, final AssemblerOptions options) {
+        return new JasmAssembler(JasmSource.of(unitName, source), options).assembleClasses();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> classBytes(final Object classes) {
+        final var result = new ArrayList<String>();
+
+        ((Map<String, byte[]>) classes).forEach((name, bytes) -> result.add(name + ":" + Arrays.toString(bytes)));
+
+        return result;
+    }
+
+    private static String corpusSource(final String testCase) {
+        try (final var input = TestUtil.inputStreamForTestCase(testCase)) {
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
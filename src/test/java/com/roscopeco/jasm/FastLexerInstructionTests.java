@@ -0,0 +1,20 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm;
+
+import org.antlr.v4.runtime.TokenSource;
+
+import static com.roscopeco.jasm.TestUtil.testCaseFastLexer;
+
+/**
+ * Runs the instruction lexer tests against the hand-written lexer.
+ */
+class FastLexerInstructionTests extends LexerInstructionTests {
+    @Override
+    TokenSource lexer(final String testCase) {
+        return testCaseFastLexer(testCase);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm;
+
+import com.roscopeco.jasm.antlr.JasmLexer;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.roscopeco.jasm.TestUtil.testCaseFastLexer;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the lexer tests against the hand-written lexer, and checks it produces the same
+ * tokens as the generated lexer for the whole test corpus.
+ */
+class FastLexerTests extends LexerTests {
+    @Override
+    TokenSource lexer(final String testCase) {
+        return testCaseFastLexer(testCase);
+    }
+
+    static Stream<String> corpus() throws IOException, URISyntaxException {
+        final var root = Path.of(TestUtil.class.getClassLoader().getResource("jasm").toURI());
+
+        try (final var files = Files.walk(root)) {
+            return files
+                .filter(file -> file.toString().endsWith(".jasm"))
+                .map(file -> root.relativize(file).toString().replace('\\', '/'))
+                .sorted()
+                .collect(Collectors.toList())
+                .stream();
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("corpus")
+    void shouldLexCorpusLikeGeneratedLexer(final String testCase) {
+        try (final var input = TestUtil.inputStreamForTestCase(testCase)) {
+            final var source = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+
+            assertThat(tokens(new FastJasmLexer(CharStreams.fromString(source))))
+                .containsExactlyElementsOf(tokens(new JasmLexer(CharStreams.fromString(source))));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "", " ", "\n\r\t", "-", ".", "-.", "-.5", "1.", "1.d", "1.5D", "-12L", "3l", "12abc", "1.2.3",
+        "\"", "\"abc", "\"a\"\"b\"", "\"a\\\"b\"", "\"a\\\"", "\"a\\\"\"", "\"\"\"", "\"a\nb\"",
+        "`", "``", "```", "````", "`a``b`", "`a``", "`a\n`",
+        "@", "@Foo", "@foo/Bar", "@`x y`", "@`x", "@1",
+        "label:", "a$b:", "$a:", "foo/bar:", "java/lang/Object", "a//b", "a/*b*/c", "/*", "/*/", "/", "/**/",
+        "<init>", "<clinit>", "<ini", "<", "V", "void", "Vv", "int", "integer", "dup2_x1", "dup2_x1x",
+        "class", "classy", "true", "false", "#", "*", "=", ";", "é", "😀", "x😀y",
+    })
+    void shouldLexEdgeCasesLikeGeneratedLexer(final String source) {
+        assertThat(tokens(new FastJasmLexer(CharStreams.fromString(source))))
+            .containsExactlyElementsOf(tokens(new JasmLexer(CharStreams.fromString(source))));
+    }
+
+    @Test
+    void shouldAssembleWithFastLexer() {
+        final var source = TestUtil.testCaseSource("com/roscopeco/jasm/FrameDirectivesTest.jasm");
+
+        final var fast = new JasmAssembler(
+            JasmSource.of("FrameDirectivesTest.jasm", source),
+            new AssemblerOptions().withLexerMode(LexerMode.FAST)
+        ).assemble();
+
+        assertThat(fast).isEqualTo(JasmAssembler.assemble(source, "FrameDirectivesTest.jasm"));
+    }
+
+    @Test
+    void shouldReportPositionAfterLastToken() {
+        final var lexer = new FastJasmLexer(CharStreams.fromString("class\n  Foo"));
+
+        while (lexer.nextToken().getType() != Token.EOF) {
+            // consume
+        }
+
+        assertThat(lexer.getLine()).isEqualTo(2);
+        assertThat(lexer.getCharPositionInLine()).isEqualTo(5);
+    }
+
+    private static List<String> tokens(final TokenSource lexer) {
+        final var tokens = new ArrayList<String>();
+        Token token;
+
+        do {
+            token = lexer.nextToken();
+            tokens.add(JasmLexer.VOCABULARY.getSymbolicName(token.getType())
+                + "[" + token.getText() + "]@" + token.getLine() + ":" + token.getCharPositionInLine()
+                + "/" + token.getStartIndex() + "-" + token.getStopIndex() + "#" + token.getChannel());
+        } while (token.getType() != Token.EOF);
+
+        return tokens;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import static com.roscopeco.jasm.TestUtil.defineClass;
+import static com.roscopeco.jasm.TestUtil.frameStackTypes;
+import static com.roscopeco.jasm.TestUtil.instantiate;
+import static com.roscopeco.jasm.TestUtil.testCaseSource;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FrameCacheTest {
+    private static final String OBJECT = "java/lang/Object";
+
+    @Test
+    void shouldReuseFramesForUnchangedMethods() {
+        final var cache = new FrameCache();
+        final var source = testCaseSource("com/roscopeco/jasm/FrameDirectivesTest.jasm")
+            .replace("com/roscopeco/jasm/FrameDirectivesTest", "com/roscopeco/jasm/FrameCacheTest0000");
+
+        final var first = assemble(source, new AssemblerOptions().withFrameCache(cache));
+
+        assertThat(cache.getMissCount()).isEqualTo(4);
+        assertThat(cache.getHitCount()).isZero();
+        assertThat(cache.getSize()).isEqualTo(4);
+
+        final var second = assemble(source, new AssemblerOptions().withFrameCache(cache));
+
+        assertThat(cache.getMissCount()).isEqualTo(4);
+        assertThat(cache.getHitCount()).isEqualTo(4);
+        assertThat(second).isEqualTo(first);
+
+        final var obj = instantiate(defineClass(second), IntFunction.class);
+
+        assertThat(obj.apply(0)).isEqualTo("zero");
+        assertThat(obj.apply(5)).isEqualTo("positive big");
+        assertThat(obj.apply(-3)).isEqualTo("negative small");
+    }
+
+    @Test
+    void shouldRecomputeFramesForChangedMethods() {
+        final var cache = new FrameCache();
+        final var source = testCaseSource("com/roscopeco/jasm/FrameDirectivesTest.jasm");
+
+        assemble(source, new AssemblerOptions().withFrameCache(cache));
+        assemble(source.replace("ldc \"big\"", "ldc \"huge\""), new AssemblerOptions().withFrameCache(cache));
+
+        assertThat(cache.getMissCount()).isEqualTo(5);
+        assertThat(cache.getHitCount()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldRecomputeFramesWhenHierarchyChanges() {
+        final var cache = new FrameCache();
+        final var source = testCaseSource("com/roscopeco/jasm/HierarchyClient.jasm");
+
+        final var base = hierarchy(Map.of(
+            "com/roscopeco/jasm/HierarchyLeft", "com/roscopeco/jasm/HierarchyBase",
+            "com/roscopeco/jasm/HierarchyRight", "com/roscopeco/jasm/HierarchyBase",
+            "com/roscopeco/jasm/HierarchyBase", OBJECT
+        ));
+
+        final var other = hierarchy(Map.of(
+            "com/roscopeco/jasm/HierarchyLeft", "com/roscopeco/jasm/OtherBase",
+            "com/roscopeco/jasm/HierarchyRight", "com/roscopeco/jasm/OtherBase",
+            "com/roscopeco/jasm/OtherBase", OBJECT
+        ));
+
+        final var first = assemble(source, new AssemblerOptions().withFrameCache(cache).withClassHierarchy(base));
+        final var second = assemble(source, new AssemblerOptions().withFrameCache(cache).withClassHierarchy(base));
+        final var third = assemble(source, new AssemblerOptions().withFrameCache(cache).withClassHierarchy(other));
+
+        assertThat(cache.getHitCount()).isEqualTo(3);
+        assertThat(cache.getMissCount()).isEqualTo(3);
+
+        assertThat(frameStackTypes(first)).contains("com/roscopeco/jasm/HierarchyBase");
+        assertThat(frameStackTypes(second)).contains("com/roscopeco/jasm/HierarchyBase");
+        assertThat(frameStackTypes(third)).contains("com/roscopeco/jasm/OtherBase");
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedMethods() {
+        final var cache = new FrameCache(2);
+
+        assemble(testCaseSource("com/roscopeco/jasm/FrameDirectivesTest.jasm"), new AssemblerOptions().withFrameCache(cache));
+
+        assertThat(cache.getSize()).isEqualTo(2);
+
+        cache.clear();
+
+        assertThat(cache.getSize()).isZero();
+    }
+
+    private static byte[] assemble(final String source, final AssemblerOptions options) {
+        return new JasmAssembler(JasmSource.of("test.jasm", source), options).assemble();
+    }
+
+    private static ClassHierarchy hierarchy(final Map<String, String> supers) {
+        return name -> name.equals(OBJECT) || supers.containsKey(name)
+            ? new HierarchyEntry(name, name.equals(OBJECT) ? null : supers.get(name), List.of(), false)
+            : null;
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm;
+
+import com.roscopeco.jasm.antlr.JasmLexer;
+import com.roscopeco.jasm.antlr.JasmParser;
+import com.roscopeco.jasm.errors.StandardErrorCollector;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static com.roscopeco.jasm.TestUtil.testCaseSource;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InternPoolTest {
+    private static final String SOURCE = "class Foo {\n"
+        + "  bar(java/lang/String, [I)V {\n"
+        + "    aload 0\n"
+        + "    invokevirtual java/lang/String.length()I\n"
+        + "    aload 0\n"
+        + "    invokestatic java/lang/String.valueOf(java/lang/Object)java/lang/String\n"
+        + "    getstatic java/lang/System.out java/io/PrintStream\n"
+        + "    invokevirtual java/io/PrintStream.println(java/lang/String)V\n"
+        + "    return\n"
+        + "  }\n"
+        + "}\n";
+
+    static Stream<String> corpus() throws IOException, URISyntaxException {
+        return FastLexerTests.corpus();
+    }
+
+    @ParameterizedTest
+    @MethodSource("corpus")
+    void shouldAssembleCorpusLikeWithoutPool(final String testCase) {
+        final var source = testCaseSource(testCase);
+        final var pool = new InternPool();
+
+        for (final var parserMode : ParserMode.values()) {
+            final var options = new AssemblerOptions().withParserMode(parserMode);
+            final var expected = assembleOrThrow(source, testCase, options);
+
+            // Twice, so the second time round is from the pool
+            for (int i = 0; i < 2; i++) {
+                final var actual = assembleOrThrow(source, testCase, options.withInternPool(pool));
+
+                if (expected instanceof Throwable) {
+                    assertThat(actual).isInstanceOf(expected.getClass());
+                    assertThat(((Throwable) actual).getMessage()).isEqualTo(((Throwable) expected).getMessage());
+                } else {
+                    assertThat(classes(actual).keySet()).containsExactlyElementsOf(classes(expected).keySet());
+                    classes(expected).forEach((name, bytes) -> assertThat(classes(actual).get(name)).isEqualTo(bytes));
+                }
+            }
+        }
+    }
+
+    @Test
+    void shouldShareNamesAndDescriptorsBetweenAssemblies() {
+        final var pool = new InternPool();
+
+        final var first = generateWithVisitor(pool);
+        final var misses = pool.getMissCount();
+
+        assertThat(pool.getSize()).isPositive();
+
+        final var second = generateWithVisitor(pool);
+        final var third = generateDirect(pool);
+
+        assertThat(pool.getMissCount()).isEqualTo(misses);
+        assertThat(pool.getHitCount()).isPositive();
+        assertThat(second).containsExactlyElementsOf(first);
+        assertThat(third).containsExactlyElementsOf(first);
+
+        for (int i = 0; i < first.size(); i++) {
+            assertThat(second.get(i)).isSameAs(first.get(i));
+            assertThat(third.get(i)).isSameAs(first.get(i));
+        }
+    }
+
+    @Test
+    void shouldNotPoolWithoutPool() {
+        final var first = generateWithVisitor(null);
+        final var second = generateWithVisitor(null);
+
+        assertThat(second).containsExactlyElementsOf(first);
+        assertThat(second.get(0)).isNotSameAs(first.get(0));
+    }
+
+    @Test
+    void shouldStayWithinMaxEntries() {
+        final var pool = new InternPool(2);
+
+        generateWithVisitor(pool);
+        generateDirect(pool);
+
+        assertThat(pool.getSize()).isLessThanOrEqualTo(6);
+
+        pool.clear();
+
+        assertThat(pool.getSize()).isZero();
+    }
+
+    @Test
+    void shouldKeepEntriesInUseWhenFull() {
+        final var pool = new InternPool(40);
+        final var options = new AssemblerOptions().withInternPool(pool);
+
+        for (int i = 0; i < 20; i++) {
+            final var misses = pool.getMissCount();
+            new JasmAssembler(JasmSource.of("Foo.jasm", SOURCE), options).assembleClasses();
+
+            if (i > 0) {
+                assertThat(pool.getMissCount()).as("misses on iteration %d", i).isEqualTo(misses);
+            }
+
+            // Many more names than fit in the pool over all the iterations, each used only once
+            final var fresh = new StringBuilder("class Fresh" + i + " {\n  m()V {\n");
+
+            for (int j = 0; j < 12; j++) {
+                fresh.append("    invokestatic Fresh").append(i).append('_').append(j).append(".m()V\n");
+            }
+
+            new JasmAssembler(JasmSource.of("Fresh.jasm", fresh.append("    return\n  }\n}\n").toString()), options)
+                .assembleClasses();
+        }
+
+        assertThat(pool.getSize()).isLessThanOrEqualTo(3 * 40);
+    }
+
+    @ParameterizedTest
+    @EnumSource(ParserMode.class)
+    void shouldShareDescriptorsHoweverTheyAreLaidOut(final ParserMode parserMode) {
+        final var pool = new InternPool();
+        final var options = new AssemblerOptions().withParserMode(parserMode).withInternPool(pool);
+
+        new JasmAssembler(JasmSource.of("Foo.jasm", SOURCE), options).assembleClasses();
+        final var misses = pool.getMissCount();
+
+        final var relaidOut = SOURCE
+            .replace("bar(java/lang/String, [I)V", "bar( java/lang/String /* comment */,\n      [I ) V")
+            .replace("println(java/lang/String)V", "println(java/lang/String // comment\n)V");
+
+        new JasmAssembler(JasmSource.of("Foo.jasm", relaidOut), options).assembleClasses();
+
+        assertThat(pool.getMissCount()).isEqualTo(misses);
+    }
+
+    private static List<String> generateWithVisitor(final InternPool pool) {
+        final var recorder = new RecordingClassVisitor();
+        final var errors = new StandardErrorCollector();
+        final var parser = new JasmParser(new CommonTokenStream(new JasmLexer(CharStreams.fromString(SOURCE))));
+
+        parser.class_().accept(new JasmAssemblingVisitor(recorder, new Modifiers(), "Foo.jasm", Opcodes.V11, errors, null, pool));
+
+        assertThat(errors.hasErrors()).isFalse();
+        return recorder.symbols;
+    }
+
+    private static List<String> generateDirect(final InternPool pool) {
+        final var recorder = new RecordingClassVisitor();
+        final var direct = new DirectAssembler(new JasmLexer(CharStreams.fromString(SOURCE)), "Foo.jasm", Opcodes.V11, null, pool);
+
+        direct.declaredClasses().forEach(declared -> direct.generate(declared, recorder));
+
+        return recorder.symbols;
+    }
+
+    private static Object assembleOrThrow(final String source, final String unitName, final AssemblerOptions options) {
+        try {
+            return new JasmAssembler(JasmSource.of(unitName, source), options).assembleClasses();
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, byte[]> classes(final Object result) {
+        assertThat(result).isInstanceOf(Map.class);
+        return (Map<String, byte[]>) result;
+    }
+
+    /**
+     * Records the names and descriptors passed for methods, and method and field instructions.
+     */
+    private static class RecordingClassVisitor extends ClassVisitor {
+        final List<String> symbols = new ArrayList<>();
+
+        RecordingClassVisitor() {
+            super(Opcodes.ASM9);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            symbols.add(name);
+            symbols.add(descriptor);
+
+            return new MethodVisitor(Opcodes.ASM9) {
+                @Override
+                public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+                    symbols.add(owner);
+                    symbols.add(name);
+                    symbols.add(descriptor);
+                }
+
+                @Override
+                public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+                    symbols.add(owner);
+                    symbols.add(name);
+                    symbols.add(descriptor);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm;
+
+import kotlin.Unit;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Opcodes;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
+
+import static com.roscopeco.jasm.JasmCodeBuilder.catching;
+import static com.roscopeco.jasm.TestUtil.defineClass;
+import static com.roscopeco.jasm.TestUtil.instantiate;
+import static com.roscopeco.jasm.TestUtil.testCaseSource;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+
+class JasmClassBuilderTest {
+    private static final Handle CONCAT = new Handle(
+        Opcodes.H_INVOKESTATIC,
+        "java/lang/invoke/StringConcatFactory",
+        "makeConcatWithConstants",
+        "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;"
+            + "Ljava/lang/String;[Ljava/lang/Object;)Ljava/lang/invoke/CallSite;",
+        false
+    );
+
+    @Test
+    void shouldBuildClassWithLabelsSwitchesTryCatchAndInvokedynamic() {
+        final var bytes = new JasmClassBuilder("com/roscopeco/jasm/BuiltFunction")
+            .interfaces("java/util/function/IntFunction")
+            .method(ACC_PUBLIC, "<init>", "()V", code -> code
+                .aload(0)
+                .invokespecial("java/lang/Object", "<init>", "()V")
+                .return_())
+            .method(ACC_PUBLIC, "apply", "(I)Ljava/lang/Object;", code -> code
+                .iload(1)
+                .tableswitch("other", Map.of(0, "zero", 2, "divide"))
+                .label("zero")
+                .ldc("zero")
+                .areturn()
+                .label("divide")
+                .tryCatch(
+                    body -> body.bipush(10).iload(1).iconst(2).isub().idiv().pop().ldc("divided").astore(2),
+                    "java/lang/ArithmeticException",
+                    handler -> handler.pop().ldc("caught").astore(2))
+                .aload(2)
+                .areturn()
+                .label("other")
+                .iload(1)
+                .invokedynamic("makeConcatWithConstants", "(I)Ljava/lang/String;", CONCAT, "n=\u0001")
+                .areturn())
+            .assemble();
+
+        final var obj = instantiate(defineClass(bytes), IntFunction.class);
+
+        assertThat(obj.apply(0)).isEqualTo("zero");
+        assertThat(obj.apply(1)).isEqualTo("n=1");
+        assertThat(obj.apply(2)).isEqualTo("caught");
+        assertThat(obj.apply(7)).isEqualTo("n=7");
+    }
+
+    @Test
+    void shouldGenerateSameBytecodeAsEquivalentJasm() {
+        final var source = testCaseSource("com/roscopeco/jasm/MultiCatchFallthroughTest.jasm");
+
+        final var built = new JasmClassBuilder("com/roscopeco/jasm/MultiCatchFallthroughTest")
+            .access(ACC_PUBLIC)
+            .interfaces("com/roscopeco/jasm/model/MultiCatchFallthroughTest")
+            .source("MultiCatchFallthroughTest.jasm")
+            .method(ACC_PUBLIC, "multiCatchFallthroughTest", "(Ljava/lang/Exception;)Ljava/lang/String;", code -> code
+                .ldc("Fail")
+                .astore(2)
+                .tryCatch(body -> body.aload(1).athrow(),
+                    catching("java/io/IOException", c -> c.ldc("IOE").astore(2)),
+                    catching("java/lang/NullPointerException", c -> c.ldc("NPE").astore(2)),
+                    catching("java/lang/Exception", c -> c.ldc("EXCEPTION").astore(2)))
+                .aload(2)
+                .areturn())
+            .method(ACC_PUBLIC, "<init>", "()V", code -> code
+                .aload(0)
+                .invokespecial("java/lang/Object", "<init>", "()V")
+                .return_())
+            .assemble();
+
+        assertThat(built).isEqualTo(
+            new JasmAssembler(JasmSource.of("MultiCatchFallthroughTest.jasm", source), new AssemblerOptions()).assemble());
+    }
+
+    @Test
+    void shouldBuildMethodBodiesOnlyOnce() {
+        final var built = new AtomicInteger();
+
+        final var builder = new JasmClassBuilder("com/roscopeco/jasm/BuiltOnce")
+            .interfaces("java/util/function/IntSupplier")
+            .method(ACC_PUBLIC, "<init>", "()V", code -> code
+                .aload(0)
+                .invokespecial("java/lang/Object", "<init>", "()V")
+                .return_())
+            .method(ACC_PUBLIC, "getAsInt", "()I", code -> {
+                built.incrementAndGet();
+                code.iconst(1).ifeq("zero").bipush(7).ireturn().label("zero").iconst(0).ireturn();
+            });
+
+        final var first = builder.assemble();
+
+        assertThat(builder.assemble()).isEqualTo(first);
+        assertThat(instantiate(defineClass(first), IntSupplier.class).getAsInt()).isEqualTo(7);
+        assertThat(built).hasValue(1);
+    }
+
+    @Test
+    void shouldBuildWithKotlinDsl() {
+        final var builder = JasmDsl.jasmClass("com/roscopeco/jasm/BuiltWithDsl", cls -> {
+            cls.interfaces("java/util/function/IntSupplier");
+
+            JasmDsl.method(cls, "<init>", "()V", ACC_PUBLIC, code -> {
+                code.aload(0).invokespecial("java/lang/Object", "<init>", "()V").return_();
+                return Unit.INSTANCE;
+            });
+
+            JasmDsl.method(cls, "getAsInt", "()I", ACC_PUBLIC, code -> {
+                code.sipush(1234).ireturn();
+                return Unit.INSTANCE;
+            });
+
+            return Unit.INSTANCE;
+        });
+
+        assertThat(instantiate(defineClass(builder.assemble()), IntSupplier.class).getAsInt()).isEqualTo(1234);
+    }
+
+    @Test
+    void shouldAcceptClassVisitor() {
+        final var writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+
+        new JasmClassBuilder("com/roscopeco/jasm/BuiltVisited")
+            .interfaces("java/util/function/IntSupplier")
+            .method(ACC_PUBLIC, "<init>", "()V", code -> code
+                .aload(0)
+                .invokespecial("java/lang/Object", "<init>", "()V")
+                .return_())
+            .method(ACC_PUBLIC, "getAsInt", "()I", code -> code
+                .iconst(0)
+                .istore(1)
+                .label("loop")
+                .iinc(1, 3)
+                .iload(1)
+                .bipush(12)
+                .if_icmplt("loop")
+                .iload(1)
+                .ireturn())
+            .accept(writer);
+
+        assertThat(instantiate(defineClass(writer.toByteArray()), IntSupplier.class).getAsInt()).isEqualTo(12);
+    }
+
+    @Test
+    void shouldRejectUndeclaredLabels() {
+        final var builder = new JasmClassBuilder("com/roscopeco/jasm/BuiltBadly");
+
+        assertThatThrownBy(() -> builder.method(ACC_PUBLIC, "m", "()V", code -> code.goto_("nowhere")))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessage("Labels used but not declared: [nowhere]");
+    }
+
+    @Test
+    void shouldRejectInvalidOperands() {
+        final var builder = new JasmClassBuilder("com/roscopeco/jasm/BuiltBadly");
+
+        assertThatThrownBy(() -> builder.method(ACC_PUBLIC, "m", "()V", code -> code.iconst(6)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Invalid operand to iconst: 6 (expecting -1 to 5)");
+
+        assertThatThrownBy(() -> builder.method(ACC_PUBLIC, "m", "()V", code -> code.tableswitch("a", Map.of(0, "a", 100000, "b"))))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageStartingWith("tableswitch from 0 to 100000 needs 100001 entries");
+    }
+}
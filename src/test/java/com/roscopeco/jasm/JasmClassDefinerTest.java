@@ -0,0 +1,159 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static com.roscopeco.jasm.TestUtil.instantiate;
+import static com.roscopeco.jasm.TestUtil.jasmPackageLookup;
+import static com.roscopeco.jasm.TestUtil.stringSupplierSource;
+import static com.roscopeco.jasm.TestUtil.testCaseSource;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class JasmClassDefinerTest {
+    @Test
+    void shouldDefineUnitInItsOwnClassLoaderAndReturnCachedClasses() {
+        final var definer = JasmClassDefiner.withClassLoader(getClass().getClassLoader());
+        final var source = testCaseSource("com/roscopeco/jasm/MultiClassUnit.jasm");
+
+        final var classes = definer.define(source, "MultiClassUnit.jasm");
+
+        assertThat(classes).containsOnlyKeys("com/roscopeco/jasm/MultiClassGreeter", "com/roscopeco/jasm/MultiClassImpl");
+        assertThat(instantiate(classes.get("com/roscopeco/jasm/MultiClassImpl"), Supplier.class).get())
+            .isEqualTo("Hello from a multi-class unit");
+
+        assertThat(definer.define(source, "MultiClassUnit.jasm")).isEqualTo(classes);
+        assertThat(definer.getHitCount()).isEqualTo(1);
+        assertThat(definer.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldKeyCacheBySourceAndUnitNameInEachDefiner() {
+        final var options = new AssemblerOptions();
+        final var definer = JasmClassDefiner.withClassLoader(getClass().getClassLoader(), options);
+
+        final var first = definer.define(stringSupplierSource("DefinedKeyed", "one"), "Keyed.jasm");
+        final var changed = definer.define(stringSupplierSource("DefinedKeyed", "two"), "Keyed.jasm");
+        final var renamed = definer.define(stringSupplierSource("DefinedKeyed", "one"), "Renamed.jasm");
+
+        assertThat(instantiate(changed.get("com/roscopeco/jasm/DefinedKeyed"), Supplier.class).get()).isEqualTo("two");
+        assertThat(changed).isNotEqualTo(first);
+        assertThat(renamed).isNotEqualTo(first);
+
+        // Each definer has a cache of its own, even with the same options
+        final var other = JasmClassDefiner.withClassLoader(getClass().getClassLoader(), options);
+        assertThat(other.define(stringSupplierSource("DefinedKeyed", "one"), "Keyed.jasm")).isNotEqualTo(first);
+        assertThat(other.getMissCount()).isEqualTo(1);
+
+        assertThat(definer.define(stringSupplierSource("DefinedKeyed", "one"), "Keyed.jasm")).isEqualTo(first);
+        assertThat(definer.getSize()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldDefineInLookupOnlyOnce() {
+        final var definer = JasmClassDefiner.inLookup(jasmPackageLookup());
+
+        final var clz = definer.define(stringSupplierSource("DefinedInLookup", "lookup")).get("com/roscopeco/jasm/DefinedInLookup");
+
+        assertThat(clz.getClassLoader()).isSameAs(getClass().getClassLoader());
+        assertThat(instantiate(clz, Supplier.class).get()).isEqualTo("lookup");
+
+        // Would fail with a LinkageError if it were defined again
+        assertThat(definer.define(stringSupplierSource("DefinedInLookup", "lookup")).get("com/roscopeco/jasm/DefinedInLookup")).isSameAs(clz);
+    }
+
+    @Test
+    void shouldCachePrecompiledUnitsByTheirBytes() {
+        final var definer = JasmClassDefiner.inLookup(jasmPackageLookup());
+        final var bytes = new JasmAssembler(JasmSource.of("Precompiled.jasm", stringSupplierSource("DefinedPrecompiled", "precompiled")),
+            new AssemblerOptions()).precompile();
+
+        final var clz = definer.define(JasmSource.precompiled("Precompiled.jasm", bytes))
+            .get("com/roscopeco/jasm/DefinedPrecompiled");
+
+        assertThat(instantiate(clz, Supplier.class).get()).isEqualTo("precompiled");
+
+        // Would fail with a LinkageError if it were defined again
+        assertThat(definer.define(JasmSource.precompiled("Precompiled.jasm", bytes.clone()))
+            .get("com/roscopeco/jasm/DefinedPrecompiled")).isSameAs(clz);
+        assertThat(definer.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldOpenSourcesOnlyOnce() {
+        final var definer = JasmClassDefiner.withClassLoader(getClass().getClassLoader());
+        final var text = stringSupplierSource("DefinedFromStream", "stream").getBytes(StandardCharsets.UTF_8);
+        final var opened = new AtomicInteger();
+
+        final var classes = definer.define(JasmSource.of("Stream.jasm", () -> {
+            assertThat(opened.incrementAndGet()).isEqualTo(1);
+            return new ByteArrayInputStream(text);
+        }));
+
+        assertThat(instantiate(classes.get("com/roscopeco/jasm/DefinedFromStream"), Supplier.class).get()).isEqualTo("stream");
+        assertThat(definer.define(JasmSource.of("Stream.jasm", () -> new ByteArrayInputStream(text)))).isEqualTo(classes);
+    }
+
+    @Test
+    void shouldDefineHiddenClasses() {
+        assumeTrue(Runtime.version().feature() >= 15, "Hidden classes need Java 15");
+
+        final var definer = JasmClassDefiner.hidden(jasmPackageLookup());
+
+        final var clz = definer.define(stringSupplierSource("DefinedHidden", "hidden")).get("com/roscopeco/jasm/DefinedHidden");
+
+        assertThat(clz.getName()).startsWith("com.roscopeco.jasm.DefinedHidden/");
+        assertThat(instantiate(clz, Supplier.class).get()).isEqualTo("hidden");
+    }
+
+    @Test
+    void shouldDefineOnceWhenRequestedConcurrently() throws InterruptedException, ExecutionException {
+        final var definer = JasmClassDefiner.withClassLoader(getClass().getClassLoader());
+        final var executor = Executors.newFixedThreadPool(8);
+
+        try {
+            final var tasks = new ArrayList<Callable<Class<?>>>();
+
+            for (int i = 0; i < 32; i++) {
+                tasks.add(() -> definer.define(stringSupplierSource("DefinedConcurrently", "x")).get("com/roscopeco/jasm/DefinedConcurrently"));
+            }
+
+            final var results = new ArrayList<Class<?>>();
+
+            for (final Future<Class<?>> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+
+            assertThat(results).allMatch(clz -> clz == results.get(0));
+            assertThat(definer.getMissCount()).isEqualTo(1);
+            assertThat(definer.getHitCount()).isEqualTo(31);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void shouldNotCacheErrors() {
+        final var definer = JasmClassDefiner.withClassLoader(getClass().getClassLoader());
+
+        assertThatThrownBy(() -> definer.define("class Broken {\n  m()V {\n    notaninsn\n  }\n}\n"))
+            .isInstanceOf(AssemblyException.class);
+
+        assertThat(definer.getSize()).isZero();
+    }
+}
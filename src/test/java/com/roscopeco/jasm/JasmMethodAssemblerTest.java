@@ -0,0 +1,146 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import static com.roscopeco.jasm.TestUtil.defineClass;
+import static com.roscopeco.jasm.TestUtil.instantiate;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JasmMethodAssemblerTest {
+    private static final String CONSTRUCTOR = "aload 0\ninvokespecial java/lang/Object.<init>()V\nreturn\n";
+
+    @ParameterizedTest
+    @EnumSource(LexerMode.class)
+    void shouldAssembleMethodBodies(final LexerMode lexerMode) {
+        final var assembler = new JasmMethodAssembler(new AssemblerOptions().withLexerMode(lexerMode));
+        final var writer = intFunction("com/roscopeco/jasm/SnippetBodies" + lexerMode, assembler);
+
+        assembler.assembleMethod(
+            "iload 1\n"
+                + "ifeq zero\n"
+                + "ldc \"nonzero\"\n"
+                + "areturn\n"
+                + "zero:\n"
+                + "ldc \"zero\"\n"
+                + "areturn\n",
+            writer.visitMethod(Opcodes.ACC_PUBLIC, "apply", "(I)Ljava/lang/Object;", null, null)
+        );
+
+        writer.visitEnd();
+
+        final var obj = instantiate(defineClass(writer.toByteArray()), IntFunction.class);
+
+        assertThat(obj.apply(0)).isEqualTo("zero");
+        assertThat(obj.apply(42)).isEqualTo("nonzero");
+    }
+
+    @Test
+    void shouldInjectFragmentsUsingLabelsOfMethod() {
+        final var assembler = new JasmMethodAssembler();
+        final var writer = intFunction("com/roscopeco/jasm/SnippetFragments", assembler);
+        final var mv = writer.visitMethod(Opcodes.ACC_PUBLIC, "apply", "(I)Ljava/lang/Object;", null, null);
+        final var zero = new Label();
+
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ILOAD, 1);
+
+        final var declared = assembler.assembleFragment(
+            "ifeq zero\n"
+                + "iload 1\n"
+                + "iflt negative\n"
+                + "ldc \"positive\"\n"
+                + "areturn\n"
+                + "negative:\n"
+                + "ldc \"negative\"\n"
+                + "areturn\n",
+            mv,
+            Map.of("zero", zero)
+        );
+
+        mv.visitLabel(zero);
+        mv.visitLdcInsn("zero");
+        mv.visitInsn(Opcodes.ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        writer.visitEnd();
+
+        assertThat(declared).containsOnlyKeys("negative");
+
+        final var obj = instantiate(defineClass(writer.toByteArray()), IntFunction.class);
+
+        assertThat(obj.apply(0)).isEqualTo("zero");
+        assertThat(obj.apply(3)).isEqualTo("positive");
+        assertThat(obj.apply(-3)).isEqualTo("negative");
+    }
+
+    @Test
+    void shouldReuseAssemblerForManySnippets() {
+        final var assembler = new JasmMethodAssembler();
+
+        for (int i = 0; i < 1000; i++) {
+            final var node = new MethodNode(Opcodes.ACC_STATIC, "m" + i, "()I", null, null);
+            assembler.assembleMethod("ldc " + i + "\nireturn\n", node);
+
+            assertThat(node.instructions.size()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void shouldNotGenerateAnythingWhenSnippetDoesNotParse() {
+        final var node = new MethodNode(Opcodes.ACC_STATIC, "m", "()V", null, null);
+
+        assertThatThrownBy(() -> new JasmMethodAssembler().assembleMethod("iconst 0\nnotaninsn 7\n", node))
+            .isInstanceOf(AssemblyException.class);
+
+        assertThat(node.instructions.size()).isZero();
+    }
+
+    @Test
+    void shouldReportUndeclaredLabels() {
+        final var node = new MethodNode(Opcodes.ACC_STATIC, "m", "()V", null, null);
+
+        assertThatThrownBy(() -> new JasmMethodAssembler().assembleFragment("goto nowhere\n", node))
+            .isInstanceOf(AssemblyException.class)
+            .extracting(e -> ((AssemblyException) e).getCodeErrors().get(0).getMessage())
+            .isEqualTo("Labels used but not declared: [nowhere]");
+    }
+
+    @Test
+    void shouldRecoverAfterErrors() {
+        final var assembler = new JasmMethodAssembler();
+
+        assertThatThrownBy(() -> assembler.assembleMethod("}\n", new MethodNode()))
+            .isInstanceOf(AssemblyException.class);
+
+        final var node = new MethodNode(Opcodes.ACC_STATIC, "m", "()V", null, null);
+        assembler.assembleMethod("return\n", node);
+
+        assertThat(node.instructions.size()).isEqualTo(1);
+    }
+
+    private static ClassWriter intFunction(final String name, final JasmMethodAssembler assembler) {
+        final var writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+
+        writer.visit(Opcodes.V11, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object",
+            new String[] { "java/util/function/IntFunction" });
+
+        assembler.assembleMethod(CONSTRUCTOR, writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null));
+
+        return writer;
+    }
+}
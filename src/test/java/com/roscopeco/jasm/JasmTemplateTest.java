@@ -0,0 +1,173 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Type;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+import static com.roscopeco.jasm.TestUtil.defineClass;
+import static com.roscopeco.jasm.TestUtil.instantiate;
+import static com.roscopeco.jasm.TestUtil.supplierSource;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JasmTemplateTest {
+    private static final String TEMPLATE = "public class com/roscopeco/jasm/$$name$$ implements java/util/function/IntFunction {\n"
+        + "  public <init>()V {\n"
+        + "    aload 0\n"
+        + "    invokespecial java/lang/Object.<init>()V\n"
+        + "    return\n"
+        + "  }\n"
+        + "\n"
+        + "  public apply(I)java/lang/Object {\n"
+        + "    iload 1\n"
+        + "    ldc \"$$limit$$\"\n"
+        + "    if_icmpge big\n"
+        + "    ldc \"small $$name$$\"\n"
+        + "    areturn\n"
+        + "  big:\n"
+        + "    ldc \"$$big$$\"\n"
+        + "    areturn\n"
+        + "  }\n"
+        + "}\n";
+
+    private static final String TYPES_TEMPLATE = supplierSource("$$name$$",
+        "new java/util/$$type$$", "dup", "invokespecial java/util/$$type$$.<init>()V", "areturn");
+
+    @Test
+    void shouldFindPlaceholders() {
+        assertThat(template(TEMPLATE).getPlaceholders()).containsExactlyInAnyOrder("name", "limit", "big");
+    }
+
+    @Test
+    void shouldInstantiateManyTimesWithDifferentBindings() {
+        final var template = template(TEMPLATE);
+
+        for (int i = 0; i < 3; i++) {
+            final var classes = template.instantiate(Map.of("name", "Templated" + i, "limit", 10 * i, "big", "big " + i));
+
+            assertThat(classes).containsOnlyKeys("com/roscopeco/jasm/Templated" + i);
+
+            final var obj = instantiate(defineClass(classes.values().iterator().next()), IntFunction.class);
+
+            assertThat(obj.apply(10 * i - 1)).isEqualTo("small Templated" + i);
+            assertThat(obj.apply(10 * i)).isEqualTo("big " + i);
+        }
+    }
+
+    @Test
+    void shouldSubstituteTypes() {
+        final var template = template(TYPES_TEMPLATE);
+
+        final var list = instantiate(defineClass(template.instantiate(
+            Map.of("name", "TemplatedList", "type", "ArrayList")).get("com/roscopeco/jasm/TemplatedList")), Supplier.class);
+        final var map = instantiate(defineClass(template.instantiate(
+            Map.of("name", "TemplatedMap", "type", "HashMap")).get("com/roscopeco/jasm/TemplatedMap")), Supplier.class);
+
+        assertThat(list.get()).isInstanceOf(ArrayList.class);
+        assertThat(map.get()).isInstanceOf(HashMap.class);
+    }
+
+    @Test
+    void shouldBindWholeStringPlaceholdersToConstants() {
+        final var nodes = template(TEMPLATE).instantiateClassNodes(
+            Map.of("name", "TemplatedNode", "limit", 5L, "big", Type.getType("Ljava/lang/String;")));
+
+        final var method = nodes.get("com/roscopeco/jasm/TemplatedNode").methods.get(1);
+
+        assertThat(method.instructions.get(1)).extracting("cst").isEqualTo(5L);
+        assertThat(method.instructions.get(6)).extracting("cst").isEqualTo(Type.getType("Ljava/lang/String;"));
+    }
+
+    @Test
+    void shouldOnlyBindConstantsWhereTheyAreLoaded() {
+        final var template = template("@java/lang/Deprecated(since = \"$$value$$\")\n"
+            + "public class com/roscopeco/jasm/TemplatedField {\n"
+            + "  public static final VALUE java/lang/String = \"$$value$$\"\n"
+            + "  public static load()java/lang/Object {\n"
+            + "    ldc \"$$value$$\"\n"
+            + "    areturn\n"
+            + "  }\n"
+            + "}\n");
+
+        final var node = template.instantiateClassNodes(Map.of("value", 42)).get("com/roscopeco/jasm/TemplatedField");
+
+        assertThat(node.fields.get(0).value).isEqualTo("42");
+        assertThat(node.visibleAnnotations.get(0).values).containsExactly("since", "42");
+        assertThat(node.methods.get(0).instructions.get(0)).extracting("cst").isEqualTo(42);
+    }
+
+    @Test
+    void shouldInstantiateIntoClassVisitors() {
+        final var writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+
+        template(TEMPLATE).instantiateInto(Map.of("name", "TemplatedVisited", "limit", 3, "big", "big"), name -> {
+            assertThat(name).isEqualTo("com/roscopeco/jasm/TemplatedVisited");
+            return writer;
+        });
+
+        final var obj = instantiate(defineClass(writer.toByteArray()), IntFunction.class);
+
+        assertThat(obj.apply(2)).isEqualTo("small TemplatedVisited");
+        assertThat(obj.apply(3)).isEqualTo("big");
+    }
+
+    @Test
+    void shouldRejectMissingAndUnknownBindings() {
+        final var template = template(TEMPLATE);
+
+        assertThatThrownBy(() -> template.instantiate(Map.of("name", "Missing", "limit", 1)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("No value for placeholder(s) [big] of template Template.jasm");
+
+        assertThatThrownBy(() -> template.instantiate(Map.of("name", "Unknown", "limit", 1, "big", "big", "other", 2)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("No placeholder(s) [other] in template Template.jasm");
+    }
+
+    @Test
+    void shouldUnescapeLiteralDollars() {
+        final var template = template("public class com/roscopeco/jasm/$$name$$$$$$Proxy$$$$1 {\n"
+            + "  public static load()java/lang/Object {\n"
+            + "    ldc \"$$$$notaplaceholder$$$$ $$$$$$name$$\"\n"
+            + "    areturn\n"
+            + "  }\n"
+            + "}\n");
+
+        assertThat(template.getPlaceholders()).containsExactly("name");
+
+        final var node = template.instantiateClassNodes(Map.of("name", "Foo")).get("com/roscopeco/jasm/Foo$$Proxy$$1");
+
+        assertThat(node).isNotNull();
+        assertThat(node.methods.get(0).instructions.get(0)).extracting("cst").isEqualTo("$$notaplaceholder$$ $$Foo");
+    }
+
+    @Test
+    void shouldLeaveStringsWithOnlyEscapesUnbound() {
+        final var template = template(supplierSource("TemplatedEscapes", "ldc \"$$$$\"", "areturn"));
+
+        assertThat(template.getPlaceholders()).isEmpty();
+        assertThat(instantiate(defineClass(template.instantiate(Map.of()).get("com/roscopeco/jasm/TemplatedEscapes")),
+            Supplier.class).get()).isEqualTo("$$");
+    }
+
+    @Test
+    void shouldReportErrorsWhenCompiled() {
+        assertThatThrownBy(() -> template("class $$name$$ {\n  m()V {\n    notaninsn\n  }\n}\n"))
+            .isInstanceOf(AssemblyException.class);
+    }
+
+    private static JasmTemplate template(final String source) {
+        return JasmTemplate.compile(JasmSource.of("Template.jasm", source));
+    }
+}
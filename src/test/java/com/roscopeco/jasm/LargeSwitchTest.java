@@ -0,0 +1,154 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.time.Duration;
+import java.util.function.IntUnaryOperator;
+
+import static com.roscopeco.jasm.TestUtil.defineClass;
+import static com.roscopeco.jasm.TestUtil.instantiate;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+
+class LargeSwitchTest {
+    /** Close to the most cases that fit in a method alongside the code they jump to. */
+    private static final int CASE_COUNT = 16_000;
+
+    @ParameterizedTest
+    @EnumSource(ParserMode.class)
+    void shouldAssembleVeryLargeTableswitch(final ParserMode parserMode) {
+        final var name = "com/roscopeco/jasm/LargeTableswitch" + parserMode;
+        final var source = switchClass(name, "tableswitch", CASE_COUNT, 1);
+
+        final var bytes = assertTimeout(Duration.ofSeconds(10), () -> assemble(source, parserMode));
+        final var obj = instantiate(defineClass(bytes), IntUnaryOperator.class);
+
+        assertThat(obj.applyAsInt(0)).isEqualTo(0);
+        assertThat(obj.applyAsInt(1)).isEqualTo(1);
+        assertThat(obj.applyAsInt(CASE_COUNT - 1)).isEqualTo((CASE_COUNT - 1) % 3);
+        assertThat(obj.applyAsInt(CASE_COUNT)).isEqualTo(-1);
+        assertThat(obj.applyAsInt(-1)).isEqualTo(-1);
+    }
+
+    @ParameterizedTest
+    @EnumSource(ParserMode.class)
+    void shouldAssembleSparseTableswitchWithinLimit(final ParserMode parserMode) {
+        final var name = "com/roscopeco/jasm/SparseTableswitch" + parserMode;
+        final var keys = "-5000: l0\n 7: l1\n 9000: l2\n";
+        final var source = switchClass(name, "tableswitch", keys);
+
+        final var obj = instantiate(defineClass(assemble(source, parserMode)), IntUnaryOperator.class);
+
+        assertThat(obj.applyAsInt(-5000)).isEqualTo(0);
+        assertThat(obj.applyAsInt(7)).isEqualTo(1);
+        assertThat(obj.applyAsInt(9000)).isEqualTo(2);
+        assertThat(obj.applyAsInt(8)).isEqualTo(-1);
+    }
+
+    @ParameterizedTest
+    @EnumSource(ParserMode.class)
+    void shouldReportDuplicateKeys(final ParserMode parserMode) {
+        for (final var insn : new String[] { "tableswitch", "lookupswitch" }) {
+            final var source = switchClass("Duplicate", insn, "1: l1\n 2: l2\n 1: l0\n");
+
+            assertThatThrownBy(() -> assemble(source, parserMode))
+                .isInstanceOf(AssemblyException.class)
+                .extracting(e -> ((AssemblyException) e).getCodeErrors().get(0).getMessage())
+                .isEqualTo("Duplicate key 1 in " + insn);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(ParserMode.class)
+    void shouldSortLookupswitchKeys(final ParserMode parserMode) {
+        final var name = "com/roscopeco/jasm/UnsortedLookupswitch" + parserMode;
+        final var source = switchClass(name, "lookupswitch", "300: l2\n -7: l0\n 42: l1\n");
+
+        final var obj = instantiate(defineClass(assemble(source, parserMode)), IntUnaryOperator.class);
+
+        assertThat(obj.applyAsInt(-7)).isEqualTo(0);
+        assertThat(obj.applyAsInt(42)).isEqualTo(1);
+        assertThat(obj.applyAsInt(300)).isEqualTo(2);
+        assertThat(obj.applyAsInt(0)).isEqualTo(-1);
+    }
+
+    @ParameterizedTest
+    @EnumSource(ParserMode.class)
+    void shouldReportTableswitchTooLargeForMethod(final ParserMode parserMode) {
+        final var source = switchClass("Sparse", "tableswitch", "0: l0\n 100000: l1\n");
+
+        assertThatThrownBy(() -> assemble(source, parserMode))
+            .isInstanceOf(AssemblyException.class)
+            .extracting(e -> ((AssemblyException) e).getCodeErrors().get(0).getMessage())
+            .isEqualTo("tableswitch from 0 to 100000 needs 100001 entries, but at most 16379 fit in a method "
+                + "(use lookupswitch for sparse keys)");
+    }
+
+    @ParameterizedTest
+    @EnumSource(ParserMode.class)
+    void shouldReportTableswitchCoveringWholeIntRange(final ParserMode parserMode) {
+        final var source = switchClass("Full", "tableswitch", "-2147483648: l0\n 2147483647: l1\n");
+
+        assertThatThrownBy(() -> assemble(source, parserMode))
+            .isInstanceOf(AssemblyException.class)
+            .extracting(e -> ((AssemblyException) e).getCodeErrors().get(0).getMessage())
+            .asString()
+            .startsWith("tableswitch from -2147483648 to 2147483647 needs 4294967296 entries");
+    }
+
+    @Test
+    void shouldAssembleLargeLookupswitch() {
+        final var source = switchClass("com/roscopeco/jasm/LargeLookupswitch", "lookupswitch", 8_000, 1_000);
+
+        final var obj = instantiate(defineClass(assemble(source, ParserMode.ANTLR)), IntUnaryOperator.class);
+
+        assertThat(obj.applyAsInt(0)).isEqualTo(0);
+        assertThat(obj.applyAsInt(1000)).isEqualTo(1);
+        assertThat(obj.applyAsInt(1)).isEqualTo(-1);
+    }
+
+    private static byte[] assemble(final String source, final ParserMode parserMode) {
+        final var options = new AssemblerOptions().withParserMode(parserMode);
+        return new JasmAssembler(JasmSource.of("Switch.jasm", source), options).assemble();
+    }
+
+    /**
+     * A class whose {@code applyAsInt} switches on its argument, with keys {@code 0, step, 2 * step...}
+     * that return {@code key / step % 3}.
+     */
+    private static String switchClass(final String name, final String insn, final int cases, final int step) {
+        final var keys = new StringBuilder();
+
+        for (int i = 0; i < cases; i++) {
+            keys.append("      ").append(i * step).append(": l").append(i % 3).append('\n');
+        }
+
+        return switchClass(name, insn, keys.toString());
+    }
+
+    private static String switchClass(final String name, final String insn, final String keys) {
+        return "public class " + name + " implements java/util/function/IntUnaryOperator {\n"
+            + "  public <init>()V {\n"
+            + "    aload 0\n"
+            + "    invokespecial java/lang/Object.<init>()V\n"
+            + "    return\n"
+            + "  }\n"
+            + "  public applyAsInt(I)I {\n"
+            + "    iload 1\n"
+            + "    " + insn + " other {\n" + keys + "    }\n"
+            + "  l0:\n    iconst 0\n    ireturn\n"
+            + "  l1:\n    iconst 1\n    ireturn\n"
+            + "  l2:\n    iconst 2\n    ireturn\n"
+            + "  other:\n    iconst -1\n    ireturn\n"
+            + "  }\n"
+            + "}\n";
+    }
+}
@@ -7,6 +7,7 @@ package com.roscopeco.jasm;
 
 import com.roscopeco.jasm.antlr.JasmLexer;
 import lombok.NonNull;
+import org.antlr.v4.runtime.TokenSource;
 import org.assertj.core.api.ThrowingConsumer;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -21,6 +22,10 @@ import static com.roscopeco.jasm.asserts.LexerParserAssertions.assertNextToken;
 import static com.roscopeco.jasm.asserts.LexerParserAssertions.assertTokens;
 
 class LexerInstructionTests {
+    TokenSource lexer(final String testCase) {
+        return testCaseLexer(testCase);
+    }
+
     static Stream<Arguments> singleInstructionNoOperandTests() {
         return Stream.of(
             Arguments.of("Aaload", JasmLexer.AALOAD),
@@ -1471,9 +1476,9 @@ class LexerInstructionTests {
 
     private void runInstructionTest(
             @NonNull final String testCase,
-            @NonNull final ThrowingConsumer<JasmLexer> assertions
+            @NonNull final ThrowingConsumer<TokenSource> assertions
     ) {
-        final var lexer = testCaseLexer(testCase);
+        final var lexer = lexer(testCase);
 
         assertNextToken(lexer)
                 .hasType(JasmLexer.CLASS);
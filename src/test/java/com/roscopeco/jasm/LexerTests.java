@@ -6,6 +6,7 @@
 package com.roscopeco.jasm;
 
 import com.roscopeco.jasm.antlr.JasmLexer;
+import org.antlr.v4.runtime.TokenSource;
 import org.junit.jupiter.api.Test;
 
 import static com.roscopeco.jasm.TestUtil.testCaseLexer;
@@ -13,9 +14,13 @@ import static com.roscopeco.jasm.asserts.LexerParserAssertions.assertNextToken;
 import static com.roscopeco.jasm.asserts.LexerParserAssertions.assertTokens;
 
 class LexerTests {
+    TokenSource lexer(final String testCase) {
+        return testCaseLexer(testCase);
+    }
+
     @Test
     void shouldLexEmptyFile() {
-        final var lexer = testCaseLexer("emptyfile.jasm");
+        final var lexer = lexer("emptyfile.jasm");
 
         assertNextToken(lexer)
             .hasType(JasmLexer.EOF);
@@ -23,7 +28,7 @@ class LexerTests {
 
     @Test
     void shouldLexEmptyClassDefinition() {
-        final var lexer = testCaseLexer("EmptyClass.jasm");
+        final var lexer = lexer("EmptyClass.jasm");
 
         assertNextToken(lexer)
             .hasType(JasmLexer.CLASS);
@@ -38,7 +43,7 @@ class LexerTests {
 
     @Test
     void shouldLexClassWithEmptyBody() {
-        final var lexer = testCaseLexer("ClassWithEmptyBody.jasm");
+        final var lexer = lexer("ClassWithEmptyBody.jasm");
 
         assertNextToken(lexer)
             .hasType(JasmLexer.CLASS);
@@ -59,7 +64,7 @@ class LexerTests {
 
     @Test
     void shouldLexPublicFinalEmptyClass() {
-        final var lexer = testCaseLexer("PublicFinalEmptyClass.jasm");
+        final var lexer = lexer("PublicFinalEmptyClass.jasm");
 
         assertNextToken(lexer)
             .hasType(JasmLexer.PUBLIC);
@@ -80,7 +85,7 @@ class LexerTests {
 
     @Test
     void shouldLexClassWithSingleField() {
-        final var lexer = testCaseLexer("ClassWithSingleField.jasm");
+        final var lexer = lexer("ClassWithSingleField.jasm");
 
         assertNextToken(lexer)
             .hasType(JasmLexer.CLASS)
@@ -109,7 +114,7 @@ class LexerTests {
 
     @Test
     void shouldLexEmptyClassDefinitionInPackage() {
-        final var lexer = testCaseLexer("com/roscopeco/jasm/EmptyClassInPackage.jasm");
+        final var lexer = lexer("com/roscopeco/jasm/EmptyClassInPackage.jasm");
 
         assertNextToken(lexer)
             .hasType(JasmLexer.CLASS);
@@ -124,7 +129,7 @@ class LexerTests {
 
     @Test
     void shouldLexClassWithObjectField() {
-        final var lexer = testCaseLexer("ClassWithObjectField.jasm");
+        final var lexer = lexer("ClassWithObjectField.jasm");
 
         assertNextToken(lexer)
             .hasType(JasmLexer.CLASS)
@@ -154,7 +159,7 @@ class LexerTests {
 
     @Test
     void shouldLexClassWithMinimalMethod() {
-        final var lexer = testCaseLexer("com/roscopeco/jasm/MinimalMethodTest.jasm");
+        final var lexer = lexer("com/roscopeco/jasm/MinimalMethodTest.jasm");
 
         assertNextToken(lexer)
             .hasType(JasmLexer.CLASS)
@@ -198,7 +203,7 @@ class LexerTests {
 
     @Test
     void shouldLexMethodArgumentsCorrectly() {
-        final var lexer = testCaseLexer("MethodArgParsingTests.jasm");
+        final var lexer = lexer("MethodArgParsingTests.jasm");
 
         assertTokens(lexer, tokens -> {
             tokens.next()
@@ -440,7 +445,7 @@ class LexerTests {
     @Test
     @SuppressWarnings("java:S5961" /* We need to consume (and assert!) all the tokens */)
     void shouldLexClassWithSuperclassAndInterfaces() {
-        final var lexer = testCaseLexer("com/roscopeco/jasm/InheritAndInterfaceTest.jasm");
+        final var lexer = lexer("com/roscopeco/jasm/InheritAndInterfaceTest.jasm");
 
         assertTokens(lexer, tokens -> {
             tokens.next()
@@ -537,7 +542,7 @@ class LexerTests {
 
     @Test
     void shouldLexClassWithArrayTypes() {
-        final var lexer = testCaseLexer("com/roscopeco/jasm/ArrayTypesTest.jasm");
+        final var lexer = lexer("com/roscopeco/jasm/ArrayTypesTest.jasm");
 
         assertTokens(lexer, tokens -> {
             tokens.next()
@@ -625,7 +630,7 @@ class LexerTests {
 
     @Test
     void shouldLexClassWithBlockComments() {
-        final var lexer = testCaseLexer("ClassWithBlockComments.jasm");
+        final var lexer = lexer("ClassWithBlockComments.jasm");
 
         assertNextToken(lexer)
             .hasType(JasmLexer.BLOCK_COMMENT)
@@ -656,7 +661,7 @@ class LexerTests {
 
     @Test
     void shouldLexClassWithTryCatch() {
-        final var lexer = testCaseLexer("com/roscopeco/jasm/TryCatchTest.jasm");
+        final var lexer = lexer("com/roscopeco/jasm/TryCatchTest.jasm");
 
         assertNextToken(lexer)
             .hasType(JasmLexer.PUBLIC);
@@ -965,7 +970,7 @@ class LexerTests {
     @Test
     void shouldLexClassWithGetForNumericField() {
         // https://github.com/roscopeco/jasm/issues/35
-        final var lexer = testCaseLexer("com/roscopeco/jasm/LiteralNames.jasm");
+        final var lexer = lexer("com/roscopeco/jasm/LiteralNames.jasm");
         assertNextToken(lexer)
             .hasType(JasmLexer.PUBLIC);
 
@@ -1023,7 +1028,7 @@ class LexerTests {
 
     @Test
     void shouldLexClassWithSimpleAnnotation() {
-        final var lexer = testCaseLexer("SimpleAnnotatedClass.jasm");
+        final var lexer = lexer("SimpleAnnotatedClass.jasm");
 
         assertNextToken(lexer)
                 .hasType(JasmLexer.ANNOTATION_NAME)
@@ -1039,7 +1044,7 @@ class LexerTests {
 
     @Test
     void shouldLexClassWithComplexAnnotation() {
-        final var lexer = testCaseLexer("ComplexAnnotatedClass.jasm");
+        final var lexer = lexer("ComplexAnnotatedClass.jasm");
 
         assertNextToken(lexer)
                 .hasType(JasmLexer.ANNOTATION_NAME)
@@ -1146,7 +1151,7 @@ class LexerTests {
 
     @Test
     void shouldLexFieldAndMethodAnnotations() {
-        final var lexer = testCaseLexer("com/roscopeco/jasm/MethodFieldAnnotations.jasm");
+        final var lexer = lexer("com/roscopeco/jasm/MethodFieldAnnotations.jasm");
 
         assertNextToken(lexer)
                 .hasType(JasmLexer.CLASS);
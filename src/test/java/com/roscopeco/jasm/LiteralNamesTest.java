@@ -0,0 +1,36 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LiteralNamesTest {
+    /** The original (regex-based) definition of unescaping. */
+    private static final Pattern REFERENCE = Pattern.compile("`(?:([^`])|$)");
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "", "plain", "java/lang/Object", "label:", "`", "``", "```", "````", "`a`", "`a b`", "`a``b`",
+        "`a``", "``a", "a`", "`\n`", "`a\n", "`😀`", "`x😀``y`", "`<init>`", "`class`", "`a`b`c`",
+    })
+    void shouldUnescapeLikeReference(final String name) {
+        assertThat(LiteralNames.INSTANCE.unescape(name))
+            .isEqualTo(REFERENCE.matcher(name).replaceAll("$1"));
+    }
+
+    @Test
+    void shouldReturnNamesWithoutBackticksAsIs() {
+        final var name = new String("java/lang/Object");
+
+        assertThat(LiteralNames.INSTANCE.unescape(name)).isSameAs(name);
+    }
+}
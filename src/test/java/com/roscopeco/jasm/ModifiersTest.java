@@ -5,8 +5,10 @@
  */
 package com.roscopeco.jasm;
 
+import com.roscopeco.jasm.antlr.JasmLexer;
 import com.roscopeco.jasm.antlr.JasmParser;
 import lombok.NonNull;
+import org.antlr.v4.runtime.CharStreams;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -83,6 +85,7 @@ class ModifiersTest {
         final var mockContexts = mocks.stream().map(mockFunc -> {
             final var mock = mock(JasmParser.Method_modifierContext.class);
             when(mock.getText()).thenReturn(mockFunc);
+            mock.start = new JasmLexer(CharStreams.fromString(mockFunc)).nextToken();
             return mock;
         }).collect(Collectors.toList());
 
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntFunction;
+
+import static com.roscopeco.jasm.TestUtil.defineClass;
+import static com.roscopeco.jasm.TestUtil.instantiate;
+import static com.roscopeco.jasm.TestUtil.testCaseSource;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ParallelMethodsTest {
+    private static final int METHOD_COUNT = 2000;
+
+    private static ExecutorService executor;
+
+    @BeforeAll
+    static void startExecutor() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterAll
+    static void stopExecutor() {
+        executor.shutdown();
+    }
+
+    @Test
+    void shouldGenerateMethodsInSourceOrder() throws Exception {
+        final var code = assemble(largeClass("ParallelMethodsTest0000"), new AssemblerOptions().withMethodExecutor(executor));
+
+        final var expected = new ArrayList<String>();
+        for (int i = 0; i < METHOD_COUNT; i++) {
+            expected.add("m" + i);
+        }
+
+        assertThat(methodNames(code)).containsExactlyElementsOf(expected);
+
+        final var clz = defineClass(code);
+        assertThat(clz.getMethod("m0", int.class).invoke(null, 0)).isEqualTo("zero");
+        assertThat(clz.getMethod("m1234", int.class).invoke(null, 1)).isEqualTo("m1234");
+    }
+
+    @Test
+    void shouldGenerateSameMethodsAsSequentialAssembly() {
+        final var source = largeClass("ParallelMethodsTest0001");
+
+        final var parallel = assemble(source, new AssemblerOptions().withMethodExecutor(executor));
+        final var sequential = assemble(source, new AssemblerOptions());
+
+        assertThat(disassemble(parallel)).isEqualTo(disassemble(sequential));
+    }
+
+    @Test
+    void shouldKeepFrameDirectivesWhenTrusted() {
+        final var source = testCaseSource("com/roscopeco/jasm/FrameDirectivesTest.jasm")
+            .replace("com/roscopeco/jasm/FrameDirectivesTest", "com/roscopeco/jasm/ParallelMethodsTest0002");
+
+        final var code = assemble(source, new AssemblerOptions()
+            .withFrameMode(FrameMode.DIRECTIVES)
+            .withMethodExecutor(executor));
+
+        final var obj = instantiate(defineClass(code), IntFunction.class);
+
+        assertThat(obj.apply(0)).isEqualTo("zero");
+        assertThat(obj.apply(5)).isEqualTo("positive big");
+        assertThat(obj.apply(-3)).isEqualTo("negative small");
+    }
+
+    @Test
+    void shouldReportErrorsInSourceOrder() {
+        final var source = "public class com/roscopeco/jasm/ParallelMethodsTest0003 {\n"
+            + "    public static first()V {\n"
+            + "        goto missing1\n"
+            + "    }\n"
+            + "    public static second()V {\n"
+            + "        return\n"
+            + "    }\n"
+            + "    public static third()V {\n"
+            + "        goto missing3\n"
+            + "    }\n"
+            + "}\n";
+
+        assertThatThrownBy(() -> assemble(source, new AssemblerOptions().withMethodExecutor(executor)))
+            .isInstanceOf(AssemblyException.class)
+            .hasMessageContainingAll("[missing1]", "[missing3]")
+            .matches(e -> e.getMessage().indexOf("[missing1]") < e.getMessage().indexOf("[missing3]"));
+    }
+
+    private static byte[] assemble(final String source, final AssemblerOptions options) {
+        return new JasmAssembler(JasmSource.of("test.jasm", source), options).assemble();
+    }
+
+    private static String disassemble(final byte[] code) {
+        return new JasmDisassembler("test.class", false, () -> new ByteArrayInputStream(code)).disassemble();
+    }
+
+    private static String largeClass(final String name) {
+        final var source = new StringBuilder("public class com/roscopeco/jasm/" + name + " {\n");
+
+        for (int i = 0; i < METHOD_COUNT; i++) {
+            source.append("    public static m").append(i).append("(I)java/lang/String {\n")
+                .append("        iload 0\n")
+                .append("        ifne nonZero\n")
+                .append("        ldc \"zero\"\n")
+                .append("        goto done\n")
+                .append("    nonZero:\n")
+                .append("        ldc \"m").append(i).append("\"\n")
+                .append("    done:\n")
+                .append("        areturn\n")
+                .append("    }\n");
+        }
+
+        return source.append("}\n").toString();
+    }
+
+    private static List<String> methodNames(final byte[] code) {
+        final var names = new ArrayList<String>();
+
+        new ClassReader(code).accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public MethodVisitor visitMethod(
+                final int access,
+                final String name,
+                final String descriptor,
+                final String signature,
+                final String[] exceptions
+            ) {
+                names.add(name);
+                return null;
+            }
+        }, ClassReader.SKIP_CODE);
+
+        return names;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static com.roscopeco.jasm.TestUtil.testCaseSource;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParseProfileTest {
+    private static final String TEST_CASE = "com/roscopeco/jasm/SwitchTests.jasm";
+
+    @ParameterizedTest
+    @EnumSource(ParserMode.class)
+    void shouldProfileDecisionsOfEachUnit(final ParserMode parserMode) {
+        final var profile = new ParseProfile();
+        final var options = new AssemblerOptions().withParserMode(parserMode).withParseProfile(profile);
+
+        final var bytes = assemble(options);
+
+        assertThat(bytes).isEqualTo(assemble(new AssemblerOptions()));
+        assertThat(profile.getUnitCount()).isEqualTo(1);
+        assertThat(profile.decisions())
+            .isNotEmpty()
+            .allMatch(d -> d.getInvocations() > 0 && d.getMaxLookahead() > 0)
+            .extracting(ParseProfile.DecisionProfile::getRule)
+            .contains("member", "owner");
+    }
+
+    @Test
+    void shouldAccumulateOverUnits() {
+        final var profile = new ParseProfile();
+        final var options = new AssemblerOptions().withParseProfile(profile);
+
+        assemble(options);
+        final var once = invocations(profile);
+        assemble(options);
+
+        assertThat(profile.getUnitCount()).isEqualTo(2);
+        assertThat(invocations(profile)).isEqualTo(once * 2);
+
+        profile.clear();
+
+        assertThat(profile.getUnitCount()).isZero();
+        assertThat(profile.decisions()).isEmpty();
+    }
+
+    @Test
+    void shouldSortDecisionsByTime() {
+        final var profile = new ParseProfile();
+        assemble(new AssemblerOptions().withParseProfile(profile));
+
+        final var decisions = profile.decisions();
+
+        for (int i = 1; i < decisions.size(); i++) {
+            assertThat(decisions.get(i).getTimeNanos()).isLessThanOrEqualTo(decisions.get(i - 1).getTimeNanos());
+        }
+    }
+
+    @Test
+    void shouldReportAsTableAndCsv() {
+        final var profile = new ParseProfile();
+        assemble(new AssemblerOptions().withParseProfile(profile));
+
+        final var decisions = profile.decisions().size();
+        final var csv = profile.csv().split("\n");
+        final var table = profile.report().split(System.lineSeparator());
+
+        assertThat(csv).hasSize(decisions + 1);
+        assertThat(csv[0]).isEqualTo("decision,rule,invocations,time_ns,ll_fallbacks,ambiguities,"
+            + "context_sensitivities,errors,total_lookahead,max_lookahead");
+        assertThat(csv[1].split(",")).hasSize(10);
+
+        assertThat(table).hasSize(decisions + 2);
+        assertThat(table[0]).isEqualTo("Profile of 1 unit(s)");
+        assertThat(table[1]).contains("Decision", "Rule", "Invocations", "LL fallbacks", "Max lookahead");
+    }
+
+    private static long invocations(final ParseProfile profile) {
+        return profile.decisions().stream().mapToLong(ParseProfile.DecisionProfile::getInvocations).sum();
+    }
+
+    private static byte[] assemble(final AssemblerOptions options) {
+        return new JasmAssembler(JasmSource.of(TEST_CASE, testCaseSource(TEST_CASE)), options).assemble();
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static com.roscopeco.jasm.TestUtil.testCaseSource;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PrecompiledTest {
+    private static final String TEST_CASE = "com/roscopeco/jasm/SwitchTests.jasm";
+
+    static Stream<String> corpus() throws IOException, URISyntaxException {
+        return FastLexerTests.corpus();
+    }
+
+    @ParameterizedTest
+    @MethodSource("corpus")
+    void shouldAssemblePrecompiledCorpusLikeSource(final String testCase) {
+        final var source = JasmSource.of(testCase, testCaseSource(testCase));
+        final Map<String, byte[]> expected;
+
+        try {
+            expected = new JasmAssembler(source, new AssemblerOptions()).assembleClasses();
+        } catch (RuntimeException e) {
+            return;     // Cases that don't assemble from source have nothing to compare with
+        }
+
+        final var precompiled = new JasmAssembler(source, new AssemblerOptions()).precompile();
+        final var actual = new JasmAssembler(JasmSource.precompiled(testCase, precompiled), new AssemblerOptions())
+            .assembleClasses();
+
+        assertThat(actual.keySet()).containsExactlyElementsOf(expected.keySet());
+        expected.forEach((name, bytes) -> assertThat(actual.get(name)).isEqualTo(bytes));
+    }
+
+    @Test
+    void shouldAssemblePrecompiledFromBufferAndStream() {
+        final var expected = assembler(new AssemblerOptions()).assemble();
+        final var precompiled = assembler(new AssemblerOptions()).precompile();
+        final var buffer = ByteBuffer.allocate(precompiled.length + 4).put(new byte[4]).put(precompiled).flip().position(4);
+
+        assertThat(new JasmAssembler(JasmSource.precompiled(TEST_CASE, buffer), new AssemblerOptions()).assemble())
+            .isEqualTo(expected);
+        assertThat(buffer.position()).isEqualTo(4);
+
+        assertThat(new JasmAssembler(JasmSource.precompiled(TEST_CASE, () -> new ByteArrayInputStream(precompiled)),
+            new AssemblerOptions()).assemble())
+            .isEqualTo(expected);
+    }
+
+    @Test
+    void shouldApplyOptionsWhenAssemblingPrecompiled() {
+        final var precompiled = assembler(new AssemblerOptions()).precompile();
+        final var transformer = (ClassTransformer) next -> new ClassVisitor(Opcodes.ASM9, next) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                return name.equals("<init>") ? super.visitMethod(access, name, descriptor, signature, exceptions) : null;
+            }
+        };
+
+        final var options = new AssemblerOptions().withClassTransformers(transformer).withMethodExecutor(Runnable::run);
+        final var nodes = new JasmAssembler(JasmSource.precompiled(TEST_CASE, precompiled), options).assembleClassNodes();
+
+        assertThat(nodes).hasSize(1);
+        assertThat(nodes.values().iterator().next().methods).extracting(m -> m.name).containsExactly("<init>");
+    }
+
+    @Test
+    void shouldBeSmallerThanSource() {
+        final var precompiled = assembler(new AssemblerOptions()).precompile();
+
+        assertThat(precompiled.length).isLessThan(testCaseSource(TEST_CASE).length());
+    }
+
+    @Test
+    void shouldNotAssemblePrecompiledForOtherClassFormat() {
+        final var precompiled = assembler(new AssemblerOptions()).precompile();
+
+        assertThatThrownBy(() -> new JasmAssembler(JasmSource.precompiled(TEST_CASE, precompiled), Opcodes.V17).assemble())
+            .isInstanceOf(AssemblyException.class)
+            .hasMessageContaining("Unit was precompiled for class format 55, cannot assemble for 61");
+    }
+
+    @Test
+    void shouldRejectInvalidPrecompiledUnits() {
+        final var precompiled = assembler(new AssemblerOptions()).precompile();
+        final var badVersion = Arrays.copyOf(precompiled, precompiled.length);
+        badVersion[7] = 99;
+
+        assertThatThrownBy(() -> new JasmAssembler(
+            JasmSource.precompiled(TEST_CASE, testCaseSource(TEST_CASE).getBytes()), Opcodes.V11).assemble())
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Not a precompiled JASM unit");
+
+        assertThatThrownBy(() -> new JasmAssembler(JasmSource.precompiled(TEST_CASE, badVersion), Opcodes.V11).assemble())
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Unsupported precompiled JASM version 99");
+
+        assertThatThrownBy(() -> new JasmAssembler(
+            JasmSource.precompiled(TEST_CASE, Arrays.copyOf(precompiled, precompiled.length - 10)), Opcodes.V11).assemble())
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Precompiled JASM unit is truncated");
+    }
+
+    @Test
+    void shouldRejectInvalidStringIndices() {
+        final var header = Arrays.copyOf(assembler(new AssemblerOptions()).precompile(), 12);
+
+        // One string ("A"), then one class named by string 5, with no events
+        final var badClassName = unit(header, 1, 1, 65, 1, 5, 0, 0, 0, 0);
+
+        assertThatThrownBy(() -> new JasmAssembler(JasmSource.precompiled(TEST_CASE, badClassName), Opcodes.V11).assemble())
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Invalid string 5 in precompiled JASM unit");
+
+        // One class named "A", whose events visit it with the name string 9
+        final var badEvent = unit(header, 1, 1, 65, 1, 1, 0, 0, 0, 4, 1, 55, 0, 9);
+
+        assertThatThrownBy(() -> new JasmAssembler(JasmSource.precompiled(TEST_CASE, badEvent), Opcodes.V11).assemble())
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Invalid string 9 in precompiled JASM unit");
+    }
+
+    @Test
+    void shouldRejectInvalidCountsWithoutAllocating() {
+        final var header = Arrays.copyOf(assembler(new AssemblerOptions()).precompile(), 12);
+
+        // One string, of length Integer.MAX_VALUE
+        final var hugeString = unit(header, 1, 0xff, 0xff, 0xff, 0xff, 0x07);
+
+        assertThatThrownBy(() -> new JasmAssembler(JasmSource.precompiled(TEST_CASE, hugeString), Opcodes.V11).assemble())
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Invalid count 2147483647 in precompiled JASM unit");
+
+        // One string, whose length overflows to -1
+        final var negativeString = unit(header, 1, 0xff, 0xff, 0xff, 0xff, 0x0f);
+
+        assertThatThrownBy(() -> new JasmAssembler(JasmSource.precompiled(TEST_CASE, negativeString), Opcodes.V11).assemble())
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Invalid count -1 in precompiled JASM unit");
+    }
+
+    @Test
+    void shouldRejectInvalidLabels() {
+        final var header = Arrays.copyOf(assembler(new AssemblerOptions()).precompile(), 12);
+
+        // Class "A" with method "m()V", whose code is a goto to label 5 before any others are used
+        final var badLabel = unit(header, 3, 1, 65, 1, 109, 3, 40, 41, 86, 1, 1, 0, 0, 0, 18,
+            1, 55, 0, 1, 0, 0, 0,
+            5, 0, 2, 3, 0, 0,
+            7, 15, 0xa7, 0x01, 5);
+
+        assertThatThrownBy(() -> new JasmAssembler(JasmSource.precompiled(TEST_CASE, badLabel), Opcodes.V11).assemble())
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Invalid label 5 in precompiled JASM unit");
+    }
+
+    private static byte[] unit(final byte[] header, final int... bytes) {
+        final var unit = Arrays.copyOf(header, header.length + bytes.length);
+
+        for (int i = 0; i < bytes.length; i++) {
+            unit[header.length + i] = (byte) bytes[i];
+        }
+
+        return unit;
+    }
+
+    private static JasmAssembler assembler(final AssemblerOptions options) {
+        return new JasmAssembler(JasmSource.of(TEST_CASE, testCaseSource(TEST_CASE)), options);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.function.Supplier;
+
+import static com.roscopeco.jasm.TestUtil.defineClass;
+import static com.roscopeco.jasm.TestUtil.instantiate;
+import static com.roscopeco.jasm.TestUtil.stringSupplierSource;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StringLiteralsTest {
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', quoteCharacter = '\'', value = {
+        "\"\"                   | ''",
+        "\"plain\"              | plain",
+        "\"a\"\"b\"             | a\"b",
+        "\"a\\\"b\"             | a\"b",
+        "\"a\\'b\"              | a'b",
+        "\"a\\\\b\"             | a\\b",
+        "\"a\\\\nb\"            | a\\nb",
+        "\"\\\\\\\\\"           | \\\\",
+        "\"\\t\\b\\n\\r\\f\\s\" | '\t\b\n\r\f '",
+        "\"\\u0041\\u00e9\"     | Aé",
+        "\"\\uuu0041\"          | A",
+        "\"\\u004\"             | \\u004",
+        "\"\\u004g\"            | \\u004g",
+        "\"\\400\\18\"          | '\u00200\u00018'",
+        "\"C:\\users\\q\"       | C:\\users\\q",
+        "\"trailing\\\"         | trailing\\",
+    })
+    void shouldUnescape(final String literal, final String expected) {
+        assertThat(StringLiterals.INSTANCE.unescape(literal)).isEqualTo(expected);
+    }
+
+    @Test
+    void shouldUnescapeOctal() {
+        assertThat(StringLiterals.INSTANCE.unescape("\"\\101\\0\\12\\377\"")).isEqualTo("A\u0000\n\u00ff");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "", "plain", "\"", "\"\"", "\\", "\\n", "\\\\n", "a\nb\r\tc", "\u0000\u0001\u001f", "\b\f", "\\u0041",
+        "é\u00ff\uffff😀", "\"\\\"",
+    })
+    void shouldEscapeToLiteralThatUnescapesToSameString(final String value) {
+        final var literal = StringLiterals.INSTANCE.escape(value);
+
+        assertThat(literal).doesNotContain("\n", "\r");
+        assertThat(StringLiterals.INSTANCE.unescape(literal)).isEqualTo(value);
+    }
+
+    @Test
+    void shouldDecodeLongestConstant() {
+        final var value = "a".repeat(StringLiterals.MAX_UTF8_LENGTH - 3) + "é";
+
+        assertThat(StringLiterals.INSTANCE.unescape("\"" + value + "\"")).isEqualTo(value);
+        assertThat(StringLiterals.INSTANCE.unescape("\"" + "\\u0041".repeat(StringLiterals.MAX_UTF8_LENGTH) + "\""))
+            .hasSize(StringLiterals.MAX_UTF8_LENGTH);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "a", "\\u0000", "é", "€" })
+    void shouldRejectConstantsTooLongInModifiedUtf8(final String unit) {
+        final var repeats = StringLiterals.MAX_UTF8_LENGTH / (unit.equals("a") ? 1 : unit.equals("€") ? 3 : 2) + 1;
+
+        assertThatThrownBy(() -> StringLiterals.INSTANCE.unescape("\"" + unit.repeat(repeats) + "\""))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("String constant is too long (more than 65535 bytes in modified UTF-8)");
+    }
+
+    @Test
+    void shouldRejectHugeLiteralWithoutDecodingItAll() {
+        final var literal = "\"" + "x".repeat(16 * 1024 * 1024) + "\"";
+
+        assertThatThrownBy(() -> StringLiterals.INSTANCE.unescape(literal))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @ParameterizedTest
+    @EnumSource(ParserMode.class)
+    void shouldAssembleEscapedConstants(final ParserMode parserMode) {
+        final var source = stringSupplierSource("EscapedConstant" + parserMode, "a\\\\nb\\n\\u00e9\\101");
+
+        final var bytes = new JasmAssembler(JasmSource.of("Escaped.jasm", source),
+            new AssemblerOptions().withParserMode(parserMode)).assemble();
+
+        assertThat(instantiate(defineClass(bytes), Supplier.class).get()).isEqualTo("a\\nb\néA");
+    }
+
+    @ParameterizedTest
+    @EnumSource(ParserMode.class)
+    void shouldReportConstantTooLong(final ParserMode parserMode) {
+        final var source = "class Foo {\n  static f java/lang/String = \"" + "€".repeat(30_000) + "\"\n}\n";
+
+        assertThatThrownBy(() -> new JasmAssembler(JasmSource.of("Long.jasm", source),
+                new AssemblerOptions().withParserMode(parserMode)).assemble())
+            .isInstanceOf(AssemblyException.class)
+            .extracting(e -> ((AssemblyException) e).getCodeErrors().get(0).getMessage())
+            .isEqualTo("String constant is too long (more than 65535 bytes in modified UTF-8)");
+    }
+}
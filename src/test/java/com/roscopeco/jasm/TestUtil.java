@@ -14,6 +14,8 @@ import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.TokenStream;
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.util.TraceClassVisitor;
 import org.opentest4j.AssertionFailedError;
@@ -30,6 +32,11 @@ import java.lang.invoke.MethodHandles;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -58,6 +65,18 @@ public class TestUtil {
         }
     }
 
+    public static FastJasmLexer testCaseFastLexer(@NonNull final String testCase) {
+        try (final var input = inputStreamForTestCase(testCase)) {
+
+            assertThat(input).as("InputStream for test-case source: "+ testCase).isNotNull();
+
+            return new FastJasmLexer(CharStreams.fromStream(input));
+
+        } catch (IOException e) {
+            throw new AssertionFailedError("Unable to load testCase: " + testCase, e);
+        }
+    }
+
     public static JasmParser testCaseParser(@NonNull final String testCase) {
         return buildParser(testCase, new CommonTokenStream(testCaseLexer(testCase)));
     }
@@ -217,6 +236,10 @@ public class TestUtil {
         return bytes;
     }
 
+    public static Map<String, byte[]> assembleClasses(final String testCase, final int formatVersion) {
+        return new JasmAssembler(testCase, formatVersion, () -> inputStreamForTestCase(testCase)).assembleClasses();
+    }
+
     public static byte[] assembleString(final String code, final int formatVersion) {
         final var bytes
             = new JasmAssembler("<test>", formatVersion, () -> new ByteArrayInputStream(code.getBytes())).assemble();
@@ -281,6 +304,53 @@ public class TestUtil {
         return new ClassReader(loadNamedDisasmTestClassBytes(filename));
     }
 
+    public static String testCaseSource(final String testCase) {
+        try (final var input = inputStreamForTestCase(testCase)) {
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     * A class com/roscopeco/jasm/<name> implementing Supplier, with the given code as the body of get().
+     */
+    public static String supplierSource(final String name, final String... getBody) {
+        return "public class com/roscopeco/jasm/" + name + " implements java/util/function/Supplier {\n"
+            + "  public <init>()V {\n"
+            + "    aload 0\n"
+            + "    invokespecial java/lang/Object.<init>()V\n"
+            + "    return\n"
+            + "  }\n"
+            + "\n"
+            + "  public get()java/lang/Object {\n"
+            + "    " + String.join("\n    ", getBody) + "\n"
+            + "  }\n"
+            + "}\n";
+    }
+
+    public static String stringSupplierSource(final String name, final String value) {
+        return supplierSource(name, "ldc \"" + value + "\"", "areturn");
+    }
+
+    public static List<Object> frameStackTypes(final byte[] bytes) {
+        final var types = new ArrayList<>();
+
+        new ClassReader(bytes).accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                return new MethodVisitor(Opcodes.ASM9) {
+                    @Override
+                    public void visitFrame(int type, int numLocal, Object[] local, int numStack, Object[] stack) {
+                        types.addAll(Arrays.asList(stack).subList(0, numStack));
+                    }
+                };
+            }
+        }, ClassReader.EXPAND_FRAMES);
+
+        return types;
+    }
+
     public static String disassemble(final String testCase) {
         return disassemble(new JasmDisassemblingVisitor(testCase, new StandardErrorCollector()), testCase);
     }
@@ -5,7 +5,11 @@
  */
 package com.roscopeco.jasm.e2e;
 
+import com.roscopeco.jasm.AssemblerOptions;
 import com.roscopeco.jasm.AssemblyException;
+import com.roscopeco.jasm.FrameMode;
+import com.roscopeco.jasm.JasmAssembler;
+import com.roscopeco.jasm.JasmSource;
 import com.roscopeco.jasm.model.AthrowTest;
 import com.roscopeco.jasm.model.CheckcastTest;
 import com.roscopeco.jasm.model.ConstFieldTests;
@@ -43,10 +47,15 @@ import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
 
 import static com.roscopeco.jasm.TestUtil.assemble;
 import static com.roscopeco.jasm.TestUtil.assembleAndDefine;
+import static com.roscopeco.jasm.TestUtil.assembleClasses;
 import static com.roscopeco.jasm.TestUtil.boolVoidInvoker;
+import static com.roscopeco.jasm.TestUtil.defineClass;
+import static com.roscopeco.jasm.TestUtil.inputStreamForTestCase;
 import static com.roscopeco.jasm.TestUtil.instantiate;
 import static com.roscopeco.jasm.TestUtil.intVoidInvoker;
 import static com.roscopeco.jasm.TestUtil.objectArgsInvoker;
@@ -886,6 +895,99 @@ class AssemblerE2ETests {
             .hasMessageContaining("Field afield cannot have void type");
     }
 
+    @Test
+    void shouldAssembleAllClassesInMultiClassUnit() {
+        final var classes = assembleClasses("com/roscopeco/jasm/MultiClassUnit.jasm", Opcodes.V11);
+
+        assertThat(classes).containsOnlyKeys("com/roscopeco/jasm/MultiClassGreeter", "com/roscopeco/jasm/MultiClassImpl");
+
+        final var iface = defineClass(classes.get("com/roscopeco/jasm/MultiClassGreeter"));
+        final var impl = defineClass(classes.get("com/roscopeco/jasm/MultiClassImpl"));
+
+        assertThat(iface.isInterface()).isTrue();
+        assertThat(iface).isAssignableFrom(impl);
+
+        final var obj = instantiate(impl, Supplier.class);
+
+        assertThat(obj.get()).isEqualTo("Hello from a multi-class unit");
+    }
+
+    @Test
+    void shouldRefuseToAssembleMultiClassUnitToSingleClass() {
+        assertThatThrownBy(() -> assemble("com/roscopeco/jasm/MultiClassUnit.jasm", Opcodes.V11))
+            .isInstanceOf(AssemblyException.class)
+            .hasMessageContaining("Compilation unit declares 2 classes");
+    }
+
+    @Test
+    void shouldFailOnDuplicateClassesInUnit() {
+        assertThatThrownBy(() -> assembleClasses("com/roscopeco/jasm/DuplicateClassUnit.jasm", Opcodes.V11))
+            .isInstanceOf(AssemblyException.class)
+            .hasMessageContaining("DuplicateClassUnit.jasm:[4:0]")
+            .hasMessageContaining("Duplicate class com/roscopeco/jasm/DuplicateClass");
+    }
+
+    @Test
+    void shouldComputeFramesUsingClassesDeclaredInUnit() {
+        final var classes = assembleClasses("com/roscopeco/jasm/HierarchyUnit.jasm", Opcodes.V11);
+
+        defineClass(classes.get("com/roscopeco/jasm/HierarchyBase"));
+        defineClass(classes.get("com/roscopeco/jasm/HierarchyLeft"));
+        defineClass(classes.get("com/roscopeco/jasm/HierarchyRight"));
+
+        final var chooser = instantiate(defineClass(classes.get("com/roscopeco/jasm/HierarchyChooser")), IntFunction.class);
+
+        assertThat(((Supplier<?>) chooser.apply(1)).get()).isEqualTo("left");
+        assertThat(((Supplier<?>) chooser.apply(0)).get()).isEqualTo("right");
+    }
+
+    @Test
+    void shouldAssembleTrustedFrameDirectivesToValidJavaClass() {
+        final var bytes = new JasmAssembler(
+            JasmSource.of("FrameDirectivesTest.jasm", () -> inputStreamForTestCase("com/roscopeco/jasm/FrameDirectivesTest.jasm")),
+            new AssemblerOptions().withFrameMode(FrameMode.DIRECTIVES)
+        ).assemble();
+
+        final var obj = instantiate(defineClass(bytes), IntFunction.class);
+
+        assertThat(obj.apply(0)).isEqualTo("zero");
+        assertThat(obj.apply(5)).isEqualTo("positive big");
+        assertThat(obj.apply(-3)).isEqualTo("negative small");
+    }
+
+    @Test
+    void shouldIgnoreFrameDirectivesWhenComputingFrames() {
+        assertThat(assemble("com/roscopeco/jasm/FrameDirectivesTest.jasm", Opcodes.V11)).isNotEmpty();
+    }
+
+    @Test
+    void shouldReportInvalidFrameDirectives() {
+        assertThatThrownBy(() -> assemble("com/roscopeco/jasm/BadFrameDirectives.jasm", Opcodes.V11))
+            .isInstanceOf(AssemblyException.class)
+            .hasMessageContaining("BadFrameDirectives.jasm:[6:8]: Unknown frame kind sideways (expected full, same, same1, append or chop)")
+            .hasMessageContaining("BadFrameDirectives.jasm:[7:8]: Invalid same1 frame (expected a single stack type)")
+            .hasMessageContaining("BadFrameDirectives.jasm:[8:8]: Invalid chop frame (expected a count of one to three locals)")
+            .hasMessageContaining("BadFrameDirectives.jasm:[9:27]: Unknown frame type uninitialized_thing (expected uninitialized)");
+    }
+
+    @Test
+    void shouldReportAdjacentFrameDirectives() {
+        final var assembler = new JasmAssembler(
+            JasmSource.of("adjacent.jasm", "public class com/roscopeco/jasm/AdjacentFrames {\n"
+                + "    public test()V {\n"
+                + "        frame same1 { I }\n"
+                + "        frame same1 { I }\n"
+                + "        return\n"
+                + "    }\n"
+                + "}\n"),
+            new AssemblerOptions().withFrameMode(FrameMode.DIRECTIVES)
+        );
+
+        assertThatThrownBy(assembler::assemble)
+            .isInstanceOf(AssemblyException.class)
+            .hasMessageContaining("adjacent.jasm:[4:8]: Frame directives must be separated by at least one instruction");
+    }
+
     @Test
     void shouldAssembleTryCatchToValidJavaClass() {
         final var clz = assembleAndDefine("com/roscopeco/jasm/TryCatchTest.jasm");
@@ -1,5 +1,10 @@
 package com.roscopeco.jasm.e2e;
 
+import com.roscopeco.jasm.AssemblerOptions;
+import com.roscopeco.jasm.FrameMode;
+import com.roscopeco.jasm.JasmAssembler;
+import com.roscopeco.jasm.JasmDisassembler;
+import com.roscopeco.jasm.JasmSource;
 import com.roscopeco.jasm.model.Interface1;
 import com.roscopeco.jasm.model.Interface2;
 import com.roscopeco.jasm.model.Superclass;
@@ -9,16 +14,20 @@ import com.roscopeco.jasm.model.annotations.TestEnum;
 import org.junit.jupiter.api.Test;
 import org.objectweb.asm.Opcodes;
 
+import java.io.ByteArrayInputStream;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static com.roscopeco.jasm.TestUtil.assembleString;
 import static com.roscopeco.jasm.TestUtil.defineClass;
 import static com.roscopeco.jasm.TestUtil.disassemble;
 import static com.roscopeco.jasm.TestUtil.doParseString;
+import static com.roscopeco.jasm.TestUtil.inputStreamForTestCase;
+import static com.roscopeco.jasm.TestUtil.loadDisasmTestClassBytes;
 import static com.roscopeco.jasm.asserts.LexerParserAssertions.assertClass;
 import static com.roscopeco.jasm.asserts.LexerParserAssertions.assertMember;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -384,6 +393,51 @@ public class DisassemblerE2ETests {
         assertThat(clz.getMethod("getI").invoke(two)).isEqualTo(2);
     }
 
+    @Test
+    void shouldDisassembleFrameDirectives() {
+        final var bytes = new JasmAssembler(
+            JasmSource.of("FrameDirectivesTest.jasm", () -> inputStreamForTestCase("com/roscopeco/jasm/FrameDirectivesTest.jasm")),
+            new AssemblerOptions().withFrameMode(FrameMode.DIRECTIVES)
+        ).assemble();
+
+        final var source = disassembleWithFrames(bytes);
+
+        assertThat(source)
+            .contains("frame same" + System.lineSeparator())
+            .contains("frame full { com/roscopeco/jasm/FrameDirectivesTest, I, I } { uninitialized(label")
+            .contains("frame append { I }")
+            .contains("frame chop 1")
+            .contains("frame same1 { java/lang/String }");
+
+        assertThat(disassemble("FinallyClass")).doesNotContain("frame ");
+    }
+
+    @Test
+    void shouldRoundTripFrameDirectives() {
+        final var source = disassembleWithFrames(loadDisasmTestClassBytes("FinallyClass"))
+            .replace("com/roscopeco/jasm/model/disasm/FinallyClass", "com/roscopeco/jasm/FinallyClassFrames0000");
+
+        final var bytes = new JasmAssembler(
+            JasmSource.of("FinallyClass", source),
+            new AssemblerOptions().withFrameMode(FrameMode.DIRECTIVES)
+        ).assemble();
+
+        assertThat(frameLines(disassembleWithFrames(bytes)))
+            .isNotEmpty()
+            .isEqualTo(frameLines(source));
+
+        final var clz = defineClass(bytes);
+        assertThat(clz.getName()).isEqualTo("com.roscopeco.jasm.FinallyClassFrames0000");
+    }
+
+    private static String disassembleWithFrames(final byte[] bytes) {
+        return new JasmDisassembler("test", false, true, () -> new ByteArrayInputStream(bytes)).disassemble();
+    }
+
+    private static List<String> frameLines(final String source) {
+        return source.lines().map(String::trim).filter(line -> line.startsWith("frame ")).collect(Collectors.toList());
+    }
+
     private Class<?> checkAssembleAndDefineClass(final String source, final String name) {
         final var newSource = source.replace("com/roscopeco/jasm/model/disasm/" + name, "com/roscopeco/jasm/" + name + "Test0000");
         final var clz = defineClass(assembleString(newSource, Opcodes.V11));
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm.e2e;
+
+import com.roscopeco.jasm.AssemblyException;
+import com.roscopeco.jasm.JasmAssembler;
+import com.roscopeco.jasm.JasmSource;
+import com.roscopeco.jasm.UnitResult;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import static com.roscopeco.jasm.TestUtil.defineClass;
+import static com.roscopeco.jasm.TestUtil.inputStreamForTestCase;
+import static com.roscopeco.jasm.TestUtil.instantiate;
+import static com.roscopeco.jasm.TestUtil.stringSupplierSource;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InMemoryAssemblyE2ETests {
+    @SuppressWarnings("unchecked")
+    private static <E extends Throwable> InputStream sneakyThrow(final Throwable e) throws E {
+        throw (E) e;
+    }
+
+    @Test
+    void shouldAssembleFromCharSequence() {
+        final var code = new StringBuilder(stringSupplierSource("InMemoryCharSequence", "chars"));
+
+        final var obj = instantiate(defineClass(JasmAssembler.assemble(code)), Supplier.class);
+
+        assertThat(obj.get()).isEqualTo("chars");
+    }
+
+    @Test
+    void shouldAssembleFromByteBufferWithoutConsumingIt() {
+        final var buffer = ByteBuffer.wrap(
+            stringSupplierSource("InMemoryByteBuffer", "bytes \u00e9").getBytes(StandardCharsets.UTF_8));
+
+        final var obj = instantiate(defineClass(JasmAssembler.assemble(buffer)), Supplier.class);
+
+        assertThat(obj.get()).isEqualTo("bytes \u00e9");
+        assertThat(buffer.position()).isZero();
+    }
+
+    @Test
+    void shouldReportInMemoryUnitNameInErrors() {
+        assertThatThrownBy(() -> JasmAssembler.assemble("class {", "generated.jasm"))
+            .isInstanceOf(AssemblyException.class)
+            .hasMessageContaining("generated.jasm:[1:6]");
+    }
+
+    @Test
+    void shouldAssembleAllUnitsKeepingSuccessfulResults() {
+        final var results = JasmAssembler.assembleAll(List.of(
+            JasmSource.of("one", stringSupplierSource("BatchOne", "one")),
+            JasmSource.of("broken", "public class com/roscopeco/jasm/Broken { provate foo()V }"),
+            JasmSource.of("multi", () -> inputStreamForTestCase("com/roscopeco/jasm/MultiClassUnit.jasm"))
+        ));
+
+        assertThat(results).extracting(UnitResult::getUnitName).containsExactly("one", "broken", "multi");
+        assertThat(results).extracting(UnitResult::getSuccess).containsExactly(true, false, true);
+
+        assertThat(results.get(0).getClasses()).containsOnlyKeys("com/roscopeco/jasm/BatchOne");
+        assertThat(results.get(1).getClasses()).isEmpty();
+        assertThat(results.get(1).getError())
+            .isInstanceOf(AssemblyException.class)
+            .hasMessageContaining("broken:[1:52]");
+        assertThat(results.get(2).getClasses())
+            .containsOnlyKeys("com/roscopeco/jasm/MultiClassGreeter", "com/roscopeco/jasm/MultiClassImpl");
+    }
+
+    @Test
+    void shouldAssembleAllUnitsReportingCheckedExceptionsAsErrors() {
+        final var unreadable = new IOException("Unreadable");
+
+        final var results = JasmAssembler.assembleAll(List.of(
+            JasmSource.of("unreadable", () -> sneakyThrow(unreadable)),
+            JasmSource.of("two", stringSupplierSource("BatchTwo", "two"))
+        ));
+
+        assertThat(results).extracting(UnitResult::getSuccess).containsExactly(false, true);
+        assertThat(results.get(0).getError()).isInstanceOf(RuntimeException.class).hasCause(unreadable);
+    }
+
+    @Test
+    void shouldFailWholeBatchOnErrors() {
+        final var fatal = new StackOverflowError();
+
+        assertThatThrownBy(() -> JasmAssembler.assembleAll(List.of(
+            JasmSource.of("fatal", () -> { throw fatal; }),
+            JasmSource.of("three", stringSupplierSource("BatchThree", "three"))
+        ))).isSameAs(fatal);
+    }
+
+    @Test
+    void shouldAssembleAllUnitsOnSuppliedExecutor() {
+        final var executor = Executors.newFixedThreadPool(2);
+
+        try {
+            final var results = JasmAssembler.assembleAll(List.of(
+                JasmSource.of("a", stringSupplierSource("BatchA", "a")),
+                JasmSource.of("b", stringSupplierSource("BatchB", "b"))
+            ), Opcodes.V11, executor);
+
+            assertThat(results).allMatch(UnitResult::getSuccess);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
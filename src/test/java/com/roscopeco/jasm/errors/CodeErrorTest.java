@@ -0,0 +1,94 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm.errors;
+
+import com.roscopeco.jasm.AssemblerOptions;
+import com.roscopeco.jasm.AssemblyException;
+import com.roscopeco.jasm.JasmAssembler;
+import com.roscopeco.jasm.JasmSource;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.roscopeco.jasm.TestUtil.testCaseSource;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+class CodeErrorTest {
+    @Test
+    void shouldKeepPositionsOfErrors() {
+        final var source = testCaseSource("com/roscopeco/jasm/ClassWithMultipleErrors.jasm");
+        final var errors = codeErrors(source);
+
+        final var syntax = errorContaining(errors, "mismatched input '('");
+        assertThat(syntax.getLine()).isEqualTo(4);
+        assertThat(syntax.getColumn()).isEqualTo(22);
+        assertThat(syntax.getSnippet()).isEqualTo("(");
+        assertThat(syntax.getStartIndex()).isEqualTo(source.indexOf("() {"));
+        assertThat(syntax.getStopIndex()).isEqualTo(syntax.getStartIndex());
+
+        final var field = errorContaining(errors, "Field afield cannot have void type");
+        assertThat(field.getLine()).isEqualTo(2);
+        assertThat(field.getColumn()).isEqualTo(4);
+        assertThat(field.getSnippet()).isEqualTo("private afield V");
+        assertThat(field.getStartIndex()).isEqualTo(source.indexOf("private afield V"));
+        assertThat(field.getStopIndex()).isEqualTo(field.getStartIndex() + "private afield V".length() - 1);
+    }
+
+    @Test
+    void shouldKeepOnlyFirstLineOfSnippet() {
+        final var errors = codeErrors(testCaseSource("com/roscopeco/jasm/ClassWithUndeclaredLabel.jasm"));
+        final var error = errorContaining(errors, "Labels used but not declared");
+
+        assertThat(error.getLine()).isEqualTo(2);
+        assertThat(error.getSnippet()).isEqualTo("someMethod()V {");
+    }
+
+    @Test
+    void shouldTruncateLongSnippets() {
+        final var name = "f".repeat(500);
+        final var errors = codeErrors("class Foo {\n  " + name + " V\n}\n");
+        final var error = errorContaining(errors, "cannot have void type");
+
+        assertThat(error.getSnippet()).isEqualTo(name.substring(0, CodeError.MAX_SNIPPET_LENGTH));
+        assertThat(error.getStopIndex() - error.getStartIndex()).isEqualTo(name.length() + 1);
+    }
+
+    @Test
+    void shouldNotRetainTokensOrSource() {
+        final var types = Stream.<Class<?>>iterate(CodeError.class, c -> c != Object.class, Class::getSuperclass)
+            .flatMap(c -> Arrays.stream(c.getDeclaredFields()))
+            .filter(f -> !Modifier.isStatic(f.getModifiers()))
+            .map(f -> f.getType().getName())
+            .collect(Collectors.toList());
+
+        assertThat(types).allMatch(type -> type.startsWith("java.lang.") || type.equals("int")
+            || type.equals("org.antlr.v4.runtime.misc.Interval"));
+    }
+
+    private static List<CodeError> codeErrors(final String source) {
+        final var e = catchThrowableOfType(
+            () -> new JasmAssembler(JasmSource.of("Test.jasm", source), new AssemblerOptions()).assemble(),
+            AssemblyException.class
+        );
+
+        return e.getCodeErrors().stream()
+            .filter(CodeError.class::isInstance)
+            .map(CodeError.class::cast)
+            .collect(Collectors.toList());
+    }
+
+    private static CodeError errorContaining(final List<CodeError> errors, final String message) {
+        return errors.stream()
+            .filter(error -> error.getMessage().contains(message))
+            .findFirst()
+            .orElseThrow(() -> new AssertionError("No error containing " + message + " in " + errors));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c)2022 Ross Bamford & Contributors
+ *
+ * Licensed under the MIT license. See LICENSE.md for details.
+ */
+package com.roscopeco.jasm.errors;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrentErrorCollectorTest {
+    @Test
+    void shouldReportErrorsInOrderAdded() {
+        final var collector = new ConcurrentErrorCollector();
+
+        assertThat(collector.hasErrors()).isFalse();
+
+        collector.addError(error("one"));
+        collector.addError(error("two"));
+
+        assertThat(collector.hasErrors()).isTrue();
+        assertThat(messages(collector)).containsExactly("one", "two");
+    }
+
+    @Test
+    void shouldReportSectionsWhereTheyWereReserved() {
+        final var collector = new ConcurrentErrorCollector();
+
+        collector.addError(error("before"));
+        final var first = collector.section();
+        final var second = collector.section();
+        collector.addError(error("after"));
+
+        second.addError(error("second"));
+
+        assertThat(collector.hasErrors()).isTrue();
+        assertThat(first.hasErrors()).isFalse();
+        assertThat(second.hasErrors()).isTrue();
+
+        first.addError(error("first"));
+
+        assertThat(messages(collector)).containsExactly("before", "first", "second", "after");
+    }
+
+    @Test
+    void shouldNotHaveErrorsForEmptySections() {
+        final var collector = new ConcurrentErrorCollector();
+        collector.section();
+
+        assertThat(collector.hasErrors()).isFalse();
+        assertThat(collector.getErrors()).isEmpty();
+    }
+
+    @Test
+    void shouldCollectFromManyThreads() {
+        final var collector = new ConcurrentErrorCollector();
+        final var executor = Executors.newFixedThreadPool(8);
+
+        try {
+            final var sections = IntStream.range(0, 64).mapToObj(i -> collector.section()).collect(Collectors.toList());
+            final var futures = new ArrayList<CompletableFuture<Void>>();
+
+            for (int i = 0; i < sections.size(); i++) {
+                final var section = sections.get(i);
+                final var n = i;
+
+                futures.add(CompletableFuture.runAsync(() -> {
+                    for (int j = 0; j < 100; j++) {
+                        section.addError(error(n + ":" + j));
+                        collector.addError(error("shared"));
+                    }
+                }, executor));
+            }
+
+            futures.forEach(CompletableFuture::join);
+        } finally {
+            executor.shutdown();
+        }
+
+        final var messages = messages(collector);
+
+        assertThat(messages).hasSize(64 * 100 * 2);
+        assertThat(messages.subList(0, 64 * 100)).isEqualTo(
+            IntStream.range(0, 64)
+                .boxed()
+                .flatMap(i -> IntStream.range(0, 100).mapToObj(j -> i + ":" + j))
+                .collect(Collectors.toList())
+        );
+        assertThat(messages.subList(64 * 100, messages.size())).containsOnly("shared");
+    }
+
+    private static BaseError error(final String message) {
+        return new BaseError("Test.jasm", message);
+    }
+
+    private static List<String> messages(final ErrorCollector collector) {
+        return collector.getErrors().stream().map(BaseError::getMessage).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,41 @@
+package com.roscopeco.jasm.tool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AssembleTaskTest {
+    @TempDir
+    Path outputDir;
+
+    @Test
+    void shouldWriteSingleClassUnitToDest() throws URISyntaxException {
+        final var dest = outputDir.resolve("some/where/Else.class").toFile();
+        final var task = new AssembleTask(testCaseFile("EmptyClass.jasm"), dest, Opcodes.V11, outputDir.toFile());
+
+        assertThat(task.perform().getSuccess()).isTrue();
+        assertThat(dest).isFile();
+    }
+
+    @Test
+    void shouldWriteEachClassInMultiClassUnitByInternalName() throws URISyntaxException {
+        final var dest = outputDir.resolve("com/roscopeco/jasm/MultiClassUnit.class").toFile();
+        final var task = new AssembleTask(
+            testCaseFile("com/roscopeco/jasm/MultiClassUnit.jasm"), dest, Opcodes.V11, outputDir.toFile());
+
+        assertThat(task.perform().getSuccess()).isTrue();
+        assertThat(dest).doesNotExist();
+        assertThat(outputDir.resolve("com/roscopeco/jasm/MultiClassGreeter.class")).isRegularFile();
+        assertThat(outputDir.resolve("com/roscopeco/jasm/MultiClassImpl.class")).isRegularFile();
+    }
+
+    private File testCaseFile(final String testCase) throws URISyntaxException {
+        return new File(AssembleTaskTest.class.getResource("/jasm/" + testCase).toURI());
+    }
+}
@@ -1,8 +1,11 @@
 package com.roscopeco.jasm.tool;
 
+import com.roscopeco.jasm.ClasspathIndex;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.List;
 
@@ -42,6 +45,35 @@ public class TasksTest {
         assertThat(tasks.stream().filter(t -> t instanceof AssembleTask).map(AssembleTask.class::cast))
             .extracting(AssembleTask::getTargetVersion)
             .allMatch(ver -> ver == 50);
+
+        assertThat(tasks.stream().filter(t -> t instanceof AssembleTask).map(AssembleTask.class::cast))
+            .extracting(AssembleTask::getOutputDirectory)
+            .extracting(File::getPath)
+            .containsOnly(Path.of("output", "dir").toString());
+    }
+
+    @Test
+    void testCreateTasksSharesClassHierarchy(@TempDir final Path dir) throws IOException {
+        final var index = dir.resolve("classpath.idx");
+        ClasspathIndex.build(List.of(), false).write(index);
+
+        final var args = createTestArgs();
+        args.setClasspathIndex(index.toString());
+
+        final var tasks = Tasks.createTasks(args, f -> true);
+
+        assertThat(tasks.stream().map(AssembleTask.class::cast).map(AssembleTask::getClassHierarchy))
+            .hasSize(3)
+            .doesNotContainNull()
+            .allMatch(hierarchy -> hierarchy == ((AssembleTask) tasks.get(0)).getClassHierarchy());
+    }
+
+    @Test
+    void testCreateTasksHasNoClassHierarchyByDefault() {
+        final var tasks = Tasks.createTasks(createTestArgs(), f -> true);
+
+        assertThat(tasks.stream().map(AssembleTask.class::cast).map(AssembleTask::getClassHierarchy))
+            .containsOnlyNulls();
     }
 
     private ToolArgs createTestArgs() {
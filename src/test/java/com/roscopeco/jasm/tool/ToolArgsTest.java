@@ -87,6 +87,46 @@ class ToolArgsTest {
             .isInstanceOf(ParameterException.class);
     }
 
+    @Test
+    void testClasspathDefaultWorks() {
+        final var args = doTest();
+        assertThat(args.getClasspath()).isEmpty();
+        assertThat(args.getClasspathIndex()).isEmpty();
+    }
+
+    @Test
+    void testClasspathExplicitShortWorks() {
+        final var args = doTest("-cp", "lib/one.jar");
+        assertThat(args.getClasspath()).isEqualTo("lib/one.jar");
+    }
+
+    @Test
+    void testClasspathExplicitLongWorks() {
+        final var args = doTest("--classpath", "lib/one.jar", "--classpath-index", "cp.idx");
+        assertThat(args.getClasspath()).isEqualTo("lib/one.jar");
+        assertThat(args.getClasspathIndex()).isEqualTo("cp.idx");
+    }
+
+    @Test
+    void testFramesDefaultsWork() {
+        final var args = doTest();
+        assertThat(args.getEmitFrames()).isFalse();
+        assertThat(args.getTrustFrames()).isFalse();
+    }
+
+    @Test
+    void testFramesExplicitWorks() {
+        assertThat(doTest("-f").getEmitFrames()).isTrue();
+        assertThat(doTest("--frames").getEmitFrames()).isTrue();
+        assertThat(doTest("--trust-frames").getTrustFrames()).isTrue();
+    }
+
+    @Test
+    void testParseProfileWorks() {
+        assertThat(doTest().getParseProfile()).isEmpty();
+        assertThat(doTest("--parse-profile", "profile.csv").getParseProfile()).isEqualTo("profile.csv");
+    }
+
     @Test
     void testNonOptionArgsAreGatheredAsFilenames() {
         final var args = doTest("file/one", "file/two");
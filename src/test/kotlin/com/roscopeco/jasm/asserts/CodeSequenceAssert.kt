@@ -43,13 +43,13 @@ class CodeSequenceAssert<Caller> internal constructor(actual: Stat_blockContext,
         return caller
     }
 
-    fun aaload() = genericNoOperandCheck("aaload", InstructionContext::insn_aaload)
+    fun aaload() = genericNoOperandCheck("aaload", simpleInsn(JasmParser.AALOAD))
 
-    fun aastore() = genericNoOperandCheck("aastore", InstructionContext::insn_aastore)
+    fun aastore() = genericNoOperandCheck("aastore", simpleInsn(JasmParser.AASTORE))
 
-    fun aconstNull() = genericNoOperandCheck("aconst_null", InstructionContext::insn_aconst_null)
+    fun aconstNull() = genericNoOperandCheck("aconst_null", simpleInsn(JasmParser.ACONST_NULL))
 
-    fun aload(expected: Int) = genericIntOperandCheck("aload", expected, InstructionContext::insn_aload) {
+    fun aload(expected: Int) = genericIntOperandCheck("aload", expected, varInsn(JasmParser.ALOAD)) {
             aload -> aload.int_atom().text
     }
 
@@ -61,120 +61,120 @@ class CodeSequenceAssert<Caller> internal constructor(actual: Stat_blockContext,
             anewarray -> anewarray.QNAME().text
     }
 
-    fun areturn() = genericNoOperandCheck("areturn", InstructionContext::insn_areturn)
+    fun areturn() = genericNoOperandCheck("areturn", simpleInsn(JasmParser.ARETURN))
 
-    fun arraylength() = genericNoOperandCheck("arraylength", InstructionContext::insn_arraylength)
+    fun arraylength() = genericNoOperandCheck("arraylength", simpleInsn(JasmParser.ARRAYLENGTH))
 
-    fun astore(expected: Int) = genericIntOperandCheck("astore", expected, InstructionContext::insn_astore) {
+    fun astore(expected: Int) = genericIntOperandCheck("astore", expected, varInsn(JasmParser.ASTORE)) {
             astore -> astore.int_atom().text
     }
 
-    fun athrow() = genericNoOperandCheck("athrow", InstructionContext::insn_athrow)
+    fun athrow() = genericNoOperandCheck("athrow", simpleInsn(JasmParser.ATHROW))
 
-    fun baload() = genericNoOperandCheck("baload", InstructionContext::insn_baload)
+    fun baload() = genericNoOperandCheck("baload", simpleInsn(JasmParser.BALOAD))
 
-    fun bastore() = genericNoOperandCheck("bastore", InstructionContext::insn_bastore)
+    fun bastore() = genericNoOperandCheck("bastore", simpleInsn(JasmParser.BASTORE))
 
-    fun bipush(expected: Int) = genericIntOperandCheck("bipush", expected, InstructionContext::insn_bipush) {
+    fun bipush(expected: Int) = genericIntOperandCheck("bipush", expected, intInsn(JasmParser.BIPUSH)) {
             bipush -> bipush.int_atom().text
     }
 
-    fun caload() = genericNoOperandCheck("caload", InstructionContext::insn_caload)
-    fun castore() = genericNoOperandCheck("castore", InstructionContext::insn_castore)
+    fun caload() = genericNoOperandCheck("caload", simpleInsn(JasmParser.CALOAD))
+    fun castore() = genericNoOperandCheck("castore", simpleInsn(JasmParser.CASTORE))
 
     fun checkcast(expected: String) = genericStringOperandCheck("checkcast", expected, InstructionContext:: insn_checkcast) {
             checkcast -> (checkcast.LSQUARE()?.joinToString("") { it.text } ?: "") + checkcast.QNAME().text
     }
 
-    fun d2f() = genericNoOperandCheck("d2f", InstructionContext::insn_d2f)
+    fun d2f() = genericNoOperandCheck("d2f", simpleInsn(JasmParser.D2F))
 
-    fun d2i() = genericNoOperandCheck("d2i", InstructionContext::insn_d2i)
+    fun d2i() = genericNoOperandCheck("d2i", simpleInsn(JasmParser.D2I))
 
-    fun d2l() = genericNoOperandCheck("d2l", InstructionContext::insn_d2l)
+    fun d2l() = genericNoOperandCheck("d2l", simpleInsn(JasmParser.D2L))
 
-    fun dadd() = genericNoOperandCheck("dadd", InstructionContext::insn_dadd)
+    fun dadd() = genericNoOperandCheck("dadd", simpleInsn(JasmParser.DADD))
 
-    fun daload() = genericNoOperandCheck("daload", InstructionContext::insn_daload)
+    fun daload() = genericNoOperandCheck("daload", simpleInsn(JasmParser.DALOAD))
 
-    fun dastore() = genericNoOperandCheck("dastore", InstructionContext::insn_dastore)
+    fun dastore() = genericNoOperandCheck("dastore", simpleInsn(JasmParser.DASTORE))
 
-    fun dcmpg() = genericNoOperandCheck("dcmpg", InstructionContext::insn_dcmpg)
+    fun dcmpg() = genericNoOperandCheck("dcmpg", simpleInsn(JasmParser.DCMPG))
 
-    fun dcmpl() = genericNoOperandCheck("dcmpl", InstructionContext::insn_dcmpl)
+    fun dcmpl() = genericNoOperandCheck("dcmpl", simpleInsn(JasmParser.DCMPL))
 
     fun dconst(expected: Int) = genericIntOperandCheck("dconst", expected, InstructionContext::insn_dconst) {
             dconst -> dconst.int_atom().text
     }
 
-    fun ddiv() = genericNoOperandCheck("ddiv", InstructionContext::insn_ddiv)
+    fun ddiv() = genericNoOperandCheck("ddiv", simpleInsn(JasmParser.DDIV))
 
-    fun dload(expected: Int) = genericIntOperandCheck("dload", expected, InstructionContext::insn_dload) {
+    fun dload(expected: Int) = genericIntOperandCheck("dload", expected, varInsn(JasmParser.DLOAD)) {
             dload -> dload.int_atom().text
     }
 
-    fun dmul() = genericNoOperandCheck("dmul", InstructionContext::insn_dmul)
+    fun dmul() = genericNoOperandCheck("dmul", simpleInsn(JasmParser.DMUL))
 
-    fun dneg() = genericNoOperandCheck("dneg", InstructionContext::insn_dneg)
+    fun dneg() = genericNoOperandCheck("dneg", simpleInsn(JasmParser.DNEG))
 
-    fun drem() = genericNoOperandCheck("drem", InstructionContext::insn_drem)
+    fun drem() = genericNoOperandCheck("drem", simpleInsn(JasmParser.DREM))
 
-    fun dreturn() = genericNoOperandCheck("dreturn", InstructionContext::insn_dreturn)
+    fun dreturn() = genericNoOperandCheck("dreturn", simpleInsn(JasmParser.DRETURN))
 
-    fun dstore(expected: Int) = genericIntOperandCheck("dstore", expected, InstructionContext::insn_dstore) {
+    fun dstore(expected: Int) = genericIntOperandCheck("dstore", expected, varInsn(JasmParser.DSTORE)) {
             dstore -> dstore.int_atom().text
     }
 
-    fun dsub() = genericNoOperandCheck("dsub", InstructionContext::insn_dsub)
+    fun dsub() = genericNoOperandCheck("dsub", simpleInsn(JasmParser.DSUB))
 
-    fun dup() = genericNoOperandCheck("dup", InstructionContext::insn_dup)
+    fun dup() = genericNoOperandCheck("dup", simpleInsn(JasmParser.DUP))
 
-    fun dupX1() = genericNoOperandCheck("dup_x1", InstructionContext::insn_dup_x1)
+    fun dupX1() = genericNoOperandCheck("dup_x1", simpleInsn(JasmParser.DUP_X1))
 
-    fun dupX2() = genericNoOperandCheck("dup_x2", InstructionContext::insn_dup_x2)
+    fun dupX2() = genericNoOperandCheck("dup_x2", simpleInsn(JasmParser.DUP_X2))
 
-    fun dup2() = genericNoOperandCheck("dup2", InstructionContext::insn_dup2)
+    fun dup2() = genericNoOperandCheck("dup2", simpleInsn(JasmParser.DUP2))
 
-    fun dup2X1() = genericNoOperandCheck("dup2_x1", InstructionContext::insn_dup2_x1)
+    fun dup2X1() = genericNoOperandCheck("dup2_x1", simpleInsn(JasmParser.DUP2_X1))
 
-    fun dup2X2() = genericNoOperandCheck("dup2_x2", InstructionContext::insn_dup2_x2)
+    fun dup2X2() = genericNoOperandCheck("dup2_x2", simpleInsn(JasmParser.DUP2_X2))
 
-    fun f2d() = genericNoOperandCheck("f2d", InstructionContext::insn_f2d)
+    fun f2d() = genericNoOperandCheck("f2d", simpleInsn(JasmParser.F2D))
 
-    fun f2i() = genericNoOperandCheck("f2i", InstructionContext::insn_f2i)
+    fun f2i() = genericNoOperandCheck("f2i", simpleInsn(JasmParser.F2I))
 
-    fun f2l() = genericNoOperandCheck("f2l", InstructionContext::insn_f2l)
+    fun f2l() = genericNoOperandCheck("f2l", simpleInsn(JasmParser.F2L))
 
-    fun fadd() = genericNoOperandCheck("fadd", InstructionContext::insn_fadd)
+    fun fadd() = genericNoOperandCheck("fadd", simpleInsn(JasmParser.FADD))
     
-    fun faload() = genericNoOperandCheck("faload", InstructionContext::insn_faload)
+    fun faload() = genericNoOperandCheck("faload", simpleInsn(JasmParser.FALOAD))
     
-    fun fastore() = genericNoOperandCheck("fastore", InstructionContext::insn_fastore)
+    fun fastore() = genericNoOperandCheck("fastore", simpleInsn(JasmParser.FASTORE))
 
-    fun fcmpg() = genericNoOperandCheck("fcmpg", InstructionContext::insn_fcmpg)
+    fun fcmpg() = genericNoOperandCheck("fcmpg", simpleInsn(JasmParser.FCMPG))
 
-    fun fcmpl() = genericNoOperandCheck("fcmpl", InstructionContext::insn_fcmpl)
+    fun fcmpl() = genericNoOperandCheck("fcmpl", simpleInsn(JasmParser.FCMPL))
 
     fun fconst(expected: Int) = genericIntOperandCheck("fconst", expected, InstructionContext::insn_fconst) {
             fconst -> fconst.int_atom().text
     }
 
-    fun fdiv() = genericNoOperandCheck("fdiv", InstructionContext::insn_fdiv)
+    fun fdiv() = genericNoOperandCheck("fdiv", simpleInsn(JasmParser.FDIV))
 
-    fun fload(expected: Int) = genericIntOperandCheck("fload", expected, InstructionContext::insn_fload) {
+    fun fload(expected: Int) = genericIntOperandCheck("fload", expected, varInsn(JasmParser.FLOAD)) {
             fload -> fload.int_atom().text
     }
 
-    fun fmul() = genericNoOperandCheck("fmul", InstructionContext::insn_fmul)
+    fun fmul() = genericNoOperandCheck("fmul", simpleInsn(JasmParser.FMUL))
 
-    fun fneg() = genericNoOperandCheck("fneg", InstructionContext::insn_fneg)
+    fun fneg() = genericNoOperandCheck("fneg", simpleInsn(JasmParser.FNEG))
 
-    fun frem() = genericNoOperandCheck("frem", InstructionContext::insn_frem)
+    fun frem() = genericNoOperandCheck("frem", simpleInsn(JasmParser.FREM))
 
-    fun freturn() = genericNoOperandCheck("freturn", InstructionContext::insn_freturn)
+    fun freturn() = genericNoOperandCheck("freturn", simpleInsn(JasmParser.FRETURN))
 
-    fun fsub() = genericNoOperandCheck("fsub", InstructionContext::insn_fsub)
+    fun fsub() = genericNoOperandCheck("fsub", simpleInsn(JasmParser.FSUB))
 
-    fun fstore(expected: Int) = genericIntOperandCheck("fstore", expected, InstructionContext::insn_fstore) {
+    fun fstore(expected: Int) = genericIntOperandCheck("fstore", expected, varInsn(JasmParser.FSTORE)) {
             fstore -> fstore.int_atom().text
     }
 
@@ -206,95 +206,95 @@ class CodeSequenceAssert<Caller> internal constructor(actual: Stat_blockContext,
             _goto -> _goto.NAME()?.text ?: _goto.LITERAL_NAME().text
     }
 
-    fun i2b() = genericNoOperandCheck("i2b", InstructionContext::insn_i2b)
+    fun i2b() = genericNoOperandCheck("i2b", simpleInsn(JasmParser.I2B))
 
-    fun i2c() = genericNoOperandCheck("i2c", InstructionContext::insn_i2c)
+    fun i2c() = genericNoOperandCheck("i2c", simpleInsn(JasmParser.I2C))
 
-    fun i2d() = genericNoOperandCheck("i2d", InstructionContext::insn_i2d)
+    fun i2d() = genericNoOperandCheck("i2d", simpleInsn(JasmParser.I2D))
 
-    fun i2f() = genericNoOperandCheck("i2f", InstructionContext::insn_i2f)
+    fun i2f() = genericNoOperandCheck("i2f", simpleInsn(JasmParser.I2F))
 
-    fun i2l() = genericNoOperandCheck("i2l", InstructionContext::insn_i2l)
+    fun i2l() = genericNoOperandCheck("i2l", simpleInsn(JasmParser.I2L))
 
-    fun i2s() = genericNoOperandCheck("i2s", InstructionContext::insn_i2s)
+    fun i2s() = genericNoOperandCheck("i2s", simpleInsn(JasmParser.I2S))
 
-    fun iadd() = genericNoOperandCheck("iadd", InstructionContext::insn_iadd)
+    fun iadd() = genericNoOperandCheck("iadd", simpleInsn(JasmParser.IADD))
     
-    fun iaload() = genericNoOperandCheck("iaload", InstructionContext::insn_iaload)
+    fun iaload() = genericNoOperandCheck("iaload", simpleInsn(JasmParser.IALOAD))
 
-    fun iand() = genericNoOperandCheck("iand", InstructionContext::insn_iand)
+    fun iand() = genericNoOperandCheck("iand", simpleInsn(JasmParser.IAND))
 
-    fun iastore() = genericNoOperandCheck("iastore", InstructionContext::insn_iastore)
+    fun iastore() = genericNoOperandCheck("iastore", simpleInsn(JasmParser.IASTORE))
 
     fun iconst(expected: Int) = genericIntOperandCheck("iconst", expected, InstructionContext::insn_iconst) {
             iconst -> iconst.ilconst_atom().text
     }
 
-    fun idiv() = genericNoOperandCheck("idiv", InstructionContext::insn_idiv)
+    fun idiv() = genericNoOperandCheck("idiv", simpleInsn(JasmParser.IDIV))
 
-    fun ifeq(expected: String) = genericStringOperandCheck("ifeq", expected, InstructionContext::insn_ifeq) {
+    fun ifeq(expected: String) = genericStringOperandCheck("ifeq", expected, jumpInsn(JasmParser.IFEQ)) {
             ifeq -> ifeq.NAME().text
     }
 
-    fun ifge(expected: String) = genericStringOperandCheck("ifge", expected, InstructionContext::insn_ifge) {
+    fun ifge(expected: String) = genericStringOperandCheck("ifge", expected, jumpInsn(JasmParser.IFGE)) {
             ifge -> ifge.NAME().text
     }
 
-    fun ifgt(expected: String) = genericStringOperandCheck("ifgt", expected, InstructionContext::insn_ifgt) {
+    fun ifgt(expected: String) = genericStringOperandCheck("ifgt", expected, jumpInsn(JasmParser.IFGT)) {
             ifgt -> ifgt.NAME().text
     }
 
-    fun ifle(expected: String) = genericStringOperandCheck("ifle", expected, InstructionContext::insn_ifle) {
+    fun ifle(expected: String) = genericStringOperandCheck("ifle", expected, jumpInsn(JasmParser.IFLE)) {
             ifle -> ifle.NAME().text
     }
 
-    fun iflt(expected: String) = genericStringOperandCheck("iflt", expected, InstructionContext::insn_iflt) {
+    fun iflt(expected: String) = genericStringOperandCheck("iflt", expected, jumpInsn(JasmParser.IFLT)) {
             iflt -> iflt.NAME().text }
 
-    fun ifne(expected: String) = genericStringOperandCheck("ifeq", expected, InstructionContext::insn_ifne) {
+    fun ifne(expected: String) = genericStringOperandCheck("ifeq", expected, jumpInsn(JasmParser.IFNE)) {
             ifne -> ifne.NAME().text
     }
 
-    fun if_acmpeq(expected: String) = genericStringOperandCheck("if_acmpeq", expected, InstructionContext::insn_if_acmpeq) {
+    fun if_acmpeq(expected: String) = genericStringOperandCheck("if_acmpeq", expected, jumpInsn(JasmParser.IFACMPEQ)) {
             if_acmpeq -> if_acmpeq.NAME().text
     }
 
-    fun if_acmpne(expected: String) = genericStringOperandCheck("if_acmpeq", expected, InstructionContext::insn_if_acmpne) {
+    fun if_acmpne(expected: String) = genericStringOperandCheck("if_acmpeq", expected, jumpInsn(JasmParser.IFACMPNE)) {
             if_acmpne -> if_acmpne.NAME().text
     }
 
-    fun if_icmpeq(expected: String) = genericStringOperandCheck("if_icmpeq", expected, InstructionContext::insn_if_icmpeq) {
+    fun if_icmpeq(expected: String) = genericStringOperandCheck("if_icmpeq", expected, jumpInsn(JasmParser.IFICMPEQ)) {
             if_icmpeq -> if_icmpeq.NAME().text
     }
 
-    fun if_icmpge(expected: String) = genericStringOperandCheck("if_icmpge", expected, InstructionContext::insn_if_icmpge) {
+    fun if_icmpge(expected: String) = genericStringOperandCheck("if_icmpge", expected, jumpInsn(JasmParser.IFICMPGE)) {
             if_icmpge -> if_icmpge.NAME().text
     }
 
-    fun if_icmpgt(expected: String) = genericStringOperandCheck("if_icmpgt", expected, InstructionContext::insn_if_icmpgt) {
+    fun if_icmpgt(expected: String) = genericStringOperandCheck("if_icmpgt", expected, jumpInsn(JasmParser.IFICMPGT)) {
             if_icmpgt -> if_icmpgt.NAME().text
     }
 
-    fun if_icmple(expected: String) = genericStringOperandCheck("if_icmple", expected, InstructionContext::insn_if_icmple) {
+    fun if_icmple(expected: String) = genericStringOperandCheck("if_icmple", expected, jumpInsn(JasmParser.IFICMPLE)) {
             if_icmple -> if_icmple.NAME().text
     }
 
-    fun if_icmplt(expected: String) = genericStringOperandCheck("if_icmplt", expected, InstructionContext::insn_if_icmplt) {
+    fun if_icmplt(expected: String) = genericStringOperandCheck("if_icmplt", expected, jumpInsn(JasmParser.IFICMPLT)) {
             if_icmplt -> if_icmplt.NAME().text
     }
 
-    fun if_icmpne(expected: String) = genericStringOperandCheck("if_icmpeq", expected, InstructionContext::insn_if_icmpne) {
+    fun if_icmpne(expected: String) = genericStringOperandCheck("if_icmpeq", expected, jumpInsn(JasmParser.IFICMPNE)) {
             if_icmpne -> if_icmpne.NAME().text
     }
 
-    fun ifNull(expected: String) = genericStringOperandCheck("ifnull", expected, InstructionContext::insn_ifnull) {
+    fun ifNull(expected: String) = genericStringOperandCheck("ifnull", expected, jumpInsn(JasmParser.IFNULL)) {
             ifnull -> ifnull.NAME().text
     }
 
     fun ifNonNull(expected: String) = genericStringOperandCheck(
         "ifnonnull",
         expected,
-        InstructionContext::insn_ifnonnull) {
+        jumpInsn(JasmParser.IFNONNULL)) {
             ifnonnull -> ifnonnull.NAME().text
     }
 
@@ -316,13 +316,13 @@ class CodeSequenceAssert<Caller> internal constructor(actual: Stat_blockContext,
         return this
     }
 
-    fun iload(expected: Int) = genericIntOperandCheck("iload", expected, InstructionContext::insn_iload) {
+    fun iload(expected: Int) = genericIntOperandCheck("iload", expected, varInsn(JasmParser.ILOAD)) {
             iload -> iload.int_atom().text
     }
 
-    fun imul() = genericNoOperandCheck("imul", InstructionContext::insn_imul)
+    fun imul() = genericNoOperandCheck("imul", simpleInsn(JasmParser.IMUL))
 
-    fun ineg() = genericNoOperandCheck("ineg", InstructionContext::insn_ineg)
+    fun ineg() = genericNoOperandCheck("ineg", simpleInsn(JasmParser.INEG))
 
     fun instance_of(expected: String) = genericStringOperandCheck("iload", expected, InstructionContext::insn_instanceof) {
             instof -> instof.QNAME().text
@@ -437,45 +437,45 @@ class CodeSequenceAssert<Caller> internal constructor(actual: Stat_blockContext,
             Insn_invokevirtualContext::method_descriptor,
         ) { t -> t.STAR() != null }
 
-    fun ior() = genericNoOperandCheck("ior", InstructionContext::insn_ior)
+    fun ior() = genericNoOperandCheck("ior", simpleInsn(JasmParser.IOR))
 
-    fun irem() = genericNoOperandCheck("irem", InstructionContext::insn_irem)
+    fun irem() = genericNoOperandCheck("irem", simpleInsn(JasmParser.IREM))
 
-    fun ireturn() = genericNoOperandCheck("ireturn", InstructionContext::insn_ireturn)
+    fun ireturn() = genericNoOperandCheck("ireturn", simpleInsn(JasmParser.IRETURN))
 
-    fun ishl() = genericNoOperandCheck("ishl", InstructionContext::insn_ishl)
+    fun ishl() = genericNoOperandCheck("ishl", simpleInsn(JasmParser.ISHL))
 
-    fun ishr() = genericNoOperandCheck("ishr", InstructionContext::insn_ishr)
+    fun ishr() = genericNoOperandCheck("ishr", simpleInsn(JasmParser.ISHR))
 
-    fun istore(expected: Int) = genericIntOperandCheck("istore", expected, InstructionContext::insn_istore) {
+    fun istore(expected: Int) = genericIntOperandCheck("istore", expected, varInsn(JasmParser.ISTORE)) {
             istore -> istore.int_atom().text
     }
 
-    fun isub() = genericNoOperandCheck("isub", InstructionContext::insn_isub)
+    fun isub() = genericNoOperandCheck("isub", simpleInsn(JasmParser.ISUB))
 
-    fun iushr() = genericNoOperandCheck("iushr", InstructionContext::insn_iushr)
+    fun iushr() = genericNoOperandCheck("iushr", simpleInsn(JasmParser.IUSHR))
 
-    fun ixor() = genericNoOperandCheck("ixor", InstructionContext::insn_ixor)
+    fun ixor() = genericNoOperandCheck("ixor", simpleInsn(JasmParser.IXOR))
 
-    fun jsr(expected: String) = genericStringOperandCheck("jsr", expected, InstructionContext::insn_jsr) {
+    fun jsr(expected: String) = genericStringOperandCheck("jsr", expected, jumpInsn(JasmParser.JSR)) {
         jsr -> jsr.NAME().text
     }
 
-    fun l2d() = genericNoOperandCheck("l2d", InstructionContext::insn_l2d)
+    fun l2d() = genericNoOperandCheck("l2d", simpleInsn(JasmParser.L2D))
 
-    fun l2f() = genericNoOperandCheck("l2f", InstructionContext::insn_l2f)
+    fun l2f() = genericNoOperandCheck("l2f", simpleInsn(JasmParser.L2F))
 
-    fun l2i() = genericNoOperandCheck("l2i", InstructionContext::insn_l2i)
+    fun l2i() = genericNoOperandCheck("l2i", simpleInsn(JasmParser.L2I))
 
-    fun ladd() = genericNoOperandCheck("ladd", InstructionContext::insn_ladd)
+    fun ladd() = genericNoOperandCheck("ladd", simpleInsn(JasmParser.LADD))
 
-    fun laload() = genericNoOperandCheck("laload", InstructionContext::insn_laload)
+    fun laload() = genericNoOperandCheck("laload", simpleInsn(JasmParser.LALOAD))
 
-    fun land() = genericNoOperandCheck("land", InstructionContext::insn_land)
+    fun land() = genericNoOperandCheck("land", simpleInsn(JasmParser.LAND))
 
-    fun lastore() = genericNoOperandCheck("lastore", InstructionContext::insn_lastore)
+    fun lastore() = genericNoOperandCheck("lastore", simpleInsn(JasmParser.LASTORE))
 
-    fun lcmp() = genericNoOperandCheck("lcmp", InstructionContext::insn_lcmp)
+    fun lcmp() = genericNoOperandCheck("lcmp", simpleInsn(JasmParser.LCMP))
 
     fun lconst(expected: Int) = genericIntOperandCheck("lconst", expected, InstructionContext::insn_lconst) {
             lconst -> lconst.ilconst_atom().text
@@ -504,15 +504,15 @@ class CodeSequenceAssert<Caller> internal constructor(actual: Stat_blockContext,
             constarg -> expected == cleanConstantString(constarg.string_atom().text)
     }
 
-    fun ldiv() = genericNoOperandCheck("ldiv", InstructionContext::insn_ldiv)
+    fun ldiv() = genericNoOperandCheck("ldiv", simpleInsn(JasmParser.LDIV))
 
-    fun lload(expected: Int) = genericIntOperandCheck("lload", expected, InstructionContext::insn_lload) {
+    fun lload(expected: Int) = genericIntOperandCheck("lload", expected, varInsn(JasmParser.LLOAD)) {
             lload -> lload.int_atom().text
     }
 
-    fun lmul() = genericNoOperandCheck("lmul", InstructionContext::insn_lmul)
+    fun lmul() = genericNoOperandCheck("lmul", simpleInsn(JasmParser.LMUL))
 
-    fun lneg() = genericNoOperandCheck("lneg", InstructionContext::insn_lneg)
+    fun lneg() = genericNoOperandCheck("lneg", simpleInsn(JasmParser.LNEG))
 
     fun lookupswitch() = switchAssert(
         "lookupswitch",
@@ -521,35 +521,35 @@ class CodeSequenceAssert<Caller> internal constructor(actual: Stat_blockContext,
         JasmParser.Insn_lookupswitchContext::switch_case
     )
 
-    fun lor() = genericNoOperandCheck("lor", InstructionContext::insn_lor)
+    fun lor() = genericNoOperandCheck("lor", simpleInsn(JasmParser.LOR))
 
-    fun lrem() = genericNoOperandCheck("lrem", InstructionContext::insn_lrem)
+    fun lrem() = genericNoOperandCheck("lrem", simpleInsn(JasmParser.LREM))
 
-    fun lreturn() = genericNoOperandCheck("lreturn", InstructionContext::insn_lreturn)
+    fun lreturn() = genericNoOperandCheck("lreturn", simpleInsn(JasmParser.LRETURN))
 
-    fun lshl() = genericNoOperandCheck("lshl", InstructionContext::insn_lshl)
+    fun lshl() = genericNoOperandCheck("lshl", simpleInsn(JasmParser.LSHL))
 
-    fun lshr() = genericNoOperandCheck("lshr", InstructionContext::insn_lshr)
+    fun lshr() = genericNoOperandCheck("lshr", simpleInsn(JasmParser.LSHR))
 
-    fun lstore(expected: Int) = genericIntOperandCheck("lstore", expected, InstructionContext::insn_lstore) {
+    fun lstore(expected: Int) = genericIntOperandCheck("lstore", expected, varInsn(JasmParser.LSTORE)) {
             lstore -> lstore.int_atom().text
     }
 
-    fun lsub() = genericNoOperandCheck("lsub", InstructionContext::insn_lsub)
+    fun lsub() = genericNoOperandCheck("lsub", simpleInsn(JasmParser.LSUB))
 
-    fun lushr() = genericNoOperandCheck("lushr", InstructionContext::insn_lushr)
+    fun lushr() = genericNoOperandCheck("lushr", simpleInsn(JasmParser.LUSHR))
 
-    fun lxor() = genericNoOperandCheck("lxor", InstructionContext::insn_lxor)
+    fun lxor() = genericNoOperandCheck("lxor", simpleInsn(JasmParser.LXOR))
 
-    fun monitorenter() = genericNoOperandCheck("monitorenter", InstructionContext::insn_monitorenter)
+    fun monitorenter() = genericNoOperandCheck("monitorenter", simpleInsn(JasmParser.MONITORENTER))
 
-    fun monitorexit() = genericNoOperandCheck("monitorexit", InstructionContext::insn_monitorexit)
+    fun monitorexit() = genericNoOperandCheck("monitorexit", simpleInsn(JasmParser.MONITOREXIT))
 
-    fun nop() = genericNoOperandCheck("nop", InstructionContext::insn_nop)
+    fun nop() = genericNoOperandCheck("nop", simpleInsn(JasmParser.NOP))
 
-    fun pop() = genericNoOperandCheck("pop", InstructionContext::insn_pop)
+    fun pop() = genericNoOperandCheck("pop", simpleInsn(JasmParser.POP))
 
-    fun pop2() = genericNoOperandCheck("pop2", InstructionContext::insn_pop2)
+    fun pop2() = genericNoOperandCheck("pop2", simpleInsn(JasmParser.POP2))
 
     fun multianewarray(expectedType: String) = multianewarray(expectedType, null)
     fun multianewarray(expectedType: String, expectedDims: Int?): CodeSequenceAssert<Caller> {
@@ -589,7 +589,7 @@ class CodeSequenceAssert<Caller> internal constructor(actual: Stat_blockContext,
             newarray -> newarray.prim_type().text
     }
 
-    fun ret(expected: Int) = genericIntOperandCheck("ret", expected, InstructionContext::insn_ret) {
+    fun ret(expected: Int) = genericIntOperandCheck("ret", expected, intInsn(JasmParser.RET)) {
             ret -> ret.int_atom().text
     }
 
@@ -617,18 +617,18 @@ class CodeSequenceAssert<Caller> internal constructor(actual: Stat_blockContext,
             JasmParser.Insn_putstaticContext::type
         )
 
-    fun saload() = genericNoOperandCheck("saload", InstructionContext::insn_saload)
+    fun saload() = genericNoOperandCheck("saload", simpleInsn(JasmParser.SALOAD))
 
-    fun sastore() = genericNoOperandCheck("sastore", InstructionContext::insn_sastore)
+    fun sastore() = genericNoOperandCheck("sastore", simpleInsn(JasmParser.SASTORE))
 
-    fun sipush(expected: Int) = genericIntOperandCheck("sipush", expected, InstructionContext::insn_sipush) {
+    fun sipush(expected: Int) = genericIntOperandCheck("sipush", expected, intInsn(JasmParser.SIPUSH)) {
             sipush -> sipush.int_atom().text
     }
 
-    fun swap() = genericNoOperandCheck("swap", InstructionContext::insn_swap)
+    fun swap() = genericNoOperandCheck("swap", simpleInsn(JasmParser.SWAP))
 
     fun vreturn(): CodeSequenceAssert<Caller> {
-        return genericNoOperandCheck("vreturn", InstructionContext::insn_return)
+        return genericNoOperandCheck("vreturn", simpleInsn(JasmParser.RETURN))
     }
 
     fun exception(tryBegin: String, tryEnd: String, catchBegin: String, type: String): CodeSequenceAssert<Caller> {
@@ -764,6 +764,18 @@ class CodeSequenceAssert<Caller> internal constructor(actual: Stat_blockContext,
         }
     }
 
+    private fun simpleInsn(opcode: Int): (InstructionContext) -> JasmParser.Insn_simpleContext?
+            = { insn -> insn.insn_simple()?.takeIf { it.op.type == opcode } }
+
+    private fun varInsn(opcode: Int): (InstructionContext) -> JasmParser.Insn_varContext?
+            = { insn -> insn.insn_var()?.takeIf { it.op.type == opcode } }
+
+    private fun intInsn(opcode: Int): (InstructionContext) -> JasmParser.Insn_intContext?
+            = { insn -> insn.insn_int()?.takeIf { it.op.type == opcode } }
+
+    private fun jumpInsn(opcode: Int): (InstructionContext) -> JasmParser.Insn_jumpContext?
+            = { insn -> insn.insn_jump()?.takeIf { it.op.type == opcode } }
+
     private fun genericNoOperandCheck(
         name: String,
         getInsnFunc: (InstructionContext) -> Any?
@@ -789,24 +801,24 @@ class CodeSequenceAssert<Caller> internal constructor(actual: Stat_blockContext,
         return this
     }
 
-    private fun <T> genericIntOperandCheck(
+    private fun <T : Any> genericIntOperandCheck(
         name: String,
         expectedOperand: Int,
-        getInsnFunc: (InstructionContext) -> T,
+        getInsnFunc: (InstructionContext) -> T?,
         getAtomTextFunc:(T) -> String
     ) = genericAnyOperandCheck(name, expectedOperand, getInsnFunc, getAtomTextFunc) { i -> i.toString() }
 
-    private fun <T> genericStringOperandCheck(
+    private fun <T : Any> genericStringOperandCheck(
         name: String,
         expectedOperand: String,
-        getInsnFunc: (InstructionContext) -> T,
+        getInsnFunc: (InstructionContext) -> T?,
         getAtomTextFunc: (T) -> String
     ) = genericAnyOperandCheck(name, expectedOperand, getInsnFunc, getAtomTextFunc) { it }
 
-    private fun <T, O> genericAnyOperandCheck(
+    private fun <T : Any, O> genericAnyOperandCheck(
         name: String,
         expectedOperand: O,
-        getInsnFunc: (InstructionContext) -> T,
+        getInsnFunc: (InstructionContext) -> T?,
         getAtomTextFunc: (T) -> String,
         getOperandTextFunc: (O) -> String
     ): CodeSequenceAssert<Caller> {
@@ -816,10 +828,10 @@ class CodeSequenceAssert<Caller> internal constructor(actual: Stat_blockContext,
         hasNotUnderflowed(name)
 
         val stat = actual.stat()[pc]
+        val insn = getInsnFunc.invoke(stat.instruction())
 
-        if (getInsnFunc.invoke(stat.instruction()) == null
-            || getOperandTextFunc.invoke(expectedOperand) !=
-                LiteralNames.unescape(getAtomTextFunc.invoke(getInsnFunc.invoke(stat.instruction())))) {
+        if (insn == null
+            || getOperandTextFunc.invoke(expectedOperand) != LiteralNames.unescape(getAtomTextFunc.invoke(insn))) {
             failWithMessage(
                 "Expected "
                         + name
@@ -8,6 +8,7 @@ package com.roscopeco.jasm.asserts
 import com.roscopeco.jasm.antlr.JasmLexer
 import com.roscopeco.jasm.antlr.JasmParser
 import org.antlr.v4.runtime.Token
+import org.antlr.v4.runtime.TokenSource
 import org.junit.jupiter.api.function.ThrowingConsumer
 
 object LexerParserAssertions {
@@ -18,16 +19,16 @@ object LexerParserAssertions {
     fun assertToken(actual: Token) = TokenAssert(actual)
 
     @JvmStatic
-    fun assertNextToken(lexer: JasmLexer) = assertToken(nextNonSpaceToken(lexer))
+    fun assertNextToken(lexer: TokenSource) = assertToken(nextNonSpaceToken(lexer))
 
-    private fun nextNonSpaceToken(lexer: JasmLexer): Token {
+    private fun nextNonSpaceToken(lexer: TokenSource): Token {
         var token = lexer.nextToken()
         while (token.type == JasmLexer.SPACE || token.type == JasmLexer.COMMENT) token = lexer.nextToken()
         return token
     }
 
     @JvmStatic
-    fun assertTokens(lexer: JasmLexer, asserter: ThrowingConsumer<TokenChainAsserter>) {
+    fun assertTokens(lexer: TokenSource, asserter: ThrowingConsumer<TokenChainAsserter>) {
         asserter.accept(object : TokenChainAsserter {
             override fun next(): TokenAssert = TokenAssert(nextNonSpaceToken(lexer))
         })